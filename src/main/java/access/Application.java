@@ -18,6 +18,7 @@ package access;
 import access.deploy.geoserver.AuthHeaders;
 import access.deploy.geoserver.BasicAuthHeaders;
 import access.deploy.geoserver.PKIAuthHeaders;
+import access.util.CancellableHttpRequestFactory;
 import messaging.job.JobMessageFactory;
 import org.apache.http.HttpRequest;
 import org.apache.http.HttpResponse;
@@ -42,7 +43,10 @@ import org.apache.http.protocol.HttpContext;
 import org.apache.http.ssl.SSLContexts;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.AcknowledgeMode;
 import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.rabbit.annotation.EnableRabbit;
 import org.springframework.aop.interceptor.AsyncUncaughtExceptionHandler;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -50,6 +54,7 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
 import org.springframework.boot.autoconfigure.domain.EntityScan;
 import org.springframework.boot.builder.SpringApplicationBuilder;
 import org.springframework.boot.web.support.SpringBootServletInitializer;
@@ -58,7 +63,6 @@ import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Profile;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
-import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.http.converter.HttpMessageConverter;
 import org.springframework.http.converter.StringHttpMessageConverter;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
@@ -76,7 +80,9 @@ import java.net.URI;
 import java.security.*;
 import java.security.cert.CertificateException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Executor;
 
 @SpringBootApplication
@@ -94,6 +100,56 @@ public class Application extends SpringBootServletInitializer implements AsyncCo
     private int threadCountSize;
     @Value("${thread.count.limit}")
     private int threadCountLimit;
+    @Value("${thread.queue.capacity}")
+    private int threadQueueCapacity;
+    @Value("${renewal.thread.count.size:5}")
+    private int renewalThreadCountSize;
+    @Value("${renewal.thread.count.limit:10}")
+    private int renewalThreadCountLimit;
+    @Value("${renewal.thread.queue.capacity:50}")
+    private int renewalThreadQueueCapacity;
+    @Value("${vector.thread.count.size:5}")
+    private int vectorThreadCountSize;
+    @Value("${vector.thread.count.limit:10}")
+    private int vectorThreadCountLimit;
+    @Value("${vector.thread.queue.capacity:25}")
+    private int vectorThreadQueueCapacity;
+    @Value("${raster.thread.count.size:4}")
+    private int rasterThreadCountSize;
+    @Value("${raster.thread.count.limit:8}")
+    private int rasterThreadCountLimit;
+    @Value("${raster.thread.queue.capacity:10}")
+    private int rasterThreadQueueCapacity;
+    @Value("${group.thread.count.size:2}")
+    private int groupThreadCountSize;
+    @Value("${group.thread.count.limit:4}")
+    private int groupThreadCountLimit;
+    @Value("${group.thread.queue.capacity:10}")
+    private int groupThreadQueueCapacity;
+    @Value("${batch.item.thread.count.size:4}")
+    private int batchItemThreadCountSize;
+    @Value("${batch.item.thread.count.limit:16}")
+    private int batchItemThreadCountLimit;
+    @Value("${batch.item.thread.queue.capacity:100}")
+    private int batchItemThreadQueueCapacity;
+    @Value("${access.job.listener.concurrency:4}")
+    private int accessJobConcurrency;
+    @Value("${access.job.listener.prefetch:0}")
+    private int accessJobPrefetch;
+    @Value("${access.job.lane.queues.enabled:true}")
+    private boolean laneQueuesEnabled;
+    @Value("${lane.listener.concurrency:1}")
+    private int laneConcurrency;
+    @Value("${batch.job.listener.concurrency:1}")
+    private int batchJobConcurrency;
+    @Value("${abort.job.listener.concurrency:1}")
+    private int abortJobConcurrency;
+    @Value("${abort.job.listener.max.concurrency:1}")
+    private int abortJobMaxConcurrency;
+    @Value("${abort.job.listener.prefetch:0}")
+    private int abortJobPrefetch;
+    @Value("${listener.start.consumer.min.interval.millis:10000}")
+    private long startConsumerMinInterval;
     @Value("${SPACE}")
     private String SPACE;
 
@@ -110,6 +166,26 @@ public class Application extends SpringBootServletInitializer implements AsyncCo
                 false);
     }
 
+    /**
+     * Holds Access Jobs that failed transiently until their retry delay expires, then dead-letters them back to the
+     * Access Job queue
+     */
+    @Bean
+    public Queue accessJobRetryQueue() {
+        Map<String, Object> arguments = new HashMap<>();
+        arguments.put("x-dead-letter-exchange", JobMessageFactory.PIAZZA_EXCHANGE_NAME);
+        arguments.put("x-dead-letter-routing-key", String.format("AccessJob-%s", SPACE));
+        return new Queue(String.format("AccessJob-Retry-%s", SPACE), true, false, false, arguments);
+    }
+
+    /**
+     * Holds Access Jobs that failed transiently on every attempt, with their failure, for inspection
+     */
+    @Bean
+    public Queue accessJobDeadLetterQueue() {
+        return new Queue(String.format("AccessJob-DeadLetter-%s", SPACE), true, false, false);
+    }
+
     public static void main(String[] args) {
         SpringApplication.run(Application.class, args); // NOSONAR
     }
@@ -120,10 +196,183 @@ public class Application extends SpringBootServletInitializer implements AsyncCo
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
         executor.setCorePoolSize(threadCountSize);
         executor.setMaxPoolSize(threadCountLimit);
+        executor.setQueueCapacity(threadQueueCapacity);
         executor.initialize();
         return executor;
     }
 
+    /**
+     * Executor for Access Jobs that only renew the Lease of an existing Deployment. Kept apart from the default executor
+     * so that renewals are not queued behind new Deployments.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor renewalExecutor() {
+        return createExecutor("renewal-", renewalThreadCountSize, renewalThreadCountLimit, renewalThreadQueueCapacity);
+    }
+
+    /**
+     * Executor for new Deployments of vector Resources, which publish an existing PostGIS table with a single GeoServer
+     * request.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor vectorExecutor() {
+        return createExecutor("vector-", vectorThreadCountSize, vectorThreadCountLimit, vectorThreadQueueCapacity);
+    }
+
+    /**
+     * Executor for new Deployments of raster Resources, which upload the full GeoTIFF to GeoServer. Sized separately so
+     * that a burst of rasters can not starve vector publishing.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor rasterExecutor() {
+        return createExecutor("raster-", rasterThreadCountSize, rasterThreadCountLimit, rasterThreadQueueCapacity);
+    }
+
+    /**
+     * Executor for Access Jobs that add their Deployment to a Deployment Group, which rewrites the GeoServer layer group.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor groupExecutor() {
+        return createExecutor("group-", groupThreadCountSize, groupThreadCountLimit, groupThreadQueueCapacity);
+    }
+
+    /**
+     * Executor for the Resources of Batch Access Jobs. Each batch limits how many of its Resources are in flight, so the
+     * queue only needs to hold that many for each thread of the group executor.
+     */
+    @Bean
+    public ThreadPoolTaskExecutor batchItemExecutor() {
+        return createExecutor("batch-item-", batchItemThreadCountSize, batchItemThreadCountLimit, batchItemThreadQueueCapacity);
+    }
+
+    private ThreadPoolTaskExecutor createExecutor(String threadNamePrefix, int coreSize, int maxSize, int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(coreSize);
+        executor.setMaxPoolSize(maxSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix(threadNamePrefix);
+        return executor;
+    }
+
+    /**
+     * Listener container for Access Jobs. Messages are acknowledged manually, once their Job completes, and no more
+     * are prefetched than the worker executor can hold; the backlog stays in the broker, where it survives a restart and
+     * is shared between instances.
+     * 
+     * The number of consumers is fixed. A consumer retired when idle would close its channel, and every Job still
+     * running on it would be redelivered while it runs, and could no longer acknowledge its message. Unless a prefetch is
+     * configured, the capacity of the lanes an Access Job can be run in is divided between the consumers, so that one
+     * full lane does not stop Jobs for the others from being delivered.
+     * 
+     * With lane queues, these consumers only classify each Job and forward it to the queue of its lane, acknowledging it
+     * as soon as the broker confirms the copy, so they prefetch no more than the container default unless configured.
+     */
+    @Bean
+    public SimpleRabbitListenerContainerFactory accessJobContainerFactory(SimpleRabbitListenerContainerFactoryConfigurer configurer,
+            ConnectionFactory connectionFactory) {
+        if (laneQueuesEnabled) {
+            SimpleRabbitListenerContainerFactory factory = createContainerFactory(configurer, connectionFactory, accessJobConcurrency,
+                    accessJobPrefetch);
+            factory.setAcknowledgeMode(AcknowledgeMode.MANUAL);
+            return factory;
+        }
+        int executorCapacity = threadCountLimit + threadQueueCapacity + renewalThreadCountLimit + renewalThreadQueueCapacity
+                + vectorThreadCountLimit + vectorThreadQueueCapacity + rasterThreadCountLimit + rasterThreadQueueCapacity
+                + groupThreadCountLimit + groupThreadQueueCapacity;
+        int prefetch = accessJobPrefetch > 0 ? accessJobPrefetch
+                : Math.max(1, (executorCapacity + accessJobConcurrency - 1) / accessJobConcurrency);
+        SimpleRabbitListenerContainerFactory factory = createContainerFactory(configurer, connectionFactory, accessJobConcurrency,
+                prefetch);
+        factory.setAcknowledgeMode(AcknowledgeMode.MANUAL);
+        return factory;
+    }
+
+    /**
+     * Listener containers for the queue of each lane. Jobs are acknowledged when they complete, and each lane prefetches
+     * only the capacity of its own executor, so a backlog in one lane stays in its queue in the broker. They consume
+     * even with lane queues disabled, so that Jobs forwarded before are still run.
+     */
+    @Bean
+    public SimpleRabbitListenerContainerFactory defaultLaneContainerFactory(SimpleRabbitListenerContainerFactoryConfigurer configurer,
+            ConnectionFactory connectionFactory) {
+        return createLaneContainerFactory(configurer, connectionFactory, threadCountLimit + threadQueueCapacity);
+    }
+
+    @Bean
+    public SimpleRabbitListenerContainerFactory renewalLaneContainerFactory(SimpleRabbitListenerContainerFactoryConfigurer configurer,
+            ConnectionFactory connectionFactory) {
+        return createLaneContainerFactory(configurer, connectionFactory, renewalThreadCountLimit + renewalThreadQueueCapacity);
+    }
+
+    @Bean
+    public SimpleRabbitListenerContainerFactory vectorLaneContainerFactory(SimpleRabbitListenerContainerFactoryConfigurer configurer,
+            ConnectionFactory connectionFactory) {
+        return createLaneContainerFactory(configurer, connectionFactory, vectorThreadCountLimit + vectorThreadQueueCapacity);
+    }
+
+    @Bean
+    public SimpleRabbitListenerContainerFactory rasterLaneContainerFactory(SimpleRabbitListenerContainerFactoryConfigurer configurer,
+            ConnectionFactory connectionFactory) {
+        return createLaneContainerFactory(configurer, connectionFactory, rasterThreadCountLimit + rasterThreadQueueCapacity);
+    }
+
+    /**
+     * The group executor also runs Batch Access Jobs, whose container prefetches the same capacity; a rejected Job of
+     * either is returned to its own queue.
+     */
+    @Bean
+    public SimpleRabbitListenerContainerFactory groupLaneContainerFactory(SimpleRabbitListenerContainerFactoryConfigurer configurer,
+            ConnectionFactory connectionFactory) {
+        return createLaneContainerFactory(configurer, connectionFactory, groupThreadCountLimit + groupThreadQueueCapacity);
+    }
+
+    private SimpleRabbitListenerContainerFactory createLaneContainerFactory(SimpleRabbitListenerContainerFactoryConfigurer configurer,
+            ConnectionFactory connectionFactory, int executorCapacity) {
+        int prefetch = Math.max(1, (executorCapacity + laneConcurrency - 1) / laneConcurrency);
+        SimpleRabbitListenerContainerFactory factory = createContainerFactory(configurer, connectionFactory, laneConcurrency, prefetch);
+        factory.setAcknowledgeMode(AcknowledgeMode.MANUAL);
+        return factory;
+    }
+
+    /**
+     * Listener container for Batch Access Jobs, acknowledged in the same way as Access Jobs. Batches only run in the
+     * group lane, so only its capacity is prefetched.
+     */
+    @Bean
+    public SimpleRabbitListenerContainerFactory batchJobContainerFactory(SimpleRabbitListenerContainerFactoryConfigurer configurer,
+            ConnectionFactory connectionFactory) {
+        int prefetch = Math.max(1, (groupThreadCountLimit + groupThreadQueueCapacity + batchJobConcurrency - 1) / batchJobConcurrency);
+        SimpleRabbitListenerContainerFactory factory = createContainerFactory(configurer, connectionFactory, batchJobConcurrency,
+                prefetch);
+        factory.setAcknowledgeMode(AcknowledgeMode.MANUAL);
+        return factory;
+    }
+
+    /**
+     * Listener container for Abort Jobs. Abort messages are acknowledged on receipt, so consumers are added, up to the
+     * maximum, while messages keep arriving, and removed again when idle.
+     */
+    @Bean
+    public SimpleRabbitListenerContainerFactory abortJobContainerFactory(SimpleRabbitListenerContainerFactoryConfigurer configurer,
+            ConnectionFactory connectionFactory) {
+        SimpleRabbitListenerContainerFactory factory = createContainerFactory(configurer, connectionFactory, abortJobConcurrency,
+                abortJobPrefetch);
+        factory.setMaxConcurrentConsumers(Math.max(abortJobConcurrency, abortJobMaxConcurrency));
+        factory.setStartConsumerMinInterval(startConsumerMinInterval);
+        return factory;
+    }
+
+    private SimpleRabbitListenerContainerFactory createContainerFactory(SimpleRabbitListenerContainerFactoryConfigurer configurer,
+            ConnectionFactory connectionFactory, int concurrency, int prefetch) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setConcurrentConsumers(concurrency);
+        if (prefetch > 0) {
+            factory.setPrefetchCount(prefetch);
+        }
+        return factory;
+    }
+
     @Override
     public AsyncUncaughtExceptionHandler getAsyncUncaughtExceptionHandler() {
         return (ex, method, params) -> LOG.error("Uncaught Threading exception encountered in {} with details: {}", ex.getMessage(),
@@ -148,7 +397,7 @@ public class Application extends SpringBootServletInitializer implements AsyncCo
         @Bean
         public RestTemplate restTemplate(@Autowired HttpClient httpClient) {
             final RestTemplate restTemplate = new RestTemplate();
-			restTemplate.setRequestFactory(new HttpComponentsClientHttpRequestFactory(httpClient));
+			restTemplate.setRequestFactory(new CancellableHttpRequestFactory(httpClient));
             return restTemplate;
         }
 
@@ -200,7 +449,7 @@ public class Application extends SpringBootServletInitializer implements AsyncCo
         @Bean
         public RestTemplate restTemplate(@Autowired HttpClient httpClient)  {
             RestTemplate restTemplate = new RestTemplate();
-            restTemplate.setRequestFactory(new HttpComponentsClientHttpRequestFactory(httpClient));
+            restTemplate.setRequestFactory(new CancellableHttpRequestFactory(httpClient));
 
             List<HttpMessageConverter<?>> messageConverters = new ArrayList<HttpMessageConverter<?>>();
             messageConverters.add(new StringHttpMessageConverter());
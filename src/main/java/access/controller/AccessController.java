@@ -20,6 +20,8 @@ import java.io.StringWriter;
 import java.util.HashMap;
 import java.util.Map;
 
+import javax.servlet.http.HttpServletResponse;
+
 import org.apache.commons.io.FilenameUtils;
 import org.geotools.data.DataStore;
 import org.geotools.data.Query;
@@ -31,6 +33,7 @@ import org.opengis.feature.simple.SimpleFeature;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -45,11 +48,16 @@ import org.springframework.web.client.HttpStatusCodeException;
 
 import com.amazonaws.util.StringUtils;
 
+import access.database.CountMode;
 import access.database.DatabaseAccessor;
+import access.database.DatabaseMetrics;
+import access.database.LeasedDeployment;
 import access.deploy.Deployer;
 import access.deploy.GroupDeployer;
 import access.deploy.Leaser;
 import access.messaging.AccessThreadManager;
+import access.messaging.DrainManager;
+import access.messaging.PipelineMetrics;
 import access.util.AccessUtilities;
 import exception.GeoServerException;
 import exception.InvalidInputException;
@@ -57,7 +65,6 @@ import model.data.DataResource;
 import model.data.FileRepresentation;
 import model.data.deployment.Deployment;
 import model.data.deployment.DeploymentGroup;
-import model.data.deployment.Lease;
 import model.data.type.PostGISDataType;
 import model.data.type.TextDataType;
 import model.logger.AuditElement;
@@ -99,14 +106,24 @@ public class AccessController {
 	@Autowired
 	private Leaser leaser;
 	@Autowired
+	@Qualifier("getAsyncExecutor")
 	private ThreadPoolTaskExecutor threadPoolTaskExecutor;
 	@Autowired
 	private AccessUtilities accessUtilities;
+	@Autowired
+	private DatabaseMetrics databaseMetrics;
+	@Autowired
+	private PipelineMetrics pipelineMetrics;
+	@Autowired
+	private DrainManager drainManager;
 
 	private static final String DEFAULT_PAGE_SIZE = "10";
 	private static final String DEFAULT_PAGE = "0";
 	private static final String DEFAULT_SORTBY = "dataId";
 	private static final String DEFAULT_ORDER = "asc";
+	private static final String DEFAULT_COUNT = "exact";
+	private static final String SUMMARY_VIEW = "summary";
+	private static final String NDJSON_CONTENT_TYPE = "application/x-ndjson";
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(AccessController.class);
 
@@ -127,6 +144,8 @@ public class AccessController {
 	 * Requests a file download that has been prepared by this Access component. This will return the raw bytes of the
 	 * resource.
 	 * 
+	 * While this instance is draining, new downloads are refused with 503, for the client to retry on another instance.
+	 * 
 	 * @param dataId
 	 *            The Id of the Data Item to get. Assumes this file is ready to be downloaded.
 	 */
@@ -137,7 +156,17 @@ public class AccessController {
 
 		final String returnAction = "returningFileBytes";
 
+		if (drainManager.isDraining()) {
+			return new ResponseEntity<>(new ErrorResponse("This instance is draining; retry the download.", ACCESS_COMPONENT_NAME),
+					HttpStatus.SERVICE_UNAVAILABLE);
+		}
+
 		try {
+			// Ids recently found not to exist are answered without the database or an audit entry
+			if (accessor.isKnownMissingData(dataId)) {
+				return new ResponseEntity<>(new ErrorResponse(String.format("Data not found: %s", dataId), ACCESS_COMPONENT_NAME),
+						HttpStatus.NOT_FOUND);
+			}
 			// Get the DataResource item
 			DataResource data = accessor.getData(dataId);
 			String fileName = StringUtils.isNullOrEmpty(name) ? dataId : name;
@@ -207,6 +236,10 @@ public class AccessController {
 			if (dataId.isEmpty()) {
 				throw new InvalidInputException("No Data Id specified.");
 			}
+			if (accessor.isKnownMissingData(dataId)) {
+				return new ResponseEntity<>(new ErrorResponse(String.format("Data not found: %s", dataId), ACCESS_COMPONENT_NAME),
+						HttpStatus.NOT_FOUND);
+			}
 			// Query for the Data Id
 			DataResource data = accessor.getData(dataId);
 			if (data == null) {
@@ -242,8 +275,13 @@ public class AccessController {
 			if (deploymentId.isEmpty()) {
 				throw new InvalidInputException("No Deployment Id specified.");
 			}
-			// Query for the Deployment Id
-			Deployment deployment = accessor.getDeployment(deploymentId);
+			if (accessor.isKnownMissingDeployment(deploymentId)) {
+				return new ResponseEntity<>(
+						new ErrorResponse(String.format("Deployment not found: %s", deploymentId), ACCESS_COMPONENT_NAME),
+						HttpStatus.NOT_FOUND);
+			}
+			// Query for the Deployment Id, along with the expiration date of its Lease
+			LeasedDeployment deployment = accessor.getLeasedDeployment(deploymentId);
 			if (deployment == null) {
 				pzLogger.log(String.format("Deployment not found for requested Id %s", deploymentId), Severity.WARNING);
 				return new ResponseEntity<>(
@@ -251,16 +289,9 @@ public class AccessController {
 						HttpStatus.NOT_FOUND);
 			}
 
-			// Get the expiration date for this Deployment
-			Lease lease = accessor.getDeploymentLease(deployment);
-			String expiresOn = null;
-			if (lease != null) {
-				expiresOn = lease.getExpiresOn().toString();
-			}
-
 			// Return the Data Resource item
 			pzLogger.log(String.format("Returning Deployment Metadata for %s", deploymentId), Severity.INFORMATIONAL);
-			return new ResponseEntity<>(new DeploymentResponse(deployment, expiresOn), HttpStatus.OK);
+			return new ResponseEntity<>(new DeploymentResponse(deployment.getDeployment(), deployment.getExpiresOn()), HttpStatus.OK);
 		} catch (Exception exception) {
 			String error = String.format("Error fetching Deployment %s: %s", deploymentId, exception.getMessage());
 			LOGGER.error(error, exception);
@@ -273,6 +304,26 @@ public class AccessController {
 	/**
 	 * Returns all Data held by the Piazza Ingest/Access components.
 	 * 
+	 * <p>
+	 * If the cursor parameter is specified, then keyset pagination is used instead of page numbers. Pass an empty cursor
+	 * to fetch the first page, and then the nextCursor value of each response to fetch the page that follows it. This
+	 * is stable under concurrent inserts, and the cost of a page does not grow with its depth.
+	 * </p>
+	 * 
+	 * <p>
+	 * The count parameter controls the total count in the pagination: "exact" (default), "estimate" from the table
+	 * statistics, or "none" to omit it entirely.
+	 * </p>
+	 * 
+	 * <p>
+	 * The keyword matches Data whose name or description contain a word beginning with each word of the keyword; it is
+	 * a word-prefix match, not a substring match. sortBy=relevance ranks the matches by their text search rank.
+	 * </p>
+	 * 
+	 * <p>
+	 * With view=summary, each Data item only contains its Id, data type, and name, description and creation metadata.
+	 * </p>
+	 * 
 	 * @return The list of all data held by the system.
 	 */
 	@RequestMapping(value = "/data", method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_VALUE)
@@ -282,7 +333,10 @@ public class AccessController {
 			@RequestParam(value = "sortBy", required = false, defaultValue = DEFAULT_SORTBY) String sortBy,
 			@RequestParam(value = "order", required = false, defaultValue = DEFAULT_ORDER) String order,
 			@RequestParam(value = "keyword", required = false) String keyword,
-			@RequestParam(value = "userName", required = false) String userName) {
+			@RequestParam(value = "userName", required = false) String userName,
+			@RequestParam(value = "cursor", required = false) String cursor,
+			@RequestParam(value = "count", required = false, defaultValue = DEFAULT_COUNT) String count,
+			@RequestParam(value = "view", required = false) String view) {
 		try {
 			String orderToUse = order;
 			// Don't allow for invalid orders
@@ -290,8 +344,15 @@ public class AccessController {
 				orderToUse = "asc";
 			}
 			pzLogger.log("Returning Data Query List", Severity.INFORMATIONAL);
-			return new ResponseEntity<>(accessor.getDataList(page, pageSize, sortBy, orderToUse, keyword, userName, createdByJobId),
+			return new ResponseEntity<>(
+					accessor.getDataList(page, pageSize, sortBy, orderToUse, keyword, userName, createdByJobId, cursor,
+							CountMode.fromString(count), SUMMARY_VIEW.equalsIgnoreCase(view)),
 					HttpStatus.OK);
+		} catch (InvalidInputException exception) {
+			String error = String.format("Error Querying Data: %s", exception.getMessage());
+			LOGGER.error(error, exception);
+			pzLogger.log(error, Severity.WARNING, new AuditElement(ACCESS, "errorQueryingData", ""));
+			return new ResponseEntity<>(new ErrorResponse(error, ACCESS_COMPONENT_NAME), HttpStatus.BAD_REQUEST);
 		} catch (Exception exception) {
 			String error = String.format("Error Querying Data: %s", exception.getMessage());
 			LOGGER.error(error, exception);
@@ -304,6 +365,20 @@ public class AccessController {
 	/**
 	 * Returns all Deployments held by the Piazza Ingest/Access components.
 	 * 
+	 * <p>
+	 * If the cursor parameter is specified, then keyset pagination is used instead of page numbers. Pass an empty cursor
+	 * to fetch the first page, and then the nextCursor value of each response to fetch the page that follows it.
+	 * </p>
+	 * 
+	 * <p>
+	 * The count parameter controls the total count in the pagination: "exact" (default), "estimate" from the table
+	 * statistics, or "none" to omit it entirely.
+	 * </p>
+	 * 
+	 * <p>
+	 * With view=summary, each Deployment only contains its Id, Data Id, layer and creation date.
+	 * </p>
+	 * 
 	 * @return The list of all data held by the system.
 	 */
 	@RequestMapping(value = "/deployment", method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_VALUE)
@@ -312,7 +387,10 @@ public class AccessController {
 			@RequestParam(value = "perPage", required = false, defaultValue = DEFAULT_PAGE_SIZE) Integer perPage,
 			@RequestParam(value = "sortBy", required = false, defaultValue = DEFAULT_SORTBY) String sortBy,
 			@RequestParam(value = "order", required = false, defaultValue = DEFAULT_ORDER) String order,
-			@RequestParam(value = "keyword", required = false) String keyword) {
+			@RequestParam(value = "keyword", required = false) String keyword,
+			@RequestParam(value = "cursor", required = false) String cursor,
+			@RequestParam(value = "count", required = false, defaultValue = DEFAULT_COUNT) String count,
+			@RequestParam(value = "view", required = false) String view) {
 		try {
 			String orderToUse = order;
 			// Don't allow for invalid orders
@@ -320,7 +398,15 @@ public class AccessController {
 				orderToUse = "asc";
 			}
 			pzLogger.log("Returning Deployment List Query", Severity.INFORMATIONAL);
-			return new ResponseEntity<>(accessor.getDeploymentList(page, perPage, sortBy, orderToUse, keyword), HttpStatus.OK);
+			return new ResponseEntity<>(
+					accessor.getDeploymentList(page, perPage, sortBy, orderToUse, keyword, cursor, CountMode.fromString(count),
+							SUMMARY_VIEW.equalsIgnoreCase(view)),
+					HttpStatus.OK);
+		} catch (InvalidInputException exception) {
+			String error = String.format("Error Querying Deployment: %s", exception.getMessage());
+			LOGGER.error(error, exception);
+			pzLogger.log(error, Severity.WARNING, new AuditElement(ACCESS, "errorReadingDeploymentList", ""));
+			return new ResponseEntity<>(new ErrorResponse(error, ACCESS_COMPONENT_NAME), HttpStatus.BAD_REQUEST);
 		} catch (Exception exception) {
 			String error = String.format("Error Querying Deployment: %s", exception.getMessage());
 			LOGGER.error(error, exception);
@@ -333,11 +419,14 @@ public class AccessController {
 	/**
 	 * Returns the Number of Data Resources in the piazza system.
 	 * 
+	 * @param count
+	 *            "exact" (default) for the exact count, which may be cached for a short period, or "estimate" for the
+	 *            estimate from the table statistics.
 	 * @return Number of Data items in the system.
 	 */
 	@RequestMapping(value = "/data/count", method = RequestMethod.GET)
-	public long getDataCount() {
-		return accessor.getDataCount();
+	public long getDataCount(@RequestParam(value = "count", required = false, defaultValue = DEFAULT_COUNT) String count) {
+		return accessor.getDataCount(CountMode.fromString(count));
 	}
 
 	/**
@@ -491,13 +580,96 @@ public class AccessController {
 		Map<String, Object> stats = new HashMap<>();
 		// Return information on the jobs currently being processed
 		stats.put("jobs", threadManager.getRunningJobIds());
+		stats.put("jobStates", threadManager.getJobStateCounts());
+		stats.put("replayedJobs", threadManager.getReplayedJobCount());
+		stats.put("duplicateDeliveries", threadManager.getDuplicateDeliveryCount());
 		stats.put("activeThreads", threadPoolTaskExecutor.getActiveCount());
 		if (threadPoolTaskExecutor.getThreadPoolExecutor() != null) {
 			stats.put("threadQueue", threadPoolTaskExecutor.getThreadPoolExecutor().getQueue().size());
 		}
+		stats.put("lanes", threadManager.getLaneStats());
+		stats.put("database", databaseMetrics.getStats());
+		stats.put("stages", pipelineMetrics.getStats());
+		stats.put("drain", drainManager.getStatus());
 		return new ResponseEntity<>(stats, HttpStatus.OK);
 	}
 
+	/**
+	 * Starts draining this instance ahead of a restart: new Jobs and downloads are refused, Jobs not yet started are
+	 * returned to the queue, and Jobs in progress are given until the drain deadline to finish. The drain runs in the
+	 * background; its progress is returned by GET on the same endpoint.
+	 * 
+	 * @return The progress of the drain. 202 if the drain was started, 200 if it was already started.
+	 */
+	@RequestMapping(value = "/admin/drain", method = RequestMethod.POST)
+	public ResponseEntity<Map<String, Object>> startDrain() {
+		boolean started = drainManager.startDrain();
+		if (started) {
+			pzLogger.log("Drain requested through the admin endpoint.", Severity.INFORMATIONAL,
+					new AuditElement(ACCESS, "requestedDrain", ""));
+		}
+		return new ResponseEntity<>(drainManager.getStatus(), started ? HttpStatus.ACCEPTED : HttpStatus.OK);
+	}
+
+	/**
+	 * Returns the progress of the drain of this instance
+	 * 
+	 * @return Drain state and counts
+	 */
+	@RequestMapping(value = "/admin/drain", method = RequestMethod.GET)
+	public ResponseEntity<Map<String, Object>> getDrainStatus() {
+		return new ResponseEntity<>(drainManager.getStatus(), HttpStatus.OK);
+	}
+
+	/**
+	 * Returns the latency metrics of this component: each stage of the Access Job pipeline by data type, the database
+	 * pool and queries, and the worker lanes.
+	 * 
+	 * @return Latency count, mean, max and p50/p95/p99 in milliseconds
+	 */
+	@RequestMapping(value = "/admin/metrics", method = RequestMethod.GET)
+	public ResponseEntity<Map<String, Object>> getAdminMetrics() {
+		Map<String, Object> metrics = new HashMap<>();
+		metrics.put("stages", pipelineMetrics.getStats());
+		metrics.put("database", databaseMetrics.getStats());
+		metrics.put("lanes", threadManager.getLaneStats());
+		return new ResponseEntity<>(metrics, HttpStatus.OK);
+	}
+
+	/**
+	 * Exports an entire collection as newline delimited JSON, one document per line, for reconciliation and analytics.
+	 * The response is streamed directly from a database cursor, so collections of any size can be exported.
+	 * 
+	 * @param collection
+	 *            "data", "deployment" or "lease"
+	 * @param response
+	 *            The response the documents are written to
+	 */
+	@RequestMapping(value = "/admin/export/{collection}", method = RequestMethod.GET)
+	public void exportCollection(@PathVariable(value = "collection") String collection, HttpServletResponse response)
+			throws IOException {
+		if (!accessor.isExportableCollection(collection)) {
+			response.sendError(HttpStatus.NOT_FOUND.value(), String.format("Collection %s can not be exported.", collection));
+			return;
+		}
+		try {
+			response.setContentType(NDJSON_CONTENT_TYPE);
+			response.setHeader(HttpHeaders.CONTENT_DISPOSITION, String.format("attachment; filename=%s.ndjson", collection));
+			long count = accessor.exportCollection(collection, response.getOutputStream());
+			response.flushBuffer();
+			pzLogger.log(String.format("Exported %s documents of collection %s", count, collection), Severity.INFORMATIONAL,
+					new AuditElement(ACCESS, "exportCollection", collection));
+		} catch (Exception exception) {
+			// Once the stream has started, the status can no longer be changed; the client sees a truncated stream.
+			String error = String.format("Error exporting collection %s: %s", collection, exception.getMessage());
+			LOGGER.error(error, exception);
+			pzLogger.log(error, Severity.ERROR, new AuditElement(ACCESS, "errorExportingCollection", collection));
+			if (!response.isCommitted()) {
+				response.sendError(HttpStatus.INTERNAL_SERVER_ERROR.value(), error);
+			}
+		}
+	}
+
 	/**
 	 * @param type
 	 *            MediaType to set http header content type
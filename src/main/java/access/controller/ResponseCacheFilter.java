@@ -0,0 +1,117 @@
+/**
+ * Copyright 2016, RadiantBlue Technologies, Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package access.controller;
+
+import java.io.IOException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import access.util.ResponseCache;
+import access.util.ResponseCache.CachedResponse;
+
+/**
+ * Serves GET /data/{dataId} and GET /deployment/{deploymentId} from the {@link ResponseCache}, when it is enabled.
+ * 
+ * On a hit, the cached bytes are written directly, or 304 is returned if the client already has them. On a miss, the
+ * request is handled by the controller and a successful response body is captured into the cache on the way out; 304
+ * is returned then too if the new body matches the client's ETag. Cached responses may be stale for up to the cache
+ * TTL, as described on {@link ResponseCache}.
+ */
+@Component
+public class ResponseCacheFilter extends OncePerRequestFilter {
+	@Autowired
+	private ResponseCache responseCache;
+
+	private static final Pattern CACHEABLE_PATH = Pattern.compile("^/(data|deployment)/([^/]+)$");
+	private static final String NOT_CACHEABLE_ID = "count";
+
+	@Override
+	protected boolean shouldNotFilter(HttpServletRequest request) {
+		return !responseCache.isEnabled() || !HttpMethod.GET.matches(request.getMethod()) || (getKey(request) == null);
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+			throws ServletException, IOException {
+		String key = getKey(request);
+		CachedResponse cached = responseCache.get(key);
+		if (cached != null) {
+			writeCachedResponse(request, response, cached);
+			return;
+		}
+
+		long version = responseCache.getVersion();
+		ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+		filterChain.doFilter(request, wrapper);
+		if (wrapper.getStatusCode() == HttpServletResponse.SC_OK) {
+			byte[] body = wrapper.getContentAsByteArray();
+			responseCache.put(key, version, wrapper.getContentType(), body);
+			String eTag = ResponseCache.getETag(body);
+			response.setHeader(HttpHeaders.ETAG, eTag);
+			if (isNotModified(request, eTag)) {
+				// The captured body is discarded
+				response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+				return;
+			}
+		}
+		wrapper.copyBodyToResponse();
+	}
+
+	private void writeCachedResponse(HttpServletRequest request, HttpServletResponse response, CachedResponse cached)
+			throws IOException {
+		response.setHeader(HttpHeaders.ETAG, cached.getETag());
+		if (isNotModified(request, cached.getETag())) {
+			response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			return;
+		}
+		response.setStatus(HttpServletResponse.SC_OK);
+		response.setContentType(cached.getContentType());
+		response.setContentLength(cached.getBody().length);
+		response.getOutputStream().write(cached.getBody());
+	}
+
+	/**
+	 * @return True if the client's If-None-Match already names the ETag of the response
+	 */
+	private static boolean isNotModified(HttpServletRequest request, String eTag) {
+		return eTag.equals(request.getHeader(HttpHeaders.IF_NONE_MATCH));
+	}
+
+	/**
+	 * @return The cache key for the request path, or null if the path is not cacheable
+	 */
+	private static String getKey(HttpServletRequest request) {
+		String path = request.getRequestURI().substring(request.getContextPath().length());
+		Matcher matcher = CACHEABLE_PATH.matcher(path);
+		if (!matcher.matches() || NOT_CACHEABLE_ID.equals(matcher.group(2))) {
+			return null;
+		}
+		return "data".equals(matcher.group(1)) ? ResponseCache.getDataKey(matcher.group(2))
+				: ResponseCache.getDeploymentKey(matcher.group(2));
+	}
+}
@@ -0,0 +1,63 @@
+/**
+ * Copyright 2016, RadiantBlue Technologies, Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package access.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A held Postgres session-level advisory lock, obtained from {@link AdvisoryLocks}. The lock lives on a dedicated,
+ * unpooled connection; closing this releases the lock and closes the connection. Should the connection be lost,
+ * Postgres releases the lock itself.
+ */
+public class AdvisoryLock implements AutoCloseable {
+	private final Connection connection;
+	private final int namespace;
+	private final String key;
+	private final Runnable onClose;
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(AdvisoryLock.class);
+
+	AdvisoryLock(Connection connection, int namespace, String key, Runnable onClose) {
+		this.connection = connection;
+		this.namespace = namespace;
+		this.key = key;
+		this.onClose = onClose;
+	}
+
+	public String getKey() {
+		return key;
+	}
+
+	@Override
+	public void close() {
+		try (Connection lockConnection = connection;
+				PreparedStatement statement = lockConnection.prepareStatement("select pg_advisory_unlock(?, hashtext(?))")) {
+			statement.setInt(1, namespace);
+			statement.setString(2, key);
+			statement.execute();
+		} catch (SQLException exception) {
+			// The connection is not pooled, so closing it ends the session, which releases the lock regardless
+			LOGGER.warn(String.format("Could not release the advisory lock for %s: %s", key, exception.getMessage()), exception);
+		} finally {
+			onClose.run();
+		}
+	}
+}
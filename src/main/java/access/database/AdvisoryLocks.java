@@ -0,0 +1,132 @@
+/**
+ * Copyright 2016, RadiantBlue Technologies, Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package access.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.stereotype.Component;
+
+/**
+ * Obtains Postgres advisory locks, which are shared by every pz-access instance using the same database. Used to
+ * ensure work such as deploying a Data Id is done at most once across the cluster.
+ * 
+ * A lock is held for as long as the work it guards, such as a GeoServer upload, so lock connections are not taken
+ * from the shared pool, where they would starve request threads. Each lock has its own connection to the primary,
+ * opened for it and closed with it, and at most advisory.lock.max.connections are open at once. As these connections
+ * are never pooled, closing one ends its session, which releases its lock even if the unlock failed.
+ */
+@Component
+public class AdvisoryLocks {
+	@Autowired
+	private DataSourceProperties dataSourceProperties;
+	@Value("${advisory.lock.poll.millis:250}")
+	private long pollMillis;
+	@Value("${advisory.lock.max.connections:8}")
+	private int maxConnections;
+
+	private DataSource lockDataSource;
+	private Semaphore permits;
+
+	/**
+	 * Keeps the locks of this component apart from any other advisory locks taken in the same database
+	 */
+	private static final int DEPLOYMENT_NAMESPACE = 0x707A6163;
+
+	@PostConstruct
+	public void initialize() {
+		DriverManagerDataSource driverDataSource = new DriverManagerDataSource(dataSourceProperties.determineUrl(),
+				dataSourceProperties.determineUsername(), dataSourceProperties.determinePassword());
+		driverDataSource.setDriverClassName(dataSourceProperties.determineDriverClassName());
+		lockDataSource = driverDataSource;
+		permits = new Semaphore(maxConnections, true);
+	}
+
+	/**
+	 * Acquires the deployment lock for a Data Id, waiting for up to the given time if another instance holds it.
+	 * 
+	 * @param dataId
+	 *            The Data Id
+	 * @param waitMillis
+	 *            The maximum time to wait for the lock
+	 * @return The held lock, to be closed when done. Null if the lock, or a connection to hold it on, could not be
+	 *         obtained in time.
+	 * @throws InterruptedException
+	 *             If the thread was interrupted while waiting
+	 */
+	public AdvisoryLock tryAcquireDeploymentLock(String dataId, long waitMillis) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + waitMillis;
+		if (!permits.tryAcquire(waitMillis, TimeUnit.MILLISECONDS)) {
+			return null;
+		}
+		Connection connection = null;
+		boolean locked = false;
+		try {
+			connection = lockDataSource.getConnection();
+			while (true) {
+				if (tryLock(connection, dataId)) {
+					locked = true;
+					return new AdvisoryLock(connection, DEPLOYMENT_NAMESPACE, dataId, permits::release);
+				}
+				if (System.currentTimeMillis() >= deadline) {
+					return null;
+				}
+				Thread.sleep(pollMillis);
+			}
+		} catch (SQLException exception) {
+			throw new DataAccessResourceFailureException(
+					String.format("Could not obtain the deployment lock for %s: %s", dataId, exception.getMessage()), exception);
+		} finally {
+			// Otherwise the connection and its permit are released when the lock is closed
+			if (!locked) {
+				closeQuietly(connection);
+				permits.release();
+			}
+		}
+	}
+
+	private static boolean tryLock(Connection connection, String key) throws SQLException {
+		try (PreparedStatement statement = connection.prepareStatement("select pg_try_advisory_lock(?, hashtext(?))")) {
+			statement.setInt(1, DEPLOYMENT_NAMESPACE);
+			statement.setString(2, key);
+			try (ResultSet result = statement.executeQuery()) {
+				return result.next() && result.getBoolean(1);
+			}
+		}
+	}
+
+	private static void closeQuietly(Connection connection) {
+		if (connection != null) {
+			try {
+				connection.close();
+			} catch (SQLException exception) {
+				// The connection is being discarded
+			}
+		}
+	}
+}
@@ -0,0 +1,43 @@
+/**
+ * Copyright 2016, RadiantBlue Technologies, Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package access.database;
+
+/**
+ * A count value that is considered current for a fixed period after it was read.
+ */
+public class CachedCount {
+	private final long value;
+	private final long expiresOn;
+
+	/**
+	 * @param value
+	 *            The count
+	 * @param ttlSeconds
+	 *            The number of seconds the count may be served for
+	 */
+	public CachedCount(long value, int ttlSeconds) {
+		this.value = value;
+		this.expiresOn = System.currentTimeMillis() + (ttlSeconds * 1000L);
+	}
+
+	public long getValue() {
+		return value;
+	}
+
+	public boolean isExpired() {
+		return System.currentTimeMillis() >= expiresOn;
+	}
+}
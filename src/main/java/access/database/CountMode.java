@@ -0,0 +1,51 @@
+/**
+ * Copyright 2016, RadiantBlue Technologies, Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package access.database;
+
+/**
+ * How the total count of a paged listing is computed.
+ */
+public enum CountMode {
+	/**
+	 * Exact count(*) of all matching rows. Cost grows with the number of matching rows.
+	 */
+	EXACT,
+	/**
+	 * Row estimate from the query planner statistics. Cheap, but may be off by the drift since the table was last
+	 * analyzed.
+	 */
+	ESTIMATE,
+	/**
+	 * No count is computed, and none is returned.
+	 */
+	NONE;
+
+	/**
+	 * Gets the count mode for a request parameter value, defaulting to an exact count if the value is not recognized.
+	 * 
+	 * @param value
+	 *            "exact", "estimate" or "none"
+	 * @return The count mode
+	 */
+	public static CountMode fromString(String value) {
+		for (CountMode mode : values()) {
+			if (mode.name().equalsIgnoreCase(value)) {
+				return mode;
+			}
+		}
+		return EXACT;
+	}
+}
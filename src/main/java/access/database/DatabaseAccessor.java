@@ -16,16 +16,31 @@
 package access.database;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+
+import javax.annotation.PostConstruct;
 
 import org.apache.commons.lang.StringUtils;
 import org.geotools.data.DataStore;
 import org.joda.time.DateTime;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataRetrievalFailureException;
 import org.springframework.data.domain.Page;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
 import org.venice.piazza.common.hibernate.dao.DeploymentGroupDao;
 import org.venice.piazza.common.hibernate.dao.LeaseDao;
 import org.venice.piazza.common.hibernate.dao.dataresource.DataResourceDao;
@@ -35,6 +50,13 @@ import org.venice.piazza.common.hibernate.entity.DeploymentEntity;
 import org.venice.piazza.common.hibernate.entity.DeploymentGroupEntity;
 import org.venice.piazza.common.hibernate.entity.LeaseEntity;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import access.model.CursorDataResourceListResponse;
+import access.model.CursorDeploymentListResponse;
+import access.util.ExpiringCache;
+import access.util.ResponseCache;
+import exception.InvalidInputException;
 import model.data.DataResource;
 import model.data.deployment.Deployment;
 import model.data.deployment.DeploymentGroup;
@@ -77,7 +99,111 @@ public class DatabaseAccessor {
 
 	@Autowired
 	private DeploymentGroupDao deploymentGroupDao;
+
+	@Autowired
+	private NamedParameterJdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@Autowired
+	private ResponseCache responseCache;
+
+	@Value("${data.count.cache.seconds:30}")
+	private int dataCountCacheSeconds;
+	@Value("${export.fetch.size:1000}")
+	private int exportFetchSize;
+	@Value("${negative.cache.ttl.seconds:10}")
+	private int negativeCacheSeconds;
+	@Value("${negative.cache.max.entries:100000}")
+	private int negativeCacheMaxEntries;
+	@Value("${deployed.cache.ttl.seconds:60}")
+	private int deployedCacheSeconds;
+
+	private volatile CachedCount dataCount;
+
+	/**
+	 * Ids recently looked up and found not to exist. Deployments are only created by this component, and so are
+	 * removed from here as soon as they are inserted; Data Resources are created by Ingest, so a Data Id can be
+	 * reported as missing by the REST API for up to the TTL after it is ingested. Only misses read from the primary are
+	 * recorded, and Jobs do not consult this cache.
+	 */
+	private ExpiringCache<String, Boolean> missingDataIds;
+	private ExpiringCache<String, Boolean> missingDeploymentIds;
+
+	/**
+	 * Data Ids recently found to have a Deployment. Only used to classify incoming Jobs, where a stale entry costs no
+	 * more than a Job running in the wrong lane; removed when the Deployment is deleted by this instance.
+	 */
+	private ExpiringCache<String, Boolean> deployedDataIds;
+
+	private static final String DATA_RESOURCE_TABLE = "data_resource";
+	private static final String DEPLOYMENT_TABLE = "deployment";
+	private static final String LEASE_TABLE = "lease";
+	private static final String DEFAULT_SORT_KEY = "dataId";
+	private static final String RELEVANCE_SORT_KEY = "relevance";
+
+	/**
+	 * Text search document of the searchable Data Resource metadata. Backed by the data_resource_search_idx GIN
+	 * expression index in db/access-schema.sql; the expression here must match the indexed expression exactly.
+	 */
+	private static final String DATA_SEARCH_DOCUMENT = "to_tsvector('simple', coalesce(data -> 'metadata' ->> 'name', '') || ' ' || coalesce(data -> 'metadata' ->> 'description', ''))";
+	private static final String DATA_SEARCH_QUERY = "to_tsquery('simple', :search)";
+
+	/**
+	 * Summary projections of the list views. Only the fields shown in list views are read out of the JSON document, so
+	 * that large metadata and spatial metadata are neither transferred nor deserialized. PostgreSQL still reads and
+	 * detoasts the whole document of each row to extract these fields, so the database does as much I/O as for the full
+	 * view; only the response and the JSON parsing in pz-access are smaller.
+	 */
+	private static final String DATA_SUMMARY_DOCUMENT = "jsonb_strip_nulls(jsonb_build_object("
+			+ "'dataId', data -> 'dataId', "
+			+ "'dataType', case when data -> 'dataType' -> 'type' is not null then jsonb_build_object('type', data -> 'dataType' -> 'type') end, "
+			+ "'metadata', jsonb_build_object('name', data -> 'metadata' -> 'name', 'description', data -> 'metadata' -> 'description', "
+			+ "'createdBy', data -> 'metadata' -> 'createdBy', 'createdOn', data -> 'metadata' -> 'createdOn', "
+			+ "'createdByJobId', data -> 'metadata' -> 'createdByJobId')))";
+	private static final String DEPLOYMENT_SUMMARY_DOCUMENT = "jsonb_strip_nulls(jsonb_build_object("
+			+ "'deploymentId', data -> 'deploymentId', 'dataId', data -> 'dataId', 'layer', data -> 'layer', "
+			+ "'createdOn', data -> 'createdOn'))";
+
+	/**
+	 * The sort keys that lists may be ordered by, mapped to the SQL expression of the key. Each expression is backed by
+	 * a (key, id) expression index in db/access-schema.sql; do not add keys here without adding the index.
+	 */
+	private static final Map<String, String> DATA_SORT_KEYS;
+	private static final Map<String, String> DEPLOYMENT_SORT_KEYS;
+
+	/**
+	 * The collections that may be exported, mapped to their table
+	 */
+	private static final Map<String, String> EXPORT_TABLES;
+	static {
+		Map<String, String> dataSortKeys = new HashMap<>();
+		dataSortKeys.put("dataId", "coalesce(data ->> 'dataId', '')");
+		dataSortKeys.put("createdOn", "coalesce(data -> 'metadata' ->> 'createdOn', '')");
+		dataSortKeys.put("createdBy", "coalesce(data -> 'metadata' ->> 'createdBy', '')");
+		DATA_SORT_KEYS = Collections.unmodifiableMap(dataSortKeys);
+
+		Map<String, String> deploymentSortKeys = new HashMap<>();
+		deploymentSortKeys.put("deploymentId", "coalesce(data ->> 'deploymentId', '')");
+		deploymentSortKeys.put("dataId", "coalesce(data ->> 'dataId', '')");
+		deploymentSortKeys.put("createdOn", "coalesce(data ->> 'createdOn', '')");
+		DEPLOYMENT_SORT_KEYS = Collections.unmodifiableMap(deploymentSortKeys);
+
+		Map<String, String> exportTables = new HashMap<>();
+		exportTables.put("data", DATA_RESOURCE_TABLE);
+		exportTables.put("deployment", DEPLOYMENT_TABLE);
+		exportTables.put("lease", LEASE_TABLE);
+		EXPORT_TABLES = Collections.unmodifiableMap(exportTables);
+	}
 	
+	@PostConstruct
+	public void initialize() {
+		missingDataIds = new ExpiringCache<>(negativeCacheSeconds * 1000L, negativeCacheMaxEntries);
+		missingDeploymentIds = new ExpiringCache<>(negativeCacheSeconds * 1000L, negativeCacheMaxEntries);
+		deployedDataIds = new ExpiringCache<>(deployedCacheSeconds * 1000L, negativeCacheMaxEntries);
+	}
+
 	/**
 	 * Gets the PostGIS data store for GeoTools.
 	 * 
@@ -94,6 +220,7 @@ public class DatabaseAccessor {
 	 *            The Id of the DataResource to check for a Deployment
 	 * @return The Deployment for the Resource, if any. Null, if none.
 	 */
+	@Transactional(readOnly = true)
 	public Deployment getDeploymentByDataId(String dataId) {
 		Deployment deployment = null;
 		DeploymentEntity record = deploymentDao.getDeploymentByDataId(dataId);
@@ -111,6 +238,7 @@ public class DatabaseAccessor {
 	 *            The Id of the Deployment Group
 	 * @return The Deployment Group
 	 */
+	@Transactional(readOnly = true)
 	public DeploymentGroup getDeploymentGroupById(String deploymentGroupId) {
 		DeploymentGroup deploymentGroup = null;
 		DeploymentGroupEntity record = deploymentGroupDao.findOneDeploymentGroupById(deploymentGroupId);
@@ -135,6 +263,9 @@ public class DatabaseAccessor {
 			DeploymentEntity record = deploymentDao.getDeploymentByDeploymentId(deployment.getDeploymentId());
 			if (record != null) {
 				deploymentDao.delete(record);
+				ReadReplicaRoutingDataSource.pinToPrimary();
+				responseCache.invalidate(ResponseCache.getDeploymentKey(deployment.getDeploymentId()));
+				deployedDataIds.remove(deployment.getDataId());
 			}
 		}
 	}
@@ -148,8 +279,10 @@ public class DatabaseAccessor {
 	public void deleteDeploymentGroup(DeploymentGroup deploymentGroup) {
 		if (deploymentGroup != null) {
 			DeploymentGroupEntity record = deploymentGroupDao.findOneDeploymentGroupById(deploymentGroup.deploymentGroupId);
-			if (record != null)
+			if (record != null) {
 				deploymentGroupDao.delete(record);
+				ReadReplicaRoutingDataSource.pinToPrimary();
+			}
 		}
 	}
 
@@ -160,6 +293,7 @@ public class DatabaseAccessor {
 	 *            The Deployment
 	 * @return The Lease for the Deployment, if it exists. Null if not.
 	 */
+	@Transactional(readOnly = true)
 	public Lease getDeploymentLease(Deployment deployment) {
 		Lease lease = null;
 		LeaseEntity record = leaseDao.findOneLeaseByDeploymentId(deployment.getDeploymentId());
@@ -168,6 +302,74 @@ public class DatabaseAccessor {
 		return lease;
 	}
 
+	/**
+	 * Gets a Deployment and its Lease, by the Id of the Deployment, in a single query.
+	 * 
+	 * @param deploymentId
+	 *            The deployment Id
+	 * @return The Deployment and its Lease, or null if the Deployment does not exist. The Lease is null if it has been
+	 *         reaped.
+	 */
+	@Transactional(readOnly = true)
+	public LeasedDeployment getLeasedDeployment(String deploymentId) {
+		if (isKnownMissingDeployment(deploymentId)) {
+			return null;
+		}
+		LeasedDeployment deployment = getLeasedDeployment("deploymentId", deploymentId);
+		if (deployment == null) {
+			missingDeploymentIds.put(deploymentId, Boolean.TRUE);
+		}
+		return deployment;
+	}
+
+	/**
+	 * Gets the Deployment for a Resource and its Lease, in a single query.
+	 * 
+	 * @param dataId
+	 *            The Id of the DataResource
+	 * @return The Deployment and its Lease, or null if the Resource has no Deployment. The Lease is null if it has been
+	 *         reaped.
+	 */
+	@Transactional(readOnly = true)
+	public LeasedDeployment getLeasedDeploymentByDataId(String dataId) {
+		return getLeasedDeployment("dataId", dataId);
+	}
+
+	/**
+	 * Checks if a Resource has a Deployment. Positive results are cached, as Deployments of a Resource are long lived;
+	 * use {@link #getLeasedDeploymentByDataId(String)} where the answer must be current.
+	 * 
+	 * @param dataId
+	 *            The Id of the DataResource
+	 * @return True if the Resource was recently found to have a Deployment
+	 */
+	@Transactional(readOnly = true)
+	public boolean isDeployed(String dataId) {
+		if (deployedDataIds.get(dataId) != null) {
+			return true;
+		}
+		String sql = String.format("select exists (select 1 from %s where data ->> 'dataId' = :dataId)", DEPLOYMENT_TABLE);
+		boolean deployed = Boolean.TRUE.equals(jdbcTemplate.queryForObject(sql, new MapSqlParameterSource("dataId", dataId), Boolean.class));
+		if (deployed) {
+			deployedDataIds.put(dataId, Boolean.TRUE);
+		}
+		return deployed;
+	}
+
+	private LeasedDeployment getLeasedDeployment(String property, String value) {
+		String sql = String.format(
+				"select deployment.data as deployment, lease.data as lease from %s deployment left join %s lease "
+						+ "on lease.data ->> 'deploymentId' = deployment.data ->> 'deploymentId' "
+						+ "where deployment.data ->> '%s' = :value order by lease.id desc limit 1",
+				DEPLOYMENT_TABLE, LEASE_TABLE, property);
+		List<LeasedDeployment> results = jdbcTemplate.query(sql, new MapSqlParameterSource("value", value), (resultSet, rowNumber) -> {
+			String lease = resultSet.getString("lease");
+			return new LeasedDeployment(readJson(resultSet.getString("deployment"), Deployment.class),
+					lease != null ? readJson(lease, Lease.class) : null);
+		});
+		return results.isEmpty() ? null : results.get(0);
+	}
+
 	/**
 	 * Gets the DataResource from the Resources collection by Id. This Id is typically what will be returned to the user
 	 * as the result of their Job.
@@ -176,20 +378,49 @@ public class DatabaseAccessor {
 	 * Job Manager with the Data Id, which is then sent back to the user. The user will then specify this Data Id in
 	 * order to fetch their data.
 	 * 
+	 * Answers from the negative cache for Ids recently found missing, and may read from a replica, so a just-ingested
+	 * Resource may not be found yet. For REST reads only; Jobs use {@link #getDataFromPrimary(String)}.
+	 * 
 	 * @param dataId
 	 *            The Id of the DataResource
 	 * @return DataResource object
 	 */
+	@Transactional(readOnly = true)
 	public DataResource getData(String dataId) {
+		if (isKnownMissingData(dataId)) {
+			return null;
+		}
 		DataResource dataResource = null;
 		DataResourceEntity record = dataResourceDao.getDataResourceByDataId(dataId);
 		if (record != null) {
 			dataResource = record.getDataResource();
+		} else if (!ReadReplicaRoutingDataSource.isRoutedToReplica()) {
+			// A replica may not have the Resource yet; only a miss on the primary is remembered
+			missingDataIds.put(dataId, Boolean.TRUE);
 		}
 
 		return dataResource;
 	}
 
+	/**
+	 * Gets the DataResource by Id from the primary database, bypassing the negative cache. Used by Jobs, which are
+	 * often requested right after Ingest wrote the Resource; a Job must not fail because an earlier lookup missed it.
+	 * 
+	 * @param dataId
+	 *            The Id of the DataResource
+	 * @return DataResource object, or null if it does not exist
+	 */
+	@Transactional
+	public DataResource getDataFromPrimary(String dataId) {
+		DataResourceEntity record = dataResourceDao.getDataResourceByDataId(dataId);
+		if (record == null) {
+			missingDataIds.put(dataId, Boolean.TRUE);
+			return null;
+		}
+		missingDataIds.remove(dataId);
+		return record.getDataResource();
+	}
+
 	/**
 	 * Gets a Deployment by its unique Id.
 	 * 
@@ -197,15 +428,43 @@ public class DatabaseAccessor {
 	 *            The deployment Id
 	 * @return The Deployment
 	 */
+	@Transactional(readOnly = true)
 	public Deployment getDeployment(String deploymentId) {
+		if (isKnownMissingDeployment(deploymentId)) {
+			return null;
+		}
 		Deployment deployment = null;
 		DeploymentEntity record = deploymentDao.getDeploymentByDeploymentId(deploymentId);
 		if (record != null) {
 			deployment = record.getDeployment();
+		} else {
+			missingDeploymentIds.put(deploymentId, Boolean.TRUE);
 		}
 		return deployment;
 	}
 
+	/**
+	 * Determines if a Data Id was recently looked up and found not to exist, without querying the database.
+	 * 
+	 * @param dataId
+	 *            The Id of the DataResource
+	 * @return True if the Data is known not to exist. False if it exists or is not known.
+	 */
+	public boolean isKnownMissingData(String dataId) {
+		return missingDataIds.get(dataId) != null;
+	}
+
+	/**
+	 * Determines if a Deployment Id was recently looked up and found not to exist, without querying the database.
+	 * 
+	 * @param deploymentId
+	 *            The deployment Id
+	 * @return True if the Deployment is known not to exist. False if it exists or is not known.
+	 */
+	public boolean isKnownMissingDeployment(String deploymentId) {
+		return missingDeploymentIds.get(deploymentId) != null;
+	}
+
 	/**
 	 * Updates the Expiration date for the Lease.
 	 * 
@@ -220,6 +479,10 @@ public class DatabaseAccessor {
 			record.getLease().setExpiresOn(DateTime.parse(expirationDate));
 		}
 		leaseDao.save(record);
+		ReadReplicaRoutingDataSource.pinToPrimary();
+		if (record != null) {
+			responseCache.invalidate(ResponseCache.getDeploymentKey(record.getLease().getDeploymentId()));
+		}
 	}
 
 
@@ -239,6 +502,7 @@ public class DatabaseAccessor {
 		}
 		
 		deploymentGroupDao.save(record);
+		ReadReplicaRoutingDataSource.pinToPrimary();
 	}
 
 	/**
@@ -251,6 +515,9 @@ public class DatabaseAccessor {
 		DeploymentEntity newRecord = new DeploymentEntity();
 		newRecord.setDeployment(deployment);
 		deploymentDao.save(newRecord);
+		ReadReplicaRoutingDataSource.pinToPrimary();
+		missingDeploymentIds.remove(deployment.getDeploymentId());
+		responseCache.invalidate(ResponseCache.getDeploymentKey(deployment.getDeploymentId()));
 	}
 
 	/**
@@ -263,6 +530,7 @@ public class DatabaseAccessor {
 		DeploymentGroupEntity newRecord = new DeploymentGroupEntity();
 		newRecord.setDeploymentGroup(deploymentGroup);
 		deploymentGroupDao.save(newRecord);
+		ReadReplicaRoutingDataSource.pinToPrimary();
 	}
 
 	/**
@@ -275,6 +543,8 @@ public class DatabaseAccessor {
 		LeaseEntity newRecord = new LeaseEntity();
 		newRecord.setLease(lease);
 		leaseDao.save(newRecord);
+		ReadReplicaRoutingDataSource.pinToPrimary();
+		responseCache.invalidate(ResponseCache.getDeploymentKey(lease.getDeploymentId()));
 	}
 
 	/**
@@ -287,12 +557,38 @@ public class DatabaseAccessor {
 	}
 
 	/**
-	 * Returns the number of items in the database for Data Resources
+	 * Returns the number of items in the database for Data Resources. The exact count is cached for a short period,
+	 * since counting the full table is expensive and the value is only informational.
 	 * 
 	 * @return number of Data Resources in the database
 	 */
+	@Transactional(readOnly = true)
 	public long getDataCount() {
-		return dataResourceDao.count();
+		CachedCount count = dataCount;
+		if ((count == null) || (count.isExpired())) {
+			count = new CachedCount(dataResourceDao.count(), dataCountCacheSeconds);
+			dataCount = count;
+		}
+		return count.getValue();
+	}
+
+	/**
+	 * Returns the number of items in the database for Data Resources
+	 * 
+	 * @param countMode
+	 *            Estimate returns the row estimate from the table statistics, otherwise the cached exact count is
+	 *            returned.
+	 * @return number of Data Resources in the database
+	 */
+	@Transactional(readOnly = true)
+	public long getDataCount(CountMode countMode) {
+		if (countMode == CountMode.ESTIMATE) {
+			Long estimate = jdbcTemplate.queryForObject("select reltuples::bigint from pg_class where oid = cast(:table as regclass)",
+					new MapSqlParameterSource("table", DATA_RESOURCE_TABLE), Long.class);
+			// Tables that have never been analyzed report a negative or zero estimate
+			return Math.max(0, estimate);
+		}
+		return getDataCount();
 	}
 
 	/**
@@ -338,23 +634,114 @@ public class DatabaseAccessor {
 		return leaseDao.findAll();
 	}
 	
+	/**
+	 * Determines if a collection can be exported by {@link #exportCollection(String, OutputStream)}
+	 * 
+	 * @param collection
+	 *            "data", "deployment" or "lease"
+	 * @return True if the collection can be exported
+	 */
+	public boolean isExportableCollection(String collection) {
+		return EXPORT_TABLES.containsKey(collection);
+	}
+
+	/**
+	 * Writes every document of a collection to the stream as newline delimited JSON, in Id order.
+	 * 
+	 * <p>
+	 * Rows are read through a server-side cursor with a fixed fetch size and the stored JSON is written as-is, without
+	 * being mapped to entities or models. Memory use is therefore independent of the size of the collection. The
+	 * cursor requires the read to run inside a transaction, which is held open until the export completes.
+	 * </p>
+	 * 
+	 * @param collection
+	 *            "data", "deployment" or "lease"
+	 * @param output
+	 *            The stream to write to. It is not closed.
+	 * @return The number of documents written
+	 * @throws InvalidInputException
+	 *             If the collection is not exportable
+	 */
+	@Transactional(readOnly = true)
+	public long exportCollection(String collection, OutputStream output) throws InvalidInputException {
+		if (!isExportableCollection(collection)) {
+			throw new InvalidInputException(String.format("Collection %s can not be exported.", collection));
+		}
+		String sql = String.format("select data from %s order by id", EXPORT_TABLES.get(collection));
+		long[] count = new long[1];
+		jdbcTemplate.getJdbcOperations().query(connection -> {
+			PreparedStatement statement = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+			statement.setFetchSize(exportFetchSize);
+			return statement;
+		}, (RowCallbackHandler) resultSet -> {
+			try {
+				output.write(resultSet.getString("data").getBytes(StandardCharsets.UTF_8));
+				output.write('\n');
+				count[0]++;
+			} catch (IOException exception) {
+				// Typically, the client has disconnected. Abandon the cursor.
+				throw new UncheckedIOException(exception);
+			}
+		});
+		return count[0];
+	}
+
 	/**
 	 * Gets a list of deployments from the database
 	 * 
 	 * @param page
-	 *            The page number to start
+	 *            The page number to start. Ignored when a cursor is specified.
 	 * @param pageSize
 	 *            The number of results per page
 	 * @param sortBy
-	 *            The field to sort by
+	 *            The field to sort by. Must be one of the indexed sort keys; otherwise the default is used.
 	 * @param order
 	 *            The order "asc" or "desc"
 	 * @param keyword
 	 *            Keyword filtering
+	 * @param cursor
+	 *            Keyset pagination cursor returned with the previous page, or empty for the first page. If null, offset
+	 *            pagination by page number is used.
+	 * @param countMode
+	 *            How the total count of matching Deployments is computed
+	 * @param summary
+	 *            True to return only the summary fields of each Deployment
 	 * @return List of deployments
+	 * @throws InvalidInputException
+	 *             If the cursor is invalid
 	 */
-	public DeploymentListResponse getDeploymentList(Integer page, Integer pageSize, String sortBy, String order, String keyword) {
-		Pagination pagination = new Pagination(null, page, pageSize, sortBy, order);
+	@Transactional(readOnly = true)
+	public DeploymentListResponse getDeploymentList(Integer page, Integer pageSize, String sortBy, String order, String keyword,
+			String cursor, CountMode countMode, boolean summary) throws InvalidInputException {
+		String sortKey = DEPLOYMENT_SORT_KEYS.containsKey(sortBy) ? sortBy : DEFAULT_SORT_KEY;
+		Pagination pagination = new Pagination(null, page, pageSize, sortKey, order);
+		if ((cursor == null) && (countMode == CountMode.EXACT) && (!summary)) {
+			return getDeploymentList(pagination, keyword);
+		}
+
+		ListQuery query = new ListQuery(DEPLOYMENT_TABLE).orderBy(DEPLOYMENT_SORT_KEYS.get(sortKey), order)
+				.after(PageCursor.decode(cursor, sortKey, isDescending(order)));
+		if (summary) {
+			query.select(DEPLOYMENT_SUMMARY_DOCUMENT);
+		}
+		if (StringUtils.isNotEmpty(keyword)) {
+			query.where("data ->> 'deploymentId' ilike :keyword or data ->> 'dataId' ilike :keyword or data ->> 'capabilitiesUrl' ilike :keyword",
+					"keyword", getLikePattern(keyword));
+		}
+
+		List<PageCursor> positions = new ArrayList<>();
+		List<Deployment> deployments = getPage(query, sortKey, page, pageSize, cursor != null, Deployment.class, positions);
+		setCount(pagination, query, countMode);
+		if (cursor == null) {
+			return new DeploymentListResponse(deployments, pagination);
+		}
+		return new CursorDeploymentListResponse(deployments, pagination, getNextCursor(deployments, pageSize, positions));
+	}
+
+	/**
+	 * Gets a page of deployments, with an exact count, through the Deployment DAO.
+	 */
+	private DeploymentListResponse getDeploymentList(Pagination pagination, String keyword) {
 		Page<DeploymentEntity> results;
 
 		if (StringUtils.isNotEmpty(keyword)) {
@@ -385,36 +772,91 @@ public class DatabaseAccessor {
 	 * Gets a list of data from the database
 	 * 
 	 * @param page
-	 *            The page number to start at
+	 *            The page number to start at. Ignored when a cursor is specified.
 	 * @param pageSize
 	 *            The number of results per page
 	 * @param sortBy
-	 *            The field to sort by
+	 *            The field to sort by. Must be one of the indexed sort keys, or "relevance" to rank keyword matches by
+	 *            their text search rank; otherwise the default is used.
 	 * @param order
-	 *            The order "asc" or "desc"
+	 *            The order "asc" or "desc". Relevance is always ranked best first.
 	 * @param keyword
-	 *            Keyword filtering
+	 *            Keyword filtering. Matches Data whose name or description contain words beginning with each word of
+	 *            the keyword.
 	 * @param userName
 	 *            Username filtering
 	 * @param createdByJobId
 	 *            Filter by the ID of the Job that created this Data
+	 * @param cursor
+	 *            Keyset pagination cursor returned with the previous page, or empty for the first page. If null, offset
+	 *            pagination by page number is used.
+	 * @param countMode
+	 *            How the total count of matching Data is computed
+	 * @param summary
+	 *            True to return only the summary fields of each Data Resource: the Id, the data type, and the name,
+	 *            description and creation metadata.
 	 * @return List of Data items
+	 * @throws InvalidInputException
+	 *             If the cursor is invalid, or a cursor is used with relevance ranking
 	 */
+	@Transactional(readOnly = true)
 	public DataResourceListResponse getDataList(Integer page, Integer pageSize, String sortBy, String order, String keyword,
-			String userName, String createdByJobId) {
+			String userName, String createdByJobId, String cursor, CountMode countMode, boolean summary) throws InvalidInputException {
+		String searchQuery = StringUtils.isNotEmpty(keyword) ? ListQuery.getPrefixSearchQuery(keyword) : null;
+		boolean rankByRelevance = (searchQuery != null) && RELEVANCE_SORT_KEY.equals(sortBy);
+		String sortKey = (DATA_SORT_KEYS.containsKey(sortBy) || rankByRelevance) ? sortBy : DEFAULT_SORT_KEY;
+		Pagination pagination = new Pagination(null, page, pageSize, sortKey, order);
+		if ((cursor == null) && (countMode == CountMode.EXACT) && (StringUtils.isEmpty(keyword)) && (!summary)) {
+			return getDataList(pagination, userName, createdByJobId);
+		}
+		if (rankByRelevance && (cursor != null)) {
+			throw new InvalidInputException("Cursor pagination is not supported when sorting by relevance. Use page numbers instead.");
+		}
+
+		// Filters are combined
+		ListQuery query = new ListQuery(DATA_RESOURCE_TABLE).after(PageCursor.decode(cursor, sortKey, isDescending(order)));
+		if (summary) {
+			query.select(DATA_SUMMARY_DOCUMENT);
+		}
+		if (rankByRelevance) {
+			query.orderBy(String.format("ts_rank(%s, %s)", DATA_SEARCH_DOCUMENT, DATA_SEARCH_QUERY), "desc");
+		} else {
+			query.orderBy(DATA_SORT_KEYS.get(sortKey), order);
+		}
+		if (StringUtils.isNotEmpty(userName)) {
+			query.where("data -> 'metadata' ->> 'createdBy' = :userName", "userName", userName);
+		}
+		if (searchQuery != null) {
+			// Indexed full text search over the searchable metadata
+			query.where(String.format("%s @@ %s", DATA_SEARCH_DOCUMENT, DATA_SEARCH_QUERY), "search", searchQuery);
+		} else if (StringUtils.isNotEmpty(keyword)) {
+			// Keyword without any searchable words, such as punctuation only. Match it literally.
+			query.where("data -> 'metadata' ->> 'name' ilike :keyword or data -> 'metadata' ->> 'description' ilike :keyword", "keyword",
+					getLikePattern(keyword));
+		}
+		if (StringUtils.isNotEmpty(createdByJobId)) {
+			query.where("data -> 'metadata' ->> 'createdByJobId' = :createdByJobId", "createdByJobId", createdByJobId);
+		}
+
+		List<PageCursor> positions = new ArrayList<>();
+		List<DataResource> dataResources = getPage(query, sortKey, page, pageSize, cursor != null, DataResource.class, positions);
+		setCount(pagination, query, countMode);
+		if (cursor == null) {
+			return new DataResourceListResponse(dataResources, pagination);
+		}
+		return new CursorDataResourceListResponse(dataResources, pagination, getNextCursor(dataResources, pageSize, positions));
+	}
 
-		Pagination pagination = new Pagination(null, page, pageSize, sortBy, order);
+	/**
+	 * Gets a page of data, with an exact count, through the Data Resource DAO. Keyword searches are not served here,
+	 * but by the indexed text search.
+	 */
+	private DataResourceListResponse getDataList(Pagination pagination, String userName, String createdByJobId) {
 		Page<DataResourceEntity> results;
 
-		if (StringUtils.isNotEmpty(userName) && StringUtils.isNotEmpty(keyword)) {
-			// Both parameters specified
-			results = dataResourceDao.getDataResourceForUserAndKeyword(keyword, userName, pagination);
-		} else if (StringUtils.isNotEmpty(userName)) {
+		if (StringUtils.isNotEmpty(userName)) {
 			// Query by User
 			results = dataResourceDao.getDataResourceListByUser(userName, pagination);
-		} else if (StringUtils.isNotEmpty(keyword)) {
-			// Query by Keyword
-			results = dataResourceDao.getDataResourceListByKeyword(keyword, pagination);
 		} else if (StringUtils.isNotEmpty(createdByJobId)) {
 			// Query by Keyword
 			results = dataResourceDao.getDataResourceListByCreatedJobId(createdByJobId, pagination);
@@ -434,4 +876,98 @@ public class DatabaseAccessor {
 		// Return the complete List
 		return new DataResourceListResponse(dataResources, pagination);
 	}
-}
+
+	/**
+	 * Executes a list query for one page. For keyset pages, one row more than the page size is read, in order to
+	 * determine if a further page exists.
+	 * 
+	 * @param query
+	 *            The list query
+	 * @param sortKey
+	 *            The name of the sort key of the listing, recorded in the cursor of each row
+	 * @param page
+	 *            The page number, for offset pagination
+	 * @param pageSize
+	 *            The number of results per page
+	 * @param keyset
+	 *            True for keyset pagination, false for offset pagination
+	 * @param type
+	 *            The model type of the JSON documents
+	 * @param positions
+	 *            Populated with the cursor position of each row read
+	 * @return The rows read, including the look-ahead row if present
+	 */
+	private <T> List<T> getPage(ListQuery query, String sortKey, Integer page, Integer pageSize, boolean keyset, Class<T> type,
+			List<PageCursor> positions) {
+		int size = Math.max(1, pageSize);
+		String sql = keyset ? query.getSelectSql(size + 1) : query.getSelectSql(size, (long) Math.max(0, page) * size);
+		return jdbcTemplate.query(sql, query.getParameters(), (resultSet, rowNumber) -> {
+			positions.add(new PageCursor(sortKey, query.isDescending(), resultSet.getLong("id"), resultSet.getString("sort_value")));
+			return readJson(resultSet.getString("data"), type);
+		});
+	}
+
+	/**
+	 * @return True if the order requests a descending listing, as interpreted by {@link ListQuery#orderBy(String, String)}
+	 */
+	private static boolean isDescending(String order) {
+		return "desc".equalsIgnoreCase(order);
+	}
+
+	/**
+	 * Removes the look-ahead row from a keyset page, if present, and returns the cursor for the following page.
+	 * 
+	 * @return The next cursor, or null if there are no further pages.
+	 */
+	private static <T> String getNextCursor(List<T> rows, Integer pageSize, List<PageCursor> positions) {
+		int size = Math.max(1, pageSize);
+		if (rows.size() <= size) {
+			return null;
+		}
+		rows.remove(size);
+		return positions.get(size - 1).encode();
+	}
+
+	/**
+	 * Sets the total count of the listing according to the count mode. No count is set for {@link CountMode#NONE}.
+	 */
+	private void setCount(Pagination pagination, ListQuery query, CountMode countMode) {
+		if (countMode == CountMode.EXACT) {
+			pagination.setCount(jdbcTemplate.queryForObject(query.getCountSql(), query.getParameters(), Long.class));
+		} else if (countMode == CountMode.ESTIMATE) {
+			pagination.setCount(getEstimatedCount(query));
+		}
+	}
+
+	/**
+	 * Gets the query planner's estimate of the number of rows matching a list query, from the table statistics.
+	 */
+	private long getEstimatedCount(ListQuery query) {
+		String plan = jdbcTemplate.queryForObject(query.getEstimateSql(), query.getParameters(), String.class);
+		try {
+			return objectMapper.readTree(plan).get(0).get("Plan").get("Plan Rows").asLong();
+		} catch (IOException exception) {
+			throw new DataRetrievalFailureException(String.format("Could not read query plan estimate: %s", exception.getMessage()),
+					exception);
+		}
+	}
+
+	/**
+	 * Deserializes a JSON document column into its model.
+	 */
+	private <T> T readJson(String json, Class<T> type) {
+		try {
+			return objectMapper.readValue(json, type);
+		} catch (IOException exception) {
+			throw new DataRetrievalFailureException(
+					String.format("Could not read %s record from the database: %s", type.getSimpleName(), exception.getMessage()), exception);
+		}
+	}
+
+	/**
+	 * Gets the case-insensitive substring LIKE pattern for a keyword, escaping any wildcards in the keyword itself.
+	 */
+	private static String getLikePattern(String keyword) {
+		return String.format("%%%s%%", keyword.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_"));
+	}
+}
\ No newline at end of file
@@ -0,0 +1,164 @@
+/**
+ * Copyright 2016, RadiantBlue Technologies, Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package access.database;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.tomcat.jdbc.pool.DataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import access.util.LatencyHistogram;
+
+/**
+ * Collects metrics on the database connection pool and the DAO queries, as recorded by the interceptors that
+ * {@link DatabaseMetricsPostProcessor} installs, and optionally resizes the pool based on them.
+ * 
+ * <p>
+ * In adaptive mode, the pool is grown when requests spend longer waiting for a connection than the queries themselves
+ * take, while the database latency is not degrading; a database that slows down as connections are added is already
+ * saturated, and more connections would only make that worse. The pool is shrunk when connections sit idle and the
+ * connection wait p95 is within datasource.adaptive.shrink.max.wait.millis. As percentiles are the upper bound of a
+ * histogram bucket, a wait is never measured below 1 ms once anything was recorded. The maximum size is kept between datasource.adaptive.min.size and datasource.adaptive.max.size.
+ * </p>
+ */
+@Component
+public class DatabaseMetrics {
+	@Value("${datasource.adaptive.enabled:false}")
+	private boolean adaptive;
+	@Value("${datasource.adaptive.min.size:10}")
+	private int adaptiveMinSize;
+	@Value("${datasource.adaptive.max.size:100}")
+	private int adaptiveMaxSize;
+	@Value("${datasource.adaptive.step:5}")
+	private int adaptiveStep;
+	@Value("${datasource.adaptive.shrink.max.wait.millis:1}")
+	private long adaptiveShrinkMaxWaitMillis;
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(DatabaseMetrics.class);
+
+	private final LatencyHistogram connectionWait = new LatencyHistogram();
+	private final LongAdder connectionTimeouts = new LongAdder();
+	private final ConcurrentMap<String, LatencyHistogram> queries = new ConcurrentHashMap<>();
+
+	/**
+	 * Latencies since the last adaptive resizing
+	 */
+	private final LatencyHistogram intervalConnectionWait = new LatencyHistogram();
+	private final LatencyHistogram intervalQueries = new LatencyHistogram();
+	private long previousQueryP95Millis;
+
+	private volatile DataSource pool;
+
+	/**
+	 * @param pool
+	 *            The connection pool whose statistics are reported, and which is resized in adaptive mode
+	 */
+	public void setPool(DataSource pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * Records the time a thread spent obtaining a connection from the pool
+	 */
+	public void recordConnectionWait(long nanos) {
+		connectionWait.record(nanos);
+		intervalConnectionWait.record(nanos);
+	}
+
+	/**
+	 * Records that a thread gave up waiting for a connection from the pool
+	 */
+	public void recordConnectionTimeout() {
+		connectionTimeouts.increment();
+	}
+
+	/**
+	 * Records the latency of a DAO or JDBC template method
+	 * 
+	 * @param query
+	 *            The name of the DAO or template bean and method
+	 */
+	public void recordQuery(String query, long nanos) {
+		queries.computeIfAbsent(query, key -> new LatencyHistogram()).record(nanos);
+		intervalQueries.record(nanos);
+	}
+
+	/**
+	 * @return Pool usage, connection wait times, timeouts and per DAO method latencies
+	 */
+	public Map<String, Object> getStats() {
+		Map<String, Object> stats = new TreeMap<>();
+		DataSource dataSource = pool;
+		if (dataSource != null) {
+			Map<String, Object> poolStats = new TreeMap<>();
+			poolStats.put("active", dataSource.getActive());
+			poolStats.put("idle", dataSource.getIdle());
+			poolStats.put("size", dataSource.getSize());
+			poolStats.put("waiting", dataSource.getWaitCount());
+			poolStats.put("maxActive", dataSource.getMaxActive());
+			poolStats.put("adaptive", adaptive);
+			stats.put("pool", poolStats);
+		}
+		stats.put("connectionWait", connectionWait.toMap());
+		stats.put("connectionTimeouts", connectionTimeouts.sum());
+		Map<String, Object> queryStats = new TreeMap<>();
+		queries.forEach((query, histogram) -> queryStats.put(query, histogram.toMap()));
+		stats.put("queries", queryStats);
+		return stats;
+	}
+
+	/**
+	 * Resizes the pool based on the connection wait and query latencies measured since the last run, when adaptive
+	 * mode is enabled.
+	 */
+	@Scheduled(fixedDelayString = "${datasource.adaptive.interval.millis:30000}")
+	public void adjustPoolSize() {
+		DataSource dataSource = pool;
+		if (!adaptive || (dataSource == null)) {
+			return;
+		}
+		long waitP95 = intervalConnectionWait.getPercentileMillis(95);
+		long queryP95 = intervalQueries.getPercentileMillis(95);
+		long queryCount = intervalQueries.getCount();
+		intervalConnectionWait.reset();
+		intervalQueries.reset();
+
+		int maxActive = dataSource.getMaxActive();
+		int resized = maxActive;
+		boolean databaseDegrading = (previousQueryP95Millis > 0) && (queryP95 > previousQueryP95Millis * 3 / 2);
+		if ((queryCount > 0) && (waitP95 > queryP95) && !databaseDegrading) {
+			resized = Math.min(adaptiveMaxSize, maxActive + adaptiveStep);
+		} else if ((waitP95 <= adaptiveShrinkMaxWaitMillis) && (dataSource.getIdle() > maxActive / 2)) {
+			resized = Math.max(adaptiveMinSize, maxActive - adaptiveStep);
+		}
+		previousQueryP95Millis = queryP95;
+
+		if (resized != maxActive) {
+			LOGGER.info("Resizing the database connection pool from {} to {} connections. Connection wait p95 {} ms, query p95 {} ms.",
+					maxActive, resized, waitP95, queryP95);
+			dataSource.setMaxActive(resized);
+			dataSource.setMaxIdle(resized);
+		}
+	}
+}
@@ -0,0 +1,125 @@
+/**
+ * Copyright 2016, RadiantBlue Technologies, Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package access.database;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.apache.tomcat.jdbc.pool.DataSource;
+import org.apache.tomcat.jdbc.pool.PoolExhaustedException;
+import org.springframework.aop.framework.Advised;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.data.repository.Repository;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Instruments the database connection pool and the DAOs, recording into {@link DatabaseMetrics}.
+ * 
+ * The Tomcat connection pool is proxied (as a subclass, so it can still be injected as the pool type) to time
+ * {@code getConnection}, which is where request threads block when the pool is exhausted. The Spring Data DAOs are
+ * already proxies, so the timing interceptor is added to their advice chain. The named parameter JDBC template, which
+ * runs the ledger, list and Lease queries, is proxied in the same way as the pool, and its query and update methods
+ * timed. The plain JDBC template only runs the schema statements at startup, and is left out of the query latencies.
+ */
+@Component
+public class DatabaseMetricsPostProcessor implements BeanPostProcessor, BeanFactoryAware {
+	private BeanFactory beanFactory;
+	private DatabaseMetrics metrics;
+
+	@Override
+	public void setBeanFactory(BeanFactory beanFactory) {
+		this.beanFactory = beanFactory;
+	}
+
+	@Override
+	public Object postProcessBeforeInitialization(Object bean, String beanName) {
+		return bean;
+	}
+
+	@Override
+	public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+		if (bean instanceof DataSource) {
+			return instrumentPool((DataSource) bean);
+		}
+		if (bean instanceof NamedParameterJdbcTemplate) {
+			return instrumentTemplate((NamedParameterJdbcTemplate) bean, beanName);
+		}
+		if ((bean instanceof Repository) && (bean instanceof Advised) && !((Advised) bean).isFrozen()) {
+			DatabaseMetrics databaseMetrics = getMetrics();
+			((Advised) bean).addAdvice(0, (MethodInterceptor) invocation -> {
+				long start = System.nanoTime();
+				try {
+					return invocation.proceed();
+				} finally {
+					databaseMetrics.recordQuery(String.format("%s.%s", beanName, invocation.getMethod().getName()), System.nanoTime() - start);
+				}
+			});
+		}
+		return bean;
+	}
+
+	private Object instrumentPool(DataSource pool) {
+		DatabaseMetrics databaseMetrics = getMetrics();
+		databaseMetrics.setPool(pool);
+		ProxyFactory proxyFactory = new ProxyFactory(pool);
+		proxyFactory.setProxyTargetClass(true);
+		proxyFactory.addAdvice((MethodInterceptor) invocation -> {
+			if (!"getConnection".equals(invocation.getMethod().getName())) {
+				return invocation.proceed();
+			}
+			long start = System.nanoTime();
+			try {
+				return invocation.proceed();
+			} catch (PoolExhaustedException exception) {
+				databaseMetrics.recordConnectionTimeout();
+				throw exception;
+			} finally {
+				databaseMetrics.recordConnectionWait(System.nanoTime() - start);
+			}
+		});
+		return proxyFactory.getProxy();
+	}
+
+	private Object instrumentTemplate(NamedParameterJdbcTemplate template, String beanName) {
+		DatabaseMetrics databaseMetrics = getMetrics();
+		ProxyFactory proxyFactory = new ProxyFactory(template);
+		proxyFactory.setProxyTargetClass(true);
+		proxyFactory.addAdvice((MethodInterceptor) invocation -> {
+			String method = invocation.getMethod().getName();
+			if (!method.startsWith("query") && !method.startsWith("update") && !method.startsWith("batchUpdate")
+					&& !method.startsWith("execute")) {
+				return invocation.proceed();
+			}
+			long start = System.nanoTime();
+			try {
+				return invocation.proceed();
+			} finally {
+				databaseMetrics.recordQuery(String.format("%s.%s", beanName, method), System.nanoTime() - start);
+			}
+		});
+		return proxyFactory.getProxy();
+	}
+
+	private DatabaseMetrics getMetrics() {
+		if (metrics == null) {
+			metrics = beanFactory.getBean(DatabaseMetrics.class);
+		}
+		return metrics;
+	}
+}
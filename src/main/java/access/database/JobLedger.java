@@ -0,0 +1,185 @@
+/**
+ * Copyright 2016, RadiantBlue Technologies, Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package access.database;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import model.logger.Severity;
+import model.status.StatusUpdate;
+import util.PiazzaLogger;
+
+/**
+ * Durable ledger of the Jobs this component has completed, shared by every instance using the same database. The
+ * final Status Update of a Job is recorded before its message is acknowledged. If the message is redelivered, after a
+ * restart or a consumer timeout, the recorded status is published again instead of repeating the S3 reads and
+ * GeoServer requests of the Job.
+ * 
+ * The ledger is an optimization only. If it can not be read or written, the Job simply runs again, as it did before.
+ * 
+ * Each final status is recorded as unpublished until the broker confirms it, so that statuses lost between the
+ * acknowledgement of a Job and their confirmation are published again. An unpublished status is claimed by the instance
+ * that recorded it, which renews its claims while it runs; another instance only takes over, and republishes, the
+ * statuses whose claim has lapsed, so that a status is republished once, and not while its instance still holds it.
+ */
+@Component
+public class JobLedger {
+	@Autowired
+	private NamedParameterJdbcTemplate jdbcTemplate;
+	@Autowired
+	private ObjectMapper objectMapper;
+	@Autowired
+	private PiazzaLogger pzLogger;
+	@Value("${job.ledger.retention.days:7}")
+	private int retentionDays;
+	@Value("${job.ledger.republish.batch.size:500}")
+	private int republishBatchSize;
+
+	/**
+	 * Identifies this instance in the claims on unpublished statuses
+	 */
+	private final String instanceId = UUID.randomUUID().toString();
+
+	private static final String LEDGER_TABLE = "access_job_ledger";
+	private static final Logger LOGGER = LoggerFactory.getLogger(JobLedger.class);
+
+	/**
+	 * Records the final Status Update of a Job, as not yet published and claimed by this instance. Not part of any
+	 * transaction, so this always writes to the primary.
+	 * 
+	 * @param statusUpdate
+	 *            The Success, Error or Cancelled update, with its Job Id set
+	 */
+	public void recordCompleted(StatusUpdate statusUpdate) {
+		String sql = String.format("insert into %s (job_id, state, status_update, published, claimed_by, claimed_on) "
+				+ "values (:jobId, :state, cast(:statusUpdate as jsonb), false, :instanceId, now()) "
+				+ "on conflict (job_id) do update set state = excluded.state, status_update = excluded.status_update, completed_on = now(), "
+				+ "published = false, claimed_by = excluded.claimed_by, claimed_on = now()", LEDGER_TABLE);
+		try {
+			MapSqlParameterSource parameters = new MapSqlParameterSource("jobId", statusUpdate.getJobId())
+					.addValue("state", statusUpdate.getStatus()).addValue("statusUpdate", objectMapper.writeValueAsString(statusUpdate))
+					.addValue("instanceId", instanceId);
+			jdbcTemplate.update(sql, parameters);
+		} catch (IOException | DataAccessException exception) {
+			String error = String.format("Could not record the completion of Job %s in the ledger: %s", statusUpdate.getJobId(),
+					exception.getMessage());
+			LOGGER.error(error, exception);
+			pzLogger.log(error, Severity.WARNING);
+		}
+	}
+
+	/**
+	 * Gets the recorded final Status Update of a Job
+	 * 
+	 * @param jobId
+	 *            The Job Id
+	 * @return The Status Update, or null if the Job has not completed, or the ledger could not be read
+	 */
+	public StatusUpdate getCompletedStatus(String jobId) {
+		String sql = String.format("select status_update from %s where job_id = :jobId", LEDGER_TABLE);
+		try {
+			List<String> results = jdbcTemplate.queryForList(sql, new MapSqlParameterSource("jobId", jobId), String.class);
+			return results.isEmpty() ? null : objectMapper.readValue(results.get(0), StatusUpdate.class);
+		} catch (IOException | DataAccessException exception) {
+			LOGGER.error(String.format("Could not read Job %s from the ledger: %s", jobId, exception.getMessage()), exception);
+			return null;
+		}
+	}
+
+	/**
+	 * Marks the final statuses of Jobs as confirmed by the broker
+	 * 
+	 * @param jobIds
+	 *            The Job Ids
+	 */
+	public void markPublished(Collection<String> jobIds) {
+		String sql = String.format("update %s set published = true where job_id in (:jobIds) and not published", LEDGER_TABLE);
+		try {
+			jdbcTemplate.update(sql, new MapSqlParameterSource("jobIds", jobIds));
+		} catch (DataAccessException exception) {
+			// The statuses will be published again, which the Job Manager tolerates
+			LOGGER.error(String.format("Could not mark %s Job statuses as published in the ledger: %s", jobIds.size(),
+					exception.getMessage()), exception);
+		}
+	}
+
+	/**
+	 * Claims the final statuses that were recorded, but never confirmed as published, for this instance to publish
+	 * again. The claims of this instance are renewed first, so no other instance takes over the statuses it still
+	 * holds. Statuses claimed by another instance are only taken over once that claim is older than the given age, as
+	 * its instance has stopped renewing it. Rows being claimed by another instance at the same time are skipped.
+	 * 
+	 * @param olderThanMillis
+	 *            Only statuses recorded at least this long ago are claimed, and claims of other instances lapse after
+	 *            this long without renewal
+	 * @return The Status Updates claimed, or an empty list if the ledger could not be read
+	 */
+	public List<StatusUpdate> claimUnpublished(long olderThanMillis) {
+		String renewSql = String.format("update %s set claimed_on = now() where claimed_by = :instanceId and not published", LEDGER_TABLE);
+		String claimSql = String.format("update %1$s set claimed_by = :instanceId, claimed_on = now() where job_id in ("
+				+ "select job_id from %1$s where not published and completed_on < now() - make_interval(secs => :seconds) "
+				+ "and (claimed_by is null or claimed_by = :instanceId or claimed_on < now() - make_interval(secs => :seconds)) "
+				+ "order by completed_on limit :limit for update skip locked) returning status_update", LEDGER_TABLE);
+		try {
+			MapSqlParameterSource parameters = new MapSqlParameterSource("instanceId", instanceId)
+					.addValue("seconds", olderThanMillis / 1000.0).addValue("limit", republishBatchSize);
+			jdbcTemplate.update(renewSql, parameters);
+			List<StatusUpdate> statusUpdates = new ArrayList<>();
+			for (String json : jdbcTemplate.queryForList(claimSql, parameters, String.class)) {
+				statusUpdates.add(objectMapper.readValue(json, StatusUpdate.class));
+			}
+			return statusUpdates;
+		} catch (IOException | DataAccessException exception) {
+			LOGGER.error(String.format("Could not claim unpublished Job statuses from the ledger: %s", exception.getMessage()), exception);
+			return Collections.emptyList();
+		}
+	}
+
+	/**
+	 * Removes the Jobs that completed longer ago than the retention period. Messages are not redelivered after that
+	 * long, so their entries are no longer needed.
+	 * 
+	 * This will currently run every day at 3:30am.
+	 */
+	@Scheduled(cron = "0 30 3 * * ?")
+	public void reapCompletedJobs() {
+		String sql = String.format("delete from %s where completed_on < now() - make_interval(days => :days)", LEDGER_TABLE);
+		try {
+			int removed = jdbcTemplate.update(sql, new MapSqlParameterSource("days", retentionDays));
+			pzLogger.log(String.format("Removed %s completed Jobs from the ledger.", removed), Severity.INFORMATIONAL);
+		} catch (DataAccessException exception) {
+			String error = String.format("Error removing completed Jobs from the ledger: %s", exception.getMessage());
+			LOGGER.error(error, exception);
+			pzLogger.log(error, Severity.ERROR);
+		}
+	}
+}
@@ -0,0 +1,54 @@
+/**
+ * Copyright 2016, RadiantBlue Technologies, Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package access.database;
+
+import model.data.deployment.Deployment;
+import model.data.deployment.Lease;
+
+/**
+ * A Deployment together with its Lease, as read in a single query by
+ * {@link DatabaseAccessor#getLeasedDeployment(String)}.
+ */
+public class LeasedDeployment {
+	private final Deployment deployment;
+	private final Lease lease;
+
+	/**
+	 * @param deployment
+	 *            The Deployment
+	 * @param lease
+	 *            The Lease of the Deployment. Null if the Lease has been reaped.
+	 */
+	public LeasedDeployment(Deployment deployment, Lease lease) {
+		this.deployment = deployment;
+		this.lease = lease;
+	}
+
+	public Deployment getDeployment() {
+		return deployment;
+	}
+
+	public Lease getLease() {
+		return lease;
+	}
+
+	/**
+	 * @return The expiration date of the Lease as an ISO8601 String, or null if there is no Lease
+	 */
+	public String getExpiresOn() {
+		return ((lease != null) && (lease.getExpiresOn() != null)) ? lease.getExpiresOn().toString() : null;
+	}
+}
@@ -0,0 +1,189 @@
+/**
+ * Copyright 2016, RadiantBlue Technologies, Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package access.database;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+
+/**
+ * Builds the native SQL for a paged listing over one of the JSON document tables (Data Resources, Deployments). The
+ * query always orders by a sort key expression followed by the row Id, so that the ordering is total and a
+ * {@link PageCursor} can seek past the last row of the previous page using a row-value comparison that is served by
+ * the matching composite expression index.
+ */
+public class ListQuery {
+	private final String table;
+	private final List<String> conditions = new ArrayList<>();
+	private final MapSqlParameterSource parameters = new MapSqlParameterSource();
+	private String documentExpression = "data";
+	private String sortExpression = "id";
+	private boolean descending = false;
+	private PageCursor cursor;
+
+	/**
+	 * @param table
+	 *            The table to list
+	 */
+	public ListQuery(String table) {
+		this.table = table;
+	}
+
+	/**
+	 * Adds a filter condition. All conditions are combined with AND.
+	 * 
+	 * @param condition
+	 *            SQL condition, referencing the parameter by :name
+	 * @param name
+	 *            The name of the parameter
+	 * @param value
+	 *            The value of the parameter
+	 * @return This query
+	 */
+	public ListQuery where(String condition, String name, Object value) {
+		conditions.add(String.format("(%s)", condition));
+		parameters.addValue(name, value);
+		return this;
+	}
+
+	/**
+	 * Sets the expression selected as the JSON document of each row. By default, the full document column is selected.
+	 * 
+	 * @param documentExpression
+	 *            SQL expression building the JSON document from the data column, such as a projection of a few paths
+	 * @return This query
+	 */
+	public ListQuery select(String documentExpression) {
+		this.documentExpression = documentExpression;
+		return this;
+	}
+
+	/**
+	 * Sets the ordering of the listing.
+	 * 
+	 * @param sortExpression
+	 *            SQL expression of the sort key. Must be one of the whitelisted, indexed expressions.
+	 * @param order
+	 *            "asc" or "desc"
+	 * @return This query
+	 */
+	public ListQuery orderBy(String sortExpression, String order) {
+		this.sortExpression = sortExpression;
+		this.descending = "desc".equalsIgnoreCase(order);
+		return this;
+	}
+
+	/**
+	 * @return True if the listing is in descending order
+	 */
+	public boolean isDescending() {
+		return descending;
+	}
+
+	/**
+	 * Positions the listing directly after the row identified by the cursor.
+	 * 
+	 * @param cursor
+	 *            The cursor, or null to start at the first row.
+	 * @return This query
+	 */
+	public ListQuery after(PageCursor cursor) {
+		this.cursor = cursor;
+		return this;
+	}
+
+	/**
+	 * Gets the SQL that selects the row Id, the sort key and the JSON document for one page of results.
+	 * 
+	 * @param limit
+	 *            The maximum number of rows to return
+	 * @return The SQL statement
+	 */
+	public String getSelectSql(int limit) {
+		return getSelectSql(limit, 0);
+	}
+
+	/**
+	 * Gets the SQL that selects the row Id, the sort key and the JSON document for one page of results.
+	 * 
+	 * @param limit
+	 *            The maximum number of rows to return
+	 * @param offset
+	 *            The number of rows to skip. Only used for offset pagination, when no cursor is set.
+	 * @return The SQL statement
+	 */
+	public String getSelectSql(int limit, long offset) {
+		List<String> allConditions = new ArrayList<>(conditions);
+		if (cursor != null) {
+			allConditions.add(String.format("(%s, id) %s (:cursorSortValue, :cursorId)", sortExpression, descending ? "<" : ">"));
+			parameters.addValue("cursorSortValue", cursor.getSortValue());
+			parameters.addValue("cursorId", cursor.getId());
+		}
+		String direction = descending ? "desc" : "asc";
+		parameters.addValue("limit", limit);
+		parameters.addValue("offset", offset);
+		return String.format("select id, %s as sort_value, %s as data from %s%s order by %s %s, id %s limit :limit%s", sortExpression,
+				documentExpression, table, getWhereClause(allConditions), sortExpression, direction, direction,
+				offset > 0 ? " offset :offset" : "");
+	}
+
+	/**
+	 * Gets the SQL that counts all rows matching the filters, regardless of the cursor position.
+	 * 
+	 * @return The SQL statement
+	 */
+	public String getCountSql() {
+		return String.format("select count(*) from %s%s", table, getWhereClause(conditions));
+	}
+
+	/**
+	 * Gets the SQL that asks the query planner for its estimate of the number of rows matching the filters. The result
+	 * is a single JSON plan document; the estimate is the "Plan Rows" of the top plan node.
+	 * 
+	 * @return The SQL statement
+	 */
+	public String getEstimateSql() {
+		return String.format("explain (format json) select 1 from %s%s", table, getWhereClause(conditions));
+	}
+
+	public MapSqlParameterSource getParameters() {
+		return parameters;
+	}
+
+	/**
+	 * Converts a free-text keyword into a prefix-matching text search query, for use with to_tsquery. Each word of the
+	 * keyword must be matched by the start of some word of the document. Punctuation is dropped, so the result is safe
+	 * to pass to to_tsquery as a parameter.
+	 * 
+	 * @param keyword
+	 *            The keyword entered by the user
+	 * @return The text search query, or null if the keyword contains no searchable words
+	 */
+	public static String getPrefixSearchQuery(String keyword) {
+		List<String> terms = new ArrayList<>();
+		for (String word : keyword.toLowerCase().split("[^\\p{L}\\p{N}]+")) {
+			if (!word.isEmpty()) {
+				terms.add(word + ":*");
+			}
+		}
+		return terms.isEmpty() ? null : String.join(" & ", terms);
+	}
+
+	private static String getWhereClause(List<String> conditions) {
+		return conditions.isEmpty() ? "" : " where " + String.join(" and ", conditions);
+	}
+}
@@ -0,0 +1,121 @@
+/**
+ * Copyright 2016, RadiantBlue Technologies, Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package access.database;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import exception.InvalidInputException;
+
+/**
+ * Opaque position within a keyset-paginated listing. A cursor records the sort key value and the row Id of the last
+ * row returned, so that the next page can seek directly past it on the index rather than scanning and discarding the
+ * rows of all previous pages. It also records the sort key and direction of the listing it was issued for, as its
+ * position means nothing in any other ordering.
+ * 
+ * Cursors are handed to clients as URL-safe Base64 strings and should be treated by them as opaque.
+ */
+public class PageCursor {
+	private static final String SEPARATOR = ":";
+	private static final String ASCENDING = "asc";
+	private static final String DESCENDING = "desc";
+
+	private final String sortKey;
+	private final boolean descending;
+	private final long id;
+	private final String sortValue;
+
+	/**
+	 * Creates a cursor positioned after the specified row
+	 * 
+	 * @param sortKey
+	 *            The name of the sort key of the listing
+	 * @param descending
+	 *            True if the listing is in descending order
+	 * @param id
+	 *            The database Id of the last row of the page
+	 * @param sortValue
+	 *            The value of the sort key of the last row of the page
+	 */
+	public PageCursor(String sortKey, boolean descending, long id, String sortValue) {
+		this.sortKey = sortKey == null ? "" : sortKey;
+		this.descending = descending;
+		this.id = id;
+		this.sortValue = sortValue == null ? "" : sortValue;
+	}
+
+	public String getSortKey() {
+		return sortKey;
+	}
+
+	public boolean isDescending() {
+		return descending;
+	}
+
+	public long getId() {
+		return id;
+	}
+
+	public String getSortValue() {
+		return sortValue;
+	}
+
+	/**
+	 * Encodes this cursor into the opaque String representation returned to clients.
+	 * 
+	 * @return The encoded cursor
+	 */
+	public String encode() {
+		String raw = String.join(SEPARATOR, sortKey, descending ? DESCENDING : ASCENDING, Long.toString(id), sortValue);
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Decodes a cursor previously produced by {@link #encode()}, for the listing it is requested with.
+	 * 
+	 * @param cursor
+	 *            The opaque cursor string supplied by the client. Null or empty designates the first page.
+	 * @param sortKey
+	 *            The name of the sort key of the requested listing
+	 * @param descending
+	 *            True if the requested listing is in descending order
+	 * @return The decoded cursor, or null if the first page is requested.
+	 * @throws InvalidInputException
+	 *             If the cursor is not one that was issued by this component, or was issued for another sort key or
+	 *             direction.
+	 */
+	public static PageCursor decode(String cursor, String sortKey, boolean descending) throws InvalidInputException {
+		if ((cursor == null) || (cursor.isEmpty())) {
+			return null;
+		}
+		PageCursor decoded;
+		try {
+			String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(SEPARATOR, 4);
+			if ((parts.length != 4) || (!ASCENDING.equals(parts[1]) && !DESCENDING.equals(parts[1]))) {
+				throw new IllegalArgumentException("Unrecognized format");
+			}
+			decoded = new PageCursor(parts[0], DESCENDING.equals(parts[1]), Long.parseLong(parts[2]), parts[3]);
+		} catch (IllegalArgumentException exception) {
+			throw new InvalidInputException(String.format("Invalid pagination cursor %s: %s", cursor, exception.getMessage()));
+		}
+		if (!decoded.sortKey.equals(sortKey) || (decoded.descending != descending)) {
+			throw new InvalidInputException(String.format(
+					"Pagination cursor %s was issued for a listing sorted by %s %s. Request the first page again to change the sort order.",
+					cursor, decoded.sortKey, decoded.descending ? DESCENDING : ASCENDING));
+		}
+		return decoded;
+	}
+}
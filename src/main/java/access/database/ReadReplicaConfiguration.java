@@ -0,0 +1,128 @@
+/**
+ * Copyright 2016, RadiantBlue Technologies, Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package access.database;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.tomcat.jdbc.pool.PoolConfiguration;
+import org.apache.tomcat.jdbc.pool.PoolProperties;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.scheduling.annotation.Scheduled;
+
+/**
+ * Replaces the default DataSource with one that sends read-only transactions to read replicas, when replica URLs are
+ * configured. Without the replica.datasource.urls property, the default Spring Boot DataSource is used unchanged.
+ */
+@Configuration
+@ConditionalOnProperty(name = "replica.datasource.urls")
+public class ReadReplicaConfiguration {
+	@Value("${replica.datasource.urls}")
+	private String replicaUrls;
+	@Value("${replica.datasource.username:${spring.datasource.username}}")
+	private String replicaUsername;
+	@Value("${replica.datasource.password:${spring.datasource.password}}")
+	private String replicaPassword;
+	@Value("${replica.max.lag.seconds:5}")
+	private double maxLagSeconds;
+	@Value("${replica.primary.pin.seconds:60}")
+	private int primaryPinSeconds;
+
+	private ReadReplicaRoutingDataSource routingDataSource;
+	private final List<org.apache.tomcat.jdbc.pool.DataSource> replicaPools = new ArrayList<>();
+
+	/**
+	 * The connection pool to the primary database, configured from spring.datasource the same way Spring Boot would.
+	 */
+	@Bean
+	@ConfigurationProperties(prefix = "spring.datasource.tomcat")
+	public org.apache.tomcat.jdbc.pool.DataSource primaryDataSource(DataSourceProperties properties) {
+		return (org.apache.tomcat.jdbc.pool.DataSource) properties.initializeDataSourceBuilder()
+				.type(org.apache.tomcat.jdbc.pool.DataSource.class).build();
+	}
+
+	/**
+	 * The DataSource used by JPA and JDBC. Connections are obtained lazily, on the first statement, so that the
+	 * read-only flag of the surrounding transaction is known when the route is chosen.
+	 */
+	@Bean
+	@Primary
+	public DataSource dataSource(org.apache.tomcat.jdbc.pool.DataSource primaryDataSource) {
+		List<DataSource> replicas = new ArrayList<>();
+		for (String url : StringUtils.split(replicaUrls, ',')) {
+			replicas.add(createReplicaDataSource(primaryDataSource.getPoolProperties(), url.trim()));
+		}
+		routingDataSource = new ReadReplicaRoutingDataSource(primaryDataSource, replicas, maxLagSeconds, primaryPinSeconds);
+		routingDataSource.afterPropertiesSet();
+		routingDataSource.checkReplicaLag();
+		return new LazyConnectionDataSourceProxy(routingDataSource);
+	}
+
+	/**
+	 * Periodically re-measures the replication lag of the replicas
+	 */
+	@Scheduled(fixedDelayString = "${replica.check.interval.millis:5000}")
+	public void checkReplicaLag() {
+		if (routingDataSource != null) {
+			routingDataSource.checkReplicaLag();
+		}
+	}
+
+	/**
+	 * Closes the replica pools, which are not beans and so are not closed by the context
+	 */
+	@PreDestroy
+	public void closeReplicaPools() {
+		for (org.apache.tomcat.jdbc.pool.DataSource pool : replicaPools) {
+			pool.close();
+		}
+		replicaPools.clear();
+	}
+
+	/**
+	 * Creates a pool for a replica with the same sizing and validation settings as the primary pool
+	 */
+	private DataSource createReplicaDataSource(PoolConfiguration primary, String url) {
+		PoolProperties properties = new PoolProperties();
+		properties.setDriverClassName(primary.getDriverClassName());
+		properties.setUrl(url);
+		properties.setUsername(replicaUsername);
+		properties.setPassword(replicaPassword);
+		properties.setInitialSize(primary.getInitialSize());
+		properties.setMaxActive(primary.getMaxActive());
+		properties.setMaxIdle(primary.getMaxIdle());
+		properties.setMinIdle(primary.getMinIdle());
+		properties.setMaxWait(primary.getMaxWait());
+		properties.setTestOnBorrow(primary.isTestOnBorrow());
+		properties.setTestWhileIdle(primary.isTestWhileIdle());
+		properties.setValidationQuery(primary.getValidationQuery());
+		properties.setDefaultReadOnly(true);
+		org.apache.tomcat.jdbc.pool.DataSource pool = new org.apache.tomcat.jdbc.pool.DataSource(properties);
+		replicaPools.add(pool);
+		return pool;
+	}
+}
@@ -0,0 +1,169 @@
+/**
+ * Copyright 2016, RadiantBlue Technologies, Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package access.database;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Routes connections for read-only transactions to a read replica, and everything else to the primary database.
+ * 
+ * A replica is only used while its replication lag, as last measured by {@link #checkReplicaLag()}, is within the
+ * staleness tolerance. If no replica is current, reads fall back to the primary. A thread that has written to the
+ * primary is pinned to it, so that a job reads its own writes, until the pin is cleared or times out.
+ * 
+ * Routing is decided when the connection is obtained, so this must be wrapped in a
+ * {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy} for the read-only flag of the transaction
+ * to be known at that point.
+ */
+public class ReadReplicaRoutingDataSource extends AbstractRoutingDataSource {
+	private static final String PRIMARY = "primary";
+	private static final String LAG_QUERY = "select coalesce(extract(epoch from now() - pg_last_xact_replay_timestamp()), 0)";
+	private static final ThreadLocal<Long> PRIMARY_PIN = new ThreadLocal<>();
+	private static final ThreadLocal<Boolean> ROUTED_TO_REPLICA = new ThreadLocal<>();
+	private static final Logger LOGGER = LoggerFactory.getLogger(ReadReplicaRoutingDataSource.class);
+
+	private final List<DataSource> replicas;
+	private final double maxLagSeconds;
+	private final long pinMillis;
+	private volatile boolean[] current;
+	private final AtomicInteger next = new AtomicInteger();
+
+	/**
+	 * @param primary
+	 *            The primary database, which receives all writes
+	 * @param replicas
+	 *            The read replicas of the primary
+	 * @param maxLagSeconds
+	 *            The replication lag, in seconds, beyond which a replica is no longer read from
+	 * @param pinSeconds
+	 *            The time a thread stays pinned to the primary after a write, if the pin is not cleared
+	 */
+	public ReadReplicaRoutingDataSource(DataSource primary, List<DataSource> replicas, double maxLagSeconds, int pinSeconds) {
+		this.replicas = new ArrayList<>(replicas);
+		this.maxLagSeconds = maxLagSeconds;
+		this.pinMillis = pinSeconds * 1000L;
+		// Replicas are not read from until their lag has been measured
+		this.current = new boolean[replicas.size()];
+
+		Map<Object, Object> targets = new HashMap<>();
+		targets.put(PRIMARY, primary);
+		for (int i = 0; i < replicas.size(); i++) {
+			targets.put(i, replicas.get(i));
+		}
+		setTargetDataSources(targets);
+		setDefaultTargetDataSource(primary);
+	}
+
+	/**
+	 * Pins the current thread to the primary database. Called after every write, so subsequent reads on the same
+	 * thread see the write regardless of replication lag.
+	 */
+	public static void pinToPrimary() {
+		PRIMARY_PIN.set(System.currentTimeMillis());
+	}
+
+	/**
+	 * Clears the primary pin of the current thread. Called when a job completes, so the pooled thread reads from
+	 * replicas again for the next job.
+	 */
+	public static void clearPrimaryPin() {
+		PRIMARY_PIN.remove();
+	}
+
+	/**
+	 * @return True if the last connection obtained on the current thread was routed to a replica, whose reads may lag
+	 *         the primary. False if it was routed to the primary, or replicas are not configured.
+	 */
+	public static boolean isRoutedToReplica() {
+		return Boolean.TRUE.equals(ROUTED_TO_REPLICA.get());
+	}
+
+	@Override
+	protected Object determineCurrentLookupKey() {
+		Object key = route();
+		ROUTED_TO_REPLICA.set(!PRIMARY.equals(key));
+		return key;
+	}
+
+	private Object route() {
+		if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly() || isPinnedToPrimary()) {
+			return PRIMARY;
+		}
+		// Round robin over the replicas that are current
+		boolean[] isCurrent = current;
+		int start = next.getAndIncrement() & Integer.MAX_VALUE;
+		for (int i = 0; i < isCurrent.length; i++) {
+			int index = (start + i) % isCurrent.length;
+			if (isCurrent[index]) {
+				return index;
+			}
+		}
+		return PRIMARY;
+	}
+
+	private boolean isPinnedToPrimary() {
+		Long pinnedOn = PRIMARY_PIN.get();
+		if (pinnedOn == null) {
+			return false;
+		}
+		if (System.currentTimeMillis() - pinnedOn > pinMillis) {
+			PRIMARY_PIN.remove();
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Measures the replication lag of every replica and marks those within the tolerance as current. A replica that
+	 * can not be reached is marked as not current. Note that a replica of an idle primary will report lag that grows
+	 * with the time since the last write; in that case reads fall back to the primary, which is not under load.
+	 */
+	public void checkReplicaLag() {
+		boolean[] lagChecked = new boolean[replicas.size()];
+		for (int i = 0; i < replicas.size(); i++) {
+			boolean isCurrent;
+			try (Connection connection = replicas.get(i).getConnection();
+					Statement statement = connection.createStatement();
+					ResultSet result = statement.executeQuery(LAG_QUERY)) {
+				double lag = result.next() ? result.getDouble(1) : Double.MAX_VALUE;
+				isCurrent = lag <= maxLagSeconds;
+				if (!isCurrent) {
+					LOGGER.info("Read replica {} is {} seconds behind the primary; reading from the primary until it catches up.", i, lag);
+				}
+			} catch (SQLException exception) {
+				LOGGER.warn(String.format("Could not determine the lag of read replica %s: %s", i, exception.getMessage()), exception);
+				isCurrent = false;
+			}
+			lagChecked[i] = isCurrent;
+		}
+		current = lagChecked;
+	}
+}
@@ -0,0 +1,193 @@
+/**
+ * Copyright 2016, RadiantBlue Technologies, Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package access.database;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.annotation.PostConstruct;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import model.logger.Severity;
+import util.PiazzaLogger;
+
+/**
+ * Applies the supplementary database objects (indexes and tables) that the Access component relies on, but that are
+ * not described by the shared Hibernate entities. Runs once on startup, after Hibernate has created or updated the
+ * entity tables.
+ * 
+ * Statements are read from the db/access-schema.sql template and must be idempotent. Failure of a statement is logged
+ * and does not prevent startup; the affected queries will simply run without the benefit of the index.
+ * 
+ * Indexes on tables shared with other components are created CONCURRENTLY, so that their writes are not blocked while
+ * the index is built. These builds can take long on a large table, so they run in the background rather than holding
+ * up startup, outside of any transaction, and on one instance at a time. A concurrent build that failed leaves an
+ * invalid index behind, which IF NOT EXISTS would skip; it is dropped and built again.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+public class SchemaInitializer {
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+	@Autowired
+	private PiazzaLogger pzLogger;
+
+	private static final String SCHEMA_TEMPLATE = "db/access-schema.sql";
+	private static final Pattern CONCURRENT_INDEX = Pattern.compile("^CREATE INDEX CONCURRENTLY IF NOT EXISTS (\\w+)",
+			Pattern.CASE_INSENSITIVE);
+	private static final String INVALID_INDEX_SQL = "select 1 from pg_index join pg_class on pg_class.oid = pg_index.indexrelid "
+			+ "where pg_class.relname = ? and not pg_index.indisvalid";
+	/**
+	 * Advisory lock held while the concurrent indexes are built, so that instances starting together do not build, or
+	 * drop, the same index at once
+	 */
+	private static final int SCHEMA_LOCK_NAMESPACE = 0x707A6164;
+	private static final Logger LOGGER = LoggerFactory.getLogger(SchemaInitializer.class);
+
+	/**
+	 * Executes each statement of the schema template. Concurrent index builds are started in the background.
+	 */
+	@PostConstruct
+	public void initialize() {
+		String script;
+		try (InputStream templateStream = getClass().getClassLoader().getResourceAsStream(SCHEMA_TEMPLATE)) {
+			script = IOUtils.toString(templateStream, StandardCharsets.UTF_8);
+		} catch (Exception exception) {
+			LOGGER.error("Error reading Access schema template.", exception);
+			return;
+		}
+
+		List<String> concurrentIndexes = new ArrayList<>();
+		for (String statement : script.split(";")) {
+			String sql = stripComments(statement);
+			if (sql.isEmpty()) {
+				continue;
+			}
+			if (CONCURRENT_INDEX.matcher(sql).find()) {
+				concurrentIndexes.add(sql);
+				continue;
+			}
+			try {
+				jdbcTemplate.execute(sql);
+			} catch (Exception exception) {
+				logFailure(sql, exception);
+			}
+		}
+
+		if (!concurrentIndexes.isEmpty()) {
+			Thread thread = new Thread(() -> buildConcurrentIndexes(concurrentIndexes), "schema-indexes");
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+
+	/**
+	 * Builds the concurrent indexes on a single connection, outside of any transaction as CREATE INDEX CONCURRENTLY
+	 * requires, while holding the schema lock. If another instance holds the lock, it is building the indexes.
+	 */
+	private void buildConcurrentIndexes(List<String> statements) {
+		try {
+			jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+				if (!lockSchema(connection, "pg_try_advisory_lock")) {
+					LOGGER.info("Another instance is building the Access indexes; skipping.");
+					return null;
+				}
+				try (Statement statement = connection.createStatement()) {
+					for (String sql : statements) {
+						try {
+							dropInvalidIndex(connection, statement, sql);
+							statement.execute(sql);
+						} catch (SQLException exception) {
+							logFailure(sql, exception);
+						}
+					}
+				} finally {
+					lockSchema(connection, "pg_advisory_unlock");
+				}
+				return null;
+			});
+			LOGGER.info("Access indexes are built.");
+		} catch (Exception exception) {
+			String error = String.format("Could not build the Access indexes: %s", exception.getMessage());
+			LOGGER.error(error, exception);
+			pzLogger.log(error, Severity.WARNING);
+		}
+	}
+
+	/**
+	 * Drops the index of a CREATE INDEX CONCURRENTLY statement if an earlier build of it failed, and left it invalid
+	 */
+	private static void dropInvalidIndex(Connection connection, Statement statement, String sql) throws SQLException {
+		Matcher matcher = CONCURRENT_INDEX.matcher(sql);
+		if (!matcher.find()) {
+			return;
+		}
+		String index = matcher.group(1);
+		boolean invalid;
+		try (PreparedStatement query = connection.prepareStatement(INVALID_INDEX_SQL)) {
+			query.setString(1, index);
+			try (ResultSet result = query.executeQuery()) {
+				invalid = result.next();
+			}
+		}
+		if (invalid) {
+			LOGGER.warn("Index {} was left invalid by a failed build; building it again.", index);
+			statement.execute(String.format("DROP INDEX CONCURRENTLY IF EXISTS %s", index));
+		}
+	}
+
+	private static boolean lockSchema(Connection connection, String function) throws SQLException {
+		try (PreparedStatement statement = connection.prepareStatement(String.format("select %s(?, 0)", function))) {
+			statement.setInt(1, SCHEMA_LOCK_NAMESPACE);
+			try (ResultSet result = statement.executeQuery()) {
+				return result.next() && result.getBoolean(1);
+			}
+		}
+	}
+
+	private void logFailure(String sql, Exception exception) {
+		String error = String.format("Could not apply Access schema statement %s: %s", sql, exception.getMessage());
+		LOGGER.error(error, exception);
+		pzLogger.log(error, Severity.WARNING);
+	}
+
+	private static String stripComments(String statement) {
+		StringBuilder sql = new StringBuilder();
+		for (String line : statement.split("\n")) {
+			if (!line.trim().startsWith("--")) {
+				sql.append(line).append('\n');
+			}
+		}
+		return sql.toString().trim();
+	}
+}
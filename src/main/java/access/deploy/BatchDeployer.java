@@ -0,0 +1,200 @@
+/**
+ * Copyright 2016, RadiantBlue Technologies, Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package access.deploy;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import access.database.DatabaseAccessor;
+import access.database.LeasedDeployment;
+import access.database.ReadReplicaRoutingDataSource;
+import access.model.BatchAccessJob;
+import access.model.BatchAccessResult;
+import access.model.BatchItemResult;
+import access.util.CancellationScope;
+import exception.DataInspectException;
+import exception.GeoServerException;
+import model.data.DataResource;
+import model.data.deployment.Deployment;
+import model.data.deployment.DeploymentGroup;
+import model.logger.Severity;
+import util.PiazzaLogger;
+
+/**
+ * Deploys the Resources of a Batch Access Job. Each Resource is deployed, or has the Lease of its existing Deployment
+ * renewed, on the batch item executor, with at most a configured number in flight per batch. Once all are done, the
+ * Deployments are added to the Deployment Group with a single GET and PUT of its layer group, rather than one for each
+ * Resource.
+ * 
+ * A Resource that fails does not fail the batch; its error is reported in its item result.
+ */
+@Component
+public class BatchDeployer {
+	@Autowired
+	private DatabaseAccessor accessor;
+	@Autowired
+	private DeploymentCoordinator deploymentCoordinator;
+	@Autowired
+	private Leaser leaser;
+	@Autowired
+	private GroupDeployer groupDeployer;
+	@Autowired
+	private PiazzaLogger pzLogger;
+	@Autowired
+	@Qualifier("batchItemExecutor")
+	private ThreadPoolTaskExecutor batchItemExecutor;
+	@Value("${batch.item.concurrency:8}")
+	private int itemConcurrency;
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(BatchDeployer.class);
+
+	/**
+	 * Deploys the Resources of the batch, and adds them to its Deployment Group
+	 * 
+	 * @param batchJob
+	 *            The batch
+	 * @return The result of each Resource, in the order requested without duplicates, and of the group update
+	 * @throws InterruptedException
+	 *             If the Job was cancelled or interrupted while waiting for its Resources to deploy. Resources that have
+	 *             not started are then skipped.
+	 */
+	public BatchAccessResult deploy(BatchAccessJob batchJob) throws InterruptedException {
+		// Items run on other threads, but are cancelled along with the batch
+		CancellationScope scope = CancellationScope.current();
+		Semaphore permits = new Semaphore(Math.max(1, itemConcurrency));
+		List<String> dataIds = new ArrayList<>(new LinkedHashSet<>(batchJob.getDataIds()));
+		List<CompletableFuture<BatchItemResult>> futures = new ArrayList<>();
+		List<BatchItemResult> items = new ArrayList<>();
+		try {
+			for (String dataId : dataIds) {
+				permits.acquire();
+				if ((scope != null) && scope.isCancelled()) {
+					throw new InterruptedException(String.format("Batch Job %s was cancelled.", batchJob.getJobId()));
+				}
+				futures.add(submitItem(dataId, batchJob.getDurationDays(), scope, permits));
+			}
+			for (int i = 0; i < futures.size(); i++) {
+				items.add(awaitItem(futures.get(i), dataIds.get(i)));
+			}
+		} catch (InterruptedException exception) {
+			// Items that have not started are skipped; those running stop with the cancellation scope of the batch
+			futures.forEach(future -> future.cancel(true));
+			throw exception;
+		}
+		if ((scope != null) && scope.isCancelled()) {
+			throw new InterruptedException(String.format("Batch Job %s was cancelled.", batchJob.getJobId()));
+		}
+
+		BatchAccessResult result = new BatchAccessResult(batchJob.getDeploymentGroupId(), items);
+		if ((batchJob.getDeploymentGroupId() != null) && !batchJob.getDeploymentGroupId().isEmpty()) {
+			updateGroup(batchJob.getDeploymentGroupId(), items, result);
+		}
+		return result;
+	}
+
+	private CompletableFuture<BatchItemResult> submitItem(String dataId, Integer durationDays, CancellationScope scope, Semaphore permits) {
+		try {
+			CompletableFuture<BatchItemResult> future = CompletableFuture.supplyAsync(() -> deployItem(dataId, durationDays, scope),
+					batchItemExecutor);
+			future.whenComplete((result, exception) -> permits.release());
+			return future;
+		} catch (TaskRejectedException exception) {
+			permits.release();
+			LOGGER.warn(String.format("Batch item executor is full; could not deploy %s.", dataId), exception);
+			return CompletableFuture.completedFuture(BatchItemResult.failed(dataId, "Capacity for batch deployments was reached."));
+		}
+	}
+
+	/**
+	 * Waits for an item, interruptibly. Items report their own failures, so only an Error escapes one.
+	 */
+	private BatchItemResult awaitItem(CompletableFuture<BatchItemResult> future, String dataId) throws InterruptedException {
+		try {
+			return future.get();
+		} catch (ExecutionException exception) {
+			LOGGER.error(String.format("Deployment of %s in batch failed unexpectedly.", dataId), exception.getCause());
+			return BatchItemResult.failed(dataId, String.valueOf(exception.getCause()));
+		}
+	}
+
+	private BatchItemResult deployItem(String dataId, Integer durationDays, CancellationScope scope) {
+		CancellationScope.bind(scope);
+		try {
+			LeasedDeployment existing = accessor.getLeasedDeploymentByDataId(dataId);
+			Deployment deployment;
+			if (existing != null) {
+				deployment = existing.getDeployment();
+				leaser.renewDeploymentLease(deployment, existing.getLease(), durationDays);
+			} else {
+				DataResource dataToDeploy = accessor.getDataFromPrimary(dataId);
+				if (dataToDeploy == null) {
+					return BatchItemResult.failed(dataId, String.format("Data with Id %s does not exist.", dataId));
+				}
+				deployment = deploymentCoordinator.deploy(dataToDeploy, durationDays);
+			}
+			return BatchItemResult.deployed(dataId, deployment);
+		} catch (InterruptedException exception) {
+			Thread.currentThread().interrupt();
+			return BatchItemResult.failed(dataId, "Deployment was cancelled.");
+		} catch (Exception exception) {
+			String error = String.format("Could not deploy Data %s in batch: %s", dataId, exception.getMessage());
+			LOGGER.error(error, exception);
+			pzLogger.log(error, Severity.ERROR);
+			return BatchItemResult.failed(dataId, exception.getMessage());
+		} finally {
+			ReadReplicaRoutingDataSource.clearPrimaryPin();
+			CancellationScope.unbind();
+		}
+	}
+
+	private void updateGroup(String deploymentGroupId, List<BatchItemResult> items, BatchAccessResult result) {
+		List<Deployment> deployments = items.stream().filter(BatchItemResult::isSuccess).map(BatchItemResult::getDeployment)
+				.collect(Collectors.toList());
+		if (deployments.isEmpty()) {
+			result.setGroupError("No Resources were deployed to add to the Deployment Group.");
+			return;
+		}
+		DeploymentGroup deploymentGroup = accessor.getDeploymentGroupById(deploymentGroupId);
+		if (deploymentGroup == null) {
+			result.setGroupError(String.format("Deployment Group with Id %s does not exist.", deploymentGroupId));
+			return;
+		}
+		try {
+			groupDeployer.updateDeploymentGroup(deploymentGroup, deployments);
+			result.setGroupUpdated(true);
+		} catch (GeoServerException | DataInspectException exception) {
+			String error = String.format("Could not add %s Deployments to Deployment Group %s: %s", deployments.size(),
+					deploymentGroupId, exception.getMessage());
+			LOGGER.error(error, exception);
+			pzLogger.log(error, Severity.ERROR);
+			result.setGroupError(exception.getMessage());
+		}
+	}
+}
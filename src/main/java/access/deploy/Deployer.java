@@ -40,6 +40,8 @@ import com.amazonaws.AmazonClientException;
 import access.database.DatabaseAccessor;
 import access.deploy.geoserver.AuthHeaders;
 import access.util.AccessUtilities;
+import access.util.StageTimings;
+import access.util.StageTimings.Stage;
 import exception.GeoServerException;
 import exception.InvalidInputException;
 import model.data.DataResource;
@@ -77,6 +79,8 @@ public class Deployer {
 	private RestTemplate restTemplate;
 	@Autowired
 	private AuthHeaders authHeaders;
+	@Autowired
+	private RetryPolicy retryPolicy;
 
 	private static final String ADD_LAYER_ENDPOINT = "/rest/workspaces/piazza/datastores/piazza/featuretypes/";
 	private static final String CAPABILITIES_URL = "/piazza/wfs?service=wfs&version=2.0.0&request=GetCapabilities";
@@ -125,7 +129,7 @@ public class Deployer {
 		} catch (Exception exception) {
 			String error = String.format("There was an error deploying the to GeoServer instance: %s", exception.getMessage());
 			LOGGER.error(error, exception);
-			throw new GeoServerException(error);
+			throw RetryPolicy.geoServerException(error, exception);
 		}
 
 		// Insert the Deployment into the Database
@@ -236,7 +240,10 @@ public class Deployer {
 		try {
 			pzLogger.log(String.format("Creating new Raster Deployment to %s", url), Severity.INFORMATIONAL,
 					new AuditElement(ACCESS, "deployGeoServerRasterLayer", dataResource.getDataId()));
-			restTemplate.exchange(url, HttpMethod.PUT, request, String.class);
+			// The upload replaces the file of the store, and so may be repeated
+			try (StageTimings.Span span = StageTimings.start(Stage.GEOSERVER_PUBLISH)) {
+				retryPolicy.execute("raster upload", () -> restTemplate.exchange(url, HttpMethod.PUT, request, String.class));
+			}
 		} catch (HttpClientErrorException | HttpServerErrorException exception) {
 			if (exception.getStatusCode() == HttpStatus.METHOD_NOT_ALLOWED) {
 				// If 405 NOT ALLOWED is encountered, then the layer may already exist on the GeoServer. Check if it
@@ -261,14 +268,14 @@ public class Deployer {
 						url, exception.getStatusCode().toString(), exception.getResponseBodyAsString());
 				pzLogger.log(error, Severity.ERROR, new AuditElement(ACCESS, "failedToDeployRaster", dataResource.getDataId()));
 				LOGGER.error(error, exception);
-				throw new GeoServerException(error);
+				throw RetryPolicy.geoServerException(error, exception);
 			} else {
 				// For any other errors, report back this error to the user and fail the job.
 				String error = String.format("Creating Layer on GeoServer at URL %s returned HTTP Status %s with Body: %s", url,
 						exception.getStatusCode().toString(), exception.getResponseBodyAsString());
 				pzLogger.log(error, Severity.ERROR, new AuditElement(ACCESS, "failedToDeployRaster", dataResource.getDataId()));
 				LOGGER.error(error, exception);
-				throw new GeoServerException(error);
+				throw RetryPolicy.geoServerException(error, exception);
 			}
 		}
 
@@ -303,7 +310,8 @@ public class Deployer {
 		try {
 			pzLogger.log(String.format("Deleting Deployment from Resource %s", url), Severity.INFORMATIONAL,
 					new AuditElement(ACCESS, "undeployGeoServerLayer", deploymentId));
-			restTemplate.exchange(url, HttpMethod.DELETE, request, String.class);
+			String layerUrl = url;
+			retryPolicy.execute("layer delete", () -> restTemplate.exchange(layerUrl, HttpMethod.DELETE, request, String.class));
 		} catch (HttpClientErrorException | HttpServerErrorException exception) {
 			// Check the status code. If it's a 404, then the layer has likely
 			// already been deleted by some other means.
@@ -318,7 +326,7 @@ public class Deployer {
 						deploymentId, url, exception.getStatusCode(), exception.getResponseBodyAsString());
 				pzLogger.log(error, Severity.ERROR, new AuditElement(ACCESS, "failedToDeleteGeoServerLayer", deploymentId));
 				LOGGER.error(error, exception);
-				throw new GeoServerException(error);
+				throw RetryPolicy.geoServerException(error, exception);
 			}
 		}
 
@@ -328,7 +336,8 @@ public class Deployer {
 		try {
 			pzLogger.log(String.format("Deleting Coverage Store from Resource %s", url), Severity.INFORMATIONAL,
 					new AuditElement(ACCESS, "deleteGeoServerCoverageStore", deployment.getDataId()));
-			restTemplate.exchange(url, HttpMethod.DELETE, request, String.class);
+			String storeUrl = url;
+			retryPolicy.execute("coverage store delete", () -> restTemplate.exchange(storeUrl, HttpMethod.DELETE, request, String.class));
 		} catch (HttpClientErrorException | HttpServerErrorException exception) {
 			// Check the status code. If it's a 404, then the layer has likely
 			// already been deleted by some other means.
@@ -344,7 +353,7 @@ public class Deployer {
 						url, exception.getStatusCode(), exception.getResponseBodyAsString());
 				pzLogger.log(error, Severity.ERROR, new AuditElement(ACCESS, "failedToUndeployLayer", deploymentId));
 				LOGGER.error(error, exception);
-				throw new GeoServerException(error);
+				throw RetryPolicy.geoServerException(error, exception);
 			}
 		}
 		
@@ -376,13 +385,16 @@ public class Deployer {
 		try {
 			pzLogger.log(String.format("Creating GeoServer Feature Type for Resource %s", url), Severity.INFORMATIONAL,
 					new AuditElement(ACCESS, "createGeoServerFeatureType", url));
-			response = restTemplate.exchange(url, HttpMethod.POST, request, String.class);
+			try (StageTimings.Span span = StageTimings.start(Stage.GEOSERVER_PUBLISH)) {
+				response = restTemplate.exchange(url, HttpMethod.POST, request, String.class);
+			}
 		} catch (Exception exception) {
 			String error = String.format("There was an error creating the Coverage Layer to URL %s with errors %s", url,
 					exception.getMessage());
 			pzLogger.log(error, Severity.ERROR, new AuditElement(ACCESS, "failedToCreateGeoServerFeatureType", url));
 			LOGGER.error(error, exception);
-			throw new GeoServerException(error);
+			// Not retried here, as creating the feature type is not idempotent; the Job may be retried as a whole
+			throw RetryPolicy.geoServerException(error, exception);
 		}
 
 		// Return the HTTP Status
@@ -404,7 +416,8 @@ public class Deployer {
 		try {
 			pzLogger.log(String.format("Checking GeoServer if Layer Exists %s", layerId), Severity.INFORMATIONAL,
 					new AuditElement(ACCESS, "checkGeoServerLayerExists", url));
-			ResponseEntity<String> response = restTemplate.exchange(url, HttpMethod.GET, request, String.class);
+			ResponseEntity<String> response = retryPolicy.execute("layer lookup",
+					() -> restTemplate.exchange(url, HttpMethod.GET, request, String.class));
 			return response.getStatusCode().equals(HttpStatus.OK);
 		} catch (HttpClientErrorException | HttpServerErrorException exception) {
 			// Check the status code. If it's a 404, then the layer does not exist.
@@ -416,7 +429,7 @@ public class Deployer {
 						layerId, exception.getStatusCode(), exception.getResponseBodyAsString());
 				pzLogger.log(error, Severity.ERROR, new AuditElement(ACCESS, "failedToCheckGeoServerLayerStatus", layerId));
 				LOGGER.error(error, exception);
-				throw new GeoServerException(error);
+				throw RetryPolicy.geoServerException(error, exception);
 			}
 		}
 	}
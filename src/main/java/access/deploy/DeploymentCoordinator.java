@@ -0,0 +1,173 @@
+/**
+ * Copyright 2016, RadiantBlue Technologies, Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package access.deploy;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import access.database.AdvisoryLock;
+import access.database.AdvisoryLocks;
+import access.database.DatabaseAccessor;
+import access.database.LeasedDeployment;
+import access.database.ReadReplicaRoutingDataSource;
+import access.util.CancellationScope;
+import access.util.StageTimings;
+import access.util.StageTimings.Stage;
+import exception.GeoServerException;
+import model.data.DataResource;
+import model.data.deployment.Deployment;
+
+/**
+ * Coalesces concurrent deployments of the same Data within this instance. The first Job to request a Data Id deploys
+ * it and creates its Lease; Jobs for the same Data Id that arrive while it is in progress wait for its result, and then
+ * only renew the Lease. This avoids several workers racing to create the same GeoServer layer.
+ * 
+ * Across instances, the deploying Job holds a Postgres advisory lock on the Data Id, and re-checks for a Deployment
+ * once it has the lock, so each Data Id is deployed at most once in the cluster.
+ * 
+ * A waiting Job gives up when its own Job is cancelled, or after the lock wait. If the deploying Job is cancelled
+ * instead, it leaves no result, and a waiting Job takes over the deployment.
+ */
+@Component
+public class DeploymentCoordinator {
+	@Autowired
+	private Deployer deployer;
+	@Autowired
+	private Leaser leaser;
+	@Autowired
+	private DatabaseAccessor accessor;
+	@Autowired
+	private AdvisoryLocks advisoryLocks;
+	@Value("${deployment.lock.wait.millis:120000}")
+	private long lockWaitMillis;
+	@Value("${deployment.wait.poll.millis:250}")
+	private long waitPollMillis;
+
+	private final ConcurrentMap<String, CompletableFuture<Deployment>> inFlight = new ConcurrentHashMap<>();
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(DeploymentCoordinator.class);
+
+	/**
+	 * Gets the Deployment of the Data, deploying it if no other Job is, and ensures it has a Lease.
+	 * 
+	 * @param dataResource
+	 *            The Data to deploy
+	 * @param durationDays
+	 *            The number of days to lease the Deployment for
+	 * @return The Deployment
+	 * @throws InterruptedException
+	 *             If the Job was cancelled while deploying, or while waiting for another Job's deployment
+	 */
+	public Deployment deploy(DataResource dataResource, Integer durationDays) throws GeoServerException, InterruptedException {
+		String dataId = dataResource.getDataId();
+		long deadline = System.currentTimeMillis() + lockWaitMillis;
+		CompletableFuture<Deployment> deployment = new CompletableFuture<>();
+		CompletableFuture<Deployment> leader;
+		while ((leader = inFlight.putIfAbsent(dataId, deployment)) != null) {
+			LOGGER.info("Waiting for the Deployment of {} by a concurrent Job.", dataId);
+			Deployment deployed = await(leader, dataId, deadline);
+			if (deployed != null) {
+				// The leader's Lease may not have replicated yet; reading it from a replica would create a second Lease
+				ReadReplicaRoutingDataSource.pinToPrimary();
+				leaser.renewDeploymentLease(deployed, durationDays);
+				return deployed;
+			}
+			LOGGER.info("The concurrent Deployment of {} was cancelled; taking it over.", dataId);
+		}
+
+		try {
+			Deployment deployed = deployOnce(dataResource, durationDays);
+			deployment.complete(deployed);
+			return deployed;
+		} catch (GeoServerException | RuntimeException exception) {
+			deployment.completeExceptionally(exception);
+			throw exception;
+		} finally {
+			inFlight.remove(dataId, deployment);
+			// On any other exit, such as an interrupt, there is no result; waiting Jobs take over once it is removed
+			deployment.cancel(false);
+		}
+	}
+
+	/**
+	 * Deploys the Data and creates its Lease under the cluster-wide lock, unless a Job on this or another instance
+	 * already did.
+	 */
+	private Deployment deployOnce(DataResource dataResource, Integer durationDays) throws GeoServerException, InterruptedException {
+		String dataId = dataResource.getDataId();
+		try (AdvisoryLock lock = advisoryLocks.tryAcquireDeploymentLock(dataId, lockWaitMillis)) {
+			// A Job for the same Data may have completed between this Job's existence check and now, or while waiting
+			// for the lock. Read from the primary, since that Deployment may not have replicated yet.
+			ReadReplicaRoutingDataSource.pinToPrimary();
+			LeasedDeployment existing = accessor.getLeasedDeploymentByDataId(dataId);
+			if (existing != null) {
+				try (StageTimings.Span span = StageTimings.start(Stage.LEASE)) {
+					leaser.renewDeploymentLease(existing.getDeployment(), existing.getLease(), durationDays);
+				}
+				return existing.getDeployment();
+			}
+			if (lock == null) {
+				throw new GeoServerException(String.format(
+						"Timed out waiting for another instance to finish deploying Data %s. Please try again later.", dataId));
+			}
+			Deployment deployed = deployer.createDeployment(dataResource);
+			try (StageTimings.Span span = StageTimings.start(Stage.LEASE)) {
+				leaser.createDeploymentLease(deployed, durationDays);
+			}
+			return deployed;
+		}
+	}
+
+	/**
+	 * Waits for the leader's Deployment, while this Job is not cancelled and until the deadline
+	 * 
+	 * @return The Deployment, or null if the leader was cancelled and left no result
+	 */
+	private Deployment await(CompletableFuture<Deployment> leader, String dataId, long deadline)
+			throws GeoServerException, InterruptedException {
+		while (true) {
+			if (CancellationScope.isCurrentCancelled()) {
+				throw new InterruptedException(String.format("Cancelled while waiting for the Deployment of Data %s.", dataId));
+			}
+			long remainingMillis = deadline - System.currentTimeMillis();
+			if (remainingMillis <= 0) {
+				throw new GeoServerException(String.format(
+						"Timed out waiting for a concurrent Job to finish deploying Data %s. Please try again later.", dataId));
+			}
+			try {
+				return leader.get(Math.min(waitPollMillis, remainingMillis), TimeUnit.MILLISECONDS);
+			} catch (CancellationException exception) {
+				return null;
+			} catch (ExecutionException exception) {
+				throw new GeoServerException(
+						String.format("Concurrent Deployment of Data %s failed: %s", dataId, exception.getCause().getMessage()));
+			} catch (TimeoutException exception) {
+				// Check for cancellation again
+			}
+		}
+	}
+}
@@ -72,6 +72,8 @@ public class GroupDeployer {
 	private AuthHeaders authHeaders;
 	@Autowired
 	private AccessUtilities accessUtilities;
+	@Autowired
+	private RetryPolicy retryPolicy;
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(GroupDeployer.class);
 	private static final String ACCESS = "access";
@@ -238,7 +240,7 @@ public class GroupDeployer {
 		try {
 			pzLogger.log(String.format("Deleting GeoServer Deployment Group %s", deploymentGroup.deploymentGroupId), Severity.INFORMATIONAL,
 					new AuditElement(ACCESS, "deleteGeoServerDeploymentGroup", url));
-			restTemplate.exchange(url, HttpMethod.DELETE, request, String.class);
+			retryPolicy.execute("layer group delete", () -> restTemplate.exchange(url, HttpMethod.DELETE, request, String.class));
 		} catch (HttpClientErrorException | HttpServerErrorException exception) {
 			// If the delete to GeoServer failed, then check why. Perhaps it's
 			// already been deleted? It might not be an error we're concerned
@@ -250,7 +252,7 @@ public class GroupDeployer {
 				String error = String.format("Could not delete Layer Group %s on GeoServer. Failed with Code %s : %s",
 						deploymentGroup.deploymentGroupId, exception.getStatusCode().toString(), exception.getResponseBodyAsString());
 				LOGGER.error(error, exception);
-				throw new GeoServerException(error);
+				throw RetryPolicy.geoServerException(error, exception);
 			}
 		}
 
@@ -288,12 +290,12 @@ public class GroupDeployer {
 		try {
 			pzLogger.log(String.format("Getting GeoServer Layer Group Metadata: %s", deploymentGroupId), Severity.INFORMATIONAL,
 					new AuditElement(ACCESS, "readGeoServerLayerGroupMetadata", url));
-			response = restTemplate.exchange(url, HttpMethod.GET, request, String.class);
+			response = retryPolicy.execute("layer group lookup", () -> restTemplate.exchange(url, HttpMethod.GET, request, String.class));
 		} catch (HttpStatusCodeException exception) {
 			String error = String.format("Could not fetch Layer Group %s. Status code %s was returned by GeoServer with error: %s",
 					deploymentGroupId, exception.getStatusCode().toString(), exception.getMessage());
 			LOGGER.error(error, exception, new AuditElement(ACCESS, "failedToFetchGeoServerLayerGroup", deploymentGroupId));
-			throw new GeoServerException(error);
+			throw RetryPolicy.geoServerException(error, exception);
 		}
 
 		// Convert the GeoServer response into the Layer Group Model
@@ -367,14 +369,20 @@ public class GroupDeployer {
 		try {
 			pzLogger.log(String.format("Creating GeoServer Layer Group: %s", layerGroup.getLayerGroup().getName()), Severity.INFORMATIONAL,
 					new AuditElement(ACCESS, "readGeoServerLayerGroupMetadata", layerGroup.getLayerGroup().getName()));
-			response = restTemplate.exchange(url, method, request, String.class);
+			if (method.equals(HttpMethod.PUT)) {
+				// Replacing the Layer Group may be repeated; creating it may not
+				HttpEntity<String> update = request;
+				response = retryPolicy.execute("layer group update", () -> restTemplate.exchange(url, method, update, String.class));
+			} else {
+				response = restTemplate.exchange(url, method, request, String.class);
+			}
 		} catch (HttpClientErrorException | HttpServerErrorException exception) {
 			String error = String.format("Error sending Layer Group %s to GeoServer HTTP %s to %s. Server responded with: %s",
 					layerGroup.getLayerGroup().getName(), method.toString(), url, exception.getResponseBodyAsString());
 			LOGGER.error(error, exception);
 			pzLogger.log(error, Severity.ERROR, new AuditElement(ACCESS, "failedToSendGeoServerLayerGroup", url));
 			pzLogger.log(String.format("Request Payload for failed request was: %s", payload), Severity.ERROR);
-			throw new GeoServerException(error);
+			throw RetryPolicy.geoServerException(error, exception);
 		}
 		if (response.getStatusCode().equals(HttpStatus.CREATED) || (response.getStatusCode().equals(HttpStatus.OK))) {
 			pzLogger.log("Updated Layer Group.", Severity.INFORMATIONAL, new AuditElement(ACCESS, "updatedGeoServerLayerGroup", url));
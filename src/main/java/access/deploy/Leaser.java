@@ -65,7 +65,22 @@ public class Leaser {
 	 * @return The Lease for this Deployment
 	 */
 	public Lease renewDeploymentLease(Deployment deployment, Integer durationDays) {
-		Lease lease = accessor.getDeploymentLease(deployment);
+		return renewDeploymentLease(deployment, accessor.getDeploymentLease(deployment), durationDays);
+	}
+
+	/**
+	 * Renews the existing Deployment, whose Lease has already been read; such as by
+	 * {@link DatabaseAccessor#getLeasedDeploymentByDataId(String)}.
+	 * 
+	 * @param deployment
+	 *            The deployment to renew.
+	 * @param lease
+	 *            The current Lease of the deployment. Null if it has been reaped.
+	 * @param durationDays
+	 *            The number of days to renew the lease by.
+	 * @return The Lease for this Deployment
+	 */
+	public Lease renewDeploymentLease(Deployment deployment, Lease lease, Integer durationDays) {
 		// If the lease has been reaped by the database, then create a new
 		// Lease.
 		if (lease == null) {
@@ -0,0 +1,150 @@
+/**
+ * Copyright 2016, RadiantBlue Technologies, Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package access.deploy;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientException;
+
+import access.util.CancellationScope;
+import exception.GeoServerException;
+
+/**
+ * Retry policy for transient GeoServer failures: I/O errors and timeouts, and the configured HTTP status codes.
+ * 
+ * Idempotent GeoServer requests are retried in place, a few times with a short backoff. A Job that still fails with a
+ * transient error is retried as a whole, after a longer backoff, by returning its message to the queue through the
+ * retry queue. Both backoffs are capped and exponential, with jitter, so that clients failing together do not retry
+ * together.
+ */
+@Component
+public class RetryPolicy {
+	@Value("${geoserver.retry.max.attempts:3}")
+	private int maxAttempts;
+	@Value("${geoserver.retry.initial.millis:500}")
+	private long initialDelayMillis;
+	@Value("${geoserver.retry.max.millis:5000}")
+	private long maxDelayMillis;
+	@Value("${geoserver.retry.status.codes:429,502,503,504}")
+	private int[] retryableStatusCodes;
+	@Value("${job.retry.max.attempts:3}")
+	private int maxJobAttempts;
+	@Value("${job.retry.initial.seconds:30}")
+	private long initialJobDelaySeconds;
+	@Value("${job.retry.max.seconds:600}")
+	private long maxJobDelaySeconds;
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(RetryPolicy.class);
+
+	/**
+	 * Executes an idempotent GeoServer request, retrying transient failures
+	 * 
+	 * @param operation
+	 *            Description of the request, for logging
+	 * @param request
+	 *            The request. Must be safe to repeat.
+	 * @return The result of the request
+	 * @throws RestClientException
+	 *             The failure of the last attempt, or the first failure that is not transient. If the thread is
+	 *             interrupted while waiting to retry, the last failure is thrown with the interrupt flag set.
+	 */
+	public <T> T execute(String operation, Supplier<T> request) {
+		for (int attempt = 1;; attempt++) {
+			try {
+				return request.get();
+			} catch (RestClientException exception) {
+				if ((attempt >= maxAttempts) || !isRetryable(exception) || CancellationScope.isCurrentCancelled()) {
+					throw exception;
+				}
+				long delay = getDelayMillis(attempt, initialDelayMillis, maxDelayMillis);
+				LOGGER.warn(String.format("Transient failure of %s on attempt %s; retrying in %s ms: %s", operation, attempt, delay,
+						exception.getMessage()));
+				try {
+					Thread.sleep(delay);
+				} catch (InterruptedException interrupt) {
+					Thread.currentThread().interrupt();
+					throw exception;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Checks if a failure, or any of its causes, is a transient GeoServer failure
+	 */
+	public boolean isRetryable(Throwable failure) {
+		for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+			if (cause instanceof ResourceAccessException) {
+				return true;
+			}
+			if ((cause instanceof HttpStatusCodeException) && isRetryableStatus(((HttpStatusCodeException) cause).getRawStatusCode())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean isRetryableStatus(int statusCode) {
+		if (retryableStatusCodes != null) {
+			for (int retryable : retryableStatusCodes) {
+				if (retryable == statusCode) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return The number of times a Job is attempted before it is dead-lettered
+	 */
+	public int getMaxJobAttempts() {
+		return maxJobAttempts;
+	}
+
+	/**
+	 * @param attempt
+	 *            The number of the attempt that failed, starting at 1
+	 * @return The delay before the Job is attempted again
+	 */
+	public long getJobRetryDelayMillis(int attempt) {
+		return getDelayMillis(attempt, initialJobDelaySeconds * 1000, maxJobDelaySeconds * 1000);
+	}
+
+	/**
+	 * Capped exponential backoff with equal jitter: a random delay between half and all of the exponential delay
+	 */
+	static long getDelayMillis(int attempt, long initialMillis, long maxMillis) {
+		long delay = Math.min(maxMillis, initialMillis << Math.min(attempt - 1, 30));
+		return (delay / 2) + ThreadLocalRandom.current().nextLong((delay / 2) + 1);
+	}
+
+	/**
+	 * Creates a GeoServer exception that keeps the client failure as its cause, so that it can be classified later
+	 */
+	public static GeoServerException geoServerException(String message, Throwable cause) {
+		GeoServerException exception = new GeoServerException(message);
+		exception.initCause(cause);
+		return exception;
+	}
+}
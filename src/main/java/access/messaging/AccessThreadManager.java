@@ -16,30 +16,62 @@
 package access.messaging;
 
 import java.io.IOException;
-import java.util.ArrayList;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PreDestroy;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.Message;
 import org.springframework.amqp.rabbit.annotation.Exchange;
 import org.springframework.amqp.rabbit.annotation.Queue;
 import org.springframework.amqp.rabbit.annotation.QueueBinding;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Component;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rabbitmq.client.Channel;
 
+import access.database.DatabaseAccessor;
+import access.database.JobLedger;
+import access.model.BatchAccessJob;
+import access.util.StageTimings.Stage;
 import messaging.job.JobMessageFactory;
 import messaging.job.WorkerCallback;
+import model.data.DataResource;
+import model.data.DataType;
+import model.data.type.GeoJsonDataType;
+import model.data.type.PostGISDataType;
+import model.data.type.RasterDataType;
+import model.data.type.ShapefileDataType;
 import model.job.Job;
 import model.job.type.AbortJob;
+import model.job.type.AccessJob;
+import model.logger.AuditElement;
 import model.logger.Severity;
 import model.request.PiazzaJobRequest;
+import model.status.StatusUpdate;
 import util.PiazzaLogger;
 
 /**
@@ -56,22 +88,100 @@ public class AccessThreadManager {
 	@Autowired
 	private AccessWorker accessWorker;
 	@Autowired
+	private BatchAccessWorker batchAccessWorker;
+	@Autowired
 	private ObjectMapper objectMapper;
+	@Autowired
+	private JobRegistry jobRegistry;
+	@Autowired
+	private DatabaseAccessor accessor;
+	@Autowired
+	private RetryQueues retryQueues;
+	@Autowired
+	private JobLedger jobLedger;
+	@Autowired
+	private StatusPublisher statusPublisher;
+	@Autowired
+	private PipelineMetrics pipelineMetrics;
+	@Autowired
+	private LaneQueues laneQueues;
+	@Autowired
+	@Qualifier("getAsyncExecutor")
+	private Executor defaultExecutor;
+	@Autowired
+	@Qualifier("renewalExecutor")
+	private ThreadPoolTaskExecutor renewalExecutor;
+	@Autowired
+	@Qualifier("vectorExecutor")
+	private ThreadPoolTaskExecutor vectorExecutor;
+	@Autowired
+	@Qualifier("rasterExecutor")
+	private ThreadPoolTaskExecutor rasterExecutor;
+	@Autowired
+	@Qualifier("groupExecutor")
+	private ThreadPoolTaskExecutor groupExecutor;
 
 	@Value("${SPACE}")
 	private String space;
+	@Value("${lane.rejection.requeue.delay.millis:1000}")
+	private long rejectionRequeueDelayMillis;
+	@Value("${access.job.lane.queues.enabled:true}")
+	private boolean laneQueuesEnabled;
 
-	private Map<String, Future<?>> runningJobs = new HashMap<>();
 	private static final Logger LOGGER = LoggerFactory.getLogger(AccessThreadManager.class);
 
+	/**
+	 * The lanes Access Jobs are run in, each on its own executor
+	 */
+	public enum Lane {
+		DEFAULT, RENEWAL, VECTOR, RASTER, GROUP
+	}
+
+	private final Map<Lane, LongAdder> rejections = new EnumMap<>(Lane.class);
+	private final LongAdder replayedJobs = new LongAdder();
+	private final LongAdder duplicateDeliveries = new LongAdder();
+
+	/**
+	 * The callbacks of the Jobs submitted to the workers, by Job Id, so a drain can return Jobs that have not started
+	 * to the queue
+	 */
+	private final ConcurrentMap<String, WorkerCallback> callbacks = new ConcurrentHashMap<>(1024);
+	/**
+	 * Messages held instead of being run: those received while draining, and those of full lanes waiting to be
+	 * returned to the queue
+	 */
+	private final Set<HeldDelivery> heldDeliveries = ConcurrentHashMap.newKeySet();
+	private final ScheduledExecutorService requeueScheduler;
+	private volatile boolean draining = false;
+
+	public AccessThreadManager() {
+		for (Lane lane : Lane.values()) {
+			rejections.put(lane, new LongAdder());
+		}
+		requeueScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "requeue-delay");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Stops the scheduler of delayed requeues. Messages still held are redelivered by the broker when their channel
+	 * closes.
+	 */
+	@PreDestroy
+	public void stop() {
+		requeueScheduler.shutdownNow();
+	}
+
 	/**
 	 * Processes an Abort Job message coming in through the queue. If this component contains that job, it will cancel
-	 * it.
+	 * it. A Job that has not started is settled here, as its worker never runs.
 	 * 
 	 * @param abortJobRequest
 	 *            The request containing the information about the Job cancellation request
 	 */
-	@RabbitListener(bindings = @QueueBinding(key = "AbortJob-${SPACE}", value = @Queue(exclusive = "true", autoDelete = "true", durable = "true"), exchange = @Exchange(value = JobMessageFactory.PIAZZA_EXCHANGE_NAME, autoDelete = "false", durable = "true")))
+	@RabbitListener(containerFactory = "abortJobContainerFactory", bindings = @QueueBinding(key = "AbortJob-${SPACE}", value = @Queue(exclusive = "true", autoDelete = "true", durable = "true"), exchange = @Exchange(value = JobMessageFactory.PIAZZA_EXCHANGE_NAME, autoDelete = "false", durable = "true")))
 	public void processAbortJob(final String abortJobRequest) {
 		String jobId = null;
 		try {
@@ -84,39 +194,506 @@ public class AccessThreadManager {
 			pzLogger.log(error, Severity.ERROR);
 		}
 
-		if (runningJobs.containsKey(jobId)) {
-			// Cancel the Running Job
-			runningJobs.get(jobId).cancel(true);
-			// Remove it from the list of Running Jobs
-			runningJobs.remove(jobId);
+		if ((jobId != null) && jobRegistry.cancel(jobId)) {
+			settleCancelled(jobId);
+		}
+		// A running Job is removed from the registry when its worker stops.
+	}
+
+	/**
+	 * Processes an Access Job message coming through the Queue.
+	 * 
+	 * Each Job is classified once, here, into the lane for its expected cost, so that cheap Lease renewals do not wait
+	 * behind new Deployments, and a burst of one data type can not starve the others. The Job is then published to the
+	 * queue of its lane, and this message acknowledged once the broker confirms the copy; a backlog in one lane waits in
+	 * its own queue, and does not fill the prefetch of the others. With access.job.lane.queues.enabled off, the Job is
+	 * run on the executor of its lane directly.
+	 * 
+	 * A redelivered Job that the ledger records as completed is not run again; its recorded status is published again
+	 * and the message acknowledged. While this instance is draining, messages are held and not run.
+	 * 
+	 * @param message
+	 *            The Access Job request message
+	 * @param channel
+	 *            The channel the message was delivered on, used for acknowledgement
+	 */
+	@RabbitListener(containerFactory = "accessJobContainerFactory", bindings = @QueueBinding(key = "AccessJob-${SPACE}", value = @Queue(value = "AccessJob-${SPACE}", autoDelete = "false", durable = "true"), exchange = @Exchange(value = JobMessageFactory.PIAZZA_EXCHANGE_NAME, autoDelete = "false", durable = "true")))
+	public void processAccessJob(Message message, Channel channel) {
+		long deliveryTag = message.getMessageProperties().getDeliveryTag();
+		if (holdWhileDraining(channel, deliveryTag)) {
+			return;
+		}
+		Job job = readJob(message, channel);
+		if ((job == null) || replayCompleted(job.getJobId(), channel, deliveryTag)) {
+			return;
+		}
+
+		long classifyStartNanos = System.nanoTime();
+		Classification classification = classify(job);
+		pipelineMetrics.record(Stage.CLASSIFY, classification.dataType, System.nanoTime() - classifyStartNanos);
+		if (!laneQueuesEnabled) {
+			runInLane(classification.lane, classification.dataType, job, message, channel);
+			return;
+		}
+		try {
+			laneQueues.forward(message, classification.lane, classification.dataType);
+			acknowledge(channel, deliveryTag, job.getJobId());
+		} catch (AmqpException exception) {
+			String error = String.format("Could not send Job %s to the queue of lane %s: %s", job.getJobId(), classification.lane,
+					exception.getMessage());
+			LOGGER.error(error, exception);
+			pzLogger.log(error, Severity.ERROR);
+			// Not confirmed; the message is returned to this queue, and classified again
+			requeueLater(channel, deliveryTag);
+		}
+	}
+
+	/**
+	 * Processes an Access Job from the queue of the default lane
+	 */
+	@RabbitListener(containerFactory = "defaultLaneContainerFactory", bindings = @QueueBinding(key = "AccessJob-Default-${SPACE}", value = @Queue(value = "AccessJob-Default-${SPACE}", autoDelete = "false", durable = "true"), exchange = @Exchange(value = JobMessageFactory.PIAZZA_EXCHANGE_NAME, autoDelete = "false", durable = "true")))
+	public void processDefaultLaneJob(Message message, Channel channel) {
+		processLaneJob(Lane.DEFAULT, message, channel);
+	}
+
+	/**
+	 * Processes an Access Job from the queue of the renewal lane
+	 */
+	@RabbitListener(containerFactory = "renewalLaneContainerFactory", bindings = @QueueBinding(key = "AccessJob-Renewal-${SPACE}", value = @Queue(value = "AccessJob-Renewal-${SPACE}", autoDelete = "false", durable = "true"), exchange = @Exchange(value = JobMessageFactory.PIAZZA_EXCHANGE_NAME, autoDelete = "false", durable = "true")))
+	public void processRenewalLaneJob(Message message, Channel channel) {
+		processLaneJob(Lane.RENEWAL, message, channel);
+	}
+
+	/**
+	 * Processes an Access Job from the queue of the vector lane
+	 */
+	@RabbitListener(containerFactory = "vectorLaneContainerFactory", bindings = @QueueBinding(key = "AccessJob-Vector-${SPACE}", value = @Queue(value = "AccessJob-Vector-${SPACE}", autoDelete = "false", durable = "true"), exchange = @Exchange(value = JobMessageFactory.PIAZZA_EXCHANGE_NAME, autoDelete = "false", durable = "true")))
+	public void processVectorLaneJob(Message message, Channel channel) {
+		processLaneJob(Lane.VECTOR, message, channel);
+	}
+
+	/**
+	 * Processes an Access Job from the queue of the raster lane
+	 */
+	@RabbitListener(containerFactory = "rasterLaneContainerFactory", bindings = @QueueBinding(key = "AccessJob-Raster-${SPACE}", value = @Queue(value = "AccessJob-Raster-${SPACE}", autoDelete = "false", durable = "true"), exchange = @Exchange(value = JobMessageFactory.PIAZZA_EXCHANGE_NAME, autoDelete = "false", durable = "true")))
+	public void processRasterLaneJob(Message message, Channel channel) {
+		processLaneJob(Lane.RASTER, message, channel);
+	}
+
+	/**
+	 * Processes an Access Job from the queue of the group lane
+	 */
+	@RabbitListener(containerFactory = "groupLaneContainerFactory", bindings = @QueueBinding(key = "AccessJob-Group-${SPACE}", value = @Queue(value = "AccessJob-Group-${SPACE}", autoDelete = "false", durable = "true"), exchange = @Exchange(value = JobMessageFactory.PIAZZA_EXCHANGE_NAME, autoDelete = "false", durable = "true")))
+	public void processGroupLaneJob(Message message, Channel channel) {
+		processLaneJob(Lane.GROUP, message, channel);
+	}
+
+	/**
+	 * Runs a Job delivered from the queue of its lane. The Job is not classified again; the data type it was classified
+	 * with travels with it. The message is acknowledged when the Job completes, so Jobs in progress are redelivered if
+	 * this instance stops.
+	 */
+	private void processLaneJob(Lane lane, Message message, Channel channel) {
+		long deliveryTag = message.getMessageProperties().getDeliveryTag();
+		if (holdWhileDraining(channel, deliveryTag)) {
+			return;
+		}
+		Job job = readJob(message, channel);
+		if ((job == null) || replayCompleted(job.getJobId(), channel, deliveryTag)) {
+			return;
 		}
+		runInLane(lane, LaneQueues.getDataType(message), job, message, channel);
 	}
 
 	/**
-	 * Processes an Access Job message coming through the Queue
+	 * Reads the Job of an Access Job message. A message that can not be read is rejected, and not redelivered.
 	 * 
-	 * @param accessJobRequest
-	 *            The Access Job request
+	 * @return The Job, or null if the message was unreadable
 	 */
-	@RabbitListener(bindings = @QueueBinding(key = "AccessJob-${SPACE}", value = @Queue(value = "AccessJob-${SPACE}", autoDelete = "false", durable = "true"), exchange = @Exchange(value = JobMessageFactory.PIAZZA_EXCHANGE_NAME, autoDelete = "false", durable = "true")))
-	public void processAccessJob(String accessJobRequest) {
+	private Job readJob(Message message, Channel channel) {
 		try {
-			// Callback that will be invoked when a Worker completes. This will
-			// remove the Job Id from the running Jobs list.
-			WorkerCallback callback = (String jobId) -> runningJobs.remove(jobId);
 			// Get the Job Model
-			Job job = objectMapper.readValue(accessJobRequest, Job.class);
-			// Process the work
-			Future<?> workerFuture = accessWorker.run(job, callback);
-			// Keep track of this running Job's ID
-			runningJobs.put(job.getJobId(), workerFuture);
+			return objectMapper.readValue(new String(message.getBody(), StandardCharsets.UTF_8), Job.class);
 		} catch (IOException exception) {
 			String error = String.format("Error Reading Access Job Message from Queue %s", exception.getMessage());
 			LOGGER.error(error, exception);
 			pzLogger.log(error, Severity.ERROR);
+			// The message can never be processed; do not redeliver it
+			reject(channel, message.getMessageProperties().getDeliveryTag(), false);
+			return null;
+		}
+	}
+
+	/**
+	 * Registers a Job and submits it to the executor of its lane. If the executor is full, the message is held for a
+	 * moment and then returned to its queue; with lane queues, only the Jobs of the same lane are behind it.
+	 */
+	private void runInLane(Lane lane, String dataType, Job job, Message message, Channel channel) {
+		long deliveryTag = message.getMessageProperties().getDeliveryTag();
+		// Track the Job before it is submitted, so that neither a fast completion nor an early abort is lost
+		TrackedJob trackedJob = track(job.getJobId(), message, channel);
+		if (trackedJob == null) {
+			return;
+		}
+		if (dataType != null) {
+			trackedJob.setDataType(dataType);
+		}
+		if (jobRegistry.isWithdrawn(job.getJobId())) {
+			settleCancelled(job.getJobId());
+			return;
+		}
+		try {
+			// Process the work, in the lane for its expected cost
+			Future<?> workerFuture = submit(lane, job, callbacks.get(job.getJobId()));
+			jobRegistry.attach(job.getJobId(), workerFuture);
+		} catch (TaskRejectedException exception) {
+			rejections.get(lane).increment();
+			LOGGER.warn(String.format("Worker capacity of lane %s reached; returning Job %s to the queue.", lane, job.getJobId()),
+					exception);
+			returnToQueue(trackedJob, channel, deliveryTag);
+		} catch (InterruptedException exception) {
+			LOGGER.info(String.format("Interrupted submitting Job %s; returning it to the queue.", job.getJobId()), exception);
+			returnToQueue(trackedJob, channel, deliveryTag);
+		}
+	}
+
+	/**
+	 * Registers a received Job, and the callback that settles its message. A Job this instance is already tracking, whose
+	 * message was redelivered while it runs, is not tracked again, as that would replace the entry and callback of the
+	 * attempt in progress. The redelivered message is held, and returned to the queue after the rejection delay; by then
+	 * the Job has usually completed, and its recorded result is replayed.
+	 * 
+	 * @return The tracked Job, or null if the Job was already tracked
+	 */
+	private TrackedJob track(String jobId, Message message, Channel channel) {
+		long deliveryTag = message.getMessageProperties().getDeliveryTag();
+		TrackedJob trackedJob = jobRegistry.register(jobId, RetryQueues.getAttempt(message));
+		if (trackedJob == null) {
+			duplicateDeliveries.increment();
+			LOGGER.warn("Job {} is already in progress on this instance; returning its redelivered message to the queue.", jobId);
+			requeueLater(channel, deliveryTag);
+			return null;
+		}
+		callbacks.put(jobId, createCallback(message, channel, trackedJob));
+		return trackedJob;
+	}
+
+	/**
+	 * Processes a Batch Access Job message coming through its Queue. The batch is acknowledged in the same way as a
+	 * single Access Job, and runs on the group executor.
+	 * 
+	 * @param message
+	 *            The Batch Access Job message, whose body is a {@link BatchAccessJob}
+	 * @param channel
+	 *            The channel the message was delivered on, used for acknowledgement
+	 */
+	@RabbitListener(containerFactory = "batchJobContainerFactory", bindings = @QueueBinding(key = "AccessBatchJob-${SPACE}", value = @Queue(value = "AccessBatchJob-${SPACE}", autoDelete = "false", durable = "true"), exchange = @Exchange(value = JobMessageFactory.PIAZZA_EXCHANGE_NAME, autoDelete = "false", durable = "true")))
+	public void processBatchAccessJob(Message message, Channel channel) {
+		long deliveryTag = message.getMessageProperties().getDeliveryTag();
+		if (holdWhileDraining(channel, deliveryTag)) {
+			return;
+		}
+		BatchAccessJob batchJob;
+		try {
+			batchJob = objectMapper.readValue(new String(message.getBody(), StandardCharsets.UTF_8), BatchAccessJob.class);
+		} catch (IOException exception) {
+			String error = String.format("Error Reading Batch Access Job Message from Queue %s", exception.getMessage());
+			LOGGER.error(error, exception);
+			pzLogger.log(error, Severity.ERROR);
+			reject(channel, deliveryTag, false);
+			return;
+		}
+
+		if (replayCompleted(batchJob.getJobId(), channel, deliveryTag)) {
+			return;
+		}
+
+		TrackedJob trackedJob = track(batchJob.getJobId(), message, channel);
+		if (trackedJob == null) {
+			return;
+		}
+		if (jobRegistry.isWithdrawn(batchJob.getJobId())) {
+			settleCancelled(batchJob.getJobId());
+			return;
+		}
+		try {
+			Future<?> workerFuture = batchAccessWorker.run(batchJob, callbacks.get(batchJob.getJobId()));
+			jobRegistry.attach(batchJob.getJobId(), workerFuture);
+		} catch (TaskRejectedException exception) {
+			rejections.get(Lane.GROUP).increment();
+			LOGGER.warn(String.format("Worker capacity of lane %s reached; returning Batch Job %s to the queue.", Lane.GROUP,
+					batchJob.getJobId()), exception);
+			returnToQueue(trackedJob, channel, deliveryTag);
 		} catch (InterruptedException exception) {
-			LOGGER.info("Job Successfully Cancelled.",exception);
+			LOGGER.info(String.format("Interrupted submitting Batch Job %s; returning it to the queue.", batchJob.getJobId()),
+					exception);
+			returnToQueue(trackedJob, channel, deliveryTag);
+		}
+	}
+
+	/**
+	 * Replays the recorded status of a Job that has already completed, and acknowledges its redelivered message
+	 * 
+	 * @return True if the Job had completed, and must not be run again
+	 */
+	private boolean replayCompleted(String jobId, Channel channel, long deliveryTag) {
+		StatusUpdate completed = jobLedger.getCompletedStatus(jobId);
+		if (completed == null) {
+			return false;
+		}
+		LOGGER.info("Job {} has already completed with status {}; replaying its result.", jobId, completed.getStatus());
+		replayedJobs.increment();
+		statusPublisher.publish(completed);
+		acknowledge(channel, deliveryTag, jobId);
+		return true;
+	}
+
+	/**
+	 * Settles a Job that was aborted before it started: publishes its cancellation, and acknowledges its message. The
+	 * Job is settled once, whether its abort arrived before or after the Job.
+	 */
+	private void settleCancelled(String jobId) {
+		WorkerCallback callback = callbacks.remove(jobId);
+		if (callback == null) {
+			return;
+		}
+		pzLogger.log(String.format("Job %s was cancelled before it started.", jobId), Severity.INFORMATIONAL,
+				new AuditElement(jobId, "accessJobTerminated", ""));
+		StatusUpdate statusUpdate = new StatusUpdate(StatusUpdate.STATUS_CANCELLED);
+		statusUpdate.setJobId(jobId);
+		jobLedger.recordCompleted(statusUpdate);
+		statusPublisher.publish(statusUpdate);
+		callback.onComplete(jobId);
+	}
+
+	/**
+	 * Holds a message received while draining. It is neither run nor rejected now, so that it keeps its place in the
+	 * prefetch window and the broker sends no more; rejecting it at once would have it redelivered straight back.
+	 * 
+	 * @return True if the instance is draining, and the message was held
+	 */
+	private boolean holdWhileDraining(Channel channel, long deliveryTag) {
+		if (!draining) {
+			return false;
+		}
+		heldDeliveries.add(new HeldDelivery(channel, deliveryTag));
+		return true;
+	}
+
+	/**
+	 * Deregisters a Job that could not be submitted, and returns its message to the queue after the rejection delay.
+	 * Held meanwhile, the message keeps its place in the prefetch window, so a full lane is not sent the same message
+	 * straight back. A Job that an abort settled meanwhile is left alone.
+	 */
+	private void returnToQueue(TrackedJob trackedJob, Channel channel, long deliveryTag) {
+		if (callbacks.remove(trackedJob.getJobId()) == null) {
+			return;
+		}
+		jobRegistry.complete(trackedJob);
+		requeueLater(channel, deliveryTag);
+	}
+
+	/**
+	 * Holds a message, and returns it to the queue after the rejection delay
+	 */
+	private void requeueLater(Channel channel, long deliveryTag) {
+		HeldDelivery held = new HeldDelivery(channel, deliveryTag);
+		heldDeliveries.add(held);
+		requeueScheduler.schedule(held::release, rejectionRequeueDelayMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Creates the callback that is invoked when a Worker completes. This will remove the Job from the registry, retry or
+	 * dead-letter it if it failed transiently, and acknowledge its message. The message is settled only once, whether by
+	 * the Worker or by a drain that withdrew the Job.
+	 */
+	private WorkerCallback createCallback(Message message, Channel channel, TrackedJob trackedJob) {
+		long deliveryTag = message.getMessageProperties().getDeliveryTag();
+		AtomicBoolean settled = new AtomicBoolean(false);
+		return (String jobId) -> {
+			if (!settled.compareAndSet(false, true)) {
+				return;
+			}
+			callbacks.remove(jobId);
+			jobRegistry.complete(trackedJob);
+			if (dispose(message, trackedJob)) {
+				acknowledge(channel, deliveryTag, jobId);
+			} else {
+				reject(channel, deliveryTag, true);
+			}
+		};
+	}
+
+	/**
+	 * Classifies a Job into the lane for its expected work. Renewals of a Resource that is already deployed are cheap;
+	 * new Deployments are split by data type, as a raster upload costs far more than publishing a vector table; Jobs
+	 * adding to a Deployment Group also rewrite the layer group. Jobs that can not be classified, which fail quickly,
+	 * run on the default executor. A misclassified Job still completes correctly, as the worker checks for the
+	 * Deployment again; it only runs in another lane.
+	 */
+	private Classification classify(Job job) {
+		if (!(job.getJobType() instanceof AccessJob)) {
+			return new Classification(Lane.DEFAULT, null);
+		}
+		AccessJob accessJob = (AccessJob) job.getJobType();
+		if (!AccessJob.ACCESS_TYPE_GEOSERVER.equals(accessJob.getDeploymentType()) || (accessJob.getDataId() == null)) {
+			return new Classification(Lane.DEFAULT, null);
+		}
+		if ((accessJob.getDeploymentGroupId() != null) && !accessJob.getDeploymentGroupId().isEmpty()) {
+			return new Classification(Lane.GROUP, null);
+		}
+		try {
+			if (accessor.isDeployed(accessJob.getDataId())) {
+				return new Classification(Lane.RENEWAL, null);
+			}
+			DataResource dataResource = accessor.getDataFromPrimary(accessJob.getDataId());
+			if ((dataResource == null) || (dataResource.getDataType() == null)) {
+				return new Classification(Lane.DEFAULT, null);
+			}
+			DataType dataType = dataResource.getDataType();
+			String dataTypeName = dataType.getClass().getSimpleName();
+			if (dataType instanceof RasterDataType) {
+				return new Classification(Lane.RASTER, dataTypeName);
+			}
+			if ((dataType instanceof ShapefileDataType) || (dataType instanceof PostGISDataType) || (dataType instanceof GeoJsonDataType)) {
+				return new Classification(Lane.VECTOR, dataTypeName);
+			}
+			return new Classification(Lane.DEFAULT, dataTypeName);
+		} catch (Exception exception) {
+			LOGGER.warn(String.format("Could not classify Job %s; running it on the default lane.", job.getJobId()), exception);
+			return new Classification(Lane.DEFAULT, null);
+		}
+	}
+
+	private Future<?> submit(Lane lane, Job job, WorkerCallback callback) throws InterruptedException {
+		switch (lane) {
+		case RENEWAL:
+			return accessWorker.runRenewal(job, callback);
+		case VECTOR:
+			return accessWorker.runVector(job, callback);
+		case RASTER:
+			return accessWorker.runRaster(job, callback);
+		case GROUP:
+			return accessWorker.runGroup(job, callback);
+		default:
+			return accessWorker.run(job, callback);
+		}
+	}
+
+	/**
+	 * Sends the message of a Job that failed transiently on to the retry or dead-letter queue
+	 * 
+	 * @return False if the message is to be returned to the queue, including when the broker did not confirm its copy
+	 */
+	private boolean dispose(Message message, TrackedJob trackedJob) {
+		try {
+			switch (trackedJob.getDisposition()) {
+			case RETRY:
+				retryQueues.retry(message, trackedJob.getAttempt(), trackedJob.getFailureCause());
+				break;
+			case DEAD_LETTER:
+				retryQueues.deadLetter(message, trackedJob.getAttempt(), trackedJob.getFailureCause());
+				break;
+			case REQUEUE:
+				// Returned to the queue as is, for this or another instance to run
+				return false;
+			default:
+				break;
+			}
+			return true;
+		} catch (AmqpException exception) {
+			String error = String.format("Could not send Job %s to the %s queue: %s", trackedJob.getJobId(),
+					trackedJob.getDisposition(), exception.getMessage());
+			LOGGER.error(error, exception);
+			pzLogger.log(error, Severity.ERROR);
+			// Not confirmed; the message is returned to the queue rather than lost
+			return false;
+		}
+	}
+
+	private void acknowledge(Channel channel, long deliveryTag, String jobId) {
+		try {
+			channel.basicAck(deliveryTag, false);
+		} catch (IOException exception) {
+			// The channel was closed; the broker will redeliver the message.
+			String error = String.format("Could not acknowledge the message for Job %s: %s", jobId, exception.getMessage());
+			LOGGER.error(error, exception);
+			pzLogger.log(error, Severity.WARNING);
+		}
+	}
+
+	private void reject(Channel channel, long deliveryTag, boolean requeue) {
+		try {
+			channel.basicNack(deliveryTag, false, requeue);
+		} catch (IOException exception) {
+			LOGGER.error(String.format("Could not reject Access Job message: %s", exception.getMessage()), exception);
+		}
+	}
+
+	/**
+	 * Stops taking on new Jobs. Messages received from now on are held until {@link #releaseHeldDeliveries()}; Jobs
+	 * already received are unaffected.
+	 */
+	public void startDraining() {
+		draining = true;
+	}
+
+	/**
+	 * @return True if this instance is draining, and takes on no new Jobs
+	 */
+	public boolean isDraining() {
+		return draining;
+	}
+
+	/**
+	 * Returns every Job that is waiting for a worker thread to the queue. A Job that starts meanwhile is left to run.
+	 * 
+	 * @return The number of Jobs returned to the queue
+	 */
+	public int withdrawQueuedJobs() {
+		int withdrawn = 0;
+		for (String jobId : jobRegistry.getJobIds()) {
+			if (!jobRegistry.withdraw(jobId)) {
+				continue;
+			}
+			WorkerCallback callback = callbacks.remove(jobId);
+			if (callback != null) {
+				// Rejects the message back to the queue, as the Job's disposition is now to be requeued
+				callback.onComplete(jobId);
+				withdrawn++;
+			}
 		}
+		return withdrawn;
+	}
+
+	/**
+	 * Gives up every Job still in progress, aborting its I/O. Each is returned to the queue as its worker stops.
+	 * 
+	 * @return The number of Jobs given up
+	 */
+	public int abandonRunningJobs() {
+		int abandoned = 0;
+		for (String jobId : jobRegistry.getJobIds()) {
+			if (jobRegistry.abandon(jobId)) {
+				abandoned++;
+			}
+		}
+		return abandoned;
+	}
+
+	/**
+	 * Rejects every held message back to the queue, including those still waiting out the rejection delay
+	 * 
+	 * @return The number of messages returned to the queue
+	 */
+	public int releaseHeldDeliveries() {
+		int released = 0;
+		for (HeldDelivery held : heldDeliveries) {
+			if (held.release()) {
+				released++;
+			}
+		}
+		return released;
 	}
 
 	/**
@@ -125,7 +702,103 @@ public class AccessThreadManager {
 	 * @return The list of Job Ids
 	 */
 	public List<String> getRunningJobIds() {
-		return new ArrayList<>(runningJobs.keySet());
+		return jobRegistry.getJobIds();
+	}
+
+	/**
+	 * Returns the number of Jobs in each state in this instance
+	 * 
+	 * @return Job counts by state
+	 */
+	public Map<TrackedJob.State, Integer> getJobStateCounts() {
+		return jobRegistry.getStateCounts();
+	}
+
+	/**
+	 * Returns the number of redelivered Jobs that had already completed, and whose recorded status was replayed
+	 * 
+	 * @return The number of replayed Jobs
+	 */
+	public long getReplayedJobCount() {
+		return replayedJobs.sum();
+	}
+
+	/**
+	 * Returns the number of messages of Jobs already in progress on this instance, which were returned to the queue
+	 * rather than run twice
+	 * 
+	 * @return The number of duplicate deliveries
+	 */
+	public long getDuplicateDeliveryCount() {
+		return duplicateDeliveries.sum();
 	}
 
+	/**
+	 * Returns the thread and queue usage of the executor of each lane, and the number of Jobs it has returned to the
+	 * queue for lack of capacity
+	 * 
+	 * @return Statistics by lane
+	 */
+	public Map<Lane, Map<String, Object>> getLaneStats() {
+		Map<Lane, Map<String, Object>> stats = new EnumMap<>(Lane.class);
+		stats.put(Lane.DEFAULT, getExecutorStats(
+				defaultExecutor instanceof ThreadPoolTaskExecutor ? (ThreadPoolTaskExecutor) defaultExecutor : null, Lane.DEFAULT));
+		stats.put(Lane.RENEWAL, getExecutorStats(renewalExecutor, Lane.RENEWAL));
+		stats.put(Lane.VECTOR, getExecutorStats(vectorExecutor, Lane.VECTOR));
+		stats.put(Lane.RASTER, getExecutorStats(rasterExecutor, Lane.RASTER));
+		stats.put(Lane.GROUP, getExecutorStats(groupExecutor, Lane.GROUP));
+		return stats;
+	}
+
+	private Map<String, Object> getExecutorStats(ThreadPoolTaskExecutor executor, Lane lane) {
+		Map<String, Object> stats = new HashMap<>();
+		stats.put("rejected", rejections.get(lane).sum());
+		ThreadPoolExecutor threadPool = executor != null ? executor.getThreadPoolExecutor() : null;
+		if (threadPool != null) {
+			stats.put("activeThreads", threadPool.getActiveCount());
+			stats.put("poolSize", threadPool.getPoolSize());
+			stats.put("maxPoolSize", threadPool.getMaximumPoolSize());
+			stats.put("queued", threadPool.getQueue().size());
+			stats.put("queueRemaining", threadPool.getQueue().remainingCapacity());
+			stats.put("completed", threadPool.getCompletedTaskCount());
+		}
+		return stats;
+	}
+
+	/**
+	 * The lane a Job was classified into, and the data type it was classified with, if it was found
+	 */
+	private static final class Classification {
+		private final Lane lane;
+		private final String dataType;
+
+		private Classification(Lane lane, String dataType) {
+			this.lane = lane;
+			this.dataType = dataType;
+		}
+	}
+
+	/**
+	 * A message held instead of being run, rejected back to the queue once when released
+	 */
+	private final class HeldDelivery {
+		private final Channel channel;
+		private final long deliveryTag;
+
+		private HeldDelivery(Channel channel, long deliveryTag) {
+			this.channel = channel;
+			this.deliveryTag = deliveryTag;
+		}
+
+		/**
+		 * @return True if the message was still held, and is now returned to the queue
+		 */
+		private boolean release() {
+			if (!heldDeliveries.remove(this)) {
+				return false;
+			}
+			reject(channel, deliveryTag, true);
+			return true;
+		}
+	}
 }
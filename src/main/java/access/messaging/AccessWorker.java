@@ -18,28 +18,31 @@ package access.messaging;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.amqp.core.Queue;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.scheduling.annotation.AsyncResult;
 import org.springframework.stereotype.Component;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-
 import access.database.DatabaseAccessor;
+import access.database.JobLedger;
+import access.database.LeasedDeployment;
+import access.database.ReadReplicaRoutingDataSource;
 import access.deploy.Deployer;
+import access.deploy.DeploymentCoordinator;
 import access.deploy.GroupDeployer;
 import access.deploy.Leaser;
+import access.deploy.RetryPolicy;
+import access.util.CancellationScope;
+import access.util.StageTimings;
+import access.util.StageTimings.Stage;
 import exception.DataInspectException;
 import exception.GeoServerException;
 import exception.InvalidInputException;
-import messaging.job.JobMessageFactory;
 import messaging.job.WorkerCallback;
 import model.data.DataResource;
 import model.data.deployment.Deployment;
@@ -70,17 +73,23 @@ public class AccessWorker {
 	@Autowired
 	private GroupDeployer groupDeployer;
 	@Autowired
+	private DeploymentCoordinator deploymentCoordinator;
+	@Autowired
 	private DatabaseAccessor accessor;
 	@Autowired
 	private Leaser leaser;
 	@Autowired
-	private ObjectMapper mapper;
-	@Autowired
 	private PiazzaLogger pzLogger;
 	@Autowired
-	private Queue updateJobsQueue;
+	private StatusPublisher statusPublisher;
+	@Autowired
+	private JobLedger jobLedger;
+	@Autowired
+	private JobRegistry jobRegistry;
+	@Autowired
+	private RetryPolicy retryPolicy;
 	@Autowired
-	private RabbitTemplate rabbitTemplate;
+	private PipelineMetrics pipelineMetrics;
 
 	@Value("${SPACE}")
 	private String space;
@@ -92,7 +101,47 @@ public class AccessWorker {
 	 */
 	@Async
 	public Future<AccessJob> run(Job job, WorkerCallback callback) throws InterruptedException {
+		return process(job, callback);
+	}
+
+	/**
+	 * Processes an Access Job on the renewal lane. Jobs for Resources that are already deployed only renew a Lease, and
+	 * so are run on their own executor rather than queueing behind new Deployments.
+	 */
+	@Async("renewalExecutor")
+	public Future<AccessJob> runRenewal(Job job, WorkerCallback callback) throws InterruptedException {
+		return process(job, callback);
+	}
+
+	/**
+	 * Processes an Access Job that deploys a vector Resource, on the vector executor
+	 */
+	@Async("vectorExecutor")
+	public Future<AccessJob> runVector(Job job, WorkerCallback callback) throws InterruptedException {
+		return process(job, callback);
+	}
+
+	/**
+	 * Processes an Access Job that deploys a raster Resource, on the raster executor
+	 */
+	@Async("rasterExecutor")
+	public Future<AccessJob> runRaster(Job job, WorkerCallback callback) throws InterruptedException {
+		return process(job, callback);
+	}
+
+	/**
+	 * Processes an Access Job that adds its Deployment to a Deployment Group, on the group executor
+	 */
+	@Async("groupExecutor")
+	public Future<AccessJob> runGroup(Job job, WorkerCallback callback) throws InterruptedException {
+		return process(job, callback);
+	}
+
+	private Future<AccessJob> process(Job job, WorkerCallback callback) throws InterruptedException {
 		AccessJob accessJob = null;
+		StageTimings timings = new StageTimings();
+		StageTimings.bind(timings);
+		long startNanos = System.nanoTime();
 		try {
 			// Parse the Job information
 			accessJob = (AccessJob) job.getJobType();
@@ -113,49 +162,51 @@ public class AccessWorker {
 							accessJob.getDeploymentType(), job.getJobId(), job.getCreatedBy()),
 					Severity.INFORMATIONAL, new AuditElement(job.getJobId(), "requestAccessData", accessJob.getDataId()));
 
-			if (Thread.interrupted()) {
+			if (Thread.interrupted() || !jobRegistry.start(job.getJobId())) {
 				throw new InterruptedException();
 			}
+			TrackedJob trackedJob = jobRegistry.get(job.getJobId());
+			if (trackedJob != null) {
+				timings.add(Stage.QUEUE_WAIT, TimeUnit.MILLISECONDS.toNanos(trackedJob.getStartedOn() - trackedJob.getQueuedOn()));
+			}
+			// Cancelling the Job from here on also aborts its GeoServer requests and S3 reads
+			CancellationScope.bind(jobRegistry.getCancellationScope(job.getJobId()));
 
 			processGeoServerType(job, accessJob, job.getJobId());
 
 		} catch (InterruptedException exception) {
-			String error = String.format("Thread interrupt received for Job %s", job.getJobId());
-			LOGGER.error(error, exception);
-			pzLogger.log(error, Severity.INFORMATIONAL, new AuditElement(job.getJobId(), "accessJobTerminated", ""));
-			StatusUpdate statusUpdate = new StatusUpdate(StatusUpdate.STATUS_CANCELLED);
-			statusUpdate.setJobId(job.getJobId());
-			try {
-				rabbitTemplate.convertAndSend(JobMessageFactory.PIAZZA_EXCHANGE_NAME, updateJobsQueue.getName(), mapper.writeValueAsString(statusUpdate));
-			} catch (JsonProcessingException jsonException) {
-				error = String.format(
-						"Error sending Cancelled Status from Job %s: %s. The Job was cancelled, but its status will not be updated in the Job Manager.",
-						job.getJobId(), jsonException.getMessage());
-				LOGGER.error(error, jsonException);
-				pzLogger.log(error, Severity.ERROR, new AuditElement(job.getJobId(), "failedToSendCancelledStatus", ""));
-			}
+			reportCancelled(job, exception);
 			throw exception;
 		} catch (Exception exception) {
+			if (CancellationScope.isCurrentCancelled()) {
+				// The failure is the aborted I/O of a cancelled Job
+				reportCancelled(job, exception);
+				throw new InterruptedException(String.format("Job %s was cancelled.", job.getJobId()));
+			}
 			String error = String.format("Error Accessing Data under Job %s with Error: %s", job.getJobId(), exception.getMessage());
 			LOGGER.error(error, exception, new AuditElement(job.getJobId(), "failedAccessData", ""));
 			pzLogger.log(error, Severity.ERROR);
 
-			try {
+			if (retryPolicy.isRetryable(exception)
+					&& jobRegistry.failTransiently(job.getJobId(), exception.getMessage(), retryPolicy.getMaxJobAttempts())) {
+				// The Job is attempted again after a delay, and stays Running until then
+				pzLogger.log(String.format("Job %s failed transiently and will be retried.", job.getJobId()), Severity.WARNING,
+						new AuditElement(job.getJobId(), "retryAccessData", accessJob != null ? accessJob.getDataId() : ""));
+			} else {
 				// Send the failure message to the Job Manager.
 				StatusUpdate statusUpdate = new StatusUpdate(StatusUpdate.STATUS_ERROR);
 				statusUpdate.setResult(new ErrorResult("Could not Deploy Data", exception.getMessage()));
 				statusUpdate.setJobId(job.getJobId());
-				rabbitTemplate.convertAndSend(JobMessageFactory.PIAZZA_EXCHANGE_NAME, updateJobsQueue.getName(), mapper.writeValueAsString(statusUpdate));
-			} catch (JsonProcessingException jsonException) {
-				// If the Message fails to send, at least log
-				// something in the console.
-				String errorJson = String.format(
-						"Could not update Job Manager with failure event in Ingest Worker. Error creating message: %s",
-						jsonException.getMessage());
-				LOGGER.error(errorJson, jsonException);
-				pzLogger.log(errorJson, Severity.ERROR, new AuditElement(job.getJobId(), "failedAccessData", errorJson));
+				publishCompleted(statusUpdate);
 			}
 		} finally {
+			// Reads of the next Job on this thread no longer need to see this Job's writes
+			ReadReplicaRoutingDataSource.clearPrimaryPin();
+			CancellationScope.unbind();
+			StageTimings.unbind();
+			timings.add(Stage.TOTAL, System.nanoTime() - startNanos);
+			TrackedJob trackedJob = jobRegistry.get(job.getJobId());
+			pipelineMetrics.record(timings, trackedJob != null ? trackedJob.getDataType() : null);
 			if (callback != null) {
 				callback.onComplete(job.getJobId());
 			}
@@ -164,36 +215,65 @@ public class AccessWorker {
 		return new AsyncResult<>(accessJob);
 	}
 
+	private void reportCancelled(Job job, Exception exception) {
+		if (jobRegistry.isWithdrawn(job.getJobId())) {
+			// Aborted before it started, or returned to the queue by a drain; the thread manager settles the Job
+			LOGGER.info("Job {} was withdrawn before it could run.", job.getJobId());
+			return;
+		}
+		String error = String.format("Thread interrupt received for Job %s", job.getJobId());
+		LOGGER.error(error, exception);
+		pzLogger.log(error, Severity.INFORMATIONAL, new AuditElement(job.getJobId(), "accessJobTerminated", ""));
+		StatusUpdate statusUpdate = new StatusUpdate(StatusUpdate.STATUS_CANCELLED);
+		statusUpdate.setJobId(job.getJobId());
+		publishCompleted(statusUpdate);
+	}
+
+	/**
+	 * Publishes the final status of a Job, recording it in the ledger first so that a redelivery of the Job replays it
+	 */
+	private void publishCompleted(StatusUpdate statusUpdate) {
+		jobLedger.recordCompleted(statusUpdate);
+		statusPublisher.publish(statusUpdate);
+	}
+
 	private void processGeoServerType(Job job, AccessJob accessJob, String key)
-			throws JsonProcessingException, InvalidInputException, InterruptedException, GeoServerException, DataInspectException {
+			throws InvalidInputException, InterruptedException, GeoServerException, DataInspectException {
 		// Update Status that this Job is being processed
 		StatusUpdate statusUpdate = new StatusUpdate(StatusUpdate.STATUS_RUNNING);
 		statusUpdate.setJobId(key);
-		rabbitTemplate.convertAndSend(JobMessageFactory.PIAZZA_EXCHANGE_NAME, updateJobsQueue.getName(), mapper.writeValueAsString(statusUpdate));
+		statusPublisher.publish(statusUpdate);
 
 		// Depending on how the user wants to Access the Resource
 		if (accessJob.getDeploymentType().equals(AccessJob.ACCESS_TYPE_GEOSERVER)) {
 			Deployment deployment;
 
-			// Check if a Deployment already exists
-			boolean exists = deployer.doesDeploymentExist(accessJob.getDataId());
-			if (exists) {
+			// Check if a Deployment already exists, reading its Lease along with it
+			LeasedDeployment existing;
+			try (StageTimings.Span span = StageTimings.start(Stage.DATABASE_LOOKUP)) {
+				existing = accessor.getLeasedDeploymentByDataId(accessJob.getDataId());
+			}
+			if (existing != null) {
 				LOGGER.info("Renewing Deployment Lease for " + accessJob.getDataId());
 				// If it does, then renew the Lease on the
 				// existing deployment.
-				deployment = accessor.getDeploymentByDataId(accessJob.getDataId());
-				leaser.renewDeploymentLease(deployment, accessJob.getDurationDays());
+				deployment = existing.getDeployment();
+				try (StageTimings.Span span = StageTimings.start(Stage.LEASE)) {
+					leaser.renewDeploymentLease(deployment, existing.getLease(), accessJob.getDurationDays());
+				}
 			} else {
 				LOGGER.info("Creating a new Deployment and lease for " + accessJob.getDataId());
 				// Obtain the Data to be deployed
-				DataResource dataToDeploy = accessor.getData(accessJob.getDataId());
+				DataResource dataToDeploy;
+				try (StageTimings.Span span = StageTimings.start(Stage.DATABASE_LOOKUP)) {
+					dataToDeploy = accessor.getDataFromPrimary(accessJob.getDataId());
+				}
 				if (dataToDeploy == null) {
 					throw new InvalidInputException(String.format("Data with Id %s does not exist.", accessJob.getDataId()));
 				}
-				// Create the Deployment
-				deployment = deployer.createDeployment(dataToDeploy);
-				// Create a new Lease for this Deployment
-				leaser.createDeploymentLease(deployment, accessJob.getDurationDays());
+				jobRegistry.setDataType(key, dataToDeploy.getDataType().getClass().getSimpleName());
+				// Create the Deployment and its Lease, or wait for a concurrent Job already deploying this Data
+				deployment = deploymentCoordinator.deploy(dataToDeploy, accessJob.getDurationDays());
 			}
 
 			if (Thread.interrupted()) {
@@ -202,7 +282,9 @@ public class AccessWorker {
 
 			// Check if the user has requested this layer be added to a new group layer.
 			if ((accessJob.getDeploymentGroupId() != null) && (!accessJob.getDeploymentGroupId().isEmpty())) {
-				addToNewLayerGroup(deployment, accessJob);
+				try (StageTimings.Span span = StageTimings.start(Stage.GROUP_UPDATE)) {
+					addToNewLayerGroup(deployment, accessJob);
+				}
 			}
 
 			if (Thread.interrupted()) {
@@ -213,7 +295,7 @@ public class AccessWorker {
 			statusUpdate = new StatusUpdate(StatusUpdate.STATUS_SUCCESS);
 			statusUpdate.setResult(new DeploymentResult(deployment));
 			statusUpdate.setJobId(key);
-			rabbitTemplate.convertAndSend(JobMessageFactory.PIAZZA_EXCHANGE_NAME, updateJobsQueue.getName(), mapper.writeValueAsString(statusUpdate));
+			publishCompleted(statusUpdate);
 
 			// Console Logging
 			pzLogger.log(
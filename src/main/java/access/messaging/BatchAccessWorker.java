@@ -0,0 +1,152 @@
+/**
+ * Copyright 2016, RadiantBlue Technologies, Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package access.messaging;
+
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.AsyncResult;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import access.database.JobLedger;
+import access.database.ReadReplicaRoutingDataSource;
+import access.deploy.BatchDeployer;
+import access.model.BatchAccessJob;
+import access.model.BatchAccessResult;
+import access.util.CancellationScope;
+import exception.InvalidInputException;
+import messaging.job.WorkerCallback;
+import model.job.result.type.ErrorResult;
+import model.job.result.type.TextResult;
+import model.logger.AuditElement;
+import model.logger.Severity;
+import model.status.StatusUpdate;
+import util.PiazzaLogger;
+
+/**
+ * Worker for Batch Access Jobs. Runs on the group executor, as each batch ends in a layer group update, while the
+ * Resources of the batch are deployed on the batch item executor.
+ * 
+ * The per-item results are reported as JSON: in a Text result if the batch succeeded, or in the details of an Error
+ * result if no Resource could be deployed or the Deployment Group could not be updated.
+ */
+@Component
+public class BatchAccessWorker {
+	@Autowired
+	private BatchDeployer batchDeployer;
+	@Autowired
+	private StatusPublisher statusPublisher;
+	@Autowired
+	private JobRegistry jobRegistry;
+	@Autowired
+	private JobLedger jobLedger;
+	@Autowired
+	private ObjectMapper mapper;
+	@Autowired
+	private PiazzaLogger pzLogger;
+	@Value("${batch.max.items:1000}")
+	private int maxItems;
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(BatchAccessWorker.class);
+
+	/**
+	 * Processes a Batch Access Job
+	 */
+	@Async("groupExecutor")
+	public Future<BatchAccessJob> run(BatchAccessJob batchJob, WorkerCallback callback) throws InterruptedException {
+		String jobId = batchJob.getJobId();
+		try {
+			if ((batchJob.getDataIds() == null) || batchJob.getDataIds().isEmpty()) {
+				throw new InvalidInputException("No Data Ids were specified for the batch.");
+			}
+			if (batchJob.getDataIds().size() > maxItems) {
+				throw new InvalidInputException(
+						String.format("A batch may deploy at most %s Data Ids; %s were specified.", maxItems, batchJob.getDataIds().size()));
+			}
+
+			pzLogger.log(
+					String.format("Received Request to Access %s Data Items under Batch Job Id %s by user %s", batchJob.getDataIds().size(),
+							jobId, batchJob.getCreatedBy()),
+					Severity.INFORMATIONAL, new AuditElement(jobId, "requestBatchAccessData", batchJob.getDeploymentGroupId()));
+
+			if (Thread.interrupted() || !jobRegistry.start(jobId)) {
+				throw new InterruptedException();
+			}
+			CancellationScope.bind(jobRegistry.getCancellationScope(jobId));
+
+			StatusUpdate statusUpdate = new StatusUpdate(StatusUpdate.STATUS_RUNNING);
+			statusUpdate.setJobId(jobId);
+			statusPublisher.publish(statusUpdate);
+
+			BatchAccessResult result = batchDeployer.deploy(batchJob);
+			String json = mapper.writeValueAsString(result);
+			if (result.isSuccessful()) {
+				statusUpdate = new StatusUpdate(StatusUpdate.STATUS_SUCCESS);
+				statusUpdate.setResult(new TextResult(json));
+			} else {
+				statusUpdate = new StatusUpdate(StatusUpdate.STATUS_ERROR);
+				statusUpdate.setResult(new ErrorResult("Could not Deploy Batch", json));
+			}
+			statusUpdate.setJobId(jobId);
+			publishCompleted(statusUpdate);
+
+			pzLogger.log(
+					String.format("Batch Deployment of %s Data Items completed for Job %s with %s successful", result.getItems().size(),
+							jobId, result.getSucceeded()),
+					Severity.INFORMATIONAL, new AuditElement(jobId, "batchAccessData", batchJob.getDeploymentGroupId()));
+		} catch (InterruptedException exception) {
+			if (jobRegistry.isWithdrawn(jobId)) {
+				// Aborted before it started, or returned to the queue by a drain; the thread manager settles the Job
+				LOGGER.info("Batch Job {} was withdrawn before it could run.", jobId);
+				throw exception;
+			}
+			String error = String.format("Thread interrupt received for Batch Job %s", jobId);
+			LOGGER.error(error, exception);
+			pzLogger.log(error, Severity.INFORMATIONAL, new AuditElement(jobId, "accessJobTerminated", ""));
+			StatusUpdate statusUpdate = new StatusUpdate(StatusUpdate.STATUS_CANCELLED);
+			statusUpdate.setJobId(jobId);
+			publishCompleted(statusUpdate);
+			throw exception;
+		} catch (Exception exception) {
+			String error = String.format("Error Accessing Data under Batch Job %s with Error: %s", jobId, exception.getMessage());
+			LOGGER.error(error, exception);
+			pzLogger.log(error, Severity.ERROR, new AuditElement(jobId, "failedBatchAccessData", ""));
+			StatusUpdate statusUpdate = new StatusUpdate(StatusUpdate.STATUS_ERROR);
+			statusUpdate.setResult(new ErrorResult("Could not Deploy Batch", exception.getMessage()));
+			statusUpdate.setJobId(jobId);
+			publishCompleted(statusUpdate);
+		} finally {
+			ReadReplicaRoutingDataSource.clearPrimaryPin();
+			CancellationScope.unbind();
+			if (callback != null) {
+				callback.onComplete(jobId);
+			}
+		}
+
+		return new AsyncResult<>(batchJob);
+	}
+
+	private void publishCompleted(StatusUpdate statusUpdate) {
+		jobLedger.recordCompleted(statusUpdate);
+		statusPublisher.publish(statusUpdate);
+	}
+}
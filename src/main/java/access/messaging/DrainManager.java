@@ -0,0 +1,236 @@
+/**
+ * Copyright 2016, RadiantBlue Technologies, Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package access.messaging;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import model.logger.Severity;
+import util.PiazzaLogger;
+
+/**
+ * Drains this instance before it stops, so that a rolling restart loses no work. Draining stops taking on new Jobs and
+ * file downloads, returns the Jobs that have not started to the queue, and lets the Jobs in progress finish. Jobs still
+ * running at the deadline are given up and returned to the queue as their workers stop. Only then are the Rabbit
+ * listeners stopped, as stopping them closes their channels, and a Job in progress could no longer acknowledge its
+ * message.
+ * 
+ * The drain runs when the application context closes, such as on SIGTERM, or when requested through the admin
+ * endpoint. As this bean depends on the listener registry, the context stops it before the listeners.
+ */
+@Component
+public class DrainManager implements SmartLifecycle {
+	@Autowired
+	private PiazzaLogger pzLogger;
+	@Autowired
+	private AccessThreadManager threadManager;
+	@Autowired
+	private JobRegistry jobRegistry;
+	@Autowired
+	private RabbitListenerEndpointRegistry listenerRegistry;
+
+	@Value("${drain.timeout.seconds:6}")
+	private int drainTimeoutSeconds;
+	@Value("${drain.abandon.grace.seconds:2}")
+	private int abandonGraceSeconds;
+	@Value("${drain.poll.millis:250}")
+	private long pollMillis;
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(DrainManager.class);
+
+	private final AtomicBoolean draining = new AtomicBoolean(false);
+	private final CountDownLatch drained = new CountDownLatch(1);
+	private volatile boolean running = false;
+	private volatile long startedOn;
+	private volatile long completedOn;
+	private volatile int withdrawnJobs;
+	private volatile int abandonedJobs;
+	private volatile int releasedDeliveries;
+
+	/**
+	 * Starts draining in the background, if not already draining
+	 * 
+	 * @return False if a drain had already been started
+	 */
+	public boolean startDrain() {
+		if (draining.get()) {
+			return false;
+		}
+		Thread thread = new Thread(this::drain, "drain");
+		thread.setDaemon(true);
+		thread.start();
+		return true;
+	}
+
+	/**
+	 * Drains this instance, returning once it is drained. If a drain is already in progress, waits for it to complete.
+	 */
+	public void drain() {
+		if (!draining.compareAndSet(false, true)) {
+			awaitDrained();
+			return;
+		}
+		try {
+			startedOn = System.currentTimeMillis();
+			long deadline = startedOn + TimeUnit.SECONDS.toMillis(drainTimeoutSeconds);
+			threadManager.startDraining();
+			withdrawnJobs = threadManager.withdrawQueuedJobs();
+			pzLogger.log(String.format("Draining; %s queued Jobs returned to the queue, waiting up to %s seconds for %s Jobs in progress.",
+					withdrawnJobs, drainTimeoutSeconds, jobRegistry.getJobIds().size()), Severity.INFORMATIONAL);
+
+			if (!awaitJobs(deadline)) {
+				// Jobs received while the drain began may not have started either
+				withdrawnJobs += threadManager.withdrawQueuedJobs();
+				abandonedJobs = threadManager.abandonRunningJobs();
+				String warning = String.format("Drain deadline reached; %s Jobs in progress were given up and returned to the queue.",
+						abandonedJobs);
+				LOGGER.warn(warning);
+				pzLogger.log(warning, Severity.WARNING);
+				awaitJobs(System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(abandonGraceSeconds));
+			}
+
+			releasedDeliveries = threadManager.releaseHeldDeliveries();
+			// Any message still unacknowledged is returned to the queue by the broker as the channels close
+			listenerRegistry.stop();
+			completedOn = System.currentTimeMillis();
+			pzLogger.log(String.format("Drained in %s ms; %s held messages returned to the queue.", completedOn - startedOn,
+					releasedDeliveries), Severity.INFORMATIONAL);
+		} catch (Exception exception) {
+			String error = String.format("Error Draining: %s", exception.getMessage());
+			LOGGER.error(error, exception);
+			pzLogger.log(error, Severity.ERROR);
+		} finally {
+			drained.countDown();
+		}
+	}
+
+	/**
+	 * Waits for every tracked Job to complete
+	 * 
+	 * @return False if Jobs were still tracked at the deadline
+	 */
+	private boolean awaitJobs(long deadline) {
+		while (!jobRegistry.getJobIds().isEmpty()) {
+			if (System.currentTimeMillis() >= deadline) {
+				return false;
+			}
+			try {
+				Thread.sleep(pollMillis);
+			} catch (InterruptedException exception) {
+				LOGGER.warn("Interrupted while waiting for Jobs to drain.", exception);
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void awaitDrained() {
+		try {
+			if (!drained.await(drainTimeoutSeconds + (long) abandonGraceSeconds + 1, TimeUnit.SECONDS)) {
+				LOGGER.warn("Timed out waiting for the drain in progress to complete.");
+			}
+		} catch (InterruptedException exception) {
+			LOGGER.warn("Interrupted while waiting for the drain in progress to complete.", exception);
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * @return True once a drain has started; new Jobs and file downloads are refused from then on
+	 */
+	public boolean isDraining() {
+		return draining.get();
+	}
+
+	/**
+	 * @return True once the drain has completed, and the listeners are stopped
+	 */
+	public boolean isDrained() {
+		return drained.getCount() == 0;
+	}
+
+	/**
+	 * Returns the progress of the drain, for the admin endpoints
+	 * 
+	 * @return Drain state and counts
+	 */
+	public Map<String, Object> getStatus() {
+		Map<String, Object> status = new HashMap<>();
+		status.put("draining", isDraining());
+		status.put("drained", isDrained());
+		if (isDraining()) {
+			status.put("startedOn", startedOn);
+			status.put("remainingJobs", jobRegistry.getJobIds().size());
+			status.put("withdrawnJobs", withdrawnJobs);
+			status.put("abandonedJobs", abandonedJobs);
+		}
+		if (isDrained()) {
+			status.put("completedOn", completedOn);
+			status.put("releasedDeliveries", releasedDeliveries);
+		}
+		return status;
+	}
+
+	@Override
+	public void start() {
+		running = true;
+	}
+
+	/**
+	 * Drains synchronously: the context stops the listener registry as soon as this returns
+	 */
+	@Override
+	public void stop() {
+		drain();
+		running = false;
+	}
+
+	@Override
+	public void stop(Runnable callback) {
+		stop();
+		callback.run();
+	}
+
+	@Override
+	public boolean isRunning() {
+		return running;
+	}
+
+	@Override
+	public boolean isAutoStartup() {
+		return true;
+	}
+
+	/**
+	 * The same phase as the listener registry, which is stopped after this bean as it is a dependency
+	 */
+	@Override
+	public int getPhase() {
+		return Integer.MAX_VALUE;
+	}
+}
@@ -0,0 +1,264 @@
+/**
+ * Copyright 2016, RadiantBlue Technologies, Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package access.messaging;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Future;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import access.util.CancellationScope;
+import access.util.ExpiringCache;
+
+/**
+ * Concurrent registry of the Jobs received by this instance, from the moment their message is read until their
+ * worker completes. Listener threads, abort listeners and worker callbacks may all update it concurrently; reads never
+ * lock.
+ * 
+ * A Job is registered before it is submitted to the executor, and its Future is attached after. A cancellation that
+ * arrives in between, or before the Job itself arrives, is therefore never lost: it is applied when the Future is
+ * attached, or when the Job is registered.
+ */
+@Component
+public class JobRegistry {
+	@Value("${job.registry.abort.ttl.seconds:300}")
+	private int abortTtlSeconds;
+	@Value("${job.registry.abort.max.entries:10000}")
+	private int abortMaxEntries;
+
+	private final ConcurrentMap<String, TrackedJob> jobs = new ConcurrentHashMap<>(1024);
+
+	/**
+	 * Aborts received for Jobs this instance has not seen. Abort messages are delivered to every instance, so most of
+	 * these are for Jobs processed elsewhere and simply expire.
+	 */
+	private ExpiringCache<String, Boolean> pendingAborts;
+
+	/**
+	 * Jobs whose message and status are settled by the thread manager rather than by their worker: Jobs aborted before
+	 * they started, and Jobs handed back to the queue by a drain. A worker that picks one up afterwards neither runs it
+	 * nor reports it cancelled.
+	 */
+	private ExpiringCache<String, Boolean> withdrawn;
+
+	@PostConstruct
+	public void initialize() {
+		pendingAborts = new ExpiringCache<>(abortTtlSeconds * 1000L, abortMaxEntries);
+		withdrawn = new ExpiringCache<>(abortTtlSeconds * 1000L, abortMaxEntries);
+	}
+
+	/**
+	 * Registers a newly received Job as queued. If it was already aborted, it is registered as cancelling.
+	 * 
+	 * @param jobId
+	 *            The Job Id
+	 * @return The tracked Job, or null if the Job is already tracked
+	 */
+	public TrackedJob register(String jobId) {
+		return register(jobId, 1);
+	}
+
+	/**
+	 * Registers a newly received attempt at a Job as queued. If it was already aborted, it is registered as cancelling,
+	 * and withdrawn. A Job that is already tracked, such as one whose message was redelivered while it runs, is not
+	 * registered again, so its entry stays that of the attempt in progress.
+	 * 
+	 * @param jobId
+	 *            The Job Id
+	 * @param attempt
+	 *            The number of the attempt, starting at 1
+	 * @return The tracked Job, or null if the Job is already tracked
+	 */
+	public TrackedJob register(String jobId, int attempt) {
+		TrackedJob job = new TrackedJob(jobId);
+		job.setAttempt(attempt);
+		if (jobs.putIfAbsent(jobId, job) != null) {
+			return null;
+		}
+		withdrawn.remove(jobId);
+		if (pendingAborts.get(jobId) != null) {
+			pendingAborts.remove(jobId);
+			job.cancel();
+			withdrawn.put(jobId, Boolean.TRUE);
+		}
+		return job;
+	}
+
+	/**
+	 * Attaches the Future of the submitted work to the Job. Has no effect if the Job already completed.
+	 */
+	public void attach(String jobId, Future<?> future) {
+		TrackedJob job = jobs.get(jobId);
+		if (job != null) {
+			job.setFuture(future);
+		}
+	}
+
+	/**
+	 * Marks the Job as running. Called by the worker as it begins.
+	 * 
+	 * @return False if the Job was cancelled or withdrawn before it started, and should not be processed
+	 */
+	public boolean start(String jobId) {
+		TrackedJob job = jobs.get(jobId);
+		if (job == null) {
+			return withdrawn.get(jobId) == null;
+		}
+		return job.start();
+	}
+
+	/**
+	 * @return The cancellation scope of the Job, or a new scope if the Job is not tracked
+	 */
+	public CancellationScope getCancellationScope(String jobId) {
+		TrackedJob job = jobs.get(jobId);
+		return job != null ? job.getCancellationScope() : new CancellationScope();
+	}
+
+	/**
+	 * Records the type of the Data the Job is accessing
+	 */
+	public void setDataType(String jobId, String dataType) {
+		TrackedJob job = jobs.get(jobId);
+		if (job != null) {
+			job.setDataType(dataType);
+		}
+	}
+
+	/**
+	 * Records a transient failure of a Job. The Job is retried if it has attempts left, and dead-lettered if not.
+	 * 
+	 * @param maxAttempts
+	 *            The number of times a Job may be attempted
+	 * @return True if the Job will be retried
+	 */
+	public boolean failTransiently(String jobId, String cause, int maxAttempts) {
+		TrackedJob job = jobs.get(jobId);
+		if (job == null) {
+			return false;
+		}
+		boolean retry = job.getAttempt() < maxAttempts;
+		job.setFailure(retry ? TrackedJob.Disposition.RETRY : TrackedJob.Disposition.DEAD_LETTER, cause);
+		return retry;
+	}
+
+	/**
+	 * Requests cancellation of a Job. If the Job is not known yet, the request is held for a while in case the Job
+	 * arrives later.
+	 * 
+	 * @return True if the Job had not started, and is withdrawn. Its worker never runs it, so the caller must publish
+	 *         its status and settle its message.
+	 */
+	public boolean cancel(String jobId) {
+		TrackedJob job = jobs.get(jobId);
+		if (job == null) {
+			pendingAborts.put(jobId, Boolean.TRUE);
+			return false;
+		}
+		if (!job.cancel()) {
+			return false;
+		}
+		withdrawn.put(jobId, Boolean.TRUE);
+		return true;
+	}
+
+	/**
+	 * Withdraws a Job that has not started, to be returned to the queue. The Job is still tracked until its message is
+	 * rejected.
+	 * 
+	 * @return True if the Job was withdrawn; false if it is not tracked, or has already started
+	 */
+	public boolean withdraw(String jobId) {
+		TrackedJob job = jobs.get(jobId);
+		if ((job == null) || !job.withdraw()) {
+			return false;
+		}
+		withdrawn.put(jobId, Boolean.TRUE);
+		return true;
+	}
+
+	/**
+	 * Gives up a running Job, to be returned to the queue once its worker stops
+	 * 
+	 * @return True if the Job is tracked by this instance
+	 */
+	public boolean abandon(String jobId) {
+		TrackedJob job = jobs.get(jobId);
+		if (job == null) {
+			return false;
+		}
+		withdrawn.put(jobId, Boolean.TRUE);
+		job.abandon();
+		return true;
+	}
+
+	/**
+	 * @return True if the Job was aborted before it started, or withdrawn or abandoned by a drain. Its message and
+	 *         status are settled by the thread manager, not by its worker.
+	 */
+	public boolean isWithdrawn(String jobId) {
+		return withdrawn.get(jobId) != null;
+	}
+
+	/**
+	 * Marks the Job as done, and stops tracking it. Only the given entry is removed, never one registered for the Job
+	 * since.
+	 * 
+	 * @param job
+	 *            The tracked Job, as registered
+	 */
+	public void complete(TrackedJob job) {
+		if (jobs.remove(job.getJobId(), job)) {
+			job.complete();
+		}
+	}
+
+	/**
+	 * @return The tracked Job, or null
+	 */
+	public TrackedJob get(String jobId) {
+		return jobs.get(jobId);
+	}
+
+	/**
+	 * @return The Ids of all Jobs tracked by this instance
+	 */
+	public List<String> getJobIds() {
+		return new ArrayList<>(jobs.keySet());
+	}
+
+	/**
+	 * @return The number of tracked Jobs in each state
+	 */
+	public Map<TrackedJob.State, Integer> getStateCounts() {
+		Map<TrackedJob.State, Integer> counts = new EnumMap<>(TrackedJob.State.class);
+		for (TrackedJob.State state : TrackedJob.State.values()) {
+			counts.put(state, 0);
+		}
+		for (TrackedJob job : jobs.values()) {
+			counts.merge(job.getState(), 1, Integer::sum);
+		}
+		return counts;
+	}
+}
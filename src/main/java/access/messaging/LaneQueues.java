@@ -0,0 +1,101 @@
+/**
+ * Copyright 2016, RadiantBlue Technologies, Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package access.messaging;
+
+import java.util.Map;
+
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageBuilder;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import access.messaging.AccessThreadManager.Lane;
+import messaging.job.JobMessageFactory;
+
+/**
+ * Routes classified Access Jobs to the queue of their lane. Each lane has its own queue and consumers, with a prefetch
+ * no larger than its executor, so a backlog in one lane waits in its own queue and does not hold back the Jobs of the
+ * others. A Job is classified once, on the AccessJob queue; its lane and data type travel with it.
+ */
+@Component
+public class LaneQueues {
+	/**
+	 * Header carrying the data type the Job was classified with, if it was found
+	 */
+	public static final String DATA_TYPE_HEADER = "x-access-data-type";
+
+	@Autowired
+	private RabbitTemplate rabbitTemplate;
+	@Value("${SPACE}")
+	private String space;
+	@Value("${lane.queue.confirm.timeout.millis:10000}")
+	private long confirmTimeoutMillis;
+
+	/**
+	 * Gets the name, and routing key, of the queue of a lane
+	 * 
+	 * @param lane
+	 *            The lane
+	 * @param space
+	 *            The space of this deployment
+	 * @return The queue name, such as AccessJob-Raster-dev
+	 */
+	public static String getQueueName(Lane lane, String space) {
+		String name = lane.name();
+		return String.format("AccessJob-%s%s-%s", name.charAt(0), name.substring(1).toLowerCase(), space);
+	}
+
+	/**
+	 * Reads the data type a Job was classified with
+	 * 
+	 * @return The simple class name of the data type, or null
+	 */
+	public static String getDataType(Message message) {
+		Object dataType = message.getMessageProperties().getHeaders().get(DATA_TYPE_HEADER);
+		return dataType != null ? dataType.toString() : null;
+	}
+
+	/**
+	 * Publishes a Job's message to the queue of its lane, and waits for the broker to confirm it, so that the original
+	 * message can be acknowledged.
+	 * 
+	 * @param message
+	 *            The Job's message from the AccessJob queue
+	 * @param lane
+	 *            The lane the Job was classified into
+	 * @param dataType
+	 *            The data type the Job was classified with, or null
+	 * @throws org.springframework.amqp.AmqpException
+	 *             If the broker did not confirm the message
+	 */
+	public void forward(Message message, Lane lane, String dataType) {
+		Message laneMessage = MessageBuilder.fromClonedMessage(message).build();
+		// A retried Job is classified again; it must not keep the data type of its previous attempt
+		Map<String, Object> headers = laneMessage.getMessageProperties().getHeaders();
+		if (dataType != null) {
+			headers.put(DATA_TYPE_HEADER, dataType);
+		} else {
+			headers.remove(DATA_TYPE_HEADER);
+		}
+		rabbitTemplate.invoke(operations -> {
+			operations.send(JobMessageFactory.PIAZZA_EXCHANGE_NAME, getQueueName(lane, space), laneMessage);
+			operations.waitForConfirmsOrDie(confirmTimeoutMillis);
+			return null;
+		});
+	}
+}
@@ -0,0 +1,90 @@
+/**
+ * Copyright 2016, RadiantBlue Technologies, Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package access.messaging;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.stereotype.Component;
+
+import access.util.LatencyHistogram;
+import access.util.StageTimings;
+import access.util.StageTimings.Stage;
+
+/**
+ * Latency histograms of each stage of the Access Job pipeline, by the type of the Data accessed, so that slow Jobs can
+ * be attributed to the queue, the database, S3, GeoServer or status publishing.
+ */
+@Component
+public class PipelineMetrics {
+	/**
+	 * Data type recorded for Jobs whose Data was never read, such as Lease renewals, and for stages that are not tied
+	 * to one Job
+	 */
+	public static final String UNKNOWN_TYPE = "Unknown";
+	/**
+	 * Aggregate of all data types of a stage
+	 */
+	public static final String ALL_TYPES = "All";
+
+	private final Map<Stage, ConcurrentMap<String, LatencyHistogram>> stages = new EnumMap<>(Stage.class);
+
+	public PipelineMetrics() {
+		for (Stage stage : Stage.values()) {
+			stages.put(stage, new ConcurrentHashMap<>());
+		}
+	}
+
+	/**
+	 * Records the stage timings of a completed Job
+	 * 
+	 * @param dataType
+	 *            The simple class name of the Data type, or null if unknown
+	 */
+	public void record(StageTimings timings, String dataType) {
+		timings.getNanos().forEach((stage, nanos) -> record(stage, dataType, nanos));
+	}
+
+	/**
+	 * Records the time spent in one stage
+	 * 
+	 * @param dataType
+	 *            The simple class name of the Data type, or null if unknown
+	 */
+	public void record(Stage stage, String dataType, long nanos) {
+		ConcurrentMap<String, LatencyHistogram> histograms = stages.get(stage);
+		histograms.computeIfAbsent(dataType != null ? dataType : UNKNOWN_TYPE, key -> new LatencyHistogram()).record(nanos);
+		histograms.computeIfAbsent(ALL_TYPES, key -> new LatencyHistogram()).record(nanos);
+	}
+
+	/**
+	 * @return Latency count, mean, max and percentiles of each stage entered so far, by data type
+	 */
+	public Map<String, Object> getStats() {
+		Map<String, Object> stats = new TreeMap<>();
+		stages.forEach((stage, histograms) -> {
+			if (!histograms.isEmpty()) {
+				Map<String, Object> types = new TreeMap<>();
+				histograms.forEach((dataType, histogram) -> types.put(dataType, histogram.toMap()));
+				stats.put(stage.name(), types);
+			}
+		});
+		return stats;
+	}
+}
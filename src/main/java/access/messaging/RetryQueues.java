@@ -0,0 +1,124 @@
+/**
+ * Copyright 2016, RadiantBlue Technologies, Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package access.messaging;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageBuilder;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import access.deploy.RetryPolicy;
+
+/**
+ * Sends Access Job messages that failed transiently to the retry queue, or, once out of attempts, to the dead-letter
+ * queue.
+ * 
+ * The retry queue has no consumers. Each message waits there until its expiration, then is dead-lettered by the
+ * broker back to the Access Job queue. As the broker only expires messages from the head of a queue, a message may wait
+ * longer than its own delay behind one with a longer delay; delays are capped by job.retry.max.seconds.
+ * 
+ * Each message is published on a channel with publisher confirms, and these methods return only once the broker has
+ * confirmed it, so that the original message is not acknowledged before its copy is safe.
+ */
+@Component
+public class RetryQueues {
+	/**
+	 * Header carrying the number of the attempt at the Job
+	 */
+	public static final String ATTEMPT_HEADER = "x-access-attempt";
+	/**
+	 * Header carrying the failure of the previous attempt
+	 */
+	public static final String FAILURE_CAUSE_HEADER = "x-access-failure-cause";
+
+	@Autowired
+	private RabbitTemplate rabbitTemplate;
+	@Autowired
+	private RetryPolicy retryPolicy;
+	@Autowired
+	private Queue accessJobRetryQueue;
+	@Autowired
+	private Queue accessJobDeadLetterQueue;
+	@Value("${job.retry.confirm.timeout.millis:10000}")
+	private long confirmTimeoutMillis;
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(RetryQueues.class);
+
+	/**
+	 * Reads the attempt number of an Access Job message
+	 * 
+	 * @return The attempt number, starting at 1
+	 */
+	public static int getAttempt(Message message) {
+		Object attempt = message.getMessageProperties().getHeaders().get(ATTEMPT_HEADER);
+		return attempt instanceof Number ? ((Number) attempt).intValue() : 1;
+	}
+
+	/**
+	 * Schedules another attempt at a Job, after the backoff for its failed attempt
+	 * 
+	 * @param message
+	 *            The message of the failed attempt
+	 * @param attempt
+	 *            The number of the failed attempt
+	 * @param cause
+	 *            The failure
+	 * @throws AmqpException
+	 *             If the broker did not confirm the message
+	 */
+	public void retry(Message message, int attempt, String cause) {
+		long delay = retryPolicy.getJobRetryDelayMillis(attempt);
+		Message retry = MessageBuilder.fromClonedMessage(message).setExpiration(String.valueOf(delay))
+				.setHeader(ATTEMPT_HEADER, attempt + 1).setHeader(FAILURE_CAUSE_HEADER, cause).build();
+		sendConfirmed(accessJobRetryQueue.getName(), retry);
+		LOGGER.info("Attempt {} failed transiently; retrying in {} ms: {}", attempt, delay, cause);
+	}
+
+	/**
+	 * Moves a Job that is out of attempts to the dead-letter queue, with its failure
+	 * 
+	 * @param message
+	 *            The message of the last attempt
+	 * @param attempt
+	 *            The number of the last attempt
+	 * @param cause
+	 *            The failure
+	 * @throws AmqpException
+	 *             If the broker did not confirm the message
+	 */
+	public void deadLetter(Message message, int attempt, String cause) {
+		Message deadLetter = MessageBuilder.fromClonedMessage(message).setHeader(ATTEMPT_HEADER, attempt)
+				.setHeader(FAILURE_CAUSE_HEADER, cause).build();
+		sendConfirmed(accessJobDeadLetterQueue.getName(), deadLetter);
+	}
+
+	/**
+	 * Publishes a message to a queue and waits for the broker to confirm it
+	 */
+	private void sendConfirmed(String queue, Message message) {
+		rabbitTemplate.invoke(operations -> {
+			operations.send("", queue, message);
+			operations.waitForConfirmsOrDie(confirmTimeoutMillis);
+			return null;
+		});
+	}
+}
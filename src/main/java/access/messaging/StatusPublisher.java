@@ -0,0 +1,330 @@
+/**
+ * Copyright 2016, RadiantBlue Technologies, Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package access.messaging;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import access.database.JobLedger;
+import access.util.StageTimings.Stage;
+import messaging.job.JobMessageFactory;
+import model.logger.Severity;
+import model.status.StatusUpdate;
+import util.PiazzaLogger;
+
+/**
+ * Publishes Job Status Updates to the Job Manager from a dedicated thread, so that workers never wait on the broker.
+ * 
+ * <p>
+ * Updates are queued per Job. An update that has not been sent yet is replaced by a newer update for the same Job, so
+ * a Running status that is immediately followed by Success is only sent as Success. The publisher sends the queued
+ * updates in batches of up to status.publisher.batch.size: each batch is published on one channel, and its publisher
+ * confirms are awaited together. If the broker rejects any update of a batch, or does not confirm the batch in time,
+ * the whole batch is queued again, except the updates for Jobs with a newer update published since. Each update
+ * carries a sequence number, so a Running update that fails after its Job's final status was queued is dropped rather
+ * than sent after it.
+ * </p>
+ * 
+ * <p>
+ * The message of a Job is acknowledged once its final status is queued, before the broker confirms it. Final statuses
+ * are therefore recorded in the {@link JobLedger} as unpublished until confirmed. Those left unconfirmed, by a crash of
+ * any instance, are published again from the ledger, by the one instance that claims them.
+ * </p>
+ * 
+ * <p>
+ * The queue holds at most status.publisher.capacity Jobs. When full, Running updates are dropped, as they are
+ * superseded anyway; final statuses are always accepted. Their number is bounded by the Jobs in flight.
+ * </p>
+ */
+@Component
+public class StatusPublisher {
+	@Autowired
+	private ConnectionFactory connectionFactory;
+	@Autowired
+	private ObjectMapper mapper;
+	@Autowired
+	private Queue updateJobsQueue;
+	@Autowired
+	private PiazzaLogger pzLogger;
+	@Autowired
+	private PipelineMetrics pipelineMetrics;
+	@Autowired
+	private JobLedger jobLedger;
+
+	@Value("${status.publisher.capacity:10000}")
+	private int capacity;
+	@Value("${status.publisher.batch.size:50}")
+	private int batchSize;
+	@Value("${status.publisher.confirm.timeout.millis:30000}")
+	private long confirmTimeoutMillis;
+	@Value("${status.publisher.retry.millis:1000}")
+	private long retryMillis;
+	@Value("${status.publisher.republish.after.millis:120000}")
+	private long republishAfterMillis;
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(StatusPublisher.class);
+
+	private final ConcurrentMap<String, QueuedUpdate> pending = new ConcurrentHashMap<>();
+	private final BlockingQueue<String> ready = new LinkedBlockingQueue<>();
+	/**
+	 * The number of updates in the batch sent and awaiting its confirms
+	 */
+	private final AtomicInteger unconfirmed = new AtomicInteger();
+	/**
+	 * The sequence number of the latest update published for each Job, until it is confirmed
+	 */
+	private final ConcurrentMap<String, Long> latest = new ConcurrentHashMap<>();
+	/**
+	 * When the oldest unsent update of each Job was queued, for the status publishing latency
+	 */
+	private final ConcurrentMap<String, Long> queuedOn = new ConcurrentHashMap<>();
+	private final AtomicLong sequence = new AtomicLong();
+	private RabbitTemplate rabbitTemplate;
+	private ObjectWriter writer;
+	private Thread publisherThread;
+	private volatile boolean running;
+	private volatile long stopDeadline;
+
+	/**
+	 * A Status Update and its sequence number
+	 */
+	private static class QueuedUpdate {
+		private final StatusUpdate statusUpdate;
+		private final long sequence;
+
+		QueuedUpdate(StatusUpdate statusUpdate, long sequence) {
+			this.statusUpdate = statusUpdate;
+			this.sequence = sequence;
+		}
+	}
+
+	@PostConstruct
+	public void start() {
+		writer = mapper.writerFor(StatusUpdate.class);
+		rabbitTemplate = new RabbitTemplate(connectionFactory);
+		running = true;
+		publisherThread = new Thread(this::publishLoop, "status-publisher");
+		publisherThread.setDaemon(true);
+		publisherThread.start();
+	}
+
+	/**
+	 * Sends the queued updates and waits for their confirms, for up to the confirm timeout, and stops the publisher
+	 * thread
+	 */
+	@PreDestroy
+	public void stop() throws InterruptedException {
+		stopDeadline = System.currentTimeMillis() + confirmTimeoutMillis;
+		running = false;
+		publisherThread.join(confirmTimeoutMillis);
+	}
+
+	/**
+	 * Queues a Status Update for the Job Manager. Never blocks.
+	 * 
+	 * @param statusUpdate
+	 *            The update, with its Job Id set
+	 */
+	public void publish(StatusUpdate statusUpdate) {
+		boolean isRunningStatus = StatusUpdate.STATUS_RUNNING.equals(statusUpdate.getStatus());
+		if (isRunningStatus && (pending.size() >= capacity)) {
+			LOGGER.warn("Status update queue is full; dropping Running status for Job {}.", statusUpdate.getJobId());
+			return;
+		}
+		queuedOn.putIfAbsent(statusUpdate.getJobId(), System.nanoTime());
+		long updateSequence = sequence.incrementAndGet();
+		latest.put(statusUpdate.getJobId(), updateSequence);
+		if (pending.put(statusUpdate.getJobId(), new QueuedUpdate(statusUpdate, updateSequence)) == null) {
+			ready.offer(statusUpdate.getJobId());
+		}
+	}
+
+	/**
+	 * Publishes again the final statuses recorded in the ledger that the broker never confirmed, such as those queued
+	 * by an instance that stopped before sending them. Each run renews the ledger's claims of this instance on the
+	 * statuses it still holds, and claims those older than status.publisher.republish.after.millis whose instance has
+	 * stopped renewing them, so that each is republished by one instance only. Statuses this instance is still sending
+	 * are left in its queue.
+	 */
+	@Scheduled(initialDelayString = "${status.publisher.republish.interval.millis:60000}", fixedDelayString = "${status.publisher.republish.interval.millis:60000}")
+	public void republishUnconfirmed() {
+		int republished = 0;
+		for (StatusUpdate statusUpdate : jobLedger.claimUnpublished(republishAfterMillis)) {
+			if (!latest.containsKey(statusUpdate.getJobId())) {
+				publish(statusUpdate);
+				republished++;
+			}
+		}
+		if (republished > 0) {
+			pzLogger.log(String.format("Published %s unconfirmed final Job statuses again from the ledger.", republished),
+					Severity.WARNING);
+		}
+	}
+
+	/**
+	 * @return The number of Jobs with updates waiting to be sent
+	 */
+	public int getPendingCount() {
+		return pending.size();
+	}
+
+	/**
+	 * @return The number of sent updates awaiting confirmation
+	 */
+	public int getUnconfirmedCount() {
+		return unconfirmed.get();
+	}
+
+	/**
+	 * Queues an update again after a failed send, unless a newer update has been published for its Job since
+	 */
+	private void requeue(QueuedUpdate queued) {
+		String jobId = queued.statusUpdate.getJobId();
+		if (!Objects.equals(latest.get(jobId), queued.sequence)) {
+			return;
+		}
+		if (pending.putIfAbsent(jobId, queued) == null) {
+			ready.offer(jobId);
+		}
+	}
+
+	/**
+	 * Publishes until stopped, and then until every update is sent and confirmed, or the stop deadline passes
+	 */
+	private void publishLoop() {
+		while (running || (!pending.isEmpty() && (System.currentTimeMillis() < stopDeadline))) {
+			try {
+				String jobId = ready.poll(1, TimeUnit.SECONDS);
+				if (jobId != null) {
+					List<String> jobIds = new ArrayList<>(batchSize);
+					jobIds.add(jobId);
+					ready.drainTo(jobIds, batchSize - 1);
+					sendBatch(jobIds);
+				}
+			} catch (InterruptedException exception) {
+				Thread.currentThread().interrupt();
+				return;
+			} catch (Exception exception) {
+				// Keep publishing; the failed updates were queued again.
+				LOGGER.error(String.format("Error publishing Job status updates: %s", exception.getMessage()), exception);
+			}
+		}
+	}
+
+	/**
+	 * Sends a batch of queued updates on one channel, and waits for the broker to confirm them all. Once confirmed,
+	 * the final statuses of the batch are marked as published in the ledger.
+	 */
+	private void sendBatch(List<String> jobIds) throws InterruptedException {
+		List<QueuedUpdate> batch = new ArrayList<>(jobIds.size());
+		List<String> messages = new ArrayList<>(jobIds.size());
+		for (String jobId : jobIds) {
+			QueuedUpdate queued = pending.remove(jobId);
+			String message = queued != null ? serialize(queued) : null;
+			if (message != null) {
+				batch.add(queued);
+				messages.add(message);
+			}
+		}
+		if (batch.isEmpty()) {
+			return;
+		}
+
+		Boolean confirmed;
+		unconfirmed.set(batch.size());
+		try {
+			confirmed = rabbitTemplate.invoke(operations -> {
+				for (String message : messages) {
+					operations.convertAndSend(JobMessageFactory.PIAZZA_EXCHANGE_NAME, updateJobsQueue.getName(), message);
+				}
+				return operations.waitForConfirms(confirmTimeoutMillis);
+			});
+		} catch (AmqpException exception) {
+			// The broker is unavailable, or did not confirm in time. Queue the batch again, and wait before retrying.
+			LOGGER.warn(String.format("Could not send %s Job status updates; retrying in %s ms: %s", batch.size(), retryMillis,
+					exception.getMessage()), exception);
+			batch.forEach(this::requeue);
+			Thread.sleep(retryMillis);
+			return;
+		} finally {
+			unconfirmed.set(0);
+		}
+		if (!Boolean.TRUE.equals(confirmed)) {
+			LOGGER.warn("The broker did not accept every update of a batch of {} Job status updates. Sending them again.", batch.size());
+			batch.forEach(this::requeue);
+			return;
+		}
+
+		List<String> confirmedFinal = new ArrayList<>();
+		for (QueuedUpdate queued : batch) {
+			String jobId = queued.statusUpdate.getJobId();
+			latest.remove(jobId, queued.sequence);
+			if (!StatusUpdate.STATUS_RUNNING.equals(queued.statusUpdate.getStatus())) {
+				confirmedFinal.add(jobId);
+			}
+			Long queuedNanos = queuedOn.remove(jobId);
+			if (queuedNanos != null) {
+				pipelineMetrics.record(Stage.STATUS_PUBLISH, null, System.nanoTime() - queuedNanos);
+			}
+		}
+		if (!confirmedFinal.isEmpty()) {
+			jobLedger.markPublished(confirmedFinal);
+		}
+	}
+
+	/**
+	 * @return The update as JSON, or null if it can not be serialized, in which case it is dropped
+	 */
+	private String serialize(QueuedUpdate queued) {
+		StatusUpdate statusUpdate = queued.statusUpdate;
+		try {
+			return writer.writeValueAsString(statusUpdate);
+		} catch (JsonProcessingException exception) {
+			String error = String.format("Error serializing %s Status for Job %s: %s. The Job status will not be updated in the Job Manager.",
+					statusUpdate.getStatus(), statusUpdate.getJobId(), exception.getMessage());
+			LOGGER.error(error, exception);
+			pzLogger.log(error, Severity.ERROR);
+			latest.remove(statusUpdate.getJobId(), queued.sequence);
+			return null;
+		}
+	}
+}
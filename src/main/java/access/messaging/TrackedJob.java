@@ -0,0 +1,229 @@
+/**
+ * Copyright 2016, RadiantBlue Technologies, Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package access.messaging;
+
+import java.util.concurrent.Future;
+
+import access.util.CancellationScope;
+
+/**
+ * The state of a Job tracked by the {@link JobRegistry}. Fields are volatile so the registry can be read without
+ * locking.
+ */
+public class TrackedJob {
+	/**
+	 * Lifecycle of a Job in this instance
+	 */
+	public enum State {
+		/**
+		 * Received, and waiting for a worker thread
+		 */
+		QUEUED,
+		/**
+		 * Being processed by a worker
+		 */
+		RUNNING,
+		/**
+		 * Cancellation requested; the worker has not yet stopped
+		 */
+		CANCELLING,
+		/**
+		 * Processing has finished
+		 */
+		DONE
+	}
+
+	/**
+	 * What becomes of the Job's message once the Job is done
+	 */
+	public enum Disposition {
+		/**
+		 * The Job is finished, successfully or not
+		 */
+		ACKNOWLEDGE,
+		/**
+		 * The Job failed transiently, and is attempted again after a delay
+		 */
+		RETRY,
+		/**
+		 * The Job failed transiently on its last attempt
+		 */
+		DEAD_LETTER,
+		/**
+		 * The Job was handed back to the queue by a draining instance, for this or another instance to run
+		 */
+		REQUEUE
+	}
+
+	private final String jobId;
+	private final long queuedOn;
+	private volatile State state = State.QUEUED;
+	private volatile long startedOn;
+	private volatile long completedOn;
+	private volatile String dataType;
+	private volatile Future<?> future;
+	private final CancellationScope cancellationScope = new CancellationScope();
+	private volatile int attempt = 1;
+	private volatile Disposition disposition = Disposition.ACKNOWLEDGE;
+	private volatile String failureCause;
+
+	public TrackedJob(String jobId) {
+		this.jobId = jobId;
+		this.queuedOn = System.currentTimeMillis();
+	}
+
+	public String getJobId() {
+		return jobId;
+	}
+
+	public State getState() {
+		return state;
+	}
+
+	public long getQueuedOn() {
+		return queuedOn;
+	}
+
+	public long getStartedOn() {
+		return startedOn;
+	}
+
+	public long getCompletedOn() {
+		return completedOn;
+	}
+
+	/**
+	 * @return The type of the Data being accessed, once known. Null before the worker has read the Data.
+	 */
+	public String getDataType() {
+		return dataType;
+	}
+
+	/**
+	 * @return The scope of the I/O in flight for this Job, aborted when the Job is cancelled
+	 */
+	public CancellationScope getCancellationScope() {
+		return cancellationScope;
+	}
+
+	/**
+	 * @return The number of this attempt at the Job, starting at 1
+	 */
+	public int getAttempt() {
+		return attempt;
+	}
+
+	public Disposition getDisposition() {
+		return disposition;
+	}
+
+	/**
+	 * @return The transient failure the Job is retried or dead-lettered for. Null otherwise.
+	 */
+	public String getFailureCause() {
+		return failureCause;
+	}
+
+	void setAttempt(int attempt) {
+		this.attempt = attempt;
+	}
+
+	void setFailure(Disposition disposition, String failureCause) {
+		this.failureCause = failureCause;
+		this.disposition = disposition;
+	}
+
+	void setDataType(String dataType) {
+		this.dataType = dataType;
+	}
+
+	/**
+	 * Attaches the Future of the submitted work. If cancellation was requested before the work was submitted, the work
+	 * is cancelled now.
+	 */
+	synchronized void setFuture(Future<?> future) {
+		this.future = future;
+		if (state == State.CANCELLING) {
+			future.cancel(true);
+		}
+	}
+
+	/**
+	 * @return False if the Job was cancelled before it started running
+	 */
+	synchronized boolean start() {
+		if (state != State.QUEUED) {
+			return false;
+		}
+		state = State.RUNNING;
+		startedOn = System.currentTimeMillis();
+		return true;
+	}
+
+	/**
+	 * Requests cancellation, interrupting the work if it has been submitted and aborting its blocking I/O. Work that
+	 * has not started never runs, so neither does its completion callback.
+	 * 
+	 * @return True if the Job had not started
+	 */
+	synchronized boolean cancel() {
+		if (state == State.DONE) {
+			return false;
+		}
+		boolean queued = state == State.QUEUED;
+		state = State.CANCELLING;
+		if (future != null) {
+			future.cancel(true);
+		}
+		cancellationScope.cancel();
+		return queued;
+	}
+
+	/**
+	 * Withdraws a Job that has not started, so that it never runs here. Its work is cancelled without interruption,
+	 * and its message is to be returned to the queue.
+	 * 
+	 * @return False if the Job has already started, been cancelled or completed
+	 */
+	synchronized boolean withdraw() {
+		if (state != State.QUEUED) {
+			return false;
+		}
+		state = State.DONE;
+		disposition = Disposition.REQUEUE;
+		if (future != null) {
+			future.cancel(false);
+		}
+		return true;
+	}
+
+	/**
+	 * Gives up a running Job that could not finish in time. Its blocking I/O is aborted so its worker stops promptly,
+	 * and its message is to be returned to the queue.
+	 */
+	synchronized void abandon() {
+		if (state == State.DONE) {
+			return;
+		}
+		disposition = Disposition.REQUEUE;
+		cancellationScope.cancel();
+	}
+
+	synchronized void complete() {
+		state = State.DONE;
+		completedOn = System.currentTimeMillis();
+	}
+}
@@ -0,0 +1,68 @@
+/**
+ * Copyright 2016, RadiantBlue Technologies, Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package access.model;
+
+import java.util.List;
+
+/**
+ * Batch Access Job, read from the AccessBatchJob queue. Deploys each of a list of Resources to GeoServer and, if a
+ * Deployment Group is specified, adds all of the new layers to that group with a single update of its layer group.
+ * 
+ * The message body is the JSON form of this class, for example:
+ * 
+ * <pre>
+ * {"jobId": "...", "createdBy": "...", "dataIds": ["...", "..."], "deploymentGroupId": "...", "durationDays": 7}
+ * </pre>
+ */
+public class BatchAccessJob {
+	public String jobId;
+	public String createdBy;
+	public List<String> dataIds;
+	public String deploymentGroupId;
+	public Integer durationDays;
+
+	public BatchAccessJob() {
+		// Default constructor for deserialization
+	}
+
+	public BatchAccessJob(String jobId, String createdBy, List<String> dataIds, String deploymentGroupId, Integer durationDays) {
+		this.jobId = jobId;
+		this.createdBy = createdBy;
+		this.dataIds = dataIds;
+		this.deploymentGroupId = deploymentGroupId;
+		this.durationDays = durationDays;
+	}
+
+	public String getJobId() {
+		return jobId;
+	}
+
+	public String getCreatedBy() {
+		return createdBy;
+	}
+
+	public List<String> getDataIds() {
+		return dataIds;
+	}
+
+	public String getDeploymentGroupId() {
+		return deploymentGroupId;
+	}
+
+	public Integer getDurationDays() {
+		return durationDays;
+	}
+}
@@ -0,0 +1,82 @@
+/**
+ * Copyright 2016, RadiantBlue Technologies, Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package access.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * The result of a {@link BatchAccessJob}: the outcome of each of its Resources, in the order they were requested, and
+ * of the update of its Deployment Group
+ */
+public class BatchAccessResult {
+	public String deploymentGroupId;
+	public boolean groupUpdated;
+	public String groupError;
+	public List<BatchItemResult> items = new ArrayList<>();
+
+	public BatchAccessResult() {
+		// Default constructor for deserialization
+	}
+
+	public BatchAccessResult(String deploymentGroupId, List<BatchItemResult> items) {
+		this.deploymentGroupId = deploymentGroupId;
+		this.items = items;
+	}
+
+	public String getDeploymentGroupId() {
+		return deploymentGroupId;
+	}
+
+	public boolean isGroupUpdated() {
+		return groupUpdated;
+	}
+
+	public void setGroupUpdated(boolean groupUpdated) {
+		this.groupUpdated = groupUpdated;
+	}
+
+	public String getGroupError() {
+		return groupError;
+	}
+
+	public void setGroupError(String groupError) {
+		this.groupError = groupError;
+	}
+
+	public List<BatchItemResult> getItems() {
+		return items;
+	}
+
+	/**
+	 * @return The number of Resources that were deployed
+	 */
+	public long getSucceeded() {
+		return items.stream().filter(BatchItemResult::isSuccess).count();
+	}
+
+	/**
+	 * @return True if at least one Resource was deployed, and added to the Deployment Group if one was requested. Items
+	 *         that failed are reported individually.
+	 */
+	@JsonIgnore
+	public boolean isSuccessful() {
+		boolean groupRequested = (deploymentGroupId != null) && !deploymentGroupId.isEmpty();
+		return (getSucceeded() > 0) && (!groupRequested || groupUpdated);
+	}
+}
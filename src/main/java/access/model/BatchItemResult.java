@@ -0,0 +1,76 @@
+/**
+ * Copyright 2016, RadiantBlue Technologies, Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package access.model;
+
+import model.data.deployment.Deployment;
+
+/**
+ * The outcome of deploying one Resource of a {@link BatchAccessJob}
+ */
+public class BatchItemResult {
+	public static final String STATUS_SUCCESS = "Success";
+	public static final String STATUS_ERROR = "Error";
+
+	public String dataId;
+	public String status;
+	public Deployment deployment;
+	public String error;
+
+	public BatchItemResult() {
+		// Default constructor for deserialization
+	}
+
+	private BatchItemResult(String dataId, String status, Deployment deployment, String error) {
+		this.dataId = dataId;
+		this.status = status;
+		this.deployment = deployment;
+		this.error = error;
+	}
+
+	/**
+	 * @return The result of a Resource that was deployed, or whose existing Deployment had its Lease renewed
+	 */
+	public static BatchItemResult deployed(String dataId, Deployment deployment) {
+		return new BatchItemResult(dataId, STATUS_SUCCESS, deployment, null);
+	}
+
+	/**
+	 * @return The result of a Resource that could not be deployed
+	 */
+	public static BatchItemResult failed(String dataId, String error) {
+		return new BatchItemResult(dataId, STATUS_ERROR, null, error);
+	}
+
+	public String getDataId() {
+		return dataId;
+	}
+
+	public String getStatus() {
+		return status;
+	}
+
+	public Deployment getDeployment() {
+		return deployment;
+	}
+
+	public String getError() {
+		return error;
+	}
+
+	public boolean isSuccess() {
+		return STATUS_SUCCESS.equals(status);
+	}
+}
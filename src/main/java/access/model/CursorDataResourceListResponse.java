@@ -0,0 +1,46 @@
+/**
+ * Copyright 2016, RadiantBlue Technologies, Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package access.model;
+
+import java.util.List;
+
+import model.data.DataResource;
+import model.response.DataResourceListResponse;
+import model.response.Pagination;
+
+/**
+ * Data Resource list response for keyset (cursor) pagination. In addition to the page of results, this carries the
+ * cursor that the client passes back in order to fetch the following page.
+ */
+public class CursorDataResourceListResponse extends DataResourceListResponse {
+	/**
+	 * Cursor for the next page, or null if this is the last page.
+	 */
+	public String nextCursor;
+
+	public CursorDataResourceListResponse() {
+		super();
+	}
+
+	public CursorDataResourceListResponse(List<DataResource> data, Pagination pagination, String nextCursor) {
+		super(data, pagination);
+		this.nextCursor = nextCursor;
+	}
+
+	public String getNextCursor() {
+		return nextCursor;
+	}
+}
@@ -16,6 +16,7 @@
 package access.util;
 
 import java.io.IOException;
+import java.io.InputStream;
 
 import org.apache.commons.io.IOUtils;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -23,6 +24,7 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.s3.model.S3ObjectInputStream;
 
 import exception.InvalidInputException;
 import model.data.DataResource;
@@ -94,7 +96,20 @@ public class AccessUtilities {
 				new AuditElement("access", "getBytesForData", dataResource.getDataId()));
 		FileLocation fileLocation = ((FileRepresentation) dataResource.getDataType()).getLocation();
 		FileAccessFactory fileAccessFactory = getFileFactoryForDataResource(dataResource);
-		return IOUtils.toByteArray(fileAccessFactory.getFile(fileLocation));
+		// Abort the read if the Job is cancelled. Closing an S3 stream drains it, so S3 streams are aborted instead.
+		try (StageTimings.Span span = StageTimings.start(StageTimings.Stage.S3_FETCH);
+				InputStream stream = fileAccessFactory.getFile(fileLocation);
+				CancellationScope.Registration registration = CancellationScope.register(() -> abort(stream))) {
+			return IOUtils.toByteArray(stream);
+		}
+	}
+
+	private static void abort(InputStream stream) throws IOException {
+		if (stream instanceof S3ObjectInputStream) {
+			((S3ObjectInputStream) stream).abort();
+		} else {
+			stream.close();
+		}
 	}
 
 	/**
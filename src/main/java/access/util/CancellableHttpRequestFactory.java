@@ -0,0 +1,155 @@
+/**
+ * Copyright 2016, RadiantBlue Technologies, Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package access.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+
+/**
+ * Request factory whose requests are aborted when the Job that sent them is cancelled. While a request is executing, or
+ * its response is open, it is registered with the {@link CancellationScope} of the calling thread; cancelling the Job
+ * aborts the underlying {@link HttpUriRequest}, which closes its connection and fails the call immediately.
+ */
+public class CancellableHttpRequestFactory extends HttpComponentsClientHttpRequestFactory {
+	/**
+	 * Hands the request created by {@link #createHttpUriRequest} back to {@link #createRequest}, which calls it on the
+	 * same thread; the Spring request wrapping it does not expose it.
+	 */
+	private static final ThreadLocal<HttpUriRequest> CREATED = new ThreadLocal<>();
+
+	public CancellableHttpRequestFactory(HttpClient httpClient) {
+		super(httpClient);
+	}
+
+	@Override
+	public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) throws IOException {
+		try {
+			ClientHttpRequest request = super.createRequest(uri, httpMethod);
+			return new CancellableRequest(request, CREATED.get());
+		} finally {
+			CREATED.remove();
+		}
+	}
+
+	@Override
+	protected HttpUriRequest createHttpUriRequest(HttpMethod httpMethod, URI uri) {
+		HttpUriRequest request = super.createHttpUriRequest(httpMethod, uri);
+		CREATED.set(request);
+		return request;
+	}
+
+	private static class CancellableRequest implements ClientHttpRequest {
+		private final ClientHttpRequest delegate;
+		private final HttpUriRequest httpRequest;
+
+		CancellableRequest(ClientHttpRequest delegate, HttpUriRequest httpRequest) {
+			this.delegate = delegate;
+			this.httpRequest = httpRequest;
+		}
+
+		@Override
+		public ClientHttpResponse execute() throws IOException {
+			if (httpRequest == null) {
+				return delegate.execute();
+			}
+			CancellationScope.Registration registration = CancellationScope.register(httpRequest::abort);
+			try {
+				return new CancellableResponse(delegate.execute(), registration);
+			} catch (IOException | RuntimeException exception) {
+				registration.close();
+				throw exception;
+			}
+		}
+
+		@Override
+		public OutputStream getBody() throws IOException {
+			return delegate.getBody();
+		}
+
+		@Override
+		public HttpHeaders getHeaders() {
+			return delegate.getHeaders();
+		}
+
+		@Override
+		public HttpMethod getMethod() {
+			return delegate.getMethod();
+		}
+
+		@Override
+		public URI getURI() {
+			return delegate.getURI();
+		}
+	}
+
+	/**
+	 * Keeps the request registered until the response body has been read and closed
+	 */
+	private static class CancellableResponse implements ClientHttpResponse {
+		private final ClientHttpResponse delegate;
+		private final CancellationScope.Registration registration;
+
+		CancellableResponse(ClientHttpResponse delegate, CancellationScope.Registration registration) {
+			this.delegate = delegate;
+			this.registration = registration;
+		}
+
+		@Override
+		public HttpStatus getStatusCode() throws IOException {
+			return delegate.getStatusCode();
+		}
+
+		@Override
+		public int getRawStatusCode() throws IOException {
+			return delegate.getRawStatusCode();
+		}
+
+		@Override
+		public String getStatusText() throws IOException {
+			return delegate.getStatusText();
+		}
+
+		@Override
+		public InputStream getBody() throws IOException {
+			return delegate.getBody();
+		}
+
+		@Override
+		public HttpHeaders getHeaders() {
+			return delegate.getHeaders();
+		}
+
+		@Override
+		public void close() {
+			try {
+				delegate.close();
+			} finally {
+				registration.close();
+			}
+		}
+	}
+}
@@ -0,0 +1,126 @@
+/**
+ * Copyright 2016, RadiantBlue Technologies, Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package access.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The blocking I/O in flight for a Job, so that cancelling the Job can abort it. Interrupting a worker thread does not
+ * stop a socket read or write; closing the socket does.
+ * 
+ * A worker binds its Job's scope to its thread. Code that starts a long blocking call, such as a GeoServer upload or an
+ * S3 read, registers a way of aborting it with the current scope, and unregisters it once the call is done. Registering
+ * with an already cancelled scope aborts the call immediately. Outside of a Job, registration does nothing.
+ */
+public class CancellationScope {
+	private static final ThreadLocal<CancellationScope> CURRENT = new ThreadLocal<>();
+	private static final Registration NONE = () -> {
+	};
+	private static final Logger LOGGER = LoggerFactory.getLogger(CancellationScope.class);
+
+	private final Set<Closeable> resources = ConcurrentHashMap.newKeySet();
+	private volatile boolean cancelled;
+
+	/**
+	 * Handle of a registered resource. Closing it unregisters the resource, without closing the resource itself.
+	 */
+	@FunctionalInterface
+	public interface Registration extends AutoCloseable {
+		@Override
+		void close();
+	}
+
+	/**
+	 * Binds a scope to the current thread, replacing any scope bound before. Binding null unbinds.
+	 */
+	public static void bind(CancellationScope scope) {
+		if (scope == null) {
+			CURRENT.remove();
+		} else {
+			CURRENT.set(scope);
+		}
+	}
+
+	/**
+	 * Unbinds the scope of the current thread
+	 */
+	public static void unbind() {
+		CURRENT.remove();
+	}
+
+	/**
+	 * @return The scope bound to the current thread, or null. Work handed to other threads binds it there as well.
+	 */
+	public static CancellationScope current() {
+		return CURRENT.get();
+	}
+
+	/**
+	 * @return True if the current thread is working for a Job that has been cancelled
+	 */
+	public static boolean isCurrentCancelled() {
+		CancellationScope scope = CURRENT.get();
+		return (scope != null) && scope.isCancelled();
+	}
+
+	/**
+	 * Registers a resource to be closed if the current thread's Job is cancelled
+	 * 
+	 * @param resource
+	 *            Aborts the blocking call when closed. May be closed from another thread, and more than once.
+	 * @return The registration, to be closed once the blocking call completes
+	 */
+	public static Registration register(Closeable resource) {
+		CancellationScope scope = CURRENT.get();
+		if (scope == null) {
+			return NONE;
+		}
+		scope.resources.add(resource);
+		// Checked after adding, so that a concurrent cancel either sees the resource or is seen here
+		if (scope.cancelled) {
+			closeQuietly(resource);
+		}
+		return () -> scope.resources.remove(resource);
+	}
+
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * Cancels the scope, closing all registered resources
+	 */
+	public void cancel() {
+		cancelled = true;
+		for (Closeable resource : resources) {
+			closeQuietly(resource);
+		}
+	}
+
+	private static void closeQuietly(Closeable resource) {
+		try {
+			resource.close();
+		} catch (IOException | RuntimeException exception) {
+			LOGGER.debug("Error aborting resource of a cancelled Job.", exception);
+		}
+	}
+}
@@ -0,0 +1,105 @@
+/**
+ * Copyright 2016, RadiantBlue Technologies, Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package access.util;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A bounded, thread-safe cache whose entries expire a fixed time after they were written. When full, expired entries
+ * are purged first, and then arbitrary entries are evicted; this is not an LRU, but it keeps memory bounded without
+ * locking the readers.
+ *
+ * @param <K>
+ *            Key type
+ * @param <V>
+ *            Value type
+ */
+public class ExpiringCache<K, V> {
+	private final ConcurrentMap<K, Entry<V>> entries = new ConcurrentHashMap<>();
+	private final long ttlMillis;
+	private final int maxSize;
+
+	/**
+	 * @param ttlMillis
+	 *            The time, in milliseconds, an entry is served for after it was written
+	 * @param maxSize
+	 *            The maximum number of entries
+	 */
+	public ExpiringCache(long ttlMillis, int maxSize) {
+		this.ttlMillis = ttlMillis;
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * @return The value for the key, or null if there is none or it has expired
+	 */
+	public V get(K key) {
+		Entry<V> entry = entries.get(key);
+		if (entry == null) {
+			return null;
+		}
+		if (entry.isExpired()) {
+			entries.remove(key, entry);
+			return null;
+		}
+		return entry.value;
+	}
+
+	public void put(K key, V value) {
+		if ((entries.size() >= maxSize) && !entries.containsKey(key)) {
+			evict();
+		}
+		entries.put(key, new Entry<>(value, System.currentTimeMillis() + ttlMillis));
+	}
+
+	public void remove(K key) {
+		entries.remove(key);
+	}
+
+	public void clear() {
+		entries.clear();
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	private void evict() {
+		entries.values().removeIf(Entry::isExpired);
+		Iterator<Map.Entry<K, Entry<V>>> iterator = entries.entrySet().iterator();
+		while ((entries.size() >= maxSize) && iterator.hasNext()) {
+			iterator.next();
+			iterator.remove();
+		}
+	}
+
+	private static class Entry<V> {
+		private final V value;
+		private final long expiresOn;
+
+		private Entry(V value, long expiresOn) {
+			this.value = value;
+			this.expiresOn = expiresOn;
+		}
+
+		private boolean isExpired() {
+			return System.currentTimeMillis() >= expiresOn;
+		}
+	}
+}
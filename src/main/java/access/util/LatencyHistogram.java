@@ -0,0 +1,126 @@
+/**
+ * Copyright 2016, RadiantBlue Technologies, Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package access.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A thread-safe histogram of latencies with fixed, roughly logarithmic millisecond buckets. Recording is lock-free so
+ * it may be used on hot paths; percentiles are approximated by the upper bound of the bucket they fall into.
+ */
+public class LatencyHistogram {
+	/**
+	 * Upper bounds, in milliseconds, of every bucket but the last. The last bucket is unbounded.
+	 */
+	private static final long[] BUCKET_BOUNDS = { 1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000, 30000 };
+
+	private final LongAdder[] buckets = new LongAdder[BUCKET_BOUNDS.length + 1];
+	private final LongAdder count = new LongAdder();
+	private final LongAdder totalNanos = new LongAdder();
+	private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+	public LatencyHistogram() {
+		for (int i = 0; i < buckets.length; i++) {
+			buckets[i] = new LongAdder();
+		}
+	}
+
+	/**
+	 * Records a latency
+	 * 
+	 * @param nanos
+	 *            The elapsed time, in nanoseconds
+	 */
+	public void record(long nanos) {
+		long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+		int bucket = 0;
+		while ((bucket < BUCKET_BOUNDS.length) && (millis >= BUCKET_BOUNDS[bucket])) {
+			bucket++;
+		}
+		buckets[bucket].increment();
+		count.increment();
+		totalNanos.add(nanos);
+		maxNanos.accumulate(nanos);
+	}
+
+	/**
+	 * Records the latency since a start time
+	 * 
+	 * @param startNanos
+	 *            The value of {@link System#nanoTime()} when the measured operation began
+	 */
+	public void recordSince(long startNanos) {
+		record(System.nanoTime() - startNanos);
+	}
+
+	public long getCount() {
+		return count.sum();
+	}
+
+	/**
+	 * @param percentile
+	 *            The percentile, between 0 and 100
+	 * @return The upper bound, in milliseconds, of the bucket containing the percentile. For the unbounded bucket, the
+	 *         maximum recorded latency. Zero if nothing was recorded.
+	 */
+	public long getPercentileMillis(double percentile) {
+		long total = count.sum();
+		if (total == 0) {
+			return 0;
+		}
+		long rank = (long) Math.ceil(total * percentile / 100.0);
+		long seen = 0;
+		for (int i = 0; i < BUCKET_BOUNDS.length; i++) {
+			seen += buckets[i].sum();
+			if (seen >= rank) {
+				return BUCKET_BOUNDS[i];
+			}
+		}
+		return TimeUnit.NANOSECONDS.toMillis(maxNanos.get());
+	}
+
+	/**
+	 * Clears all recorded latencies
+	 */
+	public void reset() {
+		for (LongAdder bucket : buckets) {
+			bucket.reset();
+		}
+		count.reset();
+		totalNanos.reset();
+		maxNanos.reset();
+	}
+
+	/**
+	 * @return A summary suitable for the administrative statistics: count, mean, max and common percentiles, in
+	 *         milliseconds.
+	 */
+	public Map<String, Object> toMap() {
+		long total = count.sum();
+		Map<String, Object> summary = new LinkedHashMap<>();
+		summary.put("count", total);
+		summary.put("meanMillis", total > 0 ? TimeUnit.NANOSECONDS.toMillis(totalNanos.sum() / total) : 0);
+		summary.put("maxMillis", TimeUnit.NANOSECONDS.toMillis(maxNanos.get()));
+		summary.put("p50Millis", getPercentileMillis(50));
+		summary.put("p95Millis", getPercentileMillis(95));
+		summary.put("p99Millis", getPercentileMillis(99));
+		return summary;
+	}
+}
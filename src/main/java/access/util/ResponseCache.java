@@ -0,0 +1,159 @@
+/**
+ * Copyright 2016, RadiantBlue Technologies, Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package access.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+/**
+ * Cache of the serialized bodies of metadata responses, so hot GETs of a single Data Resource or Deployment skip the
+ * database and JSON serialization. Entries are served with an ETag computed from their bytes.
+ * 
+ * Staleness is bounded by the TTL. Data Resources are written by Ingest, and Deployments and Leases by every Access
+ * instance, so most writes are never seen by this cache; a cached response may be up to the TTL out of date. Writes
+ * made through this instance's DatabaseAccessor invalidate their Deployment's entry, which only shortens that window
+ * for this instance.
+ * 
+ * Every invalidation advances a version. A response is only cached if no invalidation happened while it was being
+ * built, so a response read before a concurrent write can not be cached after that write's invalidation.
+ */
+@Component
+public class ResponseCache {
+	@Value("${response.cache.enabled:false}")
+	private boolean enabled;
+	@Value("${response.cache.ttl.seconds:30}")
+	private int ttlSeconds;
+	@Value("${response.cache.max.entries:10000}")
+	private int maxEntries;
+
+	private final AtomicLong version = new AtomicLong();
+	private ExpiringCache<String, CachedResponse> cache;
+
+	@PostConstruct
+	public void initialize() {
+		cache = new ExpiringCache<>(ttlSeconds * 1000L, maxEntries);
+	}
+
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * @return The key of the response for a Data Resource
+	 */
+	public static String getDataKey(String dataId) {
+		return "data/" + dataId;
+	}
+
+	/**
+	 * @return The key of the response for a Deployment
+	 */
+	public static String getDeploymentKey(String deploymentId) {
+		return "deployment/" + deploymentId;
+	}
+
+	/**
+	 * @return The quoted ETag of a response body
+	 */
+	public static String getETag(byte[] body) {
+		return String.format("\"%s\"", DigestUtils.md5DigestAsHex(body));
+	}
+
+	/**
+	 * @return The current version; to be read before a response is built and passed to
+	 *         {@link #put(String, long, String, byte[])}
+	 */
+	public long getVersion() {
+		return version.get();
+	}
+
+	/**
+	 * @return The cached response, or null
+	 */
+	public CachedResponse get(String key) {
+		return enabled ? cache.get(key) : null;
+	}
+
+	/**
+	 * Caches a response body, unless the cache was invalidated since the response began to be built.
+	 * 
+	 * @param key
+	 *            The response key
+	 * @param builtAtVersion
+	 *            The version read before the response was built
+	 * @param contentType
+	 *            The Content-Type of the response
+	 * @param body
+	 *            The serialized body
+	 * @return The cached response, or null if it could not be cached
+	 */
+	public CachedResponse put(String key, long builtAtVersion, String contentType, byte[] body) {
+		if (!enabled || (builtAtVersion != version.get())) {
+			return null;
+		}
+		CachedResponse response = new CachedResponse(contentType, body);
+		cache.put(key, response);
+		if (builtAtVersion != version.get()) {
+			// Invalidated while being stored
+			cache.remove(key);
+			return null;
+		}
+		return response;
+	}
+
+	/**
+	 * Removes a cached response. Called by this instance after its own Deployment and Lease writes; writes made
+	 * elsewhere are only seen once the entry expires.
+	 */
+	public void invalidate(String key) {
+		version.incrementAndGet();
+		if (cache != null) {
+			cache.remove(key);
+		}
+	}
+
+	/**
+	 * A serialized response body and its Content-Type and ETag
+	 */
+	public static class CachedResponse {
+		private final String contentType;
+		private final byte[] body;
+		private final String eTag;
+
+		public CachedResponse(String contentType, byte[] body) {
+			this.contentType = contentType;
+			this.body = body;
+			this.eTag = ResponseCache.getETag(body);
+		}
+
+		public String getContentType() {
+			return contentType;
+		}
+
+		public byte[] getBody() {
+			return body;
+		}
+
+		public String getETag() {
+			return eTag;
+		}
+	}
+}
@@ -0,0 +1,128 @@
+/**
+ * Copyright 2016, RadiantBlue Technologies, Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package access.util;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Time spent by one Access Job in each stage of its processing. A worker binds the timings of its Job to its thread;
+ * code anywhere below it times a stage by opening a span, which does nothing outside of a Job.
+ */
+public class StageTimings {
+	/**
+	 * The stages of an Access Job
+	 */
+	public enum Stage {
+		/**
+		 * Classifying the Job into a lane, on the listener thread
+		 */
+		CLASSIFY,
+		/**
+		 * Waiting in the executor queue for a worker thread
+		 */
+		QUEUE_WAIT,
+		/**
+		 * Reading the Deployment, Lease and Data from the database
+		 */
+		DATABASE_LOOKUP,
+		/**
+		 * Reading the file of the Data from S3
+		 */
+		S3_FETCH,
+		/**
+		 * Publishing the layer to GeoServer
+		 */
+		GEOSERVER_PUBLISH,
+		/**
+		 * Creating or renewing the Lease
+		 */
+		LEASE,
+		/**
+		 * Adding the Deployment to its GeoServer Layer Group
+		 */
+		GROUP_UPDATE,
+		/**
+		 * From a status update being queued until it is sent to the broker
+		 */
+		STATUS_PUBLISH,
+		/**
+		 * The whole of the Job on its worker thread
+		 */
+		TOTAL
+	}
+
+	/**
+	 * A timed stage, recorded when closed
+	 */
+	@FunctionalInterface
+	public interface Span extends AutoCloseable {
+		@Override
+		void close();
+	}
+
+	private static final ThreadLocal<StageTimings> CURRENT = new ThreadLocal<>();
+	private static final Span NONE = () -> {
+	};
+
+	private final Map<Stage, Long> nanos = Collections.synchronizedMap(new EnumMap<>(Stage.class));
+
+	/**
+	 * Binds timings to the current thread. Binding null unbinds.
+	 */
+	public static void bind(StageTimings timings) {
+		if (timings == null) {
+			CURRENT.remove();
+		} else {
+			CURRENT.set(timings);
+		}
+	}
+
+	public static void unbind() {
+		CURRENT.remove();
+	}
+
+	/**
+	 * Starts timing a stage of the current thread's Job
+	 * 
+	 * @return The span, to be closed when the stage ends
+	 */
+	public static Span start(Stage stage) {
+		StageTimings timings = CURRENT.get();
+		if (timings == null) {
+			return NONE;
+		}
+		long startNanos = System.nanoTime();
+		return () -> timings.add(stage, System.nanoTime() - startNanos);
+	}
+
+	/**
+	 * Adds time to a stage. A stage entered more than once accumulates its time.
+	 */
+	public void add(Stage stage, long elapsedNanos) {
+		nanos.merge(stage, elapsedNanos, Long::sum);
+	}
+
+	/**
+	 * @return The time spent in each stage entered, in nanoseconds
+	 */
+	public Map<Stage, Long> getNanos() {
+		synchronized (nanos) {
+			return new EnumMap<>(nanos);
+		}
+	}
+}
@@ -0,0 +1,53 @@
+-- Supplementary indexes and tables for pz-access. Applied on startup by SchemaInitializer.
+-- Every statement must be idempotent, and is separated by a semicolon.
+-- Indexes on the tables shared with other components (data_resource, deployment, lease) are built CONCURRENTLY, so
+-- that their writes are not blocked while the index is built. These statements are run in the background, after
+-- startup, one after another on a single autocommit connection, outside of any transaction, while that connection holds
+-- an advisory lock so that only one instance builds them at a time. All other statements run at startup.
+
+-- Keyset pagination. Each whitelisted sort key is indexed together with the row id, matching the
+-- (sort key, id) row comparison and ordering issued by ListQuery.
+CREATE INDEX CONCURRENTLY IF NOT EXISTS data_resource_data_id_keyset_idx
+	ON data_resource ((coalesce(data ->> 'dataId', '')), id);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS data_resource_created_on_keyset_idx
+	ON data_resource ((coalesce(data -> 'metadata' ->> 'createdOn', '')), id);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS data_resource_created_by_keyset_idx
+	ON data_resource ((coalesce(data -> 'metadata' ->> 'createdBy', '')), id);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS deployment_deployment_id_keyset_idx
+	ON deployment ((coalesce(data ->> 'deploymentId', '')), id);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS deployment_data_id_keyset_idx
+	ON deployment ((coalesce(data ->> 'dataId', '')), id);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS deployment_created_on_keyset_idx
+	ON deployment ((coalesce(data ->> 'createdOn', '')), id);
+
+-- Point lookups of Deployments and their Leases, used by the joined lookup in DatabaseAccessor.getLeasedDeployment.
+CREATE INDEX CONCURRENTLY IF NOT EXISTS deployment_deployment_id_idx
+	ON deployment ((data ->> 'deploymentId'));
+CREATE INDEX CONCURRENTLY IF NOT EXISTS deployment_data_id_idx
+	ON deployment ((data ->> 'dataId'));
+CREATE INDEX CONCURRENTLY IF NOT EXISTS lease_deployment_id_idx
+	ON lease ((data ->> 'deploymentId'));
+
+-- Keyword search. Expression index over the searchable metadata text of each Data Resource. Postgres
+-- maintains it on every insert and update; the expression must match DatabaseAccessor.DATA_SEARCH_DOCUMENT.
+CREATE INDEX CONCURRENTLY IF NOT EXISTS data_resource_search_idx
+	ON data_resource USING gin ((to_tsvector('simple', coalesce(data -> 'metadata' ->> 'name', '') || ' ' || coalesce(data -> 'metadata' ->> 'description', ''))));
+
+-- Processed-job ledger. The final status of each Job, recorded before its message is acknowledged, so that a
+-- redelivered Job replays its recorded status instead of running again. Maintained by JobLedger.
+CREATE TABLE IF NOT EXISTS access_job_ledger (
+	job_id text PRIMARY KEY,
+	state text NOT NULL,
+	status_update jsonb NOT NULL,
+	completed_on timestamptz NOT NULL DEFAULT now()
+);
+CREATE INDEX IF NOT EXISTS access_job_ledger_completed_on_idx
+	ON access_job_ledger (completed_on);
+-- Whether the broker has confirmed the recorded status. Rows recorded before this column existed were published.
+ALTER TABLE access_job_ledger ADD COLUMN IF NOT EXISTS published boolean NOT NULL DEFAULT true;
+CREATE INDEX IF NOT EXISTS access_job_ledger_unpublished_idx
+	ON access_job_ledger (completed_on) WHERE NOT published;
+-- The instance holding each unpublished status, and when it last renewed its claim. Another instance only republishes a
+-- status once its claim has lapsed.
+ALTER TABLE access_job_ledger ADD COLUMN IF NOT EXISTS claimed_by text;
+ALTER TABLE access_job_ledger ADD COLUMN IF NOT EXISTS claimed_on timestamptz;
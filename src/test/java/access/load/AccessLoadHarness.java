@@ -0,0 +1,293 @@
+/**
+ * Copyright 2016, RadiantBlue Technologies, Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package access.load;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.embedded.LocalServerPort;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import access.Application;
+import access.load.LoadTestConfiguration.LocalRetryQueues;
+import access.load.LoadTestConfiguration.RecordingStatusPublisher;
+import access.messaging.AccessThreadManager;
+import access.messaging.PipelineMetrics;
+import access.util.LatencyHistogram;
+import model.data.DataResource;
+import model.data.type.GeoJsonDataType;
+import model.job.Job;
+import model.job.type.AccessJob;
+import model.job.metadata.SpatialMetadata;
+import model.status.StatusUpdate;
+
+/**
+ * Load test of pz-access. Runs the real Spring context against the local GeoServer stub, the in-memory broker and the
+ * local database stand-ins, drives Access Jobs and REST reads at a target rate, and reports throughput and latency
+ * percentiles. The in-memory broker only has the AccessJob queue, so lane queues are disabled and Jobs run from it
+ * directly.
+ * 
+ * Not part of the regular build. Run with the load-test profile, setting any of the load.* properties as system
+ * properties. The GeoServer stub is configured with load.geoserver.latency.millis, load.geoserver.jitter.millis,
+ * load.geoserver.error.rate and load.geoserver.threads, and the broker with the load.broker.* properties of
+ * {@link LoadTestConfiguration}. For example:
+ * 
+ * <pre>
+ * mvn test -P load-test -Dload.jobs.per.second=100 -Dload.geoserver.latency.millis=50 -Dload.geoserver.error.rate=0.01
+ * </pre>
+ * 
+ * The report is logged, and written to target/load-test-report.json.
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = { Application.class, LoadTestConfiguration.class }, webEnvironment = WebEnvironment.RANDOM_PORT, properties = {
+		"spring.datasource.url=jdbc:h2:mem:access-load;MODE=PostgreSQL;DB_CLOSE_DELAY=-1", "spring.datasource.driver-class-name=org.h2.Driver",
+		"spring.datasource.username=sa", "spring.datasource.password=", "spring.datasource.validationQuery=SELECT 1",
+		"spring.datasource.schema=classpath:load/h2-functions.sql", "spring.jpa.hibernate.ddl-auto=none", "spring.jpa.show-sql=false",
+		"spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect", "spring.rabbitmq.listener.auto-startup=false",
+		"spring.rabbitmq.listener.simple.auto-startup=false", "access.job.lane.queues.enabled=false", "logger.console=false" })
+public class AccessLoadHarness {
+	@Autowired
+	private LocalBroker broker;
+	@Autowired
+	private InMemoryDatabaseAccessor accessor;
+	@Autowired
+	private RecordingStatusPublisher statusPublisher;
+	@Autowired
+	private LocalRetryQueues retryQueues;
+	@Autowired
+	private AccessThreadManager threadManager;
+	@Autowired
+	private PipelineMetrics pipelineMetrics;
+	@Autowired
+	private ObjectMapper objectMapper;
+	@LocalServerPort
+	private int port;
+
+	@Value("${load.duration.seconds:60}")
+	private int durationSeconds;
+	@Value("${load.jobs.per.second:20}")
+	private double jobsPerSecond;
+	@Value("${load.reads.per.second:50}")
+	private double readsPerSecond;
+	@Value("${load.read.threads:16}")
+	private int readThreads;
+	@Value("${load.data.count:500}")
+	private int dataCount;
+	@Value("${load.drain.timeout.seconds:120}")
+	private int drainTimeoutSeconds;
+
+	private static GeoServerStub geoServer;
+	private static final Logger LOGGER = LoggerFactory.getLogger(AccessLoadHarness.class);
+
+	private final ConcurrentMap<String, Long> submittedOn = new ConcurrentHashMap<>();
+	private final LatencyHistogram jobLatency = new LatencyHistogram();
+	private final LatencyHistogram readLatency = new LatencyHistogram();
+	private final Map<String, LongAdder> jobOutcomes = new ConcurrentHashMap<>();
+	private final LongAdder readErrors = new LongAdder();
+	private final AtomicLong submitted = new AtomicLong();
+
+	/**
+	 * Starts the GeoServer stub before the Spring context, which checks GeoServer for its workspace on startup
+	 */
+	@BeforeClass
+	public static void startGeoServer() throws Exception {
+		geoServer = new GeoServerStub(Long.getLong("load.geoserver.latency.millis", 20), Long.getLong("load.geoserver.jitter.millis", 10),
+				Double.parseDouble(System.getProperty("load.geoserver.error.rate", "0")));
+		geoServer.start(Integer.getInteger("load.geoserver.threads", 64));
+		System.setProperty("vcap.services.pz-geoserver.credentials.boundless_geoserver_url", geoServer.getUrl());
+	}
+
+	@AfterClass
+	public static void stopGeoServer() {
+		if (geoServer != null) {
+			geoServer.stop();
+		}
+	}
+
+	/**
+	 * Drives the load, waits for the submitted Jobs to complete, and reports
+	 */
+	@Test
+	public void runLoad() throws Exception {
+		for (int i = 0; i < dataCount; i++) {
+			accessor.addData(createData(i));
+		}
+		statusPublisher.setListener(this::onComplete);
+
+		RestTemplate restTemplate = new RestTemplate();
+		ExecutorService readers = Executors.newFixedThreadPool(readThreads);
+		ScheduledExecutorService drivers = Executors.newScheduledThreadPool(2);
+		long startNanos = System.nanoTime();
+		if (jobsPerSecond > 0) {
+			drivers.scheduleAtFixedRate(this::submitJob, 0, (long) (TimeUnit.SECONDS.toNanos(1) / jobsPerSecond), TimeUnit.NANOSECONDS);
+		}
+		if (readsPerSecond > 0) {
+			drivers.scheduleAtFixedRate(() -> readers.execute(() -> read(restTemplate)), 0,
+					(long) (TimeUnit.SECONDS.toNanos(1) / readsPerSecond), TimeUnit.NANOSECONDS);
+		}
+		Thread.sleep(TimeUnit.SECONDS.toMillis(durationSeconds));
+		drivers.shutdownNow();
+		readers.shutdown();
+		long loadNanos = System.nanoTime() - startNanos;
+
+		// Let the Jobs in flight complete
+		long drainDeadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(drainTimeoutSeconds);
+		while (!submittedOn.isEmpty() && (System.nanoTime() < drainDeadline)) {
+			Thread.sleep(100);
+		}
+		long elapsedNanos = System.nanoTime() - startNanos;
+		readers.awaitTermination(10, TimeUnit.SECONDS);
+
+		Map<String, Object> report = getReport(loadNanos, elapsedNanos);
+		String json = objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(report);
+		LOGGER.info("Load test report:\n{}", json);
+		File reportFile = new File("target", "load-test-report.json");
+		reportFile.getParentFile().mkdirs();
+		FileUtils.writeStringToFile(reportFile, json, StandardCharsets.UTF_8);
+		broker.shutdown();
+
+		assertTrue(String.format("%s Jobs did not complete within the drain timeout", submittedOn.size()), submittedOn.isEmpty());
+	}
+
+	private void submitJob() {
+		try {
+			String jobId = UUID.randomUUID().toString();
+			AccessJob accessJob = new AccessJob(jobId);
+			accessJob.dataId = getDataId((int) (submitted.getAndIncrement() % dataCount));
+			accessJob.deploymentType = AccessJob.ACCESS_TYPE_GEOSERVER;
+			Job job = new Job();
+			job.setJobId(jobId);
+			job.setCreatedBy("load-test");
+			job.setJobType(accessJob);
+			Message message = new Message(objectMapper.writeValueAsBytes(job), new MessageProperties());
+			submittedOn.put(jobId, System.nanoTime());
+			broker.publish(message);
+		} catch (Exception exception) {
+			LOGGER.error("Could not submit Access Job.", exception);
+		}
+	}
+
+	private void onComplete(StatusUpdate statusUpdate) {
+		Long startNanos = submittedOn.remove(statusUpdate.getJobId());
+		if (startNanos != null) {
+			jobLatency.recordSince(startNanos);
+			jobOutcomes.computeIfAbsent(statusUpdate.getStatus(), status -> new LongAdder()).increment();
+		}
+	}
+
+	private void read(RestTemplate restTemplate) {
+		long startNanos = System.nanoTime();
+		try {
+			restTemplate.getForObject(String.format("http://localhost:%s/data/%s", port, getDataId(ThreadLocalRandom.current().nextInt(dataCount))),
+					String.class);
+			readLatency.recordSince(startNanos);
+		} catch (RestClientException exception) {
+			readErrors.increment();
+		}
+	}
+
+	private Map<String, Object> getReport(long loadNanos, long elapsedNanos) {
+		double loadSeconds = loadNanos / 1e9;
+		double elapsedSeconds = elapsedNanos / 1e9;
+		Map<String, Object> jobs = new LinkedHashMap<>();
+		jobs.put("targetPerSecond", jobsPerSecond);
+		jobs.put("submitted", submitted.get());
+		jobs.put("completed", jobLatency.getCount());
+		jobOutcomes.forEach((status, count) -> jobs.put(status, count.sum()));
+		jobs.put("incomplete", submittedOn.size());
+		jobs.put("deadLettered", retryQueues.getDeadLetteredCount());
+		jobs.put("completedPerSecond", jobLatency.getCount() / elapsedSeconds);
+		jobs.put("latency", jobLatency.toMap());
+
+		Map<String, Object> reads = new LinkedHashMap<>();
+		reads.put("targetPerSecond", readsPerSecond);
+		reads.put("completed", readLatency.getCount());
+		reads.put("errors", readErrors.sum());
+		reads.put("completedPerSecond", readLatency.getCount() / loadSeconds);
+		reads.put("latency", readLatency.toMap());
+
+		Map<String, Object> broker = new LinkedHashMap<>();
+		broker.put("acknowledged", this.broker.getAcknowledgedCount());
+		broker.put("requeued", this.broker.getRequeuedCount());
+		broker.put("rejected", this.broker.getRejectedCount());
+		broker.put("replayed", threadManager.getReplayedJobCount());
+
+		Map<String, Object> geoServerStats = new LinkedHashMap<>();
+		geoServerStats.put("injectedErrors", geoServer.getInjectedErrorCount());
+		geoServerStats.put("requests", geoServer.getRequestCounts());
+
+		Map<String, Object> report = new LinkedHashMap<>();
+		report.put("loadSeconds", loadSeconds);
+		report.put("elapsedSeconds", elapsedSeconds);
+		report.put("jobs", jobs);
+		report.put("reads", reads);
+		report.put("broker", broker);
+		report.put("geoServer", geoServerStats);
+		report.put("stages", pipelineMetrics.getStats());
+		report.put("lanes", threadManager.getLaneStats());
+		return report;
+	}
+
+	private static String getDataId(int index) {
+		return String.format("load-%s", index);
+	}
+
+	/**
+	 * Creates a vector Data Resource, which is deployed with a single GeoServer request and needs no file from S3
+	 */
+	private static DataResource createData(int index) {
+		GeoJsonDataType dataType = new GeoJsonDataType();
+		dataType.setDatabaseTableName(String.format("load_%s", index));
+		SpatialMetadata spatialMetadata = new SpatialMetadata();
+		spatialMetadata.setEpsgCode(4326);
+		DataResource dataResource = new DataResource();
+		dataResource.setDataId(getDataId(index));
+		dataResource.dataType = dataType;
+		dataResource.spatialMetadata = spatialMetadata;
+		return dataResource;
+	}
+}
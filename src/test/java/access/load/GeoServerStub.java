@@ -0,0 +1,210 @@
+/**
+ * Copyright 2016, RadiantBlue Technologies, Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package access.load;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.io.IOUtils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Local stand-in for the GeoServer REST API, implementing the endpoints called by the Deployer, the GroupDeployer and
+ * the PiazzaEnvironment. Every request waits for the configured latency, plus a random jitter, and fails with 503 at
+ * the configured error rate, so that the retry and backoff paths can be loaded as well.
+ * 
+ * Layer groups are kept in memory, so that the read-modify-write of a group update behaves as it would against
+ * GeoServer. Other resources are accepted without being stored.
+ */
+public class GeoServerStub {
+	private static final Pattern LAYER_GROUP = Pattern.compile(".*/rest/workspaces/piazza/layergroups/([^/]+)\\.(json|xml)$");
+
+	private final long latencyMillis;
+	private final long jitterMillis;
+	private final double errorRate;
+	private final ObjectMapper mapper = new ObjectMapper();
+	private final ConcurrentMap<String, JsonNode> layerGroups = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, LongAdder> requestCounts = new ConcurrentHashMap<>();
+	private final LongAdder injectedErrors = new LongAdder();
+	private HttpServer server;
+	private ExecutorService executor;
+
+	/**
+	 * @param latencyMillis
+	 *            Time every request takes
+	 * @param jitterMillis
+	 *            Maximum random time added to each request
+	 * @param errorRate
+	 *            Fraction of requests, from 0 to 1, answered with 503 Service Unavailable
+	 */
+	public GeoServerStub(long latencyMillis, long jitterMillis, double errorRate) {
+		this.latencyMillis = latencyMillis;
+		this.jitterMillis = jitterMillis;
+		this.errorRate = errorRate;
+	}
+
+	/**
+	 * Starts the stub on an ephemeral local port
+	 * 
+	 * @param threads
+	 *            The number of requests served concurrently
+	 */
+	public void start(int threads) throws IOException {
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		executor = Executors.newFixedThreadPool(threads);
+		server.setExecutor(executor);
+		server.createContext("/geoserver/rest/", this::handle);
+		server.start();
+	}
+
+	public void stop() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+	/**
+	 * @return The GeoServer URL to configure pz-access with
+	 */
+	public String getUrl() {
+		return String.format("http://localhost:%s/geoserver", server.getAddress().getPort());
+	}
+
+	/**
+	 * @return The number of requests served, by method and endpoint
+	 */
+	public Map<String, Long> getRequestCounts() {
+		Map<String, Long> counts = new TreeMap<>();
+		requestCounts.forEach((endpoint, count) -> counts.put(endpoint, count.sum()));
+		return counts;
+	}
+
+	public long getInjectedErrorCount() {
+		return injectedErrors.sum();
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		try (InputStream body = exchange.getRequestBody()) {
+			String method = exchange.getRequestMethod();
+			String path = exchange.getRequestURI().getPath();
+			byte[] request = IOUtils.toByteArray(body);
+			requestCounts.computeIfAbsent(String.format("%s %s", method, getEndpoint(path)), key -> new LongAdder()).increment();
+
+			delay();
+			if ((errorRate > 0) && (ThreadLocalRandom.current().nextDouble() < errorRate)) {
+				injectedErrors.increment();
+				respond(exchange, 503, "text/plain", "Injected failure");
+				return;
+			}
+			route(exchange, method, path, new String(request, StandardCharsets.UTF_8));
+		} catch (InterruptedException exception) {
+			Thread.currentThread().interrupt();
+			respond(exchange, 503, "text/plain", "Stopping");
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private void route(HttpExchange exchange, String method, String path, String body) throws IOException {
+		Matcher layerGroup = LAYER_GROUP.matcher(path);
+		if ("GET".equals(method) && (path.endsWith("/workspaces/piazza.json") || path.endsWith("/datastores/piazza.json"))) {
+			respond(exchange, 200, "application/json", "{}");
+		} else if ("POST".equals(method) && path.contains("/featuretypes")) {
+			respond(exchange, 201, "text/plain", "");
+		} else if ("PUT".equals(method) && path.endsWith("/file.geotiff")) {
+			respond(exchange, 201, "text/plain", "");
+		} else if ("GET".equals(method) && path.contains("/rest/layers/")) {
+			respond(exchange, 200, "application/json", "{\"layer\": {}}");
+		} else if ("POST".equals(method) && path.endsWith("/layergroups.json")) {
+			JsonNode group = mapper.readTree(body);
+			layerGroups.put(group.path("layerGroup").path("name").asText(), group);
+			respond(exchange, 201, "text/plain", "");
+		} else if ("PUT".equals(method) && layerGroup.matches()) {
+			layerGroups.put(layerGroup.group(1), mapper.readTree(body));
+			respond(exchange, 200, "text/plain", "");
+		} else if ("GET".equals(method) && layerGroup.matches()) {
+			JsonNode group = layerGroups.get(layerGroup.group(1));
+			if (group == null) {
+				respond(exchange, 404, "text/plain", "No such layer group");
+			} else {
+				respond(exchange, 200, "application/xml", toXml(layerGroup.group(1), group));
+			}
+		} else if ("DELETE".equals(method)) {
+			if (layerGroup.matches()) {
+				layerGroups.remove(layerGroup.group(1));
+			}
+			respond(exchange, 200, "text/plain", "");
+		} else {
+			respond(exchange, 404, "text/plain", "Not implemented by the GeoServer stub");
+		}
+	}
+
+	/**
+	 * Renders a stored layer group in the XML form GeoServer returns, and the GroupDeployer reads
+	 */
+	private static String toXml(String name, JsonNode group) {
+		StringBuilder xml = new StringBuilder("<layerGroup><name>").append(name).append("</name><publishables>");
+		for (JsonNode layer : group.path("layerGroup").path("publishables").path("published")) {
+			xml.append("<published type=\"layer\"><name>").append(layer.path("name").asText()).append("</name></published>");
+		}
+		xml.append("</publishables><styles>");
+		for (JsonNode style : group.path("layerGroup").path("styles").path("style")) {
+			xml.append("<style>").append(style.asText()).append("</style>");
+		}
+		return xml.append("</styles></layerGroup>").toString();
+	}
+
+	/**
+	 * Groups requests by endpoint for reporting, replacing the resource names in the path
+	 */
+	private static String getEndpoint(String path) {
+		return path.replaceAll("/(layers|layergroups|coveragestores)/[^/]+", "/$1/{id}");
+	}
+
+	private void delay() throws InterruptedException {
+		long millis = latencyMillis + (jitterMillis > 0 ? ThreadLocalRandom.current().nextLong(jitterMillis + 1) : 0);
+		if (millis > 0) {
+			Thread.sleep(millis);
+		}
+	}
+
+	private static void respond(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", contentType);
+		exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+		if (bytes.length > 0) {
+			try (OutputStream output = exchange.getResponseBody()) {
+				output.write(bytes);
+			}
+		}
+	}
+}
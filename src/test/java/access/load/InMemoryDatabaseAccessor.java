@@ -0,0 +1,180 @@
+/**
+ * Copyright 2016, RadiantBlue Technologies, Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package access.load;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.joda.time.DateTime;
+
+import access.database.CountMode;
+import access.database.DatabaseAccessor;
+import access.database.LeasedDeployment;
+import model.data.DataResource;
+import model.data.deployment.Deployment;
+import model.data.deployment.DeploymentGroup;
+import model.data.deployment.Lease;
+
+/**
+ * Local stand-in for the Postgres database, holding the Data Resources, Deployments, Leases and Deployment Groups
+ * used by the Access Job pipeline and the single-record REST reads in memory. The queries of the real accessor rely
+ * on Postgres jsonb operators, so they are replaced rather than run against an embedded database.
+ * 
+ * List, export and search queries are not supported by the stand-in.
+ */
+public class InMemoryDatabaseAccessor extends DatabaseAccessor {
+	private final ConcurrentMap<String, DataResource> data = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, Deployment> deploymentsById = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, Deployment> deploymentsByDataId = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, Lease> leasesByDeploymentId = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, DeploymentGroup> deploymentGroups = new ConcurrentHashMap<>();
+
+	/**
+	 * Adds a Data Resource, as Ingest would
+	 */
+	public void addData(DataResource dataResource) {
+		data.put(dataResource.getDataId(), dataResource);
+	}
+
+	public int getDeploymentCount() {
+		return deploymentsById.size();
+	}
+
+	@Override
+	public DataResource getData(String dataId) {
+		return data.get(dataId);
+	}
+
+	@Override
+	public DataResource getDataFromPrimary(String dataId) {
+		return data.get(dataId);
+	}
+
+	@Override
+	public boolean isKnownMissingData(String dataId) {
+		return false;
+	}
+
+	@Override
+	public boolean isKnownMissingDeployment(String deploymentId) {
+		return false;
+	}
+
+	@Override
+	public long getDataCount() {
+		return data.size();
+	}
+
+	@Override
+	public long getDataCount(CountMode countMode) {
+		return data.size();
+	}
+
+	@Override
+	public Deployment getDeploymentByDataId(String dataId) {
+		return deploymentsByDataId.get(dataId);
+	}
+
+	@Override
+	public Deployment getDeployment(String deploymentId) {
+		return deploymentsById.get(deploymentId);
+	}
+
+	@Override
+	public boolean isDeployed(String dataId) {
+		return deploymentsByDataId.containsKey(dataId);
+	}
+
+	@Override
+	public LeasedDeployment getLeasedDeployment(String deploymentId) {
+		Deployment deployment = deploymentsById.get(deploymentId);
+		return deployment != null ? new LeasedDeployment(deployment, leasesByDeploymentId.get(deploymentId)) : null;
+	}
+
+	@Override
+	public LeasedDeployment getLeasedDeploymentByDataId(String dataId) {
+		Deployment deployment = deploymentsByDataId.get(dataId);
+		return deployment != null ? new LeasedDeployment(deployment, leasesByDeploymentId.get(deployment.getDeploymentId())) : null;
+	}
+
+	@Override
+	public Lease getDeploymentLease(Deployment deployment) {
+		return leasesByDeploymentId.get(deployment.getDeploymentId());
+	}
+
+	@Override
+	public void insertDeployment(Deployment deployment) {
+		deploymentsById.put(deployment.getDeploymentId(), deployment);
+		deploymentsByDataId.put(deployment.getDataId(), deployment);
+	}
+
+	@Override
+	public void deleteDeployment(Deployment deployment) {
+		deploymentsById.remove(deployment.getDeploymentId());
+		deploymentsByDataId.remove(deployment.getDataId(), deployment);
+		leasesByDeploymentId.remove(deployment.getDeploymentId());
+	}
+
+	@Override
+	public void insertLease(Lease lease) {
+		leasesByDeploymentId.put(lease.getDeploymentId(), lease);
+	}
+
+	@Override
+	public void updateLeaseExpirationDate(String leaseId, String expirationDate) {
+		for (Lease lease : leasesByDeploymentId.values()) {
+			if (leaseId.equals(lease.getLeaseId())) {
+				lease.setExpiresOn(DateTime.parse(expirationDate));
+			}
+		}
+	}
+
+	@Override
+	public Iterable<Lease> getExpiredLeases(DateTime date) {
+		List<Lease> expired = new ArrayList<>();
+		for (Lease lease : leasesByDeploymentId.values()) {
+			if ((lease.getExpiresOn() != null) && lease.getExpiresOn().isBefore(date)) {
+				expired.add(lease);
+			}
+		}
+		return expired;
+	}
+
+	@Override
+	public DeploymentGroup getDeploymentGroupById(String deploymentGroupId) {
+		return deploymentGroups.get(deploymentGroupId);
+	}
+
+	@Override
+	public void insertDeploymentGroup(DeploymentGroup deploymentGroup) {
+		deploymentGroups.put(deploymentGroup.deploymentGroupId, deploymentGroup);
+	}
+
+	@Override
+	public void updateDeploymentGroupCreated(String deploymentGroupId, boolean created) {
+		DeploymentGroup deploymentGroup = deploymentGroups.get(deploymentGroupId);
+		if (deploymentGroup != null) {
+			deploymentGroup.setHasGisServerLayer(created);
+		}
+	}
+
+	@Override
+	public void deleteDeploymentGroup(DeploymentGroup deploymentGroup) {
+		deploymentGroups.remove(deploymentGroup.deploymentGroupId);
+	}
+}
@@ -0,0 +1,198 @@
+/**
+ * Copyright 2016, RadiantBlue Technologies, Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package access.load;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageBuilder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+
+import access.database.DatabaseAccessor;
+import access.database.JobLedger;
+import access.database.SchemaInitializer;
+import access.deploy.RetryPolicy;
+import access.messaging.RetryQueues;
+import access.messaging.StatusPublisher;
+import model.status.StatusUpdate;
+
+/**
+ * Replaces the beans of the Access component that need Postgres or RabbitMQ with local stand-ins, so that the rest of
+ * the Spring context runs unchanged under load. Beans found by component scanning are overridden by the beans of the
+ * same name declared here.
+ */
+@TestConfiguration
+public class LoadTestConfiguration {
+	@Value("${load.broker.consumers:4}")
+	private int brokerConsumers;
+	@Value("${load.broker.prefetch:250}")
+	private int brokerPrefetch;
+	@Value("${load.broker.requeue.delay.millis:100}")
+	private long requeueDelayMillis;
+
+	@Bean
+	public DatabaseAccessor databaseAccessor() {
+		return new InMemoryDatabaseAccessor();
+	}
+
+	@Bean
+	public JobLedger jobLedger() {
+		return new InMemoryJobLedger();
+	}
+
+	@Bean
+	public SchemaInitializer schemaInitializer() {
+		return new NoSchemaInitializer();
+	}
+
+	@Bean
+	public StatusPublisher statusPublisher() {
+		return new RecordingStatusPublisher();
+	}
+
+	@Bean
+	public RetryQueues retryQueues() {
+		return new LocalRetryQueues();
+	}
+
+	@Bean
+	public LocalBroker localBroker() {
+		return new LocalBroker(brokerConsumers, brokerPrefetch, requeueDelayMillis);
+	}
+
+	/**
+	 * Records the final status of each Job instead of sending it to the Job Manager
+	 */
+	public static class RecordingStatusPublisher extends StatusPublisher {
+		private volatile Consumer<StatusUpdate> listener = statusUpdate -> {
+		};
+
+		public void setListener(Consumer<StatusUpdate> listener) {
+			this.listener = listener;
+		}
+
+		@Override
+		public void start() {
+			// No publisher thread or broker connection
+		}
+
+		@Override
+		public void stop() {
+			// Nothing to send
+		}
+
+		@Override
+		public void publish(StatusUpdate statusUpdate) {
+			if (!StatusUpdate.STATUS_RUNNING.equals(statusUpdate.getStatus())) {
+				listener.accept(statusUpdate);
+			}
+		}
+
+		@Override
+		public int getPendingCount() {
+			return 0;
+		}
+
+		@Override
+		public int getUnconfirmedCount() {
+			return 0;
+		}
+
+		@Override
+		public void republishUnconfirmed() {
+			// Nothing is left unconfirmed
+		}
+	}
+
+	/**
+	 * Sends transiently failed Jobs back to the local broker after their retry delay
+	 */
+	public static class LocalRetryQueues extends RetryQueues {
+		@Autowired
+		private LocalBroker localBroker;
+		@Autowired
+		private RetryPolicy retryPolicy;
+
+		private final LongAdder deadLettered = new LongAdder();
+
+		@Override
+		public void retry(Message message, int attempt, String cause) {
+			Message retry = MessageBuilder.fromClonedMessage(message).setHeader(ATTEMPT_HEADER, attempt + 1)
+					.setHeader(FAILURE_CAUSE_HEADER, cause).build();
+			localBroker.publish(retry, retryPolicy.getJobRetryDelayMillis(attempt));
+		}
+
+		@Override
+		public void deadLetter(Message message, int attempt, String cause) {
+			deadLettered.increment();
+		}
+
+		public long getDeadLetteredCount() {
+			return deadLettered.sum();
+		}
+	}
+
+	/**
+	 * Keeps the ledger of completed Jobs in memory
+	 */
+	public static class InMemoryJobLedger extends JobLedger {
+		private final Map<String, StatusUpdate> completed = new ConcurrentHashMap<>();
+
+		@Override
+		public void recordCompleted(StatusUpdate statusUpdate) {
+			completed.put(statusUpdate.getJobId(), statusUpdate);
+		}
+
+		@Override
+		public StatusUpdate getCompletedStatus(String jobId) {
+			return completed.get(jobId);
+		}
+
+		@Override
+		public void markPublished(Collection<String> jobIds) {
+			// Every status is published on receipt by the recording publisher
+		}
+
+		@Override
+		public List<StatusUpdate> claimUnpublished(long olderThanMillis) {
+			return Collections.emptyList();
+		}
+
+		@Override
+		public void reapCompletedJobs() {
+			completed.clear();
+		}
+	}
+
+	/**
+	 * The supplementary schema is Postgres specific, and not needed by the stand-ins
+	 */
+	public static class NoSchemaInitializer extends SchemaInitializer {
+		@Override
+		public void initialize() {
+			// Nothing to apply
+		}
+	}
+}
@@ -0,0 +1,158 @@
+/**
+ * Copyright 2016, RadiantBlue Technologies, Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package access.load;
+
+import java.lang.reflect.Proxy;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import com.rabbitmq.client.Channel;
+
+import access.messaging.AccessThreadManager;
+
+/**
+ * In-memory stand-in for the AccessJob queue. Messages are delivered to the Access Thread Manager in the same way as by
+ * the listener container: with a delivery tag and a channel for manual acknowledgement, and with no more unacknowledged
+ * messages than the prefetch. Rejected messages that ask to be requeued are delivered again after a short delay, as
+ * the broker would.
+ */
+public class LocalBroker {
+	@Autowired
+	private AccessThreadManager threadManager;
+
+	private final Semaphore prefetch;
+	private final long requeueDelayMillis;
+	private final ScheduledExecutorService consumers;
+	private final AtomicLong deliveryTags = new AtomicLong();
+	private final ConcurrentMap<Long, Message> unacknowledged = new ConcurrentHashMap<>();
+	private final LongAdder acknowledged = new LongAdder();
+	private final LongAdder requeued = new LongAdder();
+	private final LongAdder rejected = new LongAdder();
+	private final Channel channel;
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(LocalBroker.class);
+
+	/**
+	 * @param consumers
+	 *            The number of consumer threads delivering messages
+	 * @param prefetch
+	 *            The maximum number of unacknowledged messages
+	 * @param requeueDelayMillis
+	 *            The delay before a requeued message is delivered again
+	 */
+	public LocalBroker(int consumers, int prefetch, long requeueDelayMillis) {
+		this.prefetch = new Semaphore(prefetch);
+		this.requeueDelayMillis = requeueDelayMillis;
+		this.consumers = new ScheduledThreadPoolExecutor(consumers);
+		this.channel = (Channel) Proxy.newProxyInstance(Channel.class.getClassLoader(), new Class<?>[] { Channel.class },
+				(proxy, method, args) -> {
+					if ("basicAck".equals(method.getName())) {
+						acknowledge((Long) args[0]);
+					} else if ("basicNack".equals(method.getName())) {
+						reject((Long) args[0], (Boolean) args[2]);
+					}
+					return null;
+				});
+	}
+
+	/**
+	 * Queues a message for delivery
+	 */
+	public void publish(Message message) {
+		publish(message, 0);
+	}
+
+	/**
+	 * Queues a message for delivery once a delay expires, as the retry queue does
+	 */
+	public void publish(Message message, long delayMillis) {
+		consumers.schedule(() -> deliver(message), delayMillis, TimeUnit.MILLISECONDS);
+	}
+
+	public void shutdown() {
+		consumers.shutdownNow();
+	}
+
+	public long getAcknowledgedCount() {
+		return acknowledged.sum();
+	}
+
+	public long getRequeuedCount() {
+		return requeued.sum();
+	}
+
+	public long getRejectedCount() {
+		return rejected.sum();
+	}
+
+	public int getUnacknowledgedCount() {
+		return unacknowledged.size();
+	}
+
+	private void deliver(Message message) {
+		try {
+			prefetch.acquire();
+		} catch (InterruptedException exception) {
+			Thread.currentThread().interrupt();
+			return;
+		}
+		long deliveryTag = deliveryTags.incrementAndGet();
+		MessageProperties properties = message.getMessageProperties();
+		properties.setDeliveryTag(deliveryTag);
+		unacknowledged.put(deliveryTag, message);
+		try {
+			threadManager.processAccessJob(message, channel);
+		} catch (RuntimeException exception) {
+			// The listener container would log the failure and requeue the message
+			LOGGER.error("Access Job listener failed.", exception);
+			reject(deliveryTag, true);
+		}
+	}
+
+	private void acknowledge(long deliveryTag) {
+		if (unacknowledged.remove(deliveryTag) != null) {
+			prefetch.release();
+			acknowledged.increment();
+		}
+	}
+
+	private void reject(long deliveryTag, boolean requeue) {
+		Message message = unacknowledged.remove(deliveryTag);
+		if (message == null) {
+			return;
+		}
+		prefetch.release();
+		if (requeue) {
+			requeued.increment();
+			message.getMessageProperties().setRedelivered(true);
+			publish(message, requeueDelayMillis);
+		} else {
+			rejected.increment();
+		}
+	}
+}
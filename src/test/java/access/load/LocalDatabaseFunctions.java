@@ -0,0 +1,47 @@
+/**
+ * Copyright 2016, RadiantBlue Technologies, Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package access.load;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Postgres functions used by pz-access outside of its jsonb queries, registered as aliases in the embedded H2 database
+ * of the load test by load/h2-functions.sql. Advisory locks are held in this JVM only, which matches a single
+ * pz-access instance.
+ */
+public final class LocalDatabaseFunctions {
+	private static final Set<Long> ADVISORY_LOCKS = ConcurrentHashMap.newKeySet();
+
+	private LocalDatabaseFunctions() {
+	}
+
+	public static int hashtext(String value) {
+		return value.hashCode();
+	}
+
+	public static boolean tryAdvisoryLock(int namespace, int key) {
+		return ADVISORY_LOCKS.add(getLockId(namespace, key));
+	}
+
+	public static boolean advisoryUnlock(int namespace, int key) {
+		return ADVISORY_LOCKS.remove(getLockId(namespace, key));
+	}
+
+	private static long getLockId(int namespace, int key) {
+		return ((long) namespace << 32) | (key & 0xFFFFFFFFL);
+	}
+}
@@ -0,0 +1,100 @@
+/**
+ * Copyright 2016, RadiantBlue Technologies, Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package access.test;
+
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.contains;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.Semaphore;
+
+import javax.sql.DataSource;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import access.database.AdvisoryLock;
+import access.database.AdvisoryLocks;
+
+/**
+ * Tests the connections that hold advisory locks are closed, and their permits returned, however the lock is released
+ */
+public class AdvisoryLocksTests {
+	private AdvisoryLocks advisoryLocks;
+	private DataSource lockDataSource;
+	private Connection connection;
+	private PreparedStatement lockStatement;
+	private ResultSet lockResult;
+
+	/**
+	 * Initialize with a single lock connection permit
+	 */
+	@Before
+	public void setup() throws SQLException {
+		advisoryLocks = new AdvisoryLocks();
+		lockDataSource = mock(DataSource.class);
+		connection = mock(Connection.class);
+		lockStatement = mock(PreparedStatement.class);
+		lockResult = mock(ResultSet.class);
+		ReflectionTestUtils.setField(advisoryLocks, "lockDataSource", lockDataSource);
+		ReflectionTestUtils.setField(advisoryLocks, "permits", new Semaphore(1));
+		ReflectionTestUtils.setField(advisoryLocks, "pollMillis", 10L);
+		when(lockDataSource.getConnection()).thenReturn(connection);
+		when(connection.prepareStatement(contains("pg_try_advisory_lock"))).thenReturn(lockStatement);
+		when(lockStatement.executeQuery()).thenReturn(lockResult);
+	}
+
+	/**
+	 * Tests a failed unlock still closes the connection, ending the session that holds the lock, and returns its permit
+	 */
+	@Test
+	public void testUnlockFailure() throws Exception {
+		when(lockResult.next()).thenReturn(true);
+		when(lockResult.getBoolean(1)).thenReturn(true);
+		when(connection.prepareStatement(contains("pg_advisory_unlock"))).thenThrow(new SQLException("Connection reset"));
+
+		AdvisoryLock lock = advisoryLocks.tryAcquireDeploymentLock("123456", 100);
+		assertTrue(lock != null);
+		// The only permit is held
+		assertTrue(advisoryLocks.tryAcquireDeploymentLock("654321", 50) == null);
+
+		lock.close();
+		verify(connection).close();
+		assertTrue(advisoryLocks.tryAcquireDeploymentLock("654321", 100) != null);
+	}
+
+	/**
+	 * Tests a lock held elsewhere times out, closing the connection and returning its permit
+	 */
+	@Test
+	public void testTimeout() throws Exception {
+		when(lockResult.next()).thenReturn(true);
+		when(lockResult.getBoolean(1)).thenReturn(false);
+
+		assertTrue(advisoryLocks.tryAcquireDeploymentLock("123456", 50) == null);
+		verify(connection).close();
+		assertTrue(advisoryLocks.tryAcquireDeploymentLock("123456", 50) == null);
+		verify(connection, times(2)).close();
+	}
+}
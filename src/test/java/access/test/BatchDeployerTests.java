@@ -0,0 +1,217 @@
+/**
+ * Copyright 2016, RadiantBlue Technologies, Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package access.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.joda.time.DateTime;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import access.database.DatabaseAccessor;
+import access.database.LeasedDeployment;
+import access.deploy.BatchDeployer;
+import access.deploy.DeploymentCoordinator;
+import access.deploy.GroupDeployer;
+import access.deploy.Leaser;
+import access.model.BatchAccessJob;
+import access.model.BatchAccessResult;
+import access.model.BatchItemResult;
+import exception.GeoServerException;
+import model.data.DataResource;
+import model.data.deployment.Deployment;
+import model.data.deployment.DeploymentGroup;
+import model.data.deployment.Lease;
+import util.PiazzaLogger;
+
+/**
+ * Tests the parallel deployment of Batch Access Jobs
+ */
+public class BatchDeployerTests {
+	@Mock
+	private DatabaseAccessor accessor;
+	@Mock
+	private DeploymentCoordinator deploymentCoordinator;
+	@Mock
+	private Leaser leaser;
+	@Mock
+	private GroupDeployer groupDeployer;
+	@Mock
+	private PiazzaLogger pzLogger;
+	@InjectMocks
+	private BatchDeployer batchDeployer;
+
+	private ThreadPoolTaskExecutor executor;
+	private Deployment existingDeployment;
+	private Deployment newDeployment;
+	private DeploymentGroup deploymentGroup;
+
+	@Before
+	public void setup() throws Exception {
+		MockitoAnnotations.initMocks(this);
+		executor = new ThreadPoolTaskExecutor();
+		executor.setCorePoolSize(2);
+		executor.setMaxPoolSize(2);
+		executor.setQueueCapacity(10);
+		executor.initialize();
+		ReflectionTestUtils.setField(batchDeployer, "batchItemExecutor", executor);
+		ReflectionTestUtils.setField(batchDeployer, "itemConcurrency", 2);
+
+		existingDeployment = new Deployment();
+		existingDeployment.setDeploymentId("existing-deployment");
+		Lease lease = new Lease("lease", "existing-deployment", new DateTime());
+		when(accessor.getLeasedDeploymentByDataId(eq("existing"))).thenReturn(new LeasedDeployment(existingDeployment, lease));
+
+		newDeployment = new Deployment();
+		newDeployment.setDeploymentId("new-deployment");
+		DataResource dataResource = new DataResource();
+		dataResource.setDataId("new");
+		when(accessor.getDataFromPrimary(eq("new"))).thenReturn(dataResource);
+		when(deploymentCoordinator.deploy(eq(dataResource), any())).thenReturn(newDeployment);
+
+		deploymentGroup = new DeploymentGroup("group", "Tester");
+		when(accessor.getDeploymentGroupById(eq("group"))).thenReturn(deploymentGroup);
+	}
+
+	@After
+	public void teardown() {
+		executor.shutdown();
+	}
+
+	/**
+	 * Tests that each item is reported in order, and the group is updated once with every Deployment
+	 */
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testDeploy() throws Exception {
+		BatchAccessJob batchJob = new BatchAccessJob("job", "Tester", Arrays.asList("existing", "new", "missing", "new"), "group", 7);
+
+		BatchAccessResult result = batchDeployer.deploy(batchJob);
+
+		assertEquals(3, result.getItems().size());
+		BatchItemResult existing = result.getItems().get(0);
+		assertEquals("existing", existing.getDataId());
+		assertTrue(existing.isSuccess());
+		assertEquals("existing-deployment", existing.getDeployment().getDeploymentId());
+		assertEquals("new-deployment", result.getItems().get(1).getDeployment().getDeploymentId());
+		BatchItemResult missing = result.getItems().get(2);
+		assertEquals(BatchItemResult.STATUS_ERROR, missing.getStatus());
+		assertTrue(missing.getError().contains("missing"));
+		assertEquals(2, result.getSucceeded());
+
+		verify(leaser).renewDeploymentLease(eq(existingDeployment), any(Lease.class), eq(7));
+		ArgumentCaptor<List> deployments = ArgumentCaptor.forClass(List.class);
+		verify(groupDeployer, times(1)).updateDeploymentGroup(eq(deploymentGroup), deployments.capture());
+		assertEquals(Arrays.asList(existingDeployment, newDeployment), deployments.getValue());
+		assertTrue(result.isGroupUpdated());
+		assertTrue(result.isSuccessful());
+	}
+
+	/**
+	 * Tests that a failed group update fails the batch, but keeps the item results
+	 */
+	@Test
+	public void testGroupFailure() throws Exception {
+		doThrow(new GeoServerException("Layer group unavailable")).when(groupDeployer).updateDeploymentGroup(any(DeploymentGroup.class),
+				anyListOf(Deployment.class));
+		BatchAccessJob batchJob = new BatchAccessJob("job", "Tester", Arrays.asList("existing", "new"), "group", 7);
+
+		BatchAccessResult result = batchDeployer.deploy(batchJob);
+
+		assertEquals(2, result.getSucceeded());
+		assertFalse(result.isGroupUpdated());
+		assertEquals("Layer group unavailable", result.getGroupError());
+		assertFalse(result.isSuccessful());
+	}
+
+	/**
+	 * Tests that a batch without a Deployment Group does not touch any layer group
+	 */
+	@Test
+	public void testNoGroup() throws Exception {
+		when(deploymentCoordinator.deploy(any(DataResource.class), any())).thenThrow(new GeoServerException("Unavailable"));
+		BatchAccessJob batchJob = new BatchAccessJob("job", "Tester", Arrays.asList("existing", "new"), null, 7);
+
+		BatchAccessResult result = batchDeployer.deploy(batchJob);
+
+		assertEquals(1, result.getSucceeded());
+		assertEquals("Unavailable", result.getItems().get(1).getError());
+		assertTrue(result.isSuccessful());
+		verify(groupDeployer, never()).updateDeploymentGroup(any(DeploymentGroup.class), anyListOf(Deployment.class));
+		verify(accessor, never()).getDeploymentGroupById(anyString());
+	}
+
+	/**
+	 * Tests that an interrupted batch stops waiting for its items at once, and skips those that have not started
+	 */
+	@Test
+	public void testInterrupted() throws Exception {
+		ReflectionTestUtils.setField(batchDeployer, "itemConcurrency", 3);
+		CountDownLatch started = new CountDownLatch(2);
+		CountDownLatch release = new CountDownLatch(1);
+		when(accessor.getDataFromPrimary(anyString())).thenReturn(new DataResource());
+		when(deploymentCoordinator.deploy(any(DataResource.class), any())).thenAnswer(invocation -> {
+			started.countDown();
+			release.await();
+			return newDeployment;
+		});
+		BatchAccessJob batchJob = new BatchAccessJob("job", "Tester", Arrays.asList("a", "b", "c"), null, 7);
+		AtomicReference<Exception> thrown = new AtomicReference<>();
+		Thread batchThread = new Thread(() -> {
+			try {
+				batchDeployer.deploy(batchJob);
+			} catch (Exception exception) {
+				thrown.set(exception);
+			}
+		});
+		batchThread.start();
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+
+		batchThread.interrupt();
+		batchThread.join(5000);
+		assertFalse(batchThread.isAlive());
+		assertTrue(thrown.get() instanceof InterruptedException);
+
+		release.countDown();
+		executor.shutdown();
+		assertTrue(executor.getThreadPoolExecutor().awaitTermination(5, TimeUnit.SECONDS));
+		verify(deploymentCoordinator, times(2)).deploy(any(DataResource.class), any());
+	}
+}
@@ -0,0 +1,82 @@
+/**
+ * Copyright 2016, RadiantBlue Technologies, Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package access.test;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import access.messaging.JobRegistry;
+import access.util.CancellationScope;
+
+/**
+ * Tests the aborting of in flight I/O when a Job is cancelled
+ */
+public class CancellationScopeTests {
+	/**
+	 * Unbind any scope bound to the test thread
+	 */
+	@After
+	public void cleanup() {
+		CancellationScope.unbind();
+	}
+
+	/**
+	 * Tests registered resources are closed on cancel, and unregistered resources are not
+	 */
+	@Test
+	public void testCancel() {
+		CancellationScope scope = new CancellationScope();
+		CancellationScope.bind(scope);
+		AtomicInteger open = new AtomicInteger();
+		AtomicInteger done = new AtomicInteger();
+		CancellationScope.register(open::incrementAndGet);
+		CancellationScope.register(done::incrementAndGet).close();
+
+		scope.cancel();
+		assertTrue(open.get() == 1);
+		assertTrue(done.get() == 0);
+		assertTrue(CancellationScope.isCurrentCancelled());
+
+		// Registering after the cancel aborts immediately
+		CancellationScope.register(open::incrementAndGet);
+		assertTrue(open.get() == 2);
+	}
+
+	/**
+	 * Tests registration outside of a Job does nothing, and cancelling a Job cancels its scope
+	 */
+	@Test
+	public void testJobScope() {
+		AtomicInteger closed = new AtomicInteger();
+		CancellationScope.register(closed::incrementAndGet).close();
+		assertTrue(!CancellationScope.isCurrentCancelled());
+
+		JobRegistry jobRegistry = new JobRegistry();
+		ReflectionTestUtils.setField(jobRegistry, "abortTtlSeconds", 60);
+		ReflectionTestUtils.setField(jobRegistry, "abortMaxEntries", 100);
+		jobRegistry.initialize();
+		jobRegistry.register("123456");
+		CancellationScope.bind(jobRegistry.getCancellationScope("123456"));
+		CancellationScope.register(closed::incrementAndGet);
+		jobRegistry.cancel("123456");
+		assertTrue(closed.get() == 1);
+	}
+}
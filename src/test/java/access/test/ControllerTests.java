@@ -17,11 +17,15 @@
 package access.test;
 
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.io.File;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -31,6 +35,7 @@ import org.geotools.data.memory.MemoryDataStore;
 import org.geotools.feature.SchemaException;
 import org.geotools.feature.simple.SimpleFeatureBuilder;
 import org.geotools.geometry.jts.JTSFactoryFinder;
+import org.joda.time.DateTime;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.InjectMocks;
@@ -42,6 +47,7 @@ import org.opengis.feature.simple.SimpleFeatureType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.http.ResponseEntity;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import com.vividsolutions.jts.geom.Coordinate;
@@ -49,16 +55,22 @@ import com.vividsolutions.jts.geom.GeometryFactory;
 import com.vividsolutions.jts.geom.Point;
 
 import access.controller.AccessController;
+import access.database.CountMode;
 import access.database.DatabaseAccessor;
+import access.database.DatabaseMetrics;
+import access.database.LeasedDeployment;
 import access.deploy.Deployer;
 import access.deploy.GroupDeployer;
 import access.deploy.Leaser;
 import access.messaging.AccessThreadManager;
+import access.messaging.DrainManager;
+import access.messaging.PipelineMetrics;
 import access.util.AccessUtilities;
 import exception.GeoServerException;
 import model.data.DataResource;
 import model.data.deployment.Deployment;
 import model.data.deployment.DeploymentGroup;
+import model.data.deployment.Lease;
 import model.data.location.FolderShare;
 import model.data.type.GeoJsonDataType;
 import model.data.type.PostGISDataType;
@@ -97,6 +109,12 @@ public class ControllerTests {
 	private ThreadPoolTaskExecutor threadPoolTaskExecutor;
 	@Mock
 	private AccessUtilities accessUtilities;
+	@Mock
+	private DatabaseMetrics databaseMetrics;
+	@Mock
+	private PipelineMetrics pipelineMetrics;
+	@Mock
+	private DrainManager drainManager;
 	@InjectMocks
 	private AccessController accessController;
 
@@ -240,14 +258,15 @@ public class ControllerTests {
 		assertTrue(response instanceof ErrorResponse);
 
 		// Mock no deployment
-		when(accessor.getDeployment(eq("123456"))).thenReturn(null);
+		when(accessor.getLeasedDeployment(eq("123456"))).thenReturn(null);
 		response = accessController.getDeployment("123456").getBody();
 		assertTrue(response instanceof ErrorResponse);
 
 		// Proper mock
 		Deployment deployment = new Deployment();
 		deployment.setDeploymentId("123456");
-		when(accessor.getDeployment(eq("123456"))).thenReturn(deployment);
+		Lease lease = new Lease("987654", "123456", new DateTime());
+		when(accessor.getLeasedDeployment(eq("123456"))).thenReturn(new LeasedDeployment(deployment, lease));
 
 		// Test
 		response = accessController.getDeployment("123456").getBody();
@@ -255,6 +274,11 @@ public class ControllerTests {
 		// Verify
 		assertTrue(response instanceof DeploymentResponse);
 		assertTrue(((DeploymentResponse) response).data.getDeployment().getDeploymentId().equals("123456"));
+
+		// Deployment whose Lease has been reaped
+		when(accessor.getLeasedDeployment(eq("123456"))).thenReturn(new LeasedDeployment(deployment, null));
+		response = accessController.getDeployment("123456").getBody();
+		assertTrue(response instanceof DeploymentResponse);
 	}
 
 	/**
@@ -266,11 +290,13 @@ public class ControllerTests {
 		DataResourceListResponse mockResponse = new DataResourceListResponse();
 		mockResponse.data = new ArrayList<DataResource>();
 		mockResponse.data.add(new DataResource());
-		when(accessor.getDataList(eq(0), eq(10), eq("dataId"), eq("asc"), eq("Raster"), eq("Test User"), eq("123")))
+		when(accessor.getDataList(eq(0), eq(10), eq("dataId"), eq("asc"), eq("Raster"), eq("Test User"), eq("123"), eq(null),
+				eq(CountMode.EXACT), eq(false)))
 				.thenReturn(mockResponse);
 
 		// Test
-		PiazzaResponse response = accessController.getAllData("123", 0, 10, "dataId", "asc", "Raster", "Test User").getBody();
+		PiazzaResponse response = accessController.getAllData("123", 0, 10, "dataId", "asc", "Raster", "Test User", null, "exact", null)
+				.getBody();
 
 		// Verify
 		assertTrue(response instanceof DataResourceListResponse);
@@ -286,10 +312,11 @@ public class ControllerTests {
 		DeploymentListResponse mockResponse = new DeploymentListResponse();
 		mockResponse.data = new ArrayList<Deployment>();
 		mockResponse.data.add(new Deployment());
-		when(accessor.getDeploymentList(eq(0), eq(10), eq("dataId"), eq("asc"), eq("WFS"))).thenReturn(mockResponse);
+		when(accessor.getDeploymentList(eq(0), eq(10), eq("dataId"), eq("asc"), eq("WFS"), eq(null), eq(CountMode.EXACT), eq(false)))
+				.thenReturn(mockResponse);
 
 		// Test
-		PiazzaResponse response = accessController.getAllDeployments(0, 10, "dataId", "asc", "WFS").getBody();
+		PiazzaResponse response = accessController.getAllDeployments(0, 10, "dataId", "asc", "WFS", null, "exact", null).getBody();
 
 		// Verify
 		assertTrue(response instanceof DeploymentListResponse);
@@ -302,9 +329,9 @@ public class ControllerTests {
 	@Test
 	public void testDataCount() {
 		// Mock
-		when(accessor.getDataCount()).thenReturn((long) 5000);
+		when(accessor.getDataCount(eq(CountMode.EXACT))).thenReturn((long) 5000);
 		// Test
-		long count = accessController.getDataCount();
+		long count = accessController.getDataCount("exact");
 		// Verify
 		assertTrue(count == 5000);
 	}
@@ -342,6 +369,48 @@ public class ControllerTests {
 		// Verify
 		assertTrue(stats != null);
 		assertTrue(stats.keySet().contains("jobs"));
+		assertTrue(stats.keySet().contains("database"));
+		assertTrue(stats.keySet().contains("stages"));
+
+		Map<String, Object> metrics = accessController.getAdminMetrics().getBody();
+		assertTrue(metrics.keySet().contains("stages"));
+	}
+
+	/**
+	 * Test POST /admin/drain, and that downloads are refused while draining
+	 */
+	@Test
+	public void testDrain() {
+		when(drainManager.startDrain()).thenReturn(true);
+		assertTrue(accessController.startDrain().getStatusCode().equals(HttpStatus.ACCEPTED));
+		when(drainManager.startDrain()).thenReturn(false);
+		assertTrue(accessController.startDrain().getStatusCode().equals(HttpStatus.OK));
+
+		when(drainManager.isDraining()).thenReturn(true);
+		ResponseEntity<?> response = accessController.accessFile("123456", "file.txt");
+		assertTrue(response.getStatusCode().equals(HttpStatus.SERVICE_UNAVAILABLE));
+	}
+
+	/**
+	 * Test GET /admin/export/{collection}
+	 */
+	@Test
+	public void testExportCollection() throws Exception {
+		// Unknown collection
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		when(accessor.isExportableCollection("job")).thenReturn(false);
+		accessController.exportCollection("job", response);
+		assertTrue(response.getStatus() == HttpStatus.NOT_FOUND.value());
+		verify(accessor, never()).exportCollection(eq("job"), any(OutputStream.class));
+
+		// Exported collection
+		response = new MockHttpServletResponse();
+		when(accessor.isExportableCollection("data")).thenReturn(true);
+		when(accessor.exportCollection(eq("data"), any(OutputStream.class))).thenReturn(2L);
+		accessController.exportCollection("data", response);
+		assertTrue(response.getStatus() == HttpStatus.OK.value());
+		assertTrue(response.getContentType().startsWith("application/x-ndjson"));
+		assertTrue(response.getHeader("Content-Disposition").contains("data.ndjson"));
 	}
 
 	/**
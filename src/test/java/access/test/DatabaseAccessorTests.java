@@ -17,8 +17,17 @@ package access.test;
 
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.util.ArrayList;
 
 import org.geotools.data.DataStore;
@@ -27,6 +36,11 @@ import org.junit.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.venice.piazza.common.hibernate.dao.DeploymentGroupDao;
 import org.venice.piazza.common.hibernate.dao.LeaseDao;
 import org.venice.piazza.common.hibernate.dao.dataresource.DataResourceDao;
@@ -34,7 +48,11 @@ import org.venice.piazza.common.hibernate.dao.deployment.DeploymentDao;
 import org.venice.piazza.common.hibernate.entity.DataResourceEntity;
 import org.venice.piazza.common.hibernate.entity.DeploymentEntity;
 
+import access.database.CountMode;
 import access.database.DatabaseAccessor;
+import access.database.ReadReplicaRoutingDataSource;
+import exception.InvalidInputException;
+import access.util.ResponseCache;
 import model.data.DataResource;
 import model.data.deployment.Deployment;
 import util.GeoToolsUtil;
@@ -59,6 +77,8 @@ public class DatabaseAccessorTests {
 	private DeploymentDao deploymentDao;
 	@Mock
 	private DeploymentGroupDao deploymentGroupDao;
+	@Mock
+	private ResponseCache responseCache;
 	@InjectMocks
 	private DatabaseAccessor databaseAccessor;
 	
@@ -68,6 +88,10 @@ public class DatabaseAccessorTests {
 	@Before
 	public void setup() {
 		MockitoAnnotations.initMocks(this);
+		ReflectionTestUtils.setField(databaseAccessor, "negativeCacheSeconds", 60);
+		ReflectionTestUtils.setField(databaseAccessor, "negativeCacheMaxEntries", 100);
+		ReflectionTestUtils.setField(databaseAccessor, "deployedCacheSeconds", 60);
+		databaseAccessor.initialize();
 	}
 
 	@Test
@@ -90,12 +114,112 @@ public class DatabaseAccessorTests {
 		assertTrue(dataResource == null);
 	}
 
+	/**
+	 * Tests unknown Ids are only queried once, and that inserting a Deployment clears its negative entry
+	 */
+	@Test
+	public void testNegativeLookupCache() throws Exception {
+		assertTrue(databaseAccessor.getData("1234") == null);
+		assertTrue(databaseAccessor.isKnownMissingData("1234"));
+		assertTrue(databaseAccessor.getData("1234") == null);
+		verify(dataResourceDao, times(1)).getDataResourceByDataId("1234");
+
+		assertTrue(databaseAccessor.getDeployment("5678") == null);
+		assertTrue(databaseAccessor.isKnownMissingDeployment("5678"));
+		Deployment deployment = new Deployment();
+		deployment.setDeploymentId("5678");
+		databaseAccessor.insertDeployment(deployment);
+		assertTrue(!databaseAccessor.isKnownMissingDeployment("5678"));
+	}
+
+	/**
+	 * Tests Jobs read Data past the negative cache, and that a miss read from a replica is not remembered
+	 */
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testGetDataFromPrimary() throws Exception {
+		assertTrue(databaseAccessor.getData("1234") == null);
+		assertTrue(databaseAccessor.isKnownMissingData("1234"));
+
+		// Ingested meanwhile
+		when(dataResourceDao.getDataResourceByDataId("1234")).thenReturn(dataResourceEntity);
+		when(dataResourceEntity.getDataResource()).thenReturn(dataResource);
+		assertTrue(databaseAccessor.getDataFromPrimary("1234") == dataResource);
+		assertTrue(!databaseAccessor.isKnownMissingData("1234"));
+
+		// A replica that has not caught up
+		when(dataResourceDao.getDataResourceByDataId("5678")).thenReturn(null);
+		ThreadLocal<Boolean> routedToReplica = (ThreadLocal<Boolean>) ReflectionTestUtils.getField(ReadReplicaRoutingDataSource.class,
+				"ROUTED_TO_REPLICA");
+		routedToReplica.set(true);
+		try {
+			assertTrue(databaseAccessor.getData("5678") == null);
+			assertTrue(!databaseAccessor.isKnownMissingData("5678"));
+		} finally {
+			routedToReplica.remove();
+		}
+	}
+
 	@Test
 	public void testGetDataCount() throws Exception {
 		when(databaseAccessor.getDataResourceCollection()).thenReturn(new ArrayList<DataResourceEntity>());
 		Long count = databaseAccessor.getDataCount();
 		assertTrue(count == 0);
 	}
-	
+
+	@Test
+	public void testGetDataCountCached() throws Exception {
+		ReflectionTestUtils.setField(databaseAccessor, "dataCountCacheSeconds", 60);
+		when(dataResourceDao.count()).thenReturn(5L);
+		assertTrue(databaseAccessor.getDataCount(CountMode.EXACT) == 5);
+
+		// Served from the cache until it expires
+		when(dataResourceDao.count()).thenReturn(10L);
+		assertTrue(databaseAccessor.getDataCount() == 5);
+		assertTrue(CountMode.fromString("Estimate") == CountMode.ESTIMATE);
+		assertTrue(CountMode.fromString("unknown") == CountMode.EXACT);
+	}
+
+	/**
+	 * Tests a collection is exported as one stored JSON document per line, read through a cursor with the export fetch
+	 * size
+	 */
+	@Test
+	public void testExportCollection() throws Exception {
+		NamedParameterJdbcTemplate jdbcTemplate = mock(NamedParameterJdbcTemplate.class);
+		JdbcOperations jdbcOperations = mock(JdbcOperations.class);
+		ReflectionTestUtils.setField(databaseAccessor, "jdbcTemplate", jdbcTemplate);
+		ReflectionTestUtils.setField(databaseAccessor, "exportFetchSize", 500);
+		when(jdbcTemplate.getJdbcOperations()).thenReturn(jdbcOperations);
+
+		Connection connection = mock(Connection.class);
+		PreparedStatement statement = mock(PreparedStatement.class);
+		when(connection.prepareStatement("select data from data_resource order by id", ResultSet.TYPE_FORWARD_ONLY,
+				ResultSet.CONCUR_READ_ONLY)).thenReturn(statement);
+		ResultSet resultSet = mock(ResultSet.class);
+		when(resultSet.getString("data")).thenReturn("{\"dataId\":\"1\"}", "{\"dataId\":\"2\"}");
+		doAnswer(invocation -> {
+			((PreparedStatementCreator) invocation.getArguments()[0]).createPreparedStatement(connection);
+			RowCallbackHandler handler = (RowCallbackHandler) invocation.getArguments()[1];
+			handler.processRow(resultSet);
+			handler.processRow(resultSet);
+			return null;
+		}).when(jdbcOperations).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		assertTrue(databaseAccessor.exportCollection("data", output) == 2);
+		assertTrue(new String(output.toByteArray(), StandardCharsets.UTF_8).equals("{\"dataId\":\"1\"}\n{\"dataId\":\"2\"}\n"));
+		verify(statement).setFetchSize(500);
+	}
+
+	/**
+	 * Tests collections that are not whitelisted are not exported
+	 */
+	@Test(expected = InvalidInputException.class)
+	public void testExportUnknownCollection() throws Exception {
+		assertTrue(!databaseAccessor.isExportableCollection("job"));
+		databaseAccessor.exportCollection("job", new ByteArrayOutputStream());
+	}
+
 
 }
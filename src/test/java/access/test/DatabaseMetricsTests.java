@@ -0,0 +1,141 @@
+/**
+ * Copyright 2016, RadiantBlue Technologies, Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package access.test;
+
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.tomcat.jdbc.pool.DataSource;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import access.database.DatabaseMetrics;
+import access.util.LatencyHistogram;
+
+/**
+ * Tests the database pool metrics and adaptive pool sizing
+ */
+public class DatabaseMetricsTests {
+	private DatabaseMetrics metrics;
+	private DataSource pool;
+
+	/**
+	 * Initialize metrics in adaptive mode over a mock pool
+	 */
+	@Before
+	public void setup() {
+		pool = mock(DataSource.class);
+		when(pool.getMaxActive()).thenReturn(20);
+		metrics = new DatabaseMetrics();
+		metrics.setPool(pool);
+		ReflectionTestUtils.setField(metrics, "adaptive", true);
+		ReflectionTestUtils.setField(metrics, "adaptiveMinSize", 10);
+		ReflectionTestUtils.setField(metrics, "adaptiveMaxSize", 100);
+		ReflectionTestUtils.setField(metrics, "adaptiveStep", 5);
+		ReflectionTestUtils.setField(metrics, "adaptiveShrinkMaxWaitMillis", 1L);
+	}
+
+	/**
+	 * Tests histogram percentiles
+	 */
+	@Test
+	public void testHistogram() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		assertTrue(histogram.getPercentileMillis(99) == 0);
+		for (int i = 0; i < 99; i++) {
+			histogram.record(TimeUnit.MICROSECONDS.toNanos(500));
+		}
+		histogram.record(TimeUnit.MILLISECONDS.toNanos(150));
+		assertTrue(histogram.getCount() == 100);
+		assertTrue(histogram.getPercentileMillis(50) == 1);
+		assertTrue(histogram.getPercentileMillis(99) == 1);
+		assertTrue(histogram.getPercentileMillis(100) == 200);
+		assertTrue(histogram.toMap().get("maxMillis").equals(150L));
+	}
+
+	/**
+	 * Tests the stats contain the pool and per query latencies
+	 */
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testStats() {
+		metrics.recordQuery("deploymentDao.getDeploymentByDataId", TimeUnit.MILLISECONDS.toNanos(3));
+		metrics.recordConnectionTimeout();
+		Map<String, Object> stats = metrics.getStats();
+		assertTrue(((Map<String, Object>) stats.get("pool")).get("maxActive").equals(20));
+		assertTrue(((Map<String, Object>) stats.get("queries")).containsKey("deploymentDao.getDeploymentByDataId"));
+		assertTrue(stats.get("connectionTimeouts").equals(1L));
+	}
+
+	/**
+	 * Tests the pool grows when connection waits dominate query time
+	 */
+	@Test
+	public void testGrowPool() {
+		for (int i = 0; i < 10; i++) {
+			metrics.recordConnectionWait(TimeUnit.MILLISECONDS.toNanos(80));
+			metrics.recordQuery("leaseDao.save", TimeUnit.MILLISECONDS.toNanos(4));
+		}
+		metrics.adjustPoolSize();
+		verify(pool).setMaxActive(25);
+	}
+
+	/**
+	 * Tests the pool shrinks when idle, and is not resized when adaptive mode is off
+	 */
+	@Test
+	public void testShrinkPool() {
+		when(pool.getIdle()).thenReturn(15);
+		metrics.adjustPoolSize();
+		verify(pool).setMaxActive(15);
+
+		ReflectionTestUtils.setField(metrics, "adaptive", false);
+		metrics.recordConnectionWait(TimeUnit.MILLISECONDS.toNanos(80));
+		metrics.adjustPoolSize();
+		verify(pool, never()).setMaxActive(25);
+		verify(pool).setMaxActive(anyInt());
+	}
+
+	/**
+	 * Tests the pool still shrinks when every checkout waited under a millisecond, but not while connections are waited
+	 * for
+	 */
+	@Test
+	public void testShrinkPoolUnderLoad() {
+		when(pool.getIdle()).thenReturn(15);
+		for (int i = 0; i < 100; i++) {
+			metrics.recordConnectionWait(TimeUnit.MICROSECONDS.toNanos(50));
+			metrics.recordQuery("namedParameterJdbcTemplate.query", TimeUnit.MILLISECONDS.toNanos(3));
+		}
+		metrics.adjustPoolSize();
+		verify(pool).setMaxActive(15);
+
+		for (int i = 0; i < 100; i++) {
+			metrics.recordConnectionWait(TimeUnit.MILLISECONDS.toNanos(3));
+			metrics.recordQuery("namedParameterJdbcTemplate.query", TimeUnit.MILLISECONDS.toNanos(3));
+		}
+		metrics.adjustPoolSize();
+		verify(pool).setMaxActive(anyInt());
+	}
+}
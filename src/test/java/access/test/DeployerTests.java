@@ -35,6 +35,7 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
@@ -47,6 +48,7 @@ import util.PiazzaLogger;
 import util.UUIDFactory;
 import access.database.DatabaseAccessor;
 import access.deploy.Deployer;
+import access.deploy.RetryPolicy;
 import access.deploy.geoserver.AuthHeaders;
 import access.util.AccessUtilities;
 
@@ -69,6 +71,8 @@ public class DeployerTests {
 	private DatabaseAccessor accessor;
 	@Mock
 	private AccessUtilities accessUtilities;
+	@Spy
+	private RetryPolicy retryPolicy = new RetryPolicy();
 	@InjectMocks
 	private Deployer deployer;
 
@@ -0,0 +1,258 @@
+/**
+ * Copyright 2016, RadiantBlue Technologies, Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package access.test;
+
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import access.database.AdvisoryLock;
+import access.database.AdvisoryLocks;
+import access.database.DatabaseAccessor;
+import access.database.LeasedDeployment;
+import access.database.ReadReplicaRoutingDataSource;
+import access.deploy.Deployer;
+import access.deploy.DeploymentCoordinator;
+import access.deploy.Leaser;
+import access.util.CancellationScope;
+import exception.GeoServerException;
+import model.data.DataResource;
+import model.data.deployment.Deployment;
+
+/**
+ * Tests coalescing of concurrent deployments of the same Data
+ */
+public class DeploymentCoordinatorTests {
+	@Mock
+	private Deployer deployer;
+	@Mock
+	private Leaser leaser;
+	@Mock
+	private DatabaseAccessor accessor;
+	@Mock
+	private AdvisoryLocks advisoryLocks;
+	@Mock
+	private AdvisoryLock advisoryLock;
+	@InjectMocks
+	private DeploymentCoordinator deploymentCoordinator;
+
+	private DataResource dataResource;
+
+	/**
+	 * Initialize mock objects
+	 */
+	@Before
+	public void setup() {
+		MockitoAnnotations.initMocks(this);
+		ReflectionTestUtils.setField(deploymentCoordinator, "lockWaitMillis", 10000L);
+		ReflectionTestUtils.setField(deploymentCoordinator, "waitPollMillis", 10L);
+		when(advisoryLocks.tryAcquireDeploymentLock(anyString(), anyLong())).thenReturn(advisoryLock);
+		dataResource = new DataResource();
+		dataResource.setDataId("123456");
+	}
+
+	/**
+	 * Tests a Job arriving during a deployment waits for it, and only renews the Lease
+	 */
+	@Test
+	public void testConcurrentDeployment() throws Exception {
+		Deployment deployment = new Deployment();
+		deployment.setDeploymentId("654321");
+		CountDownLatch deploying = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		when(deployer.createDeployment(any(DataResource.class))).thenAnswer(invocation -> {
+			deploying.countDown();
+			release.await(10, TimeUnit.SECONDS);
+			return deployment;
+		});
+		// The follower must read the leader's Lease from the primary
+		AtomicBoolean renewedOnPrimary = new AtomicBoolean(false);
+		when(leaser.renewDeploymentLease(deployment, 7)).thenAnswer(invocation -> {
+			ThreadLocal<?> primaryPin = (ThreadLocal<?>) ReflectionTestUtils.getField(ReadReplicaRoutingDataSource.class, "PRIMARY_PIN");
+			renewedOnPrimary.set(primaryPin.get() != null);
+			return null;
+		});
+
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			Future<Deployment> leader = executor.submit(() -> deploymentCoordinator.deploy(dataResource, 7));
+			assertTrue(deploying.await(10, TimeUnit.SECONDS));
+			Future<Deployment> follower = executor.submit(() -> deploymentCoordinator.deploy(dataResource, 7));
+			// The follower can not complete before the leader
+			Thread.sleep(100);
+			assertTrue(!follower.isDone());
+			release.countDown();
+
+			assertTrue(leader.get(10, TimeUnit.SECONDS) == deployment);
+			assertTrue(follower.get(10, TimeUnit.SECONDS) == deployment);
+		} finally {
+			executor.shutdownNow();
+		}
+		verify(deployer, times(1)).createDeployment(any(DataResource.class));
+		verify(leaser, times(1)).createDeploymentLease(deployment, 7);
+		verify(leaser, times(1)).renewDeploymentLease(deployment, 7);
+		assertTrue(renewedOnPrimary.get());
+		verify(advisoryLock, times(1)).close();
+	}
+
+	/**
+	 * Tests a Job waiting for a deployment takes it over when the deploying Job is interrupted, rather than waiting
+	 * forever
+	 */
+	@Test
+	public void testInterruptedLeader() throws Exception {
+		Deployment deployment = new Deployment();
+		CountDownLatch locking = new CountDownLatch(1);
+		AtomicInteger lockAttempts = new AtomicInteger();
+		// The first Job blocks polling for the lock until it is interrupted
+		when(advisoryLocks.tryAcquireDeploymentLock(anyString(), anyLong())).thenAnswer(invocation -> {
+			if (lockAttempts.getAndIncrement() == 0) {
+				locking.countDown();
+				Thread.sleep(10000);
+			}
+			return advisoryLock;
+		});
+		when(deployer.createDeployment(any(DataResource.class))).thenReturn(deployment);
+
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			Future<Deployment> leader = executor.submit(() -> deploymentCoordinator.deploy(dataResource, 7));
+			assertTrue(locking.await(10, TimeUnit.SECONDS));
+			Future<Deployment> follower = executor.submit(() -> deploymentCoordinator.deploy(dataResource, 7));
+			Thread.sleep(100);
+			assertTrue(!follower.isDone());
+			leader.cancel(true);
+
+			assertTrue(follower.get(10, TimeUnit.SECONDS) == deployment);
+		} finally {
+			executor.shutdownNow();
+		}
+		verify(deployer, times(1)).createDeployment(any(DataResource.class));
+		verify(leaser, times(1)).createDeploymentLease(deployment, 7);
+	}
+
+	/**
+	 * Tests a Job waiting for a deployment stops waiting when it is cancelled itself
+	 */
+	@Test
+	public void testCancelledFollower() throws Exception {
+		CountDownLatch deploying = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		when(deployer.createDeployment(any(DataResource.class))).thenAnswer(invocation -> {
+			deploying.countDown();
+			release.await(10, TimeUnit.SECONDS);
+			return new Deployment();
+		});
+
+		CancellationScope scope = new CancellationScope();
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			executor.submit(() -> deploymentCoordinator.deploy(dataResource, 7));
+			assertTrue(deploying.await(10, TimeUnit.SECONDS));
+			Future<Deployment> follower = executor.submit(() -> {
+				CancellationScope.bind(scope);
+				try {
+					return deploymentCoordinator.deploy(dataResource, 7);
+				} finally {
+					CancellationScope.unbind();
+				}
+			});
+			Thread.sleep(100);
+			scope.cancel();
+			ExecutionException failure = null;
+			try {
+				follower.get(10, TimeUnit.SECONDS);
+			} catch (ExecutionException exception) {
+				failure = exception;
+			}
+			assertTrue((failure != null) && (failure.getCause() instanceof InterruptedException));
+		} finally {
+			release.countDown();
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Tests a Job that times out waiting for another instance's deployment fails, rather than deploying again
+	 */
+	@Test(expected = GeoServerException.class)
+	public void testLockTimeout() throws Exception {
+		when(advisoryLocks.tryAcquireDeploymentLock(anyString(), anyLong())).thenReturn(null);
+		try {
+			deploymentCoordinator.deploy(dataResource, 7);
+		} finally {
+			verify(deployer, times(0)).createDeployment(any(DataResource.class));
+		}
+	}
+
+	/**
+	 * Tests a Job that times out reuses the Deployment if the other instance finished in the meantime
+	 */
+	@Test
+	public void testLockTimeoutDeployed() throws Exception {
+		Deployment deployment = new Deployment();
+		when(advisoryLocks.tryAcquireDeploymentLock(anyString(), anyLong())).thenReturn(null);
+		when(accessor.getLeasedDeploymentByDataId(anyString())).thenReturn(new LeasedDeployment(deployment, null));
+		assertTrue(deploymentCoordinator.deploy(dataResource, 7) == deployment);
+	}
+
+	/**
+	 * Tests a Deployment completed just before this Job is reused
+	 */
+	@Test
+	public void testDeploymentCompletedMeanwhile() throws Exception {
+		Deployment deployment = new Deployment();
+		when(accessor.getLeasedDeploymentByDataId(anyString())).thenReturn(new LeasedDeployment(deployment, null));
+		assertTrue(deploymentCoordinator.deploy(dataResource, 7) == deployment);
+		verify(deployer, times(0)).createDeployment(any(DataResource.class));
+		verify(leaser).renewDeploymentLease(eq(deployment), eq(null), eq(7));
+	}
+
+	/**
+	 * Tests a failed deployment is reported, and does not block the next attempt
+	 */
+	@Test(expected = GeoServerException.class)
+	public void testFailedDeployment() throws Exception {
+		when(deployer.createDeployment(any(DataResource.class))).thenThrow(new GeoServerException("GeoServer unavailable"));
+		try {
+			deploymentCoordinator.deploy(dataResource, 7);
+		} catch (GeoServerException exception) {
+			// Nothing is left in flight
+			deploymentCoordinator.deploy(dataResource, 7);
+		}
+	}
+}
@@ -27,6 +27,7 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.client.HttpClientErrorException;
@@ -35,6 +36,7 @@ import org.springframework.web.client.RestTemplate;
 import access.database.DatabaseAccessor;
 import access.deploy.Deployer;
 import access.deploy.GroupDeployer;
+import access.deploy.RetryPolicy;
 import access.deploy.geoserver.AuthHeaders;
 import access.util.AccessUtilities;
 import model.data.deployment.Deployment;
@@ -63,6 +65,8 @@ public class GroupDeployerTests {
 	private AuthHeaders geoServerHeaders;
 	@Mock
 	private AccessUtilities accessUtilities;
+	@Spy
+	private RetryPolicy retryPolicy = new RetryPolicy();
 	@InjectMocks
 	private GroupDeployer groupDeployer;
 
@@ -0,0 +1,82 @@
+/**
+ * Copyright 2016, RadiantBlue Technologies, Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package access.test;
+
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.contains;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import access.database.JobLedger;
+import model.status.StatusUpdate;
+import util.PiazzaLogger;
+
+/**
+ * Tests the claims on unpublished statuses in the Job Ledger
+ */
+public class JobLedgerTests {
+	@Mock
+	private NamedParameterJdbcTemplate jdbcTemplate;
+	@Spy
+	private ObjectMapper objectMapper = new ObjectMapper();
+	@Mock
+	private PiazzaLogger pzLogger;
+	@InjectMocks
+	private JobLedger jobLedger;
+
+	/**
+	 * Initialize mocks
+	 */
+	@Before
+	public void setup() {
+		MockitoAnnotations.initMocks(this);
+	}
+
+	/**
+	 * Tests this instance renews its own claims before claiming lapsed statuses, skipping rows claimed concurrently
+	 */
+	@Test
+	public void testClaimUnpublished() throws Exception {
+		StatusUpdate statusUpdate = new StatusUpdate(StatusUpdate.STATUS_SUCCESS);
+		statusUpdate.setJobId("123456");
+		when(jdbcTemplate.queryForList(contains("for update skip locked"), any(SqlParameterSource.class), eq(String.class)))
+				.thenReturn(Arrays.asList(objectMapper.writeValueAsString(statusUpdate)));
+
+		List<StatusUpdate> claimed = jobLedger.claimUnpublished(120000);
+		assertTrue(claimed.size() == 1);
+		assertTrue("123456".equals(claimed.get(0).getJobId()));
+		InOrder order = inOrder(jdbcTemplate);
+		order.verify(jdbcTemplate).update(contains("set claimed_on = now() where claimed_by"), any(SqlParameterSource.class));
+		order.verify(jdbcTemplate).queryForList(contains("claimed_on < now()"), any(SqlParameterSource.class), eq(String.class));
+	}
+}
@@ -0,0 +1,158 @@
+/**
+ * Copyright 2016, RadiantBlue Technologies, Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package access.test;
+
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.util.concurrent.Future;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import access.messaging.JobRegistry;
+import access.messaging.TrackedJob;
+
+/**
+ * Tests the lifecycle of Jobs in the Job Registry
+ */
+public class JobRegistryTests {
+	private JobRegistry jobRegistry;
+
+	/**
+	 * Initialize the registry
+	 */
+	@Before
+	public void setup() {
+		jobRegistry = new JobRegistry();
+		ReflectionTestUtils.setField(jobRegistry, "abortTtlSeconds", 60);
+		ReflectionTestUtils.setField(jobRegistry, "abortMaxEntries", 100);
+		jobRegistry.initialize();
+	}
+
+	/**
+	 * Tests a Job moves through its states and is removed when done
+	 */
+	@Test
+	public void testLifecycle() {
+		Future<?> future = mock(Future.class);
+		jobRegistry.register("123456");
+		jobRegistry.attach("123456", future);
+		assertTrue(jobRegistry.get("123456").getState() == TrackedJob.State.QUEUED);
+		assertTrue(jobRegistry.getStateCounts().get(TrackedJob.State.QUEUED) == 1);
+
+		assertTrue(jobRegistry.start("123456"));
+		jobRegistry.setDataType("123456", "RasterDataType");
+		TrackedJob job = jobRegistry.get("123456");
+		assertTrue(job.getState() == TrackedJob.State.RUNNING);
+		assertTrue(job.getDataType().equals("RasterDataType"));
+
+		jobRegistry.complete(job);
+		assertTrue(job.getState() == TrackedJob.State.DONE);
+		assertTrue(jobRegistry.getJobIds().isEmpty());
+		verify(future, never()).cancel(true);
+
+		// Completed before the Future is attached
+		jobRegistry.attach("123456", future);
+		assertTrue(jobRegistry.getJobIds().isEmpty());
+	}
+
+	/**
+	 * Tests a Job that is already tracked is not registered again, and that completing a stale entry leaves the current
+	 * one tracked
+	 */
+	@Test
+	public void testDuplicateRegister() {
+		TrackedJob first = jobRegistry.register("123456", 1);
+		assertTrue(jobRegistry.start("123456"));
+		assertTrue(jobRegistry.register("123456", 2) == null);
+		assertTrue(jobRegistry.get("123456") == first);
+		assertTrue(first.getState() == TrackedJob.State.RUNNING);
+
+		jobRegistry.complete(first);
+		TrackedJob second = jobRegistry.register("123456", 2);
+		assertTrue(second != null);
+		jobRegistry.complete(first);
+		assertTrue(jobRegistry.get("123456") == second);
+	}
+
+	/**
+	 * Tests cancellations arriving before the work is submitted, or before the Job arrives, are applied
+	 */
+	@Test
+	public void testEarlyCancel() {
+		Future<?> future = mock(Future.class);
+		jobRegistry.register("123456");
+		assertTrue(jobRegistry.cancel("123456"));
+		assertTrue(jobRegistry.get("123456").getState() == TrackedJob.State.CANCELLING);
+		jobRegistry.attach("123456", future);
+		verify(future).cancel(true);
+		assertTrue(!jobRegistry.start("123456"));
+
+		assertTrue(!jobRegistry.cancel("654321"));
+		jobRegistry.register("654321");
+		assertTrue(jobRegistry.get("654321").getState() == TrackedJob.State.CANCELLING);
+		assertTrue(jobRegistry.isWithdrawn("654321"));
+	}
+
+	/**
+	 * Tests a Job aborted before it starts is withdrawn for the caller to settle, and one aborted while running is left
+	 * to its worker
+	 */
+	@Test
+	public void testCancelQueued() {
+		jobRegistry.register("123456");
+		assertTrue(jobRegistry.cancel("123456"));
+		assertTrue(jobRegistry.isWithdrawn("123456"));
+		jobRegistry.complete(jobRegistry.get("123456"));
+		assertTrue(jobRegistry.getJobIds().isEmpty());
+		assertTrue(!jobRegistry.start("123456"));
+
+		jobRegistry.register("654321");
+		assertTrue(jobRegistry.start("654321"));
+		assertTrue(!jobRegistry.cancel("654321"));
+		assertTrue(!jobRegistry.isWithdrawn("654321"));
+		assertTrue(jobRegistry.get("654321").getState() == TrackedJob.State.CANCELLING);
+	}
+
+	/**
+	 * Tests a drain withdraws only Jobs that have not started, and that a withdrawn Job never starts
+	 */
+	@Test
+	public void testWithdraw() {
+		Future<?> future = mock(Future.class);
+		jobRegistry.register("123456");
+		jobRegistry.attach("123456", future);
+		assertTrue(jobRegistry.withdraw("123456"));
+		verify(future).cancel(false);
+		assertTrue(jobRegistry.get("123456").getDisposition() == TrackedJob.Disposition.REQUEUE);
+		assertTrue(jobRegistry.isWithdrawn("123456"));
+		jobRegistry.complete(jobRegistry.get("123456"));
+		assertTrue(!jobRegistry.start("123456"));
+
+		// A running Job is given up rather than withdrawn
+		jobRegistry.register("654321");
+		assertTrue(jobRegistry.start("654321"));
+		assertTrue(!jobRegistry.withdraw("654321"));
+		assertTrue(jobRegistry.abandon("654321"));
+		assertTrue(jobRegistry.get("654321").getDisposition() == TrackedJob.Disposition.REQUEUE);
+		assertTrue(jobRegistry.getCancellationScope("654321").isCancelled());
+		assertTrue(!jobRegistry.abandon("000000"));
+	}
+}
@@ -0,0 +1,115 @@
+/**
+ * Copyright 2016, RadiantBlue Technologies, Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package access.test;
+
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.amqp.core.AcknowledgeMode;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.boot.autoconfigure.amqp.RabbitProperties;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import access.Application;
+
+/**
+ * Tests the configuration of the Rabbit listener containers
+ */
+public class ListenerContainerTests {
+	private Application application;
+	private SimpleRabbitListenerContainerFactoryConfigurer configurer;
+	private ConnectionFactory connectionFactory;
+
+	/**
+	 * Initialize the application with its default worker capacity
+	 */
+	@Before
+	public void setup() {
+		application = new Application();
+		ReflectionTestUtils.setField(application, "threadCountLimit", 25);
+		ReflectionTestUtils.setField(application, "threadQueueCapacity", 25);
+		ReflectionTestUtils.setField(application, "accessJobConcurrency", 4);
+		ReflectionTestUtils.setField(application, "groupThreadCountLimit", 4);
+		ReflectionTestUtils.setField(application, "groupThreadQueueCapacity", 10);
+		ReflectionTestUtils.setField(application, "rasterThreadCountLimit", 8);
+		ReflectionTestUtils.setField(application, "rasterThreadQueueCapacity", 10);
+		ReflectionTestUtils.setField(application, "laneConcurrency", 2);
+		ReflectionTestUtils.setField(application, "batchJobConcurrency", 1);
+		ReflectionTestUtils.setField(application, "abortJobConcurrency", 1);
+		ReflectionTestUtils.setField(application, "abortJobMaxConcurrency", 3);
+		ReflectionTestUtils.setField(application, "startConsumerMinInterval", 10000L);
+		configurer = new SimpleRabbitListenerContainerFactoryConfigurer();
+		ReflectionTestUtils.setField(configurer, "rabbitProperties", new RabbitProperties());
+		connectionFactory = mock(ConnectionFactory.class);
+	}
+
+	/**
+	 * Tests Access Job consumers are fixed, as a retired consumer would close the channel of the Jobs it is running
+	 */
+	@Test
+	public void testAccessJobConsumersFixed() {
+		SimpleRabbitListenerContainerFactory factory = application.accessJobContainerFactory(configurer, connectionFactory);
+		assertTrue(Integer.valueOf(4).equals(ReflectionTestUtils.getField(factory, "concurrentConsumers")));
+		Object maxConsumers = ReflectionTestUtils.getField(factory, "maxConcurrentConsumers");
+		assertTrue((maxConsumers == null) || Integer.valueOf(4).equals(maxConsumers));
+		assertTrue(AcknowledgeMode.MANUAL.equals(ReflectionTestUtils.getField(factory, "acknowledgeMode")));
+		// The capacity of 64, across the default and group lanes, is divided between the 4 consumers
+		assertTrue(Integer.valueOf(16).equals(ReflectionTestUtils.getField(factory, "prefetchCount")));
+	}
+
+	/**
+	 * Tests each lane queue prefetches only the capacity of its own executor, and that the AccessJob consumers, which
+	 * only forward Jobs to the lane queues, keep the default prefetch
+	 */
+	@Test
+	public void testLaneQueuePrefetch() {
+		ReflectionTestUtils.setField(application, "laneQueuesEnabled", true);
+		SimpleRabbitListenerContainerFactory factory = application.rasterLaneContainerFactory(configurer, connectionFactory);
+		assertTrue(Integer.valueOf(2).equals(ReflectionTestUtils.getField(factory, "concurrentConsumers")));
+		assertTrue(AcknowledgeMode.MANUAL.equals(ReflectionTestUtils.getField(factory, "acknowledgeMode")));
+		// The raster capacity of 18 is divided between the 2 consumers
+		assertTrue(Integer.valueOf(9).equals(ReflectionTestUtils.getField(factory, "prefetchCount")));
+
+		factory = application.accessJobContainerFactory(configurer, connectionFactory);
+		assertTrue(AcknowledgeMode.MANUAL.equals(ReflectionTestUtils.getField(factory, "acknowledgeMode")));
+		assertTrue(ReflectionTestUtils.getField(factory, "prefetchCount") == null);
+	}
+
+	/**
+	 * Tests Batch Access Job consumers only prefetch the capacity of the group lane, the only lane batches run in
+	 */
+	@Test
+	public void testBatchJobPrefetch() {
+		SimpleRabbitListenerContainerFactory factory = application.batchJobContainerFactory(configurer, connectionFactory);
+		assertTrue(Integer.valueOf(1).equals(ReflectionTestUtils.getField(factory, "concurrentConsumers")));
+		assertTrue(AcknowledgeMode.MANUAL.equals(ReflectionTestUtils.getField(factory, "acknowledgeMode")));
+		assertTrue(Integer.valueOf(14).equals(ReflectionTestUtils.getField(factory, "prefetchCount")));
+	}
+
+	/**
+	 * Tests Abort Job consumers, which acknowledge on receipt, scale up to their maximum
+	 */
+	@Test
+	public void testAbortJobConsumersScale() {
+		SimpleRabbitListenerContainerFactory factory = application.abortJobContainerFactory(configurer, connectionFactory);
+		assertTrue(Integer.valueOf(1).equals(ReflectionTestUtils.getField(factory, "concurrentConsumers")));
+		assertTrue(Integer.valueOf(3).equals(ReflectionTestUtils.getField(factory, "maxConcurrentConsumers")));
+	}
+}
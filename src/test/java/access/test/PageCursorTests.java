@@ -0,0 +1,102 @@
+/**
+ * Copyright 2016, RadiantBlue Technologies, Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package access.test;
+
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import access.database.ListQuery;
+import access.database.PageCursor;
+import exception.InvalidInputException;
+
+/**
+ * Tests the keyset pagination cursor and list query
+ */
+public class PageCursorTests {
+
+	/**
+	 * Tests a cursor survives encoding, including sort values containing the separator
+	 */
+	@Test
+	public void testRoundTrip() throws Exception {
+		PageCursor cursor = new PageCursor("createdOn", true, 42, "2017-01-01T00:00:00.000Z");
+		PageCursor decoded = PageCursor.decode(cursor.encode(), "createdOn", true);
+		assertTrue(decoded.getId() == 42);
+		assertTrue(decoded.getSortValue().equals("2017-01-01T00:00:00.000Z"));
+		assertTrue(decoded.getSortKey().equals("createdOn"));
+		assertTrue(decoded.isDescending());
+
+		// Empty cursor designates the first page
+		assertTrue(PageCursor.decode("", "createdOn", true) == null);
+		assertTrue(PageCursor.decode(null, "createdOn", true) == null);
+	}
+
+	/**
+	 * Tests cursors not issued by this component are rejected
+	 */
+	@Test(expected = InvalidInputException.class)
+	public void testInvalidCursor() throws Exception {
+		PageCursor.decode("bm90LWEtY3Vyc29y", "createdOn", false);
+	}
+
+	/**
+	 * Tests a cursor is rejected for a listing with another sort key than it was issued for
+	 */
+	@Test(expected = InvalidInputException.class)
+	public void testMismatchedSortKey() throws Exception {
+		String cursor = new PageCursor("createdOn", false, 42, "2017-01-01T00:00:00.000Z").encode();
+		assertTrue(PageCursor.decode(cursor, "createdOn", false) != null);
+		PageCursor.decode(cursor, "dataId", false);
+	}
+
+	/**
+	 * Tests a cursor is rejected for a listing in the other direction than it was issued for
+	 */
+	@Test(expected = InvalidInputException.class)
+	public void testMismatchedDirection() throws Exception {
+		String cursor = new PageCursor("createdOn", false, 42, "2017-01-01T00:00:00.000Z").encode();
+		PageCursor.decode(cursor, "createdOn", true);
+	}
+
+	/**
+	 * Tests the seek condition follows the sort order
+	 */
+	@Test
+	public void testListQuery() throws Exception {
+		String sortKey = "coalesce(data ->> 'dataId', '')";
+		ListQuery query = new ListQuery("data_resource").orderBy(sortKey, "desc").after(new PageCursor("dataId", true, 7, "abc"));
+		String sql = query.getSelectSql(11);
+		assertTrue(sql.contains(String.format("(%s, id) < (:cursorSortValue, :cursorId)", sortKey)));
+		assertTrue(sql.contains("id desc limit :limit"));
+		assertTrue(query.getParameters().getValue("cursorId").equals(7L));
+
+		// No cursor; first page
+		sql = new ListQuery("deployment").orderBy(sortKey, "asc").getSelectSql(11);
+		assertTrue(!sql.contains("cursorId"));
+	}
+
+	/**
+	 * Tests conversion of user keywords into prefix text search queries
+	 */
+	@Test
+	public void testPrefixSearchQuery() {
+		assertTrue(ListQuery.getPrefixSearchQuery("Elevation  Model").equals("elevation:* & model:*"));
+		// Text search operators are not passed through
+		assertTrue(ListQuery.getPrefixSearchQuery("dem's & !(tif)").equals("dem:* & s:* & tif:*"));
+		assertTrue(ListQuery.getPrefixSearchQuery("%%") == null);
+	}
+}
@@ -0,0 +1,76 @@
+/**
+ * Copyright 2016, RadiantBlue Technologies, Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package access.test;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import access.messaging.PipelineMetrics;
+import access.util.StageTimings;
+import access.util.StageTimings.Stage;
+
+/**
+ * Tests the timing of Access Job stages and their aggregation by data type
+ */
+public class PipelineMetricsTests {
+	/**
+	 * Tests spans accumulate into the timings bound to the thread, and do nothing when none are bound
+	 */
+	@Test
+	public void testTimings() {
+		StageTimings timings = new StageTimings();
+		try (StageTimings.Span span = StageTimings.start(Stage.S3_FETCH)) {
+			// Not bound
+		}
+		assertTrue(timings.getNanos().isEmpty());
+
+		StageTimings.bind(timings);
+		try {
+			try (StageTimings.Span span = StageTimings.start(Stage.DATABASE_LOOKUP)) {
+				timings.add(Stage.LEASE, 5);
+			}
+			timings.add(Stage.LEASE, 5);
+		} finally {
+			StageTimings.unbind();
+		}
+		assertTrue(timings.getNanos().containsKey(Stage.DATABASE_LOOKUP));
+		assertTrue(timings.getNanos().get(Stage.LEASE) == 10);
+	}
+
+	/**
+	 * Tests stages are recorded by data type and in aggregate
+	 */
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testAggregation() {
+		PipelineMetrics pipelineMetrics = new PipelineMetrics();
+		StageTimings timings = new StageTimings();
+		timings.add(Stage.GEOSERVER_PUBLISH, TimeUnit.MILLISECONDS.toNanos(40));
+		pipelineMetrics.record(timings, "RasterDataType");
+		pipelineMetrics.record(Stage.GEOSERVER_PUBLISH, null, TimeUnit.MILLISECONDS.toNanos(2));
+
+		Map<String, Object> stats = pipelineMetrics.getStats();
+		assertTrue(stats.keySet().size() == 1);
+		Map<String, Map<String, Object>> types = (Map<String, Map<String, Object>>) stats.get(Stage.GEOSERVER_PUBLISH.name());
+		assertTrue(types.get("RasterDataType").get("count").equals(1L));
+		assertTrue(types.get(PipelineMetrics.UNKNOWN_TYPE).get("count").equals(1L));
+		assertTrue(types.get(PipelineMetrics.ALL_TYPES).get("count").equals(2L));
+	}
+}
@@ -0,0 +1,113 @@
+/**
+ * Copyright 2016, RadiantBlue Technologies, Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package access.test;
+
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+
+import javax.sql.DataSource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import access.database.ReadReplicaRoutingDataSource;
+
+/**
+ * Tests routing of read-only transactions to read replicas
+ */
+public class ReadReplicaRoutingTests {
+	private DataSource primary;
+	private DataSource replica;
+	private Connection primaryConnection;
+	private Connection replicaConnection;
+	private ResultSet lag;
+	private ReadReplicaRoutingDataSource routingDataSource;
+
+	/**
+	 * Initialize mock objects.
+	 */
+	@Before
+	public void setup() throws SQLException {
+		primary = mock(DataSource.class);
+		replica = mock(DataSource.class);
+		primaryConnection = mock(Connection.class);
+		replicaConnection = mock(Connection.class);
+		when(primary.getConnection()).thenReturn(primaryConnection);
+		when(replica.getConnection()).thenReturn(replicaConnection);
+
+		Statement statement = mock(Statement.class);
+		lag = mock(ResultSet.class);
+		when(replicaConnection.createStatement()).thenReturn(statement);
+		when(statement.executeQuery(anyString())).thenReturn(lag);
+		when(lag.next()).thenReturn(true);
+
+		routingDataSource = new ReadReplicaRoutingDataSource(primary, Arrays.asList(replica), 5, 60);
+		routingDataSource.afterPropertiesSet();
+	}
+
+	@After
+	public void cleanup() {
+		TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+		ReadReplicaRoutingDataSource.clearPrimaryPin();
+	}
+
+	/**
+	 * Tests only read-only transactions are sent to a current replica
+	 */
+	@Test
+	public void testRouting() throws Exception {
+		when(lag.getDouble(1)).thenReturn(1.5);
+		routingDataSource.checkReplicaLag();
+
+		assertTrue(routingDataSource.getConnection() == primaryConnection);
+		TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+		assertTrue(routingDataSource.getConnection() == replicaConnection);
+
+		// Reads after a write on the same thread go to the primary
+		ReadReplicaRoutingDataSource.pinToPrimary();
+		assertTrue(routingDataSource.getConnection() == primaryConnection);
+		ReadReplicaRoutingDataSource.clearPrimaryPin();
+		assertTrue(routingDataSource.getConnection() == replicaConnection);
+	}
+
+	/**
+	 * Tests reads fall back to the primary when the replica is stale or unreachable
+	 */
+	@Test
+	public void testStaleReplica() throws Exception {
+		TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+		// Not measured yet
+		assertTrue(routingDataSource.getConnection() == primaryConnection);
+
+		when(lag.getDouble(1)).thenReturn(30.0);
+		routingDataSource.checkReplicaLag();
+		assertTrue(routingDataSource.getConnection() == primaryConnection);
+
+		when(replica.getConnection()).thenThrow(new SQLException("Connection refused"));
+		routingDataSource.checkReplicaLag();
+		assertTrue(routingDataSource.getConnection() == primaryConnection);
+	}
+}
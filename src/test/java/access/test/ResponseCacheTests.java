@@ -0,0 +1,163 @@
+/**
+ * Copyright 2016, RadiantBlue Technologies, Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package access.test;
+
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.FilterChain;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import access.controller.ResponseCacheFilter;
+import access.util.ExpiringCache;
+import access.util.ResponseCache;
+
+/**
+ * Tests the serialized response cache and its filter
+ */
+public class ResponseCacheTests {
+	private static final String BODY = "{\"type\":\"deployment\"}";
+
+	private ResponseCache responseCache;
+	private ResponseCacheFilter filter;
+	private AtomicInteger controllerCalls;
+	private FilterChain chain;
+
+	/**
+	 * Initialize an enabled cache, and a chain standing in for the controller
+	 */
+	@Before
+	public void setup() {
+		responseCache = new ResponseCache();
+		ReflectionTestUtils.setField(responseCache, "enabled", true);
+		ReflectionTestUtils.setField(responseCache, "ttlSeconds", 30);
+		ReflectionTestUtils.setField(responseCache, "maxEntries", 100);
+		responseCache.initialize();
+		filter = new ResponseCacheFilter();
+		ReflectionTestUtils.setField(filter, "responseCache", responseCache);
+
+		controllerCalls = new AtomicInteger();
+		chain = (request, response) -> {
+			controllerCalls.incrementAndGet();
+			response.setContentType("application/json;charset=UTF-8");
+			response.getOutputStream().write(BODY.getBytes(StandardCharsets.UTF_8));
+		};
+	}
+
+	/**
+	 * Tests a response is served from the cache until it is invalidated
+	 */
+	@Test
+	public void testCachedResponse() throws Exception {
+		MockHttpServletResponse response = get("/deployment/123456", null);
+		assertTrue(response.getContentAsString().equals(BODY));
+		String eTag = response.getHeader(HttpHeaders.ETAG);
+		assertTrue(eTag != null);
+
+		response = get("/deployment/123456", null);
+		assertTrue(controllerCalls.get() == 1);
+		assertTrue(response.getContentAsString().equals(BODY));
+		assertTrue(response.getContentType().startsWith("application/json"));
+
+		// Client already has the current response
+		response = get("/deployment/123456", eTag);
+		assertTrue(response.getStatus() == 304);
+		assertTrue(controllerCalls.get() == 1);
+
+		// A miss still answers 304 when the rebuilt response is unchanged
+		responseCache.invalidate(ResponseCache.getDeploymentKey("123456"));
+		response = get("/deployment/123456", eTag);
+		assertTrue(controllerCalls.get() == 2);
+		assertTrue(response.getStatus() == 304);
+		assertTrue(response.getContentAsByteArray().length == 0);
+		assertTrue(eTag.equals(response.getHeader(HttpHeaders.ETAG)));
+	}
+
+	/**
+	 * Tests a miss honors If-None-Match even when its response is not cached, and returns the body when the client's
+	 * ETag is out of date
+	 */
+	@Test
+	public void testConditionalMiss() throws Exception {
+		// A write during every request keeps the response from being cached
+		chain = (request, response) -> {
+			controllerCalls.incrementAndGet();
+			responseCache.invalidate(ResponseCache.getDataKey("654321"));
+			response.setContentType("application/json;charset=UTF-8");
+			response.getOutputStream().write(BODY.getBytes(StandardCharsets.UTF_8));
+		};
+		String eTag = ResponseCache.getETag(BODY.getBytes(StandardCharsets.UTF_8));
+
+		MockHttpServletResponse response = get("/data/654321", "\"outdated\"");
+		assertTrue(response.getStatus() == 200);
+		assertTrue(response.getContentAsString().equals(BODY));
+		assertTrue(eTag.equals(response.getHeader(HttpHeaders.ETAG)));
+
+		response = get("/data/654321", eTag);
+		assertTrue(response.getStatus() == 304);
+		assertTrue(response.getContentAsByteArray().length == 0);
+		assertTrue(controllerCalls.get() == 2);
+	}
+
+	/**
+	 * Tests responses built across an invalidation are not cached, and other paths are not cached
+	 */
+	@Test
+	public void testNotCached() throws Exception {
+		long version = responseCache.getVersion();
+		responseCache.invalidate(ResponseCache.getDataKey("123456"));
+		assertTrue(responseCache.put(ResponseCache.getDataKey("123456"), version, "application/json", new byte[0]) == null);
+
+		get("/data/count", null);
+		get("/data/count", null);
+		assertTrue(controllerCalls.get() == 2);
+	}
+
+	/**
+	 * Tests expiry and bounds of the underlying cache
+	 */
+	@Test
+	public void testExpiringCache() {
+		ExpiringCache<String, String> cache = new ExpiringCache<>(60000, 2);
+		cache.put("a", "1");
+		cache.put("b", "2");
+		cache.put("c", "3");
+		assertTrue(cache.size() == 2);
+		assertTrue("3".equals(cache.get("c")));
+
+		ExpiringCache<String, String> expired = new ExpiringCache<>(0, 2);
+		expired.put("a", "1");
+		assertTrue(expired.get("a") == null);
+	}
+
+	private MockHttpServletResponse get(String path, String ifNoneMatch) throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", path);
+		if (ifNoneMatch != null) {
+			request.addHeader(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+		}
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		filter.doFilter(request, response, chain);
+		return response;
+	}
+}
@@ -0,0 +1,98 @@
+/**
+ * Copyright 2016, RadiantBlue Technologies, Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package access.test;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import access.deploy.RetryPolicy;
+
+/**
+ * Tests the classification and retrying of transient GeoServer failures
+ */
+public class RetryPolicyTests {
+	private RetryPolicy retryPolicy;
+
+	/**
+	 * Initialize the policy with short delays
+	 */
+	@Before
+	public void setup() {
+		retryPolicy = new RetryPolicy();
+		ReflectionTestUtils.setField(retryPolicy, "maxAttempts", 3);
+		ReflectionTestUtils.setField(retryPolicy, "initialDelayMillis", 1L);
+		ReflectionTestUtils.setField(retryPolicy, "maxDelayMillis", 4L);
+		ReflectionTestUtils.setField(retryPolicy, "retryableStatusCodes", new int[] { 502, 503, 504 });
+		ReflectionTestUtils.setField(retryPolicy, "initialJobDelaySeconds", 30L);
+		ReflectionTestUtils.setField(retryPolicy, "maxJobDelaySeconds", 600L);
+	}
+
+	/**
+	 * Tests transient failures are retried until the request succeeds
+	 */
+	@Test
+	public void testRetry() {
+		AtomicInteger attempts = new AtomicInteger();
+		String result = retryPolicy.execute("test", () -> {
+			if (attempts.incrementAndGet() < 3) {
+				throw new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE);
+			}
+			return "OK";
+		});
+		assertTrue("OK".equals(result));
+		assertTrue(attempts.get() == 3);
+	}
+
+	/**
+	 * Tests other failures are not retried
+	 */
+	@Test
+	public void testNoRetry() {
+		AtomicInteger attempts = new AtomicInteger();
+		try {
+			retryPolicy.execute("test", () -> {
+				attempts.incrementAndGet();
+				throw new HttpClientErrorException(HttpStatus.NOT_FOUND);
+			});
+		} catch (HttpClientErrorException exception) {
+			assertTrue(attempts.get() == 1);
+		}
+		assertTrue(!retryPolicy.isRetryable(new HttpServerErrorException(HttpStatus.INTERNAL_SERVER_ERROR)));
+	}
+
+	/**
+	 * Tests wrapped transient failures are recognized, and Job backoff stays within its cap
+	 */
+	@Test
+	public void testClassification() {
+		assertTrue(retryPolicy.isRetryable(RetryPolicy.geoServerException("Upload failed", new ResourceAccessException("Timed out"))));
+		assertTrue(retryPolicy.isRetryable(new HttpServerErrorException(HttpStatus.GATEWAY_TIMEOUT)));
+		for (int attempt = 1; attempt < 10; attempt++) {
+			long delay = retryPolicy.getJobRetryDelayMillis(attempt);
+			assertTrue(delay >= 15000);
+			assertTrue(delay <= 600000);
+		}
+	}
+}
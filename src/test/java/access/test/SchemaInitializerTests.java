@@ -0,0 +1,114 @@
+/**
+ * Copyright 2016, RadiantBlue Technologies, Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package access.test;
+
+import static org.mockito.Matchers.contains;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import access.database.SchemaInitializer;
+import util.PiazzaLogger;
+
+/**
+ * Tests the supplementary schema is applied without blocking writes to the shared tables
+ */
+public class SchemaInitializerTests {
+	@Mock
+	private JdbcTemplate jdbcTemplate;
+	@Mock
+	private PiazzaLogger pzLogger;
+	@InjectMocks
+	private SchemaInitializer schemaInitializer;
+
+	private Connection connection;
+	private Statement statement;
+	private PreparedStatement invalidIndexQuery;
+	private ResultSet invalidIndexResult;
+
+	/**
+	 * Initialize mocks, with a connection on which the schema lock is free and no index is invalid
+	 */
+	@Before
+	public void setup() throws Exception {
+		MockitoAnnotations.initMocks(this);
+		connection = mock(Connection.class);
+		statement = mock(Statement.class);
+		invalidIndexQuery = mock(PreparedStatement.class);
+		invalidIndexResult = mock(ResultSet.class);
+		PreparedStatement lockQuery = mock(PreparedStatement.class);
+		ResultSet lockResult = mock(ResultSet.class);
+		when(connection.createStatement()).thenReturn(statement);
+		when(connection.prepareStatement(contains("advisory"))).thenReturn(lockQuery);
+		when(lockQuery.executeQuery()).thenReturn(lockResult);
+		when(lockResult.next()).thenReturn(true);
+		when(lockResult.getBoolean(1)).thenReturn(true);
+		when(connection.prepareStatement(contains("indisvalid"))).thenReturn(invalidIndexQuery);
+		when(invalidIndexQuery.executeQuery()).thenReturn(invalidIndexResult);
+	}
+
+	/**
+	 * Tests the tables are created on startup, while the concurrent index builds are left to the background, on a
+	 * single connection outside of a transaction
+	 */
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testConcurrentIndexes() throws Exception {
+		schemaInitializer.initialize();
+		verify(jdbcTemplate).execute(contains("CREATE TABLE IF NOT EXISTS access_job_ledger"));
+		verify(jdbcTemplate, never()).execute(contains("CONCURRENTLY"));
+
+		ArgumentCaptor<ConnectionCallback> callback = ArgumentCaptor.forClass(ConnectionCallback.class);
+		verify(jdbcTemplate, timeout(5000)).execute(callback.capture());
+		callback.getValue().doInConnection(connection);
+		verify(statement).execute(contains("CREATE INDEX CONCURRENTLY IF NOT EXISTS data_resource_search_idx"));
+		verify(statement, never()).execute(contains("DROP INDEX"));
+		verify(connection).prepareStatement(contains("pg_advisory_unlock"));
+	}
+
+	/**
+	 * Tests an index left invalid by a failed concurrent build is dropped before it is built again
+	 */
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testInvalidIndexRebuilt() throws Exception {
+		when(invalidIndexResult.next()).thenReturn(true, false);
+		schemaInitializer.initialize();
+
+		ArgumentCaptor<ConnectionCallback> callback = ArgumentCaptor.forClass(ConnectionCallback.class);
+		verify(jdbcTemplate, timeout(5000)).execute(callback.capture());
+		callback.getValue().doInConnection(connection);
+		verify(statement, times(1)).execute(contains("DROP INDEX CONCURRENTLY IF EXISTS"));
+		verify(statement, never()).execute(contains("access_job_ledger"));
+	}
+}
@@ -0,0 +1,186 @@
+/**
+ * Copyright 2016, RadiantBlue Technologies, Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package access.test;
+
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.amqp.AmqpTimeoutException;
+import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.rabbit.core.RabbitOperations;
+import org.springframework.amqp.rabbit.core.RabbitOperations.OperationsCallback;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import access.database.JobLedger;
+import access.messaging.PipelineMetrics;
+import access.messaging.StatusPublisher;
+import model.status.StatusUpdate;
+import util.PiazzaLogger;
+
+/**
+ * Tests the queueing of Job Status Updates in the Status Publisher
+ */
+public class StatusPublisherTests {
+	private StatusPublisher statusPublisher;
+	private RabbitTemplate rabbitTemplate;
+	private RabbitOperations operations;
+	private JobLedger jobLedger;
+
+	/**
+	 * Initialize the publisher, without starting its publishing thread
+	 */
+	@Before
+	@SuppressWarnings("unchecked")
+	public void setup() {
+		statusPublisher = new StatusPublisher();
+		rabbitTemplate = mock(RabbitTemplate.class);
+		operations = mock(RabbitOperations.class);
+		when(operations.waitForConfirms(anyLong())).thenReturn(true);
+		when(rabbitTemplate.invoke(any(OperationsCallback.class)))
+				.thenAnswer(invocation -> ((OperationsCallback<?>) invocation.getArguments()[0]).doInRabbit(operations));
+		jobLedger = mock(JobLedger.class);
+		ReflectionTestUtils.setField(statusPublisher, "capacity", 2);
+		ReflectionTestUtils.setField(statusPublisher, "retryMillis", 0L);
+		ReflectionTestUtils.setField(statusPublisher, "rabbitTemplate", rabbitTemplate);
+		ReflectionTestUtils.setField(statusPublisher, "writer", new ObjectMapper().writerFor(StatusUpdate.class));
+		ReflectionTestUtils.setField(statusPublisher, "updateJobsQueue", new Queue("Update-Job-test"));
+		ReflectionTestUtils.setField(statusPublisher, "pipelineMetrics", mock(PipelineMetrics.class));
+		ReflectionTestUtils.setField(statusPublisher, "pzLogger", mock(PiazzaLogger.class));
+		ReflectionTestUtils.setField(statusPublisher, "jobLedger", jobLedger);
+	}
+
+	/**
+	 * Tests a newer update replaces an unsent update for the same Job
+	 */
+	@Test
+	public void testCoalesce() {
+		statusPublisher.publish(createUpdate("123456", StatusUpdate.STATUS_RUNNING));
+		statusPublisher.publish(createUpdate("123456", StatusUpdate.STATUS_SUCCESS));
+		assertTrue(statusPublisher.getPendingCount() == 1);
+	}
+
+	/**
+	 * Tests Running updates are dropped when the queue is full, but final statuses are not
+	 */
+	@Test
+	public void testCapacity() {
+		statusPublisher.publish(createUpdate("1", StatusUpdate.STATUS_RUNNING));
+		statusPublisher.publish(createUpdate("2", StatusUpdate.STATUS_RUNNING));
+		statusPublisher.publish(createUpdate("3", StatusUpdate.STATUS_RUNNING));
+		assertTrue(statusPublisher.getPendingCount() == 2);
+
+		statusPublisher.publish(createUpdate("3", StatusUpdate.STATUS_ERROR));
+		statusPublisher.publish(createUpdate("4", StatusUpdate.STATUS_CANCELLED));
+		assertTrue(statusPublisher.getPendingCount() == 4);
+	}
+
+	/**
+	 * Tests a batch is published on one channel and confirmed together, and its final statuses then marked as
+	 * published in the ledger
+	 */
+	@Test
+	public void testBatch() {
+		statusPublisher.publish(createUpdate("1", StatusUpdate.STATUS_SUCCESS));
+		statusPublisher.publish(createUpdate("2", StatusUpdate.STATUS_RUNNING));
+		statusPublisher.publish(createUpdate("3", StatusUpdate.STATUS_ERROR));
+		ReflectionTestUtils.invokeMethod(statusPublisher, "sendBatch", Arrays.asList("1", "2", "3"));
+		verify(rabbitTemplate).invoke(any());
+		verify(operations, times(3)).convertAndSend(anyString(), anyString(), any(Object.class));
+		verify(operations).waitForConfirms(anyLong());
+		verify(jobLedger).markPublished(Arrays.asList("1", "3"));
+		assertTrue(statusPublisher.getPendingCount() == 0);
+		assertTrue(statusPublisher.getUnconfirmedCount() == 0);
+	}
+
+	/**
+	 * Tests a batch the broker did not confirm in time is queued again, and not marked as published
+	 */
+	@Test
+	public void testUnconfirmedBatch() {
+		when(operations.waitForConfirms(anyLong())).thenThrow(new AmqpTimeoutException("Timed out"));
+		statusPublisher.publish(createUpdate("1", StatusUpdate.STATUS_SUCCESS));
+		statusPublisher.publish(createUpdate("2", StatusUpdate.STATUS_ERROR));
+		ReflectionTestUtils.invokeMethod(statusPublisher, "sendBatch", Arrays.asList("1", "2"));
+		assertTrue(statusPublisher.getPendingCount() == 2);
+		verify(jobLedger, never()).markPublished(any());
+	}
+
+	/**
+	 * Tests a Running update rejected by the broker after a newer update was queued is not sent again, and that a
+	 * confirmed final status is marked as published in the ledger
+	 */
+	@Test
+	public void testStaleRequeue() {
+		statusPublisher.publish(createUpdate("123456", StatusUpdate.STATUS_RUNNING));
+		when(operations.waitForConfirms(anyLong())).thenAnswer(invocation -> {
+			// The final status is queued while the Running update awaits its confirm
+			statusPublisher.publish(createUpdate("123456", StatusUpdate.STATUS_SUCCESS));
+			return false;
+		});
+		ReflectionTestUtils.invokeMethod(statusPublisher, "sendBatch", Arrays.asList("123456"));
+		assertTrue(statusPublisher.getPendingCount() == 1);
+		assertTrue(statusPublisher.getUnconfirmedCount() == 0);
+
+		when(operations.waitForConfirms(anyLong())).thenReturn(true);
+		ReflectionTestUtils.invokeMethod(statusPublisher, "sendBatch", Arrays.asList("123456"));
+		ArgumentCaptor<Object> message = ArgumentCaptor.forClass(Object.class);
+		verify(operations, times(2)).convertAndSend(anyString(), anyString(), message.capture());
+		assertTrue(((String) message.getValue()).contains(StatusUpdate.STATUS_SUCCESS));
+		assertTrue(statusPublisher.getPendingCount() == 0);
+		verify(jobLedger).markPublished(Collections.singletonList("123456"));
+	}
+
+	/**
+	 * Tests unconfirmed final statuses are published again from the ledger, unless this instance is still sending an
+	 * update for the Job
+	 */
+	@Test
+	public void testRepublishUnconfirmed() {
+		statusPublisher.publish(createUpdate("2", StatusUpdate.STATUS_RUNNING));
+		when(jobLedger.claimUnpublished(anyLong())).thenReturn(
+				Arrays.asList(createUpdate("1", StatusUpdate.STATUS_SUCCESS), createUpdate("2", StatusUpdate.STATUS_ERROR)));
+		statusPublisher.republishUnconfirmed();
+		assertTrue(statusPublisher.getPendingCount() == 2);
+
+		ReflectionTestUtils.invokeMethod(statusPublisher, "sendBatch", Arrays.asList("1", "2"));
+		ArgumentCaptor<Object> message = ArgumentCaptor.forClass(Object.class);
+		verify(operations, times(2)).convertAndSend(anyString(), anyString(), message.capture());
+		assertTrue(((String) message.getAllValues().get(0)).contains(StatusUpdate.STATUS_SUCCESS));
+		assertTrue(((String) message.getAllValues().get(1)).contains(StatusUpdate.STATUS_RUNNING));
+	}
+
+	private StatusUpdate createUpdate(String jobId, String status) {
+		StatusUpdate statusUpdate = new StatusUpdate(status);
+		statusUpdate.setJobId(jobId);
+		return statusUpdate;
+	}
+}
@@ -0,0 +1,401 @@
+/**
+ * Copyright 2016, RadiantBlue Technologies, Inc.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ **/
+package access.test;
+
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rabbitmq.client.Channel;
+
+import access.database.DatabaseAccessor;
+import access.database.JobLedger;
+import access.model.BatchAccessJob;
+import access.messaging.AccessThreadManager;
+import access.messaging.AccessWorker;
+import access.messaging.BatchAccessWorker;
+import access.messaging.JobRegistry;
+import access.messaging.LaneQueues;
+import access.messaging.PipelineMetrics;
+import access.messaging.RetryQueues;
+import access.messaging.StatusPublisher;
+import messaging.job.WorkerCallback;
+import model.data.DataResource;
+import model.data.type.RasterDataType;
+import model.job.Job;
+import model.job.type.AbortJob;
+import model.job.type.AccessJob;
+import model.request.PiazzaJobRequest;
+import model.status.StatusUpdate;
+import util.PiazzaLogger;
+
+/**
+ * Tests the acknowledgement of Access Job messages by the Thread Manager
+ */
+public class ThreadManagerTests {
+	@Mock
+	private PiazzaLogger pzLogger;
+	@Mock
+	private AccessWorker accessWorker;
+	@Mock
+	private BatchAccessWorker batchAccessWorker;
+	@Mock
+	private ObjectMapper objectMapper;
+	@Spy
+	private JobRegistry jobRegistry = new JobRegistry();
+	@Mock
+	private DatabaseAccessor accessor;
+	@Mock
+	private RetryQueues retryQueues;
+	@Mock
+	private JobLedger jobLedger;
+	@Mock
+	private StatusPublisher statusPublisher;
+	@Mock
+	private PipelineMetrics pipelineMetrics;
+	@Mock
+	private LaneQueues laneQueues;
+	@Mock
+	private Channel channel;
+	@InjectMocks
+	private AccessThreadManager threadManager;
+
+	private Message message;
+	private Job job;
+
+	/**
+	 * Initialize mock objects
+	 */
+	@Before
+	public void setup() throws Exception {
+		ReflectionTestUtils.setField(jobRegistry, "abortTtlSeconds", 60);
+		ReflectionTestUtils.setField(jobRegistry, "abortMaxEntries", 100);
+		jobRegistry.initialize();
+		MockitoAnnotations.initMocks(this);
+
+		MessageProperties properties = new MessageProperties();
+		properties.setDeliveryTag(7);
+		message = new Message("{}".getBytes(), properties);
+		job = new Job();
+		job.setJobId("123456");
+		when(objectMapper.readValue(anyString(), eq(Job.class))).thenReturn(job);
+	}
+
+	/**
+	 * Tests the message is only acknowledged once its Job completes
+	 */
+	@Test
+	public void testAcknowledgeOnCompletion() throws Exception {
+		threadManager.processAccessJob(message, channel);
+		ArgumentCaptor<WorkerCallback> callback = ArgumentCaptor.forClass(WorkerCallback.class);
+		verify(accessWorker).run(any(Job.class), callback.capture());
+		verify(channel, never()).basicAck(7, false);
+		assertTrue(threadManager.getRunningJobIds().contains("123456"));
+
+		callback.getValue().onComplete("123456");
+		verify(channel).basicAck(7, false);
+		assertTrue(threadManager.getRunningJobIds().isEmpty());
+	}
+
+	/**
+	 * Tests a transiently failed Job is sent for retry, and dead-lettered on its last attempt, before its message is
+	 * acknowledged
+	 */
+	@Test
+	public void testRetry() throws Exception {
+		threadManager.processAccessJob(message, channel);
+		ArgumentCaptor<WorkerCallback> callback = ArgumentCaptor.forClass(WorkerCallback.class);
+		verify(accessWorker).run(any(Job.class), callback.capture());
+		assertTrue(jobRegistry.failTransiently("123456", "Service Unavailable", 2));
+		callback.getValue().onComplete("123456");
+		verify(retryQueues).retry(message, 1, "Service Unavailable");
+		verify(channel).basicAck(7, false);
+
+		message.getMessageProperties().setHeader(RetryQueues.ATTEMPT_HEADER, 2);
+		threadManager.processAccessJob(message, channel);
+		assertTrue(!jobRegistry.failTransiently("123456", "Service Unavailable", 2));
+		callback.getValue().onComplete("123456");
+		verify(retryQueues).deadLetter(message, 2, "Service Unavailable");
+	}
+
+	/**
+	 * Tests a Job whose retry the broker did not confirm is returned to the queue, rather than acknowledged and lost
+	 */
+	@Test
+	public void testUnconfirmedRetry() throws Exception {
+		doThrow(new AmqpException("Not confirmed")).when(retryQueues).retry(any(Message.class), eq(1), anyString());
+		threadManager.processAccessJob(message, channel);
+		ArgumentCaptor<WorkerCallback> callback = ArgumentCaptor.forClass(WorkerCallback.class);
+		verify(accessWorker).run(any(Job.class), callback.capture());
+		assertTrue(jobRegistry.failTransiently("123456", "Service Unavailable", 2));
+		callback.getValue().onComplete("123456");
+		verify(channel, never()).basicAck(7, false);
+		verify(channel).basicNack(7, false, true);
+	}
+
+	/**
+	 * Tests the message is returned to the queue after a delay when the workers are full, and unreadable messages are
+	 * dropped
+	 */
+	@Test
+	public void testRejection() throws Exception {
+		ReflectionTestUtils.setField(threadManager, "rejectionRequeueDelayMillis", 200L);
+		when(accessWorker.run(any(Job.class), any(WorkerCallback.class))).thenThrow(new TaskRejectedException("Full"));
+		threadManager.processAccessJob(message, channel);
+		verify(channel, never()).basicNack(7, false, true);
+		verify(channel, timeout(5000)).basicNack(7, false, true);
+		assertTrue(threadManager.releaseHeldDeliveries() == 0);
+		assertTrue(threadManager.getRunningJobIds().isEmpty());
+		assertTrue(threadManager.getLaneStats().get(AccessThreadManager.Lane.DEFAULT).get("rejected").equals(1L));
+
+		when(objectMapper.readValue(anyString(), eq(Job.class))).thenThrow(new IOException("Bad message"));
+		threadManager.processAccessJob(message, channel);
+		verify(channel).basicNack(7, false, false);
+	}
+
+	/**
+	 * Tests a Job interrupted while it is submitted is deregistered, and its message returned to the queue
+	 */
+	@Test
+	public void testInterruptedSubmit() throws Exception {
+		ReflectionTestUtils.setField(threadManager, "rejectionRequeueDelayMillis", 0L);
+		when(accessWorker.run(any(Job.class), any(WorkerCallback.class))).thenThrow(new InterruptedException());
+		threadManager.processAccessJob(message, channel);
+		verify(channel, timeout(5000)).basicNack(7, false, true);
+		assertTrue(threadManager.getRunningJobIds().isEmpty());
+	}
+
+	/**
+	 * Tests renewals of deployed Resources are run on the renewal lane, and new Deployments on the lane of their type
+	 */
+	@Test
+	public void testLanes() throws Exception {
+		AccessJob accessJob = new AccessJob("123456");
+		accessJob.deploymentType = AccessJob.ACCESS_TYPE_GEOSERVER;
+		accessJob.dataId = "654321";
+		job.setJobType(accessJob);
+
+		when(accessor.isDeployed("654321")).thenReturn(true);
+		threadManager.processAccessJob(message, channel);
+		verify(accessWorker).runRenewal(any(Job.class), any(WorkerCallback.class));
+		verify(accessWorker, never()).run(any(Job.class), any(WorkerCallback.class));
+
+		// Further Jobs for the same Data, while the first is still running
+		job.setJobId("123457");
+		when(accessor.isDeployed("654321")).thenReturn(false);
+		DataResource dataResource = new DataResource();
+		dataResource.dataType = new RasterDataType();
+		when(accessor.getDataFromPrimary("654321")).thenReturn(dataResource);
+		threadManager.processAccessJob(message, channel);
+		verify(accessWorker).runRaster(any(Job.class), any(WorkerCallback.class));
+
+		// Unknown Data runs on the default lane
+		job.setJobId("123458");
+		when(accessor.getDataFromPrimary("654321")).thenReturn(null);
+		threadManager.processAccessJob(message, channel);
+		verify(accessWorker).run(any(Job.class), any(WorkerCallback.class));
+	}
+
+	/**
+	 * Tests a redelivered message of a Job still running is returned to the queue, and leaves the running Job and its
+	 * callback in place
+	 */
+	@Test
+	public void testDuplicateDelivery() throws Exception {
+		ReflectionTestUtils.setField(threadManager, "rejectionRequeueDelayMillis", 0L);
+		threadManager.processAccessJob(message, channel);
+		ArgumentCaptor<WorkerCallback> callback = ArgumentCaptor.forClass(WorkerCallback.class);
+		verify(accessWorker).run(any(Job.class), callback.capture());
+
+		MessageProperties properties = new MessageProperties();
+		properties.setDeliveryTag(8);
+		properties.setRedelivered(true);
+		threadManager.processAccessJob(new Message("{}".getBytes(), properties), channel);
+		verify(channel, timeout(5000)).basicNack(8, false, true);
+		verify(accessWorker, times(1)).run(any(Job.class), any(WorkerCallback.class));
+		assertTrue(threadManager.getDuplicateDeliveryCount() == 1);
+		assertTrue(threadManager.getRunningJobIds().contains("123456"));
+
+		callback.getValue().onComplete("123456");
+		verify(channel).basicAck(7, false);
+		assertTrue(threadManager.getRunningJobIds().isEmpty());
+	}
+
+	/**
+	 * Tests a Job is classified once and forwarded to the queue of its lane, then run from that queue without being
+	 * classified again
+	 */
+	@Test
+	public void testLaneQueues() throws Exception {
+		ReflectionTestUtils.setField(threadManager, "laneQueuesEnabled", true);
+		AccessJob accessJob = new AccessJob("123456");
+		accessJob.deploymentType = AccessJob.ACCESS_TYPE_GEOSERVER;
+		accessJob.dataId = "654321";
+		job.setJobType(accessJob);
+		DataResource dataResource = new DataResource();
+		dataResource.dataType = new RasterDataType();
+		when(accessor.getDataFromPrimary("654321")).thenReturn(dataResource);
+
+		threadManager.processAccessJob(message, channel);
+		verify(laneQueues).forward(message, AccessThreadManager.Lane.RASTER, "RasterDataType");
+		verify(channel).basicAck(7, false);
+		verify(accessWorker, never()).runRaster(any(Job.class), any(WorkerCallback.class));
+		assertTrue(threadManager.getRunningJobIds().isEmpty());
+
+		MessageProperties properties = new MessageProperties();
+		properties.setDeliveryTag(8);
+		properties.setHeader(LaneQueues.DATA_TYPE_HEADER, "RasterDataType");
+		threadManager.processRasterLaneJob(new Message("{}".getBytes(), properties), channel);
+		ArgumentCaptor<WorkerCallback> callback = ArgumentCaptor.forClass(WorkerCallback.class);
+		verify(accessWorker).runRaster(any(Job.class), callback.capture());
+		verify(accessor, times(1)).getDataFromPrimary("654321");
+		assertTrue("RasterDataType".equals(jobRegistry.get("123456").getDataType()));
+
+		callback.getValue().onComplete("123456");
+		verify(channel).basicAck(8, false);
+	}
+
+	/**
+	 * Tests a Job whose copy on its lane queue the broker did not confirm is returned to the AccessJob queue
+	 */
+	@Test
+	public void testUnconfirmedLaneForward() throws Exception {
+		ReflectionTestUtils.setField(threadManager, "laneQueuesEnabled", true);
+		ReflectionTestUtils.setField(threadManager, "rejectionRequeueDelayMillis", 0L);
+		doThrow(new AmqpException("Not confirmed")).when(laneQueues).forward(any(Message.class), any(AccessThreadManager.Lane.class),
+				anyString());
+		threadManager.processAccessJob(message, channel);
+		verify(channel, timeout(5000)).basicNack(7, false, true);
+		verify(channel, never()).basicAck(7, false);
+	}
+
+	/**
+	 * Tests a Batch Access Job is run by the batch worker, and acknowledged once it completes
+	 */
+	@Test
+	public void testBatch() throws Exception {
+		BatchAccessJob batchJob = new BatchAccessJob("batch", "Tester", Arrays.asList("1", "2"), "group", 7);
+		when(objectMapper.readValue(anyString(), eq(BatchAccessJob.class))).thenReturn(batchJob);
+		threadManager.processBatchAccessJob(message, channel);
+		ArgumentCaptor<WorkerCallback> callback = ArgumentCaptor.forClass(WorkerCallback.class);
+		verify(batchAccessWorker).run(eq(batchJob), callback.capture());
+		assertTrue(threadManager.getRunningJobIds().contains("batch"));
+
+		callback.getValue().onComplete("batch");
+		verify(channel).basicAck(7, false);
+		assertTrue(threadManager.getRunningJobIds().isEmpty());
+	}
+
+	/**
+	 * Tests a redelivered Job that has already completed replays its recorded status instead of running again
+	 */
+	@Test
+	public void testReplayCompleted() throws Exception {
+		StatusUpdate completed = new StatusUpdate(StatusUpdate.STATUS_SUCCESS);
+		completed.setJobId("123456");
+		when(jobLedger.getCompletedStatus("123456")).thenReturn(completed);
+
+		threadManager.processAccessJob(message, channel);
+		verify(accessWorker, never()).run(any(Job.class), any(WorkerCallback.class));
+		verify(statusPublisher).publish(completed);
+		verify(channel).basicAck(7, false);
+		assertTrue(threadManager.getRunningJobIds().isEmpty());
+		assertTrue(threadManager.getReplayedJobCount() == 1);
+	}
+
+	/**
+	 * Tests a Job aborted before it starts is cancelled, acknowledged and deregistered, whether the abort arrives before
+	 * or after the Job
+	 */
+	@Test
+	public void testAbortQueued() throws Exception {
+		PiazzaJobRequest abortRequest = new PiazzaJobRequest();
+		abortRequest.jobType = new AbortJob("123456");
+		when(objectMapper.readValue(eq("abort"), eq(PiazzaJobRequest.class))).thenReturn(abortRequest);
+
+		threadManager.processAccessJob(message, channel);
+		ArgumentCaptor<WorkerCallback> callback = ArgumentCaptor.forClass(WorkerCallback.class);
+		verify(accessWorker).run(any(Job.class), callback.capture());
+		threadManager.processAbortJob("abort");
+		verify(channel).basicAck(7, false);
+		assertTrue(threadManager.getRunningJobIds().isEmpty());
+		ArgumentCaptor<StatusUpdate> status = ArgumentCaptor.forClass(StatusUpdate.class);
+		verify(statusPublisher).publish(status.capture());
+		assertTrue(status.getValue().getStatus().equals(StatusUpdate.STATUS_CANCELLED));
+		verify(jobLedger).recordCompleted(status.getValue());
+		// The worker completing afterwards does not settle the message again
+		callback.getValue().onComplete("123456");
+		verify(channel, times(1)).basicAck(7, false);
+
+		// Aborted before the Job arrives; it is never submitted
+		threadManager.processAbortJob("abort");
+		threadManager.processAccessJob(message, channel);
+		verify(accessWorker, times(1)).run(any(Job.class), any(WorkerCallback.class));
+		verify(channel, times(2)).basicAck(7, false);
+		assertTrue(threadManager.getRunningJobIds().isEmpty());
+	}
+
+	/**
+	 * Tests a drain returns Jobs that have not started to the queue, and holds messages received while draining until
+	 * released
+	 */
+	@Test
+	public void testDrain() throws Exception {
+		threadManager.processAccessJob(message, channel);
+		ArgumentCaptor<WorkerCallback> callback = ArgumentCaptor.forClass(WorkerCallback.class);
+		verify(accessWorker).run(any(Job.class), callback.capture());
+
+		threadManager.startDraining();
+		assertTrue(threadManager.isDraining());
+		assertTrue(threadManager.withdrawQueuedJobs() == 1);
+		verify(channel).basicNack(7, false, true);
+		assertTrue(threadManager.getRunningJobIds().isEmpty());
+		// The worker completing afterwards does not settle the message again
+		callback.getValue().onComplete("123456");
+		verify(channel, never()).basicAck(7, false);
+
+		threadManager.processAccessJob(message, channel);
+		verify(accessWorker).run(any(Job.class), any(WorkerCallback.class));
+		verify(channel, times(1)).basicNack(7, false, true);
+		assertTrue(threadManager.releaseHeldDeliveries() == 1);
+		verify(channel, times(2)).basicNack(7, false, true);
+		assertTrue(threadManager.releaseHeldDeliveries() == 0);
+	}
+}
@@ -19,25 +19,31 @@ import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.when;
 
+import org.joda.time.DateTime;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
-import org.springframework.amqp.core.Queue;
-import org.springframework.amqp.rabbit.core.RabbitTemplate;
-
-import com.fasterxml.jackson.databind.ObjectMapper;
 
 import access.database.DatabaseAccessor;
+import access.database.JobLedger;
+import access.database.LeasedDeployment;
 import access.deploy.Deployer;
+import access.deploy.DeploymentCoordinator;
 import access.deploy.Leaser;
+import access.deploy.RetryPolicy;
 import access.messaging.AccessWorker;
-import messaging.job.JobMessageFactory;
+import access.messaging.JobRegistry;
+import access.messaging.PipelineMetrics;
+import access.messaging.StatusPublisher;
 import messaging.job.WorkerCallback;
+import model.data.deployment.Deployment;
+import model.data.deployment.Lease;
 import model.job.Job;
 import model.job.type.AccessJob;
+import model.status.StatusUpdate;
 import util.PiazzaLogger;
 
 /**
@@ -56,11 +62,17 @@ public class WorkerTests {
 	@Mock
 	private PiazzaLogger logger;
 	@Mock
-	private Queue updateJobsQueue;
+	private StatusPublisher statusPublisher;
+	@Mock
+	private JobRegistry jobRegistry;
+	@Mock
+	private DeploymentCoordinator deploymentCoordinator;
+	@Mock
+	private RetryPolicy retryPolicy;
 	@Mock
-	private RabbitTemplate rabbitTemplate;
+	private PipelineMetrics pipelineMetrics;
 	@Mock
-	private ObjectMapper mapper;
+	private JobLedger jobLedger;
 
 	@InjectMocks
 	private AccessWorker worker;
@@ -71,6 +83,7 @@ public class WorkerTests {
 	@Before
 	public void setup() {
 		MockitoAnnotations.initMocks(this);
+		when(jobRegistry.start(Mockito.anyString())).thenReturn(true);
 
 	}
 
@@ -80,9 +93,6 @@ public class WorkerTests {
 	@Test
 	public void testWorker() throws Exception {
 		// Mock
-		when(updateJobsQueue.getName()).thenReturn("Update-Job-Unit-Test");
-		Mockito.doNothing().when(rabbitTemplate).convertAndSend(eq(JobMessageFactory.PIAZZA_EXCHANGE_NAME), eq("123456"),
-				Mockito.anyString());
 		Job mockJob = new Job();
 		mockJob.setJobId("123456");
 		mockJob.setCreatedBy("Test User");
@@ -98,11 +108,18 @@ public class WorkerTests {
 		};
 
 		// Test when refreshing an expired lease
-		when(deployer.doesDeploymentExist(eq("123456"))).thenReturn(true);
+		Deployment deployment = new Deployment();
+		deployment.setDeploymentId("654321");
+		Lease lease = new Lease("987654", "654321", new DateTime().minusDays(1));
+		when(databaseAccessor.getLeasedDeploymentByDataId(eq("123456"))).thenReturn(new LeasedDeployment(deployment, lease));
 		worker.run(mockJob, callback);
+		Mockito.verify(leaser).renewDeploymentLease(eq(deployment), eq(lease), Mockito.any());
+		Mockito.verify(statusPublisher, Mockito.atLeast(2)).publish(Mockito.any(StatusUpdate.class));
+		// The final status is recorded for replay before it is published
+		Mockito.verify(jobLedger).recordCompleted(Mockito.any(StatusUpdate.class));
 
 		// Test when a current lease doesn't exist - new is created
-		when(deployer.doesDeploymentExist(eq("123456"))).thenReturn(false);
+		when(databaseAccessor.getLeasedDeploymentByDataId(eq("123456"))).thenReturn(null);
 		worker.run(mockJob, callback);
 
 		// Test inner exceptions during deployment
@@ -0,0 +1,4 @@
+-- Postgres functions used by AdvisoryLocks, for the embedded database of the load test
+CREATE ALIAS IF NOT EXISTS hashtext FOR "access.load.LocalDatabaseFunctions.hashtext";
+CREATE ALIAS IF NOT EXISTS pg_try_advisory_lock FOR "access.load.LocalDatabaseFunctions.tryAdvisoryLock";
+CREATE ALIAS IF NOT EXISTS pg_advisory_unlock FOR "access.load.LocalDatabaseFunctions.advisoryUnlock";